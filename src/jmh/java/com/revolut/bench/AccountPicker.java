@@ -0,0 +1,68 @@
+package com.revolut.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+//Picks account ids for benchmark requests. "uniform" spreads them evenly, "zipf" makes a few
+//accounts hot: with the default exponent and 1000 accounts the first one gets ~13% of requests.
+public final class AccountPicker {
+
+  public static final String UNIFORM = "uniform";
+  public static final String ZIPF = "zipf";
+  private static final double ZIPF_EXPONENT = 1.0;
+
+  private final int firstId;
+  private final int count;
+  private final double[] cdf; //null if uniform
+
+  private AccountPicker(int firstId, int count, double[] cdf) {
+    this.firstId = firstId;
+    this.count = count;
+    this.cdf = cdf;
+  }
+
+  public static AccountPicker of(String skew, int firstId, int count) {
+    switch (skew) {
+      case UNIFORM:
+        return new AccountPicker(firstId, count, null);
+      case ZIPF:
+        return new AccountPicker(firstId, count, zipfCdf(count));
+      default:
+        throw new IllegalArgumentException("Unknown skew " + skew);
+    }
+  }
+
+  public int next() {
+    var random = ThreadLocalRandom.current();
+    if (cdf == null) {
+      return firstId + random.nextInt(count);
+    }
+    var rank = Arrays.binarySearch(cdf, random.nextDouble());
+    if (rank < 0) {
+      rank = -rank - 1;
+    }
+    return firstId + Math.min(rank, count - 1);
+  }
+
+  //a different account than the given one, for transfers
+  public int nextOtherThan(int id) {
+    var next = next();
+    while (next == id && count > 1) {
+      next = next();
+    }
+    return next;
+  }
+
+  private static double[] zipfCdf(int count) {
+    var cdf = new double[count];
+    var sum = 0.0;
+    for (int rank = 0; rank < count; rank++) {
+      sum += 1.0 / Math.pow(rank + 1, ZIPF_EXPONENT);
+      cdf[rank] = sum;
+    }
+    for (int rank = 0; rank < count; rank++) {
+      cdf[rank] /= sum;
+    }
+    return cdf;
+  }
+}
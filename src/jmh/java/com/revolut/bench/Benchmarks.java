@@ -0,0 +1,62 @@
+package com.revolut.bench;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Runs the selected benchmarks (same arguments as org.openjdk.jmh.Main) once per thread count
+//and writes every result into one JSON file, so runs of different commits can be compared.
+//  -Dbench.threads=1,4,16   thread counts, ignored if -t is given
+//  -Dbench.result=<file>    default jmh-results/<timestamp>.json
+public class Benchmarks {
+
+  private static final String THREADS_PROPERTY = "bench.threads";
+  private static final String RESULT_PROPERTY = "bench.result";
+  private static final String DEFAULT_THREADS = "1,4,16";
+  private static final String RESULTS_DIR = "jmh-results";
+
+  public static void main(String[] args)
+      throws CommandLineOptionException, RunnerException, IOException {
+    var cli = new CommandLineOptions(args);
+    var threadCounts = cli.getThreads().hasValue()
+        ? new int[]{cli.getThreads().get()}
+        : Arrays.stream(System.getProperty(THREADS_PROPERTY, DEFAULT_THREADS).split(","))
+            .mapToInt(threads -> Integer.parseInt(threads.trim()))
+            .toArray();
+
+    var results = new ArrayList<RunResult>();
+    for (var threads : threadCounts) {
+      results.addAll(new Runner(new OptionsBuilder()
+          .parent(cli)
+          .threads(threads)
+          .build()).run());
+    }
+
+    var file = Path.of(System.getProperty(RESULT_PROPERTY, defaultResultFile()));
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    try (var out = new PrintStream(Files.newOutputStream(file))) {
+      ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+    }
+    System.out.println("Results are written to " + file.toAbsolutePath());
+  }
+
+  private static String defaultResultFile() {
+    var timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    return RESULTS_DIR + "/" + timestamp + ".json";
+  }
+}
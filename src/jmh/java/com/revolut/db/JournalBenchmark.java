@@ -0,0 +1,75 @@
+package com.revolut.db;
+
+import com.revolut.domain.Currency;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//durable commits/sec of a deposit sized record, group commit against a force() per commit.
+//Needs several threads (-t or the Benchmarks runner) to have anything to group.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+  @Param({"group", "fsync"})
+  public String mode;
+
+  @Param({"0"})
+  public long flushIntervalUs;
+
+  private final AtomicLong txIds = new AtomicLong();
+  private Path dir;
+  private MappedJournal journal;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("journal-bench");
+    journal = new MappedJournal(dir, MappedJournal.DEFAULT_SEGMENT_SIZE, flushIntervalUs,
+        "group".equals(mode));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException, IOException {
+    journal.close();
+    try (var files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(file -> file.delete());
+    }
+  }
+
+  @Benchmark
+  public long commit() {
+    var position = journal.append(List.of(Transaction.builder()
+        .transactionId("tx-1700000000000-" + txIds.incrementAndGet())
+        .operationName(TransactionType.DEPOSIT)
+        .relatedEntityId(1)
+        .amount(10L)
+        .currency(Currency.EUR)
+        .timestampMs(System.currentTimeMillis())
+        .build()));
+    journal.awaitDurable(position);
+    return position;
+  }
+}
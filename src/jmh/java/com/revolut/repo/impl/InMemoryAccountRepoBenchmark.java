@@ -0,0 +1,65 @@
+package com.revolut.repo.impl;
+
+import com.revolut.bench.AccountPicker;
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//the account queries every request ends up in, straight against the DB without cache or locks
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryAccountRepoBenchmark {
+
+  @Param({AccountPicker.UNIFORM, AccountPicker.ZIPF})
+  public String skew;
+
+  @Param({"1000"})
+  public int accounts;
+
+  private InMemoryAccountRepo accountRepo;
+  private AccountPicker picker;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    accountRepo = new InMemoryAccountRepo(new InMemoryDB());
+    var firstAccountId = accountRepo.insert(new Account("bench", Currency.EUR, 0L)).getId();
+    for (int i = 1; i < accounts; i++) {
+      accountRepo.insert(new Account("bench", Currency.EUR, 0L));
+    }
+    picker = AccountPicker.of(skew, firstAccountId, accounts);
+  }
+
+  @Benchmark
+  public Account get() {
+    return accountRepo.get(picker.next());
+  }
+
+  @Benchmark
+  public void update() {
+    accountRepo.update(new Account(picker.next(), "bench", Currency.EUR, 1L));
+  }
+
+  //the table size stays the same, so inserts can't skew the other results
+  @Benchmark
+  public void insertAndDelete() {
+    var inserted = accountRepo.insert(new Account("bench", Currency.EUR, 0L));
+    accountRepo.delete(inserted.getId());
+  }
+}
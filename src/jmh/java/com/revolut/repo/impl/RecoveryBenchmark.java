@@ -0,0 +1,119 @@
+package com.revolut.repo.impl;
+
+import static com.revolut.db.tables.Transactions.TRANSACTIONS;
+
+import com.revolut.db.AccountSnapshot;
+import com.revolut.db.InMemoryDB;
+import com.revolut.db.MappedJournal;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.repo.impl.JournalCheckpointer.RecoveryStats;
+import com.revolut.service.TransactionService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//time-to-ready of a restart: a snapshot of accounts plus a journal tail of recent deposits,
+//restored into the DB. Single threaded by nature, run it with -t 1.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+public class RecoveryBenchmark {
+
+  private static final String TX_ID_PREFIX = "tx-recovery-";
+
+  @Param({"1000000"})
+  public int accounts;
+
+  @Param({"0", "100000"})
+  public int tail;
+
+  private Path dir;
+  private InMemoryDB db;
+  private MappedJournal journal;
+  private JournalCheckpointer checkpointer;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("recovery-bench");
+    db = new InMemoryDB();
+    AccountSnapshot.write(dir.resolve("snapshot-00000000000000000000.snapshot"), 0L, 0L,
+        accounts, accounts(accounts));
+    journal = new MappedJournal(dir, 0L);
+    var random = ThreadLocalRandom.current();
+    for (int i = 0; i < tail; i++) {
+      journal.append(List.of(Transaction.builder()
+          .transactionId(TX_ID_PREFIX + i)
+          .operationName(TransactionType.DEPOSIT)
+          .relatedEntityId(random.nextInt(accounts))
+          .amount(10L)
+          .currency(Currency.EUR)
+          .timestampMs(System.currentTimeMillis())
+          .build()));
+    }
+    journal.awaitDurable(journal.durablePosition());
+    checkpointer = new JournalCheckpointer(dir, journal, new InMemoryAccountRepo(db),
+        new InMemoryTransactionRepo(db), new InMemoryTransactionHelper(db),
+        TransactionService.TRANSACTION_ID_VALIDITY_IN_MS);
+  }
+
+  //a restart gets a fresh DB, the replayed transactions mustn't be there already
+  @Setup(Level.Iteration)
+  public void forgetReplayedTransactions() {
+    db.ctx().deleteFrom(TRANSACTIONS).where(TRANSACTIONS.TRANSACTION_ID.like(TX_ID_PREFIX + "%"))
+        .execute();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException, IOException {
+    journal.close();
+    try (var files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(file -> file.delete());
+    }
+  }
+
+  @Benchmark
+  public RecoveryStats recover() {
+    return checkpointer.recover();
+  }
+
+  private static Iterator<Account> accounts(int count) {
+    return new Iterator<>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < count;
+      }
+
+      @Override
+      public Account next() {
+        var id = next++;
+        return new Account(id, "account-" + id, Currency.EUR, 1_000L);
+      }
+    };
+  }
+}
@@ -0,0 +1,96 @@
+package com.revolut.service;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Currency;
+import com.revolut.domain.HistoryCursor;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//GET /accounts/:id/transactions for one account while the other accounts' rows grow,
+//the latency should stay flat as the query seeks the account's part of the index
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountHistoryBenchmark {
+
+  private static final int ACCOUNT_ID = 0;
+  private static final int ACCOUNT_TRANSACTIONS = 1_000;
+  private static final int TRANSACTIONS_PER_OTHER_ACCOUNT = 10;
+  private static final int INSERT_BATCH_SIZE = 10_000;
+  private static final long FIRST_TIMESTAMP_MS = 1_500_000_000_000L;
+  private static final int PAGE_SIZE = 50;
+
+  @Param({"100", "10000", "100000"})
+  public int otherAccounts;
+
+  private TransactionService transactionService;
+  private HistoryCursor middle;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var db = new InMemoryDB();
+    var transactionRepo = new InMemoryTransactionRepo(db);
+    var transactionHelper = new InMemoryTransactionHelper(db);
+    transactionService = new TransactionService(transactionRepo);
+
+    var batch = new ArrayList<Transaction>(INSERT_BATCH_SIZE);
+    var total = ACCOUNT_TRANSACTIONS + otherAccounts * TRANSACTIONS_PER_OTHER_ACCOUNT;
+    var step = total / ACCOUNT_TRANSACTIONS;
+    var others = 0;
+    for (int i = 0; i < total; i++) {
+      //the account's rows are spread among everyone else's, like in a live ledger
+      var accountId = i % step == 0 ? ACCOUNT_ID : 1 + others++ % otherAccounts;
+      batch.add(transaction(accountId, FIRST_TIMESTAMP_MS + i, "bench-" + i));
+      if (batch.size() == INSERT_BATCH_SIZE || i == total - 1) {
+        var toSave = List.copyOf(batch);
+        transactionHelper.runTransactional(tx -> transactionRepo.saveAllTransactional(toSave, tx));
+        batch.clear();
+      }
+    }
+    var history = transactionService.getAccountHistory(ACCOUNT_ID, 0L, Long.MAX_VALUE, null,
+        ACCOUNT_TRANSACTIONS / 2);
+    middle = HistoryCursor.of(history.get(history.size() - 1));
+  }
+
+  @Benchmark
+  public List<Transaction> latestPage() {
+    return transactionService.getAccountHistory(ACCOUNT_ID, 0L, Long.MAX_VALUE, null, PAGE_SIZE);
+  }
+
+  @Benchmark
+  public List<Transaction> pageFromCursor() {
+    return transactionService.getAccountHistory(ACCOUNT_ID, 0L, Long.MAX_VALUE, middle,
+        PAGE_SIZE);
+  }
+
+  private static Transaction transaction(int accountId, long timestampMs, String txId) {
+    return Transaction.builder()
+        .transactionId(txId)
+        .relatedEntityId(accountId)
+        .amount(1L)
+        .currency(Currency.EUR)
+        .operationName(TransactionType.DEPOSIT)
+        .timestampMs(timestampMs)
+        .build();
+  }
+}
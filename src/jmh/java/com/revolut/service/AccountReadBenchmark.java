@@ -0,0 +1,62 @@
+package com.revolut.service;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.repo.impl.CachingAccountRepo;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+//the read side of GET /accounts/:id, with and without the account cache
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class AccountReadBenchmark {
+
+  @Param({"0", "100000"})
+  public long cacheSize;
+
+  @Param({"1000"})
+  public int accounts;
+
+  private AccountService accountService;
+  private int firstAccountId;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var db = new InMemoryDB();
+    var accountRepo = new CachingAccountRepo(new InMemoryAccountRepo(db), db, cacheSize);
+    firstAccountId = accountRepo.insert(new Account("bench", Currency.EUR, 0L)).getId();
+    for (int i = 1; i < accounts; i++) {
+      accountRepo.insert(new Account("bench", Currency.EUR, 0L));
+    }
+    accountService = new AccountService(accountRepo, new LockedMovements(accountRepo, new Lock(),
+        new InMemoryTransactionHelper(db),
+        new TransactionService(new InMemoryTransactionRepo(db))));
+  }
+
+  @Benchmark
+  public Account get() {
+    return accountService.get(firstAccountId + ThreadLocalRandom.current().nextInt(accounts));
+  }
+}
@@ -0,0 +1,88 @@
+package com.revolut.service;
+
+import com.revolut.bench.AccountPicker;
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.TxId;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import com.revolut.service.ledger.SequencerLedgerEngine;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//deposits and withdrawals/sec, including the txId generation every request needs
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountServiceBenchmark {
+
+  private static final long INITIAL_BALANCE = Long.MAX_VALUE / 2;
+
+  @Param({"lock", "sequencer"})
+  public String engine;
+
+  @Param({AccountPicker.UNIFORM, AccountPicker.ZIPF})
+  public String skew;
+
+  @Param({"1000"})
+  public int accounts;
+
+  private AccountService accountService;
+  private TransactionService transactionService;
+  private SequencerLedgerEngine sequencer;
+  private AccountPicker picker;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var db = new InMemoryDB();
+    var accountRepo = new InMemoryAccountRepo(db);
+    var transactionHelper = new InMemoryTransactionHelper(db);
+    transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    var firstAccountId = accountRepo.insert(new Account("bench", Currency.EUR, INITIAL_BALANCE))
+        .getId();
+    for (int i = 1; i < accounts; i++) {
+      accountRepo.insert(new Account("bench", Currency.EUR, INITIAL_BALANCE));
+    }
+    picker = AccountPicker.of(skew, firstAccountId, accounts);
+    if ("sequencer".equals(engine)) {
+      sequencer = new SequencerLedgerEngine(accountRepo, transactionHelper, transactionService)
+          .start();
+    }
+    accountService = new AccountService(accountRepo, sequencer != null ? sequencer
+        : new LockedMovements(accountRepo, new Lock(), transactionHelper, transactionService));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    if (sequencer != null) {
+      sequencer.close();
+    }
+  }
+
+  @Benchmark
+  public void deposit() {
+    accountService.deposit(picker.next(), 1L, TxId.of(transactionService.generateTxId()));
+  }
+
+  @Benchmark
+  public void withdraw() {
+    accountService.withdraw(picker.next(), 1L, TxId.of(transactionService.generateTxId()));
+  }
+}
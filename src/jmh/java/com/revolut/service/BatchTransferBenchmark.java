@@ -0,0 +1,92 @@
+package com.revolut.service;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Transfer;
+import com.revolut.domain.TransferResult;
+import com.revolut.domain.TxId;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//time to apply a burst of transfers: one transferAll call vs the same transfers one by one
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchTransferBenchmark {
+
+  private static final long INITIAL_BALANCE = Long.MAX_VALUE / 2;
+
+  @Param({"1000"})
+  public int batchSize;
+
+  @Param({"1000"})
+  public int accounts;
+
+  private TransferService transferService;
+  private TransactionService transactionService;
+  private int firstAccountId;
+  private List<Transfer> transfers;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var db = new InMemoryDB();
+    var accountRepo = new InMemoryAccountRepo(db);
+    transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    firstAccountId = accountRepo.insert(new Account("bench", Currency.EUR, INITIAL_BALANCE))
+        .getId();
+    for (int i = 1; i < accounts; i++) {
+      accountRepo.insert(new Account("bench", Currency.EUR, INITIAL_BALANCE));
+    }
+    transferService = new TransferService(new LockedMovements(accountRepo, new Lock(),
+        new InMemoryTransactionHelper(db), transactionService));
+  }
+
+  @Setup(Level.Invocation)
+  public void newBatch() {
+    var random = ThreadLocalRandom.current();
+    transfers = new ArrayList<>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      transfers.add(new Transfer(firstAccountId + random.nextInt(accounts),
+          firstAccountId + random.nextInt(accounts), 1L,
+          TxId.of(transactionService.generateTxId())));
+    }
+  }
+
+  @Benchmark
+  public List<TransferResult> batch() {
+    return transferService.transferAll(transfers);
+  }
+
+  @Benchmark
+  public int sequential() {
+    var applied = 0;
+    for (var transfer : transfers) {
+      if (transferService.transfer(transfer.getFromId(), transfer.getToId(),
+          transfer.getAmount(), transfer.getTxId())) {
+        applied++;
+      }
+    }
+    return applied;
+  }
+}
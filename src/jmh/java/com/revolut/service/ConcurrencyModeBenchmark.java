@@ -0,0 +1,95 @@
+package com.revolut.service;
+
+import com.revolut.bench.AccountPicker;
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Exceptions.ConcurrentUpdateException;
+import com.revolut.domain.TxId;
+import com.revolut.metrics.Metrics;
+import com.revolut.repo.impl.CachingAccountRepo;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+//transfers/sec through TransferService with account locks vs version checks and retries,
+//behind the account cache like in App. uniform is low contention, zipf puts ~13% of transfers
+//on one account. Transfers which lost every attempt are counted apart as "exhausted".
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ConcurrencyModeBenchmark {
+
+  private static final long INITIAL_BALANCE = Long.MAX_VALUE / 2;
+
+  @Param({"pessimistic", "optimistic"})
+  public String mode;
+
+  @Param({AccountPicker.UNIFORM, AccountPicker.ZIPF})
+  public String skew;
+
+  @Param({"1000"})
+  public int accounts;
+
+  private TransferService transferService;
+  private TransactionService transactionService;
+  private AccountPicker picker;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var db = new InMemoryDB();
+    var dbAccountRepo = new InMemoryAccountRepo(db);
+    var accountRepo = new CachingAccountRepo(dbAccountRepo, db, accounts);
+    var transactionHelper = new InMemoryTransactionHelper(db);
+    transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    var firstAccountId = dbAccountRepo.insert(new Account("bench", Currency.EUR, INITIAL_BALANCE))
+        .getId();
+    for (int i = 1; i < accounts; i++) {
+      dbAccountRepo.insert(new Account("bench", Currency.EUR, INITIAL_BALANCE));
+    }
+    picker = AccountPicker.of(skew, firstAccountId, accounts);
+    transferService = new TransferService("optimistic".equals(mode)
+        ? new OptimisticMovements(accountRepo, new Lock(), transactionHelper, transactionService,
+        new OptimisticRetry(new Metrics()))
+        : new LockedMovements(accountRepo, new Lock(), transactionHelper, transactionService));
+  }
+
+  @Benchmark
+  public void transfer(Outcomes outcomes) {
+    var from = picker.next();
+    var to = picker.nextOtherThan(from);
+    try {
+      transferService.transfer(from, to, 1L, TxId.of(transactionService.generateTxId()));
+      outcomes.transferred++;
+    } catch (ConcurrentUpdateException e) {
+      outcomes.exhausted++;
+    }
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Outcomes {
+
+    public long transferred;
+    public long exhausted;
+  }
+}
@@ -0,0 +1,71 @@
+package com.revolut.service;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.TxId;
+import com.revolut.metrics.Metrics;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+//deposits/sec into a single merchant-style account: one commit per deposit under the account
+//lock, flat combining, or lock-free credits to one of 16 shards.
+//16 threads with org.openjdk.jmh.Main, com.revolut.bench.Benchmarks runs it at several counts
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class HotAccountDepositBenchmark {
+
+  @Param({"single", "combining", "sharded"})
+  public String mode;
+
+  private AccountService accountService;
+  private TransactionService transactionService;
+  private int hotAccountId;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var db = new InMemoryDB();
+    var accountRepo = new InMemoryAccountRepo(db);
+    var transactionHelper = new InMemoryTransactionHelper(db);
+    transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    hotAccountId = accountRepo.insert(new Account("merchant", Currency.EUR, 0L)).getId();
+    var lock = new Lock();
+    MovementStrategy movements = new LockedMovements(accountRepo, lock, transactionHelper,
+        transactionService);
+    if ("combining".equals(mode)) {
+      movements = new CombinedCreditMovements(movements, accountRepo, lock, transactionService,
+          new CreditCombiner(accountRepo, transactionHelper, transactionService,
+              CreditCombiner.DEFAULT_STRIPES, CreditCombiner.DEFAULT_MAX_BATCH_SIZE,
+              new Metrics()));
+    }
+    accountService = new AccountService(accountRepo, movements);
+    if ("sharded".equals(mode)) {
+      accountService.reshard(hotAccountId, 16);
+    }
+  }
+
+  @Benchmark
+  public void deposit() {
+    accountService.deposit(hotAccountId, 1L, TxId.of(transactionService.generateTxId()));
+  }
+}
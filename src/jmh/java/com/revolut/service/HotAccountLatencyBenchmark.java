@@ -0,0 +1,125 @@
+package com.revolut.service;
+
+import com.revolut.bench.AccountPicker;
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.TxId;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//Latency percentiles of deposits to other accounts while one account gets a constant burst.
+//Every request goes through a fixed pool standing in for Jetty's: with lock a hot request
+//waiting for its lock holds a pool thread, with async it is a queued callback.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotAccountLatencyBenchmark {
+
+  private static final long INITIAL_BALANCE = Long.MAX_VALUE / 2;
+  private static final int REQUEST_THREADS = 8;
+
+  @Param({"lock", "async"})
+  public String engine;
+
+  //hot requests in flight at any time
+  @Param({"64"})
+  public int hotInFlight;
+
+  @Param({"1000"})
+  public int accounts;
+
+  private Lock lock;
+  private AccountService accountService;
+  private TransactionService transactionService;
+  private ExecutorService requestPool;
+  private Thread hotLoad;
+  private volatile boolean running;
+  private int hotAccountId;
+  private AccountPicker coldPicker;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var db = new InMemoryDB();
+    var accountRepo = new InMemoryAccountRepo(db);
+    var transactionHelper = new InMemoryTransactionHelper(db);
+    transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    hotAccountId = accountRepo.insert(new Account("hot", Currency.EUR, INITIAL_BALANCE))
+        .getId();
+    for (int i = 1; i < accounts; i++) {
+      accountRepo.insert(new Account("cold", Currency.EUR, INITIAL_BALANCE));
+    }
+    coldPicker = AccountPicker.of(AccountPicker.UNIFORM, hotAccountId + 1, accounts - 1);
+    lock = "async".equals(engine) ? new AsyncLock() : new Lock();
+    accountService = new AccountService(accountRepo,
+        new LockedMovements(accountRepo, lock, transactionHelper, transactionService));
+    requestPool = Executors.newFixedThreadPool(REQUEST_THREADS);
+
+    running = true;
+    var permits = new Semaphore(hotInFlight);
+    hotLoad = new Thread(() -> {
+      while (running) {
+        try {
+          permits.acquire();
+        } catch (InterruptedException e) {
+          return;
+        }
+        request(hotAccountId).whenComplete((ignored, e) -> permits.release());
+      }
+    }, "hot-load");
+    hotLoad.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    running = false;
+    hotLoad.interrupt();
+    hotLoad.join();
+    requestPool.shutdownNow();
+    if (lock instanceof AsyncLock) {
+      ((AsyncLock) lock).close();
+    }
+  }
+
+  @Benchmark
+  public void coldDeposit() {
+    request(coldPicker.next()).join();
+  }
+
+  //what a deposit handler does on a Jetty thread
+  private CompletableFuture<Void> request(int id) {
+    var txId = TxId.of(transactionService.generateTxId());
+    var ack = new CompletableFuture<Void>();
+    requestPool.execute(() -> accountService.depositAsync(id, 1L, txId)
+        .whenComplete((ignored, e) -> {
+          if (e == null) {
+            ack.complete(null);
+          } else {
+            ack.completeExceptionally(e);
+          }
+        }));
+    return ack;
+  }
+}
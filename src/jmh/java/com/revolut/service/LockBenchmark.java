@@ -0,0 +1,83 @@
+package com.revolut.service;
+
+import com.revolut.bench.AccountPicker;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+//Lock.runWithLock alone, the critical section is a fixed amount of CPU work standing in for
+//the DB transaction, so the numbers show how much the stripes serialize under contention
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LockBenchmark {
+
+  private static final int TX_IDS = 4_096;
+
+  @Param({AccountPicker.UNIFORM, AccountPicker.ZIPF})
+  public String skew;
+
+  @Param({"1000"})
+  public int accounts;
+
+  @Param({"100"})
+  public int criticalSectionTokens;
+
+  private Lock lock;
+  private AccountPicker picker;
+  private String[] txIds;
+  private final AtomicInteger nextFreshId = new AtomicInteger();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    lock = new Lock();
+    picker = AccountPicker.of(skew, 0, accounts);
+    txIds = new String[TX_IDS];
+    for (int i = 0; i < TX_IDS; i++) {
+      txIds[i] = String.format("tx-%d-%d", System.currentTimeMillis(), i);
+    }
+  }
+
+  @Benchmark
+  public void oneAccount() {
+    lock.runWithLock(picker.next(), nextTxId(), this::criticalSection);
+  }
+
+  @Benchmark
+  public void twoAccounts() {
+    var from = picker.next();
+    lock.runWithLock(from, picker.nextOtherThan(from), nextTxId(), this::criticalSection);
+  }
+
+  private void criticalSection() {
+    Blackhole.consumeCPU(criticalSectionTokens);
+  }
+
+  //a new account id and txId per call, like production traffic. Run with -prof gc: the stripes
+  //don't grow with the ids seen, so the heap stays flat however long it runs
+  @Benchmark
+  public void freshIds() {
+    var id = nextFreshId.getAndIncrement();
+    lock.runWithLock(id, id + 1, "tx-" + id, this::criticalSection);
+  }
+
+  private String nextTxId() {
+    return txIds[ThreadLocalRandom.current().nextInt(TX_IDS)];
+  }
+}
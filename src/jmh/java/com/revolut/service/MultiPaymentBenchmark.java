@@ -0,0 +1,94 @@
+package com.revolut.service;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.PaymentLeg;
+import com.revolut.domain.TxId;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//time to pay legs accounts from one: one multi payment vs a transfer per leg
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiPaymentBenchmark {
+
+  private static final long INITIAL_BALANCE = Long.MAX_VALUE / 2;
+
+  @Param({"10", "100", "1000"})
+  public int legs;
+
+  @Param({"1000"})
+  public int accounts;
+
+  private TransferService transferService;
+  private TransactionService transactionService;
+  private int firstAccountId;
+  private List<PaymentLeg> payment;
+  private List<TxId> txIds;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var db = new InMemoryDB();
+    var accountRepo = new InMemoryAccountRepo(db);
+    transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    firstAccountId = accountRepo.insert(new Account("bench", Currency.EUR, INITIAL_BALANCE))
+        .getId();
+    for (int i = 1; i < accounts; i++) {
+      accountRepo.insert(new Account("bench", Currency.EUR, INITIAL_BALANCE));
+    }
+    transferService = new TransferService(new LockedMovements(accountRepo, new Lock(),
+        new InMemoryTransactionHelper(db), transactionService));
+  }
+
+  @Setup(Level.Invocation)
+  public void newPayment() {
+    var random = ThreadLocalRandom.current();
+    payment = new ArrayList<>(legs);
+    txIds = new ArrayList<>(legs);
+    for (int i = 0; i < legs; i++) {
+      payment.add(new PaymentLeg(firstAccountId + 1 + random.nextInt(accounts - 1), 1L));
+      txIds.add(TxId.of(transactionService.generateTxId()));
+    }
+  }
+
+  @Benchmark
+  public List<PaymentLeg> multi() {
+    transferService.payMulti(firstAccountId, payment, txIds.get(0));
+    return payment;
+  }
+
+  @Benchmark
+  public int transfers() {
+    var applied = 0;
+    for (int i = 0; i < legs; i++) {
+      var leg = payment.get(i);
+      if (transferService.transfer(firstAccountId, leg.getToId(), leg.getAmount(),
+          txIds.get(i))) {
+        applied++;
+      }
+    }
+    return applied;
+  }
+}
@@ -0,0 +1,83 @@
+package com.revolut.service;
+
+import com.revolut.bench.AccountPicker;
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.TxId;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import com.revolut.service.ledger.PartitionedLedgerEngine;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+//transfers/sec through TransferService with the partitioned engine, one writer thread per
+//partition: the throughput vs cores curve. Callers outnumber the partitions so none idles.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class PartitionedLedgerBenchmark {
+
+  private static final long INITIAL_BALANCE = Long.MAX_VALUE / 2;
+
+  @Param({"1", "2", "4", "8"})
+  public int partitions;
+
+  @Param({AccountPicker.UNIFORM})
+  public String skew;
+
+  @Param({"1000"})
+  public int accounts;
+
+  private TransferService transferService;
+  private TransactionService transactionService;
+  private PartitionedLedgerEngine engine;
+  private AccountPicker picker;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var db = new InMemoryDB();
+    var accountRepo = new InMemoryAccountRepo(db);
+    var transactionHelper = new InMemoryTransactionHelper(db);
+    transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    var firstAccountId = accountRepo.insert(new Account("bench", Currency.EUR, INITIAL_BALANCE))
+        .getId();
+    for (int i = 1; i < accounts; i++) {
+      accountRepo.insert(new Account("bench", Currency.EUR, INITIAL_BALANCE));
+    }
+    picker = AccountPicker.of(skew, firstAccountId, accounts);
+    engine = new PartitionedLedgerEngine(accountRepo, transactionHelper, transactionService,
+        partitions);
+    transferService = new TransferService(engine);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    engine.close();
+  }
+
+  @Benchmark
+  public boolean transfer() {
+    var from = picker.next();
+    var to = picker.nextOtherThan(from);
+    return transferService.transfer(from, to, 1L, TxId.of(transactionService.generateTxId()));
+  }
+}
@@ -0,0 +1,124 @@
+package com.revolut.service;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.TxId;
+import com.revolut.repo.AccountRepo;
+import com.revolut.repo.impl.CachingAccountRepo;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import com.revolut.repo.impl.SnapshotAccountRepo;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//GET /accounts/:id and a page of GET /accounts while as many threads transfer between the same
+//accounts, reading from the DB, through the account cache, or from the published snapshot
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotReadBenchmark {
+
+  private static final int PAGE_SIZE = 100;
+
+  @Param({"db", "cache", "snapshot"})
+  public String reads;
+
+  @Param({"1000"})
+  public int accounts;
+
+  private AccountService accountService;
+  private TransferService transferService;
+  private TransactionService transactionService;
+  private int firstAccountId;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var db = new InMemoryDB();
+    var accountRepo = createAccountRepo(db);
+    firstAccountId = accountRepo.insert(new Account("bench", Currency.EUR, Long.MAX_VALUE / 4))
+        .getId();
+    for (int i = 1; i < accounts; i++) {
+      accountRepo.insert(new Account("bench", Currency.EUR, Long.MAX_VALUE / 4));
+    }
+    var lock = new Lock();
+    var transactionHelper = new InMemoryTransactionHelper(db);
+    transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    var movements = new LockedMovements(accountRepo, lock, transactionHelper, transactionService);
+    accountService = new AccountService(accountRepo, movements);
+    transferService = new TransferService(movements);
+  }
+
+  @Benchmark
+  @Group("get")
+  @GroupThreads(4)
+  public Account getOne() {
+    return accountService.get(randomAccount());
+  }
+
+  @Benchmark
+  @Group("get")
+  @GroupThreads(4)
+  public void getTransfers() {
+    transfer();
+  }
+
+  @Benchmark
+  @Group("page")
+  @GroupThreads(4)
+  public List<Account> getPage() {
+    return accountService.getPage(randomAccount() - PAGE_SIZE, PAGE_SIZE);
+  }
+
+  @Benchmark
+  @Group("page")
+  @GroupThreads(4)
+  public void pageTransfers() {
+    transfer();
+  }
+
+  private void transfer() {
+    var from = randomAccount();
+    var to = randomAccount();
+    if (from != to) {
+      transferService.transfer(from, to, 1L, TxId.of(transactionService.generateTxId()));
+    }
+  }
+
+  private int randomAccount() {
+    return firstAccountId + ThreadLocalRandom.current().nextInt(accounts);
+  }
+
+  private AccountRepo createAccountRepo(InMemoryDB db) {
+    switch (reads) {
+      case "db":
+        return new InMemoryAccountRepo(db);
+      case "cache":
+        return new CachingAccountRepo(new InMemoryAccountRepo(db), db, 100_000L);
+      case "snapshot":
+        return new SnapshotAccountRepo(
+            new CachingAccountRepo(new InMemoryAccountRepo(db), db, 100_000L), db);
+      default:
+        throw new IllegalArgumentException(reads);
+    }
+  }
+}
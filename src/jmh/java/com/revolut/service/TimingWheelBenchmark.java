@@ -0,0 +1,82 @@
+package com.revolut.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//the cost of expiring holds per tick should follow what is due, not how many holds are pending.
+//scan is what a sweep over every hold's deadline costs per tick. Expired holds are scheduled again
+//a TTL later, so pending stays the same.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class TimingWheelBenchmark {
+
+  private static final int SLOTS = 4_096;
+  private static final long TICK_IN_MS = 1_000L;
+  private static final long TTL_IN_MS = HoldService.DEFAULT_TTL_IN_MS;
+
+  @Param({"100000", "1000000", "4000000"})
+  public int pending;
+
+  private TimingWheel<Integer> wheel;
+  private long[] deadlines;
+  private long nowMs;
+  private int scheduled;
+
+  @Setup(Level.Trial)
+  public void schedule() {
+    wheel = new TimingWheel<>(SLOTS, TICK_IN_MS, 0L);
+    deadlines = new long[pending];
+    var random = ThreadLocalRandom.current();
+    for (int i = 0; i < pending; i++) {
+      deadlines[i] = TICK_IN_MS + random.nextLong(TTL_IN_MS);
+      wheel.schedule(i, deadlines[i]);
+    }
+    nowMs = 0L;
+  }
+
+  @Benchmark
+  public int tick() {
+    nowMs += TICK_IN_MS;
+    var now = nowMs;
+    return wheel.advance(now, i -> wheel.schedule(i, now + TTL_IN_MS));
+  }
+
+  @Benchmark
+  public int scan() {
+    nowMs += TICK_IN_MS;
+    var expired = 0;
+    for (int i = 0; i < deadlines.length; i++) {
+      if (deadlines[i] <= nowMs) {
+        deadlines[i] = nowMs + TTL_IN_MS;
+        expired++;
+      }
+    }
+    return expired;
+  }
+
+  //a hold captured or released before it expires, the hand unlinks it a tick later
+  @Benchmark
+  public boolean scheduleAndCancel() {
+    if (++scheduled % SLOTS == 0) {
+      nowMs += TICK_IN_MS;
+      wheel.advance(nowMs, i -> { });
+    }
+    return wheel.schedule(-1, nowMs + TTL_IN_MS).cancel();
+  }
+}
@@ -0,0 +1,64 @@
+package com.revolut.service;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.TxId;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//the txId work done on every money request, none of it touches the DB.
+//With -prof gc, gc.alloc.rate.norm of the checks should be ~0 B/op, parsing allocates the TxId
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TxIdBenchmark {
+
+  private TransactionService transactionService;
+  private String txId;
+  private TxId parsedTxId;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    transactionService = new TransactionService(new InMemoryTransactionRepo(new InMemoryDB()));
+  }
+
+  @Setup(Level.Iteration)
+  public void newTxId() {
+    txId = transactionService.generateTxId();
+    parsedTxId = TxId.of(txId);
+  }
+
+  @Benchmark
+  public String generateTxId() {
+    return transactionService.generateTxId();
+  }
+
+  //done once per request, where the txId is read from the body
+  @Benchmark
+  public TxId parseTxId() {
+    return TxId.of(txId);
+  }
+
+  @Benchmark
+  public boolean validateTxId() {
+    return TransactionService.validateTxId(parsedTxId);
+  }
+
+  @Benchmark
+  public boolean isUsable() {
+    return transactionService.isUsable(parsedTxId);
+  }
+}
@@ -0,0 +1,73 @@
+package com.revolut.service;
+
+import static com.revolut.db.tables.Transactions.TRANSACTIONS;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.TxId;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//latency of the per-request txId check should not depend on the ledger size
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx6g"})
+public class TxIdCheckBenchmark {
+
+  private static final int INSERT_CHUNK_SIZE = 10_000;
+  private static final long OLD_TIMESTAMP_MS = 1500000000000L;
+
+  @Param({"10000", "100000", "1000000", "10000000"})
+  public int ledgerRows;
+
+  private InMemoryTransactionRepo transactionRepo;
+  private TransactionService transactionService;
+  private TxId txId;
+
+  @Setup(Level.Trial)
+  public void fillLedger() {
+    var db = new InMemoryDB();
+    for (int start = 0; start < ledgerRows; start += INSERT_CHUNK_SIZE) {
+      var insert = db.ctx()
+          .insertInto(TRANSACTIONS, TRANSACTIONS.AMOUNT, TRANSACTIONS.CURRENCY,
+              TRANSACTIONS.OPERATION_NAME, TRANSACTIONS.RELATED_ENTITY_ID,
+              TRANSACTIONS.TIMESTAMP_MS, TRANSACTIONS.TRANSACTION_ID);
+      for (int i = start; i < Math.min(start + INSERT_CHUNK_SIZE, ledgerRows); i++) {
+        insert = insert.values(1L, "EUR", "DEPOSIT", i % 1000, OLD_TIMESTAMP_MS,
+            String.format("tx-%d-%d", OLD_TIMESTAMP_MS, i));
+      }
+      insert.execute();
+    }
+    transactionRepo = new InMemoryTransactionRepo(db);
+    transactionService = new TransactionService(transactionRepo);
+  }
+
+  @Setup(Level.Iteration)
+  public void newTxId() {
+    txId = TxId.of(transactionService.generateTxId());
+  }
+
+  @Benchmark
+  public boolean isUsable() {
+    return transactionService.isUsable(txId);
+  }
+
+  @Benchmark
+  public boolean existsInLedger() {
+    return transactionRepo.exists(txId.getValue());
+  }
+}
@@ -0,0 +1,54 @@
+package com.revolut.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.revolut.service.txid.CounterTxIdGenerator;
+import com.revolut.service.txid.SnowflakeTxIdGenerator;
+import com.revolut.web.reqresp.resp.TransactionIdResponse;
+import io.javalin.plugin.json.JavalinJackson;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//the work behind POST /transactions, a txId plus its JSON response, minus the HTTP layer.
+//Meant for thread sweeps: Benchmarks -Dbench.threads=1,2,4,8,16,32,64 TxIdGeneratorBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TxIdGeneratorBenchmark {
+
+  @Param({"counter", "snowflake"})
+  public String generator;
+
+  private TxIdGenerator txIdGenerator;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    txIdGenerator = "counter".equals(generator)
+        ? new CounterTxIdGenerator()
+        : new SnowflakeTxIdGenerator(0);
+  }
+
+  @Benchmark
+  public String generate() {
+    return txIdGenerator.next();
+  }
+
+  @Benchmark
+  public byte[] postTransactions() throws JsonProcessingException {
+    return JavalinJackson.getObjectMapper()
+        .writeValueAsBytes(new TransactionIdResponse(txIdGenerator.next()));
+  }
+}
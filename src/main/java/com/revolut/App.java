@@ -8,15 +8,47 @@ import static io.javalin.apibuilder.ApiBuilder.post;
 import static io.javalin.apibuilder.ApiBuilder.put;
 
 import com.revolut.db.InMemoryDB;
+import com.revolut.db.MappedJournal;
+import com.revolut.metrics.Metrics;
+import com.revolut.repo.AccountRepo;
+import com.revolut.repo.TransactionHelper;
+import com.revolut.repo.TransactionRepo;
+import com.revolut.repo.impl.CachingAccountRepo;
 import com.revolut.repo.impl.InMemoryAccountRepo;
 import com.revolut.repo.impl.InMemoryTransactionHelper;
 import com.revolut.repo.impl.InMemoryTransactionRepo;
+import com.revolut.repo.impl.JournalCheckpointer;
+import com.revolut.repo.impl.JournalCheckpointer.RecoveryStats;
+import com.revolut.repo.impl.JournalCommitListener;
+import com.revolut.repo.impl.JournalingAccountRepo;
+import com.revolut.repo.impl.JournalingTransactionRepo;
+import com.revolut.repo.impl.SnapshotAccountRepo;
+import com.revolut.repo.impl.TimedAccountRepo;
+import com.revolut.repo.impl.TimedTransactionRepo;
 import com.revolut.service.AccountService;
+import com.revolut.service.AsyncLock;
+import com.revolut.service.CombinedCreditMovements;
+import com.revolut.service.CreditCombiner;
+import com.revolut.service.HoldService;
+import com.revolut.service.LedgerEngine;
 import com.revolut.service.Lock;
+import com.revolut.service.LockedMovements;
+import com.revolut.service.MovementStrategy;
+import com.revolut.service.OptimisticMovements;
+import com.revolut.service.OptimisticRetry;
 import com.revolut.service.TransactionService;
 import com.revolut.service.TransferService;
+import com.revolut.service.TxIdGenerator;
+import com.revolut.service.ledger.PartitionedLedgerEngine;
+import com.revolut.service.ledger.SequencerLedgerEngine;
+import com.revolut.service.txid.CounterTxIdGenerator;
+import com.revolut.service.txid.SnowflakeTxIdGenerator;
+import com.revolut.web.ConcurrencyLimits;
 import com.revolut.web.handler.AccountHandler;
+import com.revolut.web.handler.AdminHandler;
 import com.revolut.web.handler.ExceptionHandler;
+import com.revolut.web.handler.HoldHandler;
+import com.revolut.web.handler.MetricsHandler;
 import com.revolut.web.handler.TransactionHandler;
 import com.revolut.web.reqresp.resp.ErrorResponse;
 import io.javalin.Javalin;
@@ -25,60 +57,258 @@ import io.javalin.plugin.openapi.OpenApiPlugin;
 import io.javalin.plugin.openapi.ui.ReDocOptions;
 import io.javalin.plugin.openapi.ui.SwaggerOptions;
 import io.swagger.v3.oas.models.info.Info;
+import java.nio.file.Path;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class App {
 
+  private static final String ENGINE_PROPERTY = "bank.engine";
+  private static final String ENGINE_LOCK = "lock";
+  private static final String ENGINE_SEQUENCER = "sequencer";
+  private static final String ENGINE_ASYNC = "async";
+  private static final String ENGINE_PARTITIONED = "partitioned";
+  private static final String PARTITIONS_PROPERTY = "bank.partitions";
+  private static final String ACCOUNT_CACHE_SIZE_PROPERTY = "bank.accountCacheSize";
+  private static final long DEFAULT_ACCOUNT_CACHE_SIZE = 100_000L;
+  private static final String TX_ID_GENERATOR_PROPERTY = "bank.txIdGenerator";
+  private static final String TX_ID_GENERATOR_SNOWFLAKE = "snowflake";
+  private static final String TX_ID_GENERATOR_COUNTER = "counter";
+  private static final String NODE_ID_PROPERTY = "bank.nodeId";
+  private static final String JOURNAL_DIR_PROPERTY = "bank.journalDir";
+  private static final String JOURNAL_FLUSH_INTERVAL_PROPERTY = "bank.journalFlushIntervalUs";
+  private static final String SNAPSHOT_INTERVAL_PROPERTY = "bank.snapshotIntervalSec";
+  private static final long DEFAULT_SNAPSHOT_INTERVAL_SEC = 300L;
+  private static final String CONCURRENCY_PROPERTY = "bank.concurrency";
+  private static final String CONCURRENCY_PESSIMISTIC = "pessimistic";
+  private static final String CONCURRENCY_OPTIMISTIC = "optimistic";
+  private static final String COMBINE_CREDITS_PROPERTY = "bank.combineCredits";
+  private static final String MAX_ACCOUNT_WAITERS_PROPERTY = "bank.maxAccountWaiters";
+  private static final int DEFAULT_MAX_ACCOUNT_WAITERS = 32;
+  private static final String LOCK_WAIT_BUDGET_PROPERTY = "bank.lockWaitBudgetMs";
+  private static final long DEFAULT_LOCK_WAIT_BUDGET_MS = 1_000L;
+  private static final String SNAPSHOT_READS_PROPERTY = "bank.snapshotReads";
+  private static final String MAX_CONCURRENT_READS_PROPERTY = "bank.maxConcurrentReads";
+  private static final String MAX_CONCURRENT_MOVEMENTS_PROPERTY = "bank.maxConcurrentMovements";
+
   public static void main(String args[]) {
+    var engine = System.getProperty(ENGINE_PROPERTY, ENGINE_LOCK);
+    var metrics = new Metrics();
     var db = new InMemoryDB();
-    var lock = new Lock();
-    var accountRepo = new InMemoryAccountRepo(db);
-    var transactionHelper = new InMemoryTransactionHelper(db);
-    var transactionRepo = new InMemoryTransactionRepo(db);
-    var transactionService = new TransactionService(transactionRepo);
-    var accountService = new AccountService(accountRepo, lock, transactionHelper,
-        transactionService);
-    var transferService = new TransferService(accountRepo, lock, transactionHelper,
-        transactionService);
+    //-Dbank.maxAccountWaiters and -Dbank.lockWaitBudgetMs bound the waiting for account locks,
+    //requests beyond them are shed with 503
+    var maxAccountWaiters = Integer.getInteger(MAX_ACCOUNT_WAITERS_PROPERTY,
+        DEFAULT_MAX_ACCOUNT_WAITERS);
+    var lockWaitBudgetMs = Long.getLong(LOCK_WAIT_BUDGET_PROPERTY, DEFAULT_LOCK_WAIT_BUDGET_MS);
+    var lock = ENGINE_ASYNC.equals(engine)
+        ? new AsyncLock(Lock.DEFAULT_STRIPES, Runtime.getRuntime().availableProcessors(),
+        maxAccountWaiters, lockWaitBudgetMs, metrics)
+        : new Lock(Lock.DEFAULT_STRIPES, maxAccountWaiters, lockWaitBudgetMs, metrics);
+    var transactionHelper = new InMemoryTransactionHelper(db, metrics);
+    var journalDir = System.getProperty(JOURNAL_DIR_PROPERTY);
+    //a cross partition transfer commits its debit before its credit, a crash in between would
+    //replay only the debit
+    if (journalDir != null && ENGINE_PARTITIONED.equals(engine)) {
+      throw new IllegalArgumentException("The partitioned engine can't be used with a journal");
+    }
+    var journal = journalDir == null ? null : new MappedJournal(Path.of(journalDir),
+        Long.getLong(JOURNAL_FLUSH_INTERVAL_PROPERTY, 0L));
+    var recoveryStats = journal == null ? null : recover(journal, db, transactionHelper);
+    var journalCommits = journal == null ? null : new JournalCommitListener(db, journal);
+    var accountCache = new CachingAccountRepo(
+        createAccountRepo(db, journal, journalCommits, metrics), db,
+        Long.getLong(ACCOUNT_CACHE_SIZE_PROPERTY, DEFAULT_ACCOUNT_CACHE_SIZE));
+    //-Dbank.snapshotReads=true serves account reads from a snapshot published after commits,
+    //without DB locks
+    AccountRepo accountRepo = Boolean.getBoolean(SNAPSHOT_READS_PROPERTY)
+        ? new SnapshotAccountRepo(accountCache, db) : accountCache;
+    var transactionRepo = createTransactionRepo(db, journalCommits, metrics);
+    var transactionService = new TransactionService(transactionRepo, createTxIdGenerator());
+    var ledger = createLedgerEngine(engine, accountRepo, transactionHelper, transactionService);
+    var movements = createMovementStrategy(ledger, accountRepo, lock, transactionHelper,
+        transactionService, metrics);
+    var accountService = new AccountService(accountRepo, movements);
+    var transferService = new TransferService(movements);
+    var holdService = new HoldService(accountRepo, lock, transactionHelper, transactionService,
+        ledger, journal != null).start();
     var accountHandler = new AccountHandler(accountService, transferService);
+    var holdHandler = new HoldHandler(holdService);
     var transactionHandler = new TransactionHandler(transactionService);
-    var exceptionHandler = new ExceptionHandler();
+    var exceptionHandler = new ExceptionHandler(metrics);
+    var metricsHandler = new MetricsHandler(metrics);
+    var adminHandler = new AdminHandler(accountCache, recoveryStats, lock.getProfiler());
+    var limits = new ConcurrencyLimits(
+        Integer.getInteger(MAX_CONCURRENT_READS_PROPERTY, ConcurrencyLimits.DEFAULT_MAX_READS),
+        Integer.getInteger(MAX_CONCURRENT_MOVEMENTS_PROPERTY,
+            ConcurrencyLimits.DEFAULT_MAX_MOVEMENTS), metrics);
 
     Javalin.create(config -> {
       config.registerPlugin(getConfiguredOpenApiPlugin());
       config.defaultContentType = "application/json";
+      config.requestLogger(metricsHandler::recordRequest);
     }).routes(() -> {
       path("accounts", () -> {
         path("transfer", () -> path("from", () ->
             path(":fromId", () ->
                 path("to", () ->
                     path(":toId", () ->
-                        patch(accountHandler::transfer))))));
+                        patch(limits.movements(accountHandler::transfer)))))));
+        path("transfers:batch", () ->
+            post(limits.movements(accountHandler::transferBatch)));
         path("deposit", () ->
             path(":id", () ->
-                patch(accountHandler::deposit)));
+                patch(limits.movements(accountHandler::deposit))));
         path("withdraw", () ->
             path(":id", () ->
-                patch(accountHandler::withdraw)));
-        get(accountHandler::getAll);
+                patch(limits.movements(accountHandler::withdraw))));
+        get(limits.reads(accountHandler::getAll));
         post(accountHandler::create);
         path(":id", () -> {
-          get(accountHandler::getOne);
+          get(limits.reads(accountHandler::getOne));
           put(accountHandler::update);
           delete(accountHandler::delete);
+          path("shards", () ->
+              put(accountHandler::reshard));
+          path("holds", () ->
+              post(limits.movements(holdHandler::authorize)));
+          path("transactions", () ->
+              get(limits.reads(transactionHandler::getAccountHistory)));
         });
       });
+      path("payments", () ->
+          path("multi", () ->
+              post(limits.movements(accountHandler::payMulti))));
+      path("holds", () ->
+          path(":txId", () -> {
+            delete(limits.movements(holdHandler::release));
+            path("capture", () ->
+                post(limits.movements(holdHandler::capture)));
+          }));
       path("transactions", () -> {
-        get(transactionHandler::getAll);
+        get(limits.reads(transactionHandler::getAll));
         post(transactionHandler::generateTxId);
       });
+      path("metrics", () ->
+          get(metricsHandler::metrics));
+      path("admin", () -> {
+        path("cache", () ->
+            get(adminHandler::cacheStats));
+        path("recovery", () ->
+            get(adminHandler::recoveryStats));
+        path("locks", () ->
+            get(adminHandler::lockStats));
+      });
     }).exception(RuntimeException.class, (e, context) -> exceptionHandler.handle(e, context))
         .start(7002);
 
     System.out.println("Check out Swagger UI docs at http://localhost:7002/swagger-ui");
   }
 
+  //-Dbank.journalDir=<dir> restores the accounts from the snapshots and journal kept there, then
+  //snapshots them every -Dbank.snapshotIntervalSec
+  private static RecoveryStats recover(MappedJournal journal, InMemoryDB db,
+      InMemoryTransactionHelper transactionHelper) {
+    var checkpointer = new JournalCheckpointer(Path.of(System.getProperty(JOURNAL_DIR_PROPERTY)),
+        journal, new InMemoryAccountRepo(db), new InMemoryTransactionRepo(db), transactionHelper,
+        TransactionService.TRANSACTION_ID_VALIDITY_IN_MS);
+    var stats = checkpointer.recover();
+    checkpointer.start(Long.getLong(SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL_SEC));
+    return stats;
+  }
+
+  private static AccountRepo createAccountRepo(InMemoryDB db, MappedJournal journal,
+      JournalCommitListener journalCommits, Metrics metrics) {
+    var accountRepo = new TimedAccountRepo(new InMemoryAccountRepo(db), metrics);
+    return journal == null ? accountRepo
+        : new JournalingAccountRepo(accountRepo, journal, journalCommits);
+  }
+
+  //a journal gets every committed transaction before it is acknowledged
+  private static TransactionRepo createTransactionRepo(InMemoryDB db,
+      JournalCommitListener journalCommits, Metrics metrics) {
+    var transactionRepo = new TimedTransactionRepo(new InMemoryTransactionRepo(db), metrics);
+    return journalCommits == null ? transactionRepo
+        : new JournalingTransactionRepo(transactionRepo, journalCommits);
+  }
+
+  //-Dbank.engine=sequencer switches money movements to the single writer ledger,
+  //-Dbank.engine=async keeps the lock but queues its waiters instead of parking threads,
+  //-Dbank.engine=partitioned gives every -Dbank.partitions (default #cores) its own writer thread
+  private static LedgerEngine createLedgerEngine(
+      String engine,
+      AccountRepo accountRepo,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService
+  ) {
+    switch (engine) {
+      case ENGINE_LOCK:
+      case ENGINE_ASYNC:
+        return null;
+      case ENGINE_SEQUENCER:
+        return new SequencerLedgerEngine(accountRepo, transactionHelper, transactionService)
+            .start();
+      case ENGINE_PARTITIONED:
+        return new PartitionedLedgerEngine(accountRepo, transactionHelper, transactionService,
+            Integer.getInteger(PARTITIONS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+      default:
+        throw new IllegalArgumentException("Unknown engine: " + engine);
+    }
+  }
+
+  //the ledger engines apply every movement themselves, the lock and async engines hold account
+  //locks or check versions, see createOptimisticRetry. -Dbank.combineCredits=true combines
+  //concurrent deposits and transfers to one account into one DB transaction on top.
+  private static MovementStrategy createMovementStrategy(
+      LedgerEngine ledger,
+      AccountRepo accountRepo,
+      Lock lock,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService,
+      Metrics metrics
+  ) {
+    if (ledger != null) {
+      return ledger;
+    }
+    var optimistic = createOptimisticRetry(metrics);
+    var movements = optimistic == null
+        ? new LockedMovements(accountRepo, lock, transactionHelper, transactionService)
+        : new OptimisticMovements(accountRepo, lock, transactionHelper, transactionService,
+            optimistic);
+    if (!Boolean.getBoolean(COMBINE_CREDITS_PROPERTY)) {
+      return movements;
+    }
+    return new CombinedCreditMovements(movements, accountRepo, lock, transactionService,
+        new CreditCombiner(accountRepo, transactionHelper, transactionService,
+            CreditCombiner.DEFAULT_STRIPES, CreditCombiner.DEFAULT_MAX_BATCH_SIZE, metrics));
+  }
+
+  //-Dbank.concurrency=optimistic replaces the account locks of the lock and async engines with
+  //version checks, the sequencer has no concurrent writers to check for
+  private static OptimisticRetry createOptimisticRetry(Metrics metrics) {
+    var concurrency = System.getProperty(CONCURRENCY_PROPERTY, CONCURRENCY_PESSIMISTIC);
+    switch (concurrency) {
+      case CONCURRENCY_PESSIMISTIC:
+        return null;
+      case CONCURRENCY_OPTIMISTIC:
+        return new OptimisticRetry(metrics);
+      default:
+        throw new IllegalArgumentException("Unknown concurrency: " + concurrency);
+    }
+  }
+
+  //-Dbank.nodeId=<0..1023> must differ between instances sharing a ledger
+  private static TxIdGenerator createTxIdGenerator() {
+    var generator = System.getProperty(TX_ID_GENERATOR_PROPERTY, TX_ID_GENERATOR_SNOWFLAKE);
+    switch (generator) {
+      case TX_ID_GENERATOR_SNOWFLAKE:
+        return new SnowflakeTxIdGenerator(Integer.getInteger(NODE_ID_PROPERTY, 0));
+      case TX_ID_GENERATOR_COUNTER:
+        return new CounterTxIdGenerator();
+      default:
+        throw new IllegalArgumentException("Unknown txId generator: " + generator);
+    }
+  }
+
   private static OpenApiPlugin getConfiguredOpenApiPlugin() {
     Info info = new Info().version("1.0").description("Accounts API");
     OpenApiOptions options = new OpenApiOptions(info)
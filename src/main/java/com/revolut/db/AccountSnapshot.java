@@ -0,0 +1,183 @@
+package com.revolut.db;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32C;
+import lombok.Getter;
+
+//Every account as of a journal position, in a compact binary file:
+//[magic][version][position][replayFrom][nextId][count][CRC32C of the entries] followed by
+//[id][currency][balance][name length][name] per account. It is written next to its final name
+//and renamed once complete, and read back through a single read-only mapping.
+@Getter
+public class AccountSnapshot {
+
+  private static final int MAGIC = 0x534e4150;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + 3 * Integer.BYTES;
+  private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+  private static final int MAX_ENTRY_SIZE = Integer.BYTES + 1 + Long.BYTES + Short.BYTES
+      + Short.MAX_VALUE;
+
+  private final Path file;
+  //balances include every commit ending at or before position
+  private final long position;
+  //first commit whose transactions are still needed after a restart, see JournalCheckpointer
+  private final long replayFrom;
+  //above every account id ever created, deleted ones included
+  private final int nextId;
+  private final int count;
+  @Getter(lombok.AccessLevel.NONE)
+  private final ByteBuffer entries;
+
+  private AccountSnapshot(Path file, long position, long replayFrom, int nextId, int count,
+      ByteBuffer entries) {
+    this.file = file;
+    this.position = position;
+    this.replayFrom = replayFrom;
+    this.nextId = nextId;
+    this.count = count;
+    this.entries = entries;
+  }
+
+  public static AccountSnapshot write(Path file, long position, long replayFrom, int nextId,
+      Iterator<Account> accounts) {
+    var temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      var buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+      var crc = new CRC32C();
+      var count = 0;
+      channel.position(HEADER_SIZE);
+      while (accounts.hasNext()) {
+        if (buffer.remaining() < MAX_ENTRY_SIZE) {
+          writeEntries(channel, buffer, crc);
+        }
+        var account = accounts.next();
+        buffer.putInt(account.getId());
+        buffer.put((byte) account.getCurrency().ordinal());
+        buffer.putLong(account.getBalance());
+        putName(buffer, bytesOf(account.getName()));
+        count++;
+      }
+      writeEntries(channel, buffer, crc);
+      buffer.putInt(MAGIC)
+          .putInt(VERSION)
+          .putLong(position)
+          .putLong(replayFrom)
+          .putInt(nextId)
+          .putInt(count)
+          .putInt((int) crc.getValue())
+          .flip();
+      channel.write(buffer, 0);
+      channel.force(true);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    try {
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return read(file);
+  }
+
+  //IllegalStateException if the file is corrupt
+  public static AccountSnapshot read(Path file) {
+    MappedByteBuffer mapping;
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      mapping = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (mapping.remaining() < HEADER_SIZE || mapping.getInt() != MAGIC
+        || mapping.getInt() != VERSION) {
+      throw new IllegalStateException("Not an account snapshot: " + file);
+    }
+    var position = mapping.getLong();
+    var replayFrom = mapping.getLong();
+    var nextId = mapping.getInt();
+    var count = mapping.getInt();
+    var checksum = mapping.getInt();
+    var entries = mapping.slice();
+    var crc = new CRC32C();
+    crc.update(entries.duplicate());
+    if ((int) crc.getValue() != checksum) {
+      throw new IllegalStateException("Corrupt account snapshot: " + file);
+    }
+    return new AccountSnapshot(file, position, replayFrom, nextId, count, entries);
+  }
+
+  //decoded while iterating, so only the account being read is on the heap
+  public Iterator<Account> accounts() {
+    var buffer = entries.duplicate();
+    return new Iterator<>() {
+      private int read;
+
+      @Override
+      public boolean hasNext() {
+        return read < count;
+      }
+
+      @Override
+      public Account next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        read++;
+        var id = buffer.getInt();
+        var currency = Currency.values()[buffer.get()];
+        var balance = buffer.getLong();
+        return new Account(id, getName(buffer), currency, balance);
+      }
+    };
+  }
+
+  private static void writeEntries(FileChannel channel, ByteBuffer buffer, CRC32C crc)
+      throws IOException {
+    buffer.flip();
+    crc.update(buffer.duplicate());
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  //names are short, -1 stands for null
+
+  static byte[] bytesOf(String name) {
+    return name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+  }
+
+  static void putName(ByteBuffer buffer, byte[] name) {
+    if (name == null) {
+      buffer.putShort((short) -1);
+      return;
+    }
+    buffer.putShort((short) name.length);
+    buffer.put(name);
+  }
+
+  static String getName(ByteBuffer buffer) {
+    var length = buffer.getShort();
+    if (length < 0) {
+      return null;
+    }
+    var name = new byte[length];
+    buffer.get(name);
+    return new String(name, StandardCharsets.UTF_8);
+  }
+}
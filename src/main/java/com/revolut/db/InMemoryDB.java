@@ -1,9 +1,12 @@
 package com.revolut.db;
 
+import java.util.Arrays;
 import org.hsqldb.jdbc.JDBCPool;
 import org.jooq.DSLContext;
 import org.jooq.SQLDialect;
+import org.jooq.TransactionListener;
 import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultTransactionListenerProvider;
 
 public class InMemoryDB {
 
@@ -20,4 +23,12 @@ public class InMemoryDB {
   public DSLContext ctx() {
     return dslContext;
   }
+
+  //listeners are called on the thread running the transaction
+  public void addTransactionListener(TransactionListener listener) {
+    var providers = Arrays.copyOf(dslContext.configuration().transactionListenerProviders(),
+        dslContext.configuration().transactionListenerProviders().length + 1);
+    providers[providers.length - 1] = new DefaultTransactionListenerProvider(listener);
+    dslContext.configuration().set(providers);
+  }
 }
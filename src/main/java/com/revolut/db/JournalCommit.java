@@ -0,0 +1,49 @@
+package com.revolut.db;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Transaction;
+import java.util.List;
+import lombok.Value;
+
+//Everything one commit changed: balances only change through transactions, account rows
+//through account events, so replaying commits in journal order rebuilds both
+@Value
+public class JournalCommit {
+
+  List<Transaction> transactions;
+  List<AccountEvent> accountEvents;
+
+  public static JournalCommit of(List<Transaction> transactions) {
+    return new JournalCommit(transactions, List.of());
+  }
+
+  public static JournalCommit of(AccountEvent event) {
+    return new JournalCommit(List.of(), List.of(event));
+  }
+
+  @Value
+  public static class AccountEvent {
+
+    Type type;
+    //CREATED has every field, RENAMED the id and name, DELETED the id only
+    Account account;
+
+    public enum Type {
+      CREATED,
+      RENAMED,
+      DELETED
+    }
+
+    public static AccountEvent created(Account account) {
+      return new AccountEvent(Type.CREATED, account);
+    }
+
+    public static AccountEvent renamed(Integer id, String name) {
+      return new AccountEvent(Type.RENAMED, new Account(id, name, null, null));
+    }
+
+    public static AccountEvent deleted(Integer id) {
+      return new AccountEvent(Type.DELETED, new Account(id, null, null, null));
+    }
+  }
+}
@@ -0,0 +1,455 @@
+package com.revolut.db;
+
+import com.revolut.db.JournalCommit.AccountEvent;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+import lombok.extern.slf4j.Slf4j;
+
+//Append-only journal of committed transactions and account changes, kept in memory-mapped
+//segment files. A record is one commit: [payload length][CRC32C of the payload][payload], so a commit which
+//was only partly written when the process died is detected and dropped as a whole on open.
+//Appends only copy into the mapping. With group commit a flusher thread forces everything
+//appended so far in one go and wakes up every committer waiting for it, otherwise each append
+//forces the segment itself.
+@Slf4j
+public class MappedJournal implements AutoCloseable {
+
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+  private static final int HEADER_SIZE = 8;
+  private static final int INITIAL_SCRATCH_SIZE = 4 * 1024;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".journal";
+
+  private final Path dir;
+  private final int segmentSize;
+  private final long flushIntervalNanos;
+  private final boolean groupCommit;
+  private final ThreadLocal<ByteBuffer> scratch =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_SCRATCH_SIZE));
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition hasUnforced = lock.newCondition();
+  private final Condition hasForced = lock.newCondition();
+  private final Thread flusher;
+
+  //guarded by lock, positions are segment index * segment size + offset in the segment
+  private MappedByteBuffer segment;
+  private long segmentIndex;
+  private long written;
+  private long durable;
+  private boolean running = true;
+
+  public MappedJournal(Path dir, long flushIntervalMicros) {
+    this(dir, DEFAULT_SEGMENT_SIZE, flushIntervalMicros, true);
+  }
+
+  //flushIntervalMicros is the pause after every group force, 0 forces again as soon as
+  //something new is appended
+  public MappedJournal(Path dir, int segmentSize, long flushIntervalMicros, boolean groupCommit) {
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+    this.flushIntervalNanos = TimeUnit.MICROSECONDS.toNanos(flushIntervalMicros);
+    this.groupCommit = groupCommit;
+    open();
+    this.flusher = new Thread(this::flush, "journal-flusher");
+    this.flusher.setDaemon(true);
+    if (groupCommit) {
+      this.flusher.start();
+    }
+  }
+
+  public long append(List<Transaction> txs) {
+    return append(JournalCommit.of(txs));
+  }
+
+  //returns the position the commit is durable at, see awaitDurable
+  public long append(JournalCommit commit) {
+    var payload = encode(commit);
+    var crc = new CRC32C();
+    crc.update(payload.duplicate());
+    var recordSize = HEADER_SIZE + payload.remaining();
+    if (recordSize > segmentSize) {
+      throw new IllegalArgumentException("Commit doesn't fit in a segment: " + recordSize);
+    }
+    lock.lock();
+    try {
+      if (!running) {
+        throw new IllegalStateException("Journal is closed");
+      }
+      if (segment.remaining() < recordSize) {
+        roll();
+      }
+      segment.putInt(payload.remaining());
+      segment.putInt((int) crc.getValue());
+      segment.put(payload);
+      written = positionOf(segmentIndex, segment.position());
+      if (groupCommit) {
+        hasUnforced.signal();
+      } else {
+        segment.force();
+        durable = written;
+      }
+      return written;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void awaitDurable(long position) {
+    lock.lock();
+    try {
+      while (durable < position) {
+        if (!running && !flusher.isAlive()) {
+          throw new IllegalStateException("Journal is closed");
+        }
+        hasForced.await();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the journal", e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long durablePosition() {
+    lock.lock();
+    try {
+      return durable;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //every durable commit in order
+  public void forEachCommit(Consumer<JournalCommit> consumer) {
+    forEachCommit(0L, durablePosition(), (start, end, commit) -> consumer.accept(commit));
+  }
+
+  //commits starting at or after from and ending at or before to, to must be durable.
+  //from has to be a position returned by append or durablePosition.
+  public void forEachCommit(long from, long to, CommitVisitor visitor) {
+    for (var index : segmentIndexes()) {
+      var segmentStart = positionOf(index, 0);
+      if (segmentStart >= to) {
+        return;
+      }
+      if (positionOf(index + 1, 0) <= from) {
+        continue;
+      }
+      var offset = (int) Math.max(0L, from - segmentStart);
+      scan(map(index), index, offset, to, visitor);
+    }
+  }
+
+  //drops whole segments which end at or before position, the current one is always kept
+  public void deleteSegmentsBefore(long position) {
+    long current;
+    lock.lock();
+    try {
+      current = segmentIndex;
+    } finally {
+      lock.unlock();
+    }
+    for (var index : segmentIndexes()) {
+      if (index < current && positionOf(index + 1, 0) <= position) {
+        try {
+          Files.deleteIfExists(segmentFile(index));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
+  //forces what is appended so far, appends and waits fail afterwards
+  @Override
+  public void close() throws InterruptedException {
+    lock.lock();
+    try {
+      running = false;
+      hasUnforced.signal();
+    } finally {
+      lock.unlock();
+    }
+    if (groupCommit) {
+      flusher.join();
+    }
+    lock.lock();
+    try {
+      segment.force();
+      durable = written;
+      hasForced.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void open() {
+    try {
+      Files.createDirectories(dir);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    var indexes = segmentIndexes();
+    if (indexes.isEmpty()) {
+      indexes.add(0L);
+    }
+    var last = indexes.get(indexes.size() - 1);
+    for (var index : indexes) {
+      var buffer = map(index);
+      var end = scan(buffer, index, 0, Long.MAX_VALUE, null);
+      if (index != last && isRecordAt(buffer, end)) {
+        //a segment is forced before the next one is created, this isn't a torn write
+        throw new IllegalStateException(
+            String.format("Corrupt record in journal segment %d at %d", index, end));
+      }
+      if (index == last) {
+        truncate(buffer, index, end);
+        segment = buffer;
+        segmentIndex = index;
+      }
+    }
+    written = positionOf(segmentIndex, segment.position());
+    durable = written;
+  }
+
+  //drops a torn commit, later pages of it may have reached the disk before earlier ones
+  private static void truncate(MappedByteBuffer buffer, long index, int end) {
+    if (isRecordAt(buffer, end)) {
+      log.warn("Dropping the torn tail of journal segment {} at {}", index, end);
+    }
+    var dirty = false;
+    for (var offset = end; offset < buffer.limit(); offset++) {
+      if (buffer.get(offset) != 0) {
+        buffer.put(offset, (byte) 0);
+        dirty = true;
+      }
+    }
+    if (dirty) {
+      buffer.force();
+    }
+    buffer.position(end);
+  }
+
+  private void roll() {
+    segment.force();
+    segmentIndex++;
+    segment = map(segmentIndex);
+  }
+
+  private void flush() {
+    while (true) {
+      MappedByteBuffer toForce;
+      long target;
+      lock.lock();
+      try {
+        while (running && written == durable) {
+          hasUnforced.awaitUninterruptibly();
+        }
+        if (written == durable) {
+          return;
+        }
+        toForce = segment;
+        target = written;
+      } finally {
+        lock.unlock();
+      }
+      //segments before toForce were forced when rolled over
+      toForce.force();
+      lock.lock();
+      try {
+        durable = target;
+        hasForced.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      if (flushIntervalNanos > 0) {
+        LockSupport.parkNanos(flushIntervalNanos);
+      }
+    }
+  }
+
+  //offset of the first byte after the last valid record, or of the first record ending after to
+  private int scan(ByteBuffer buffer, long index, int from, long to, CommitVisitor visitor) {
+    var records = buffer.duplicate();
+    records.position(from);
+    while (records.remaining() >= HEADER_SIZE) {
+      var start = records.position();
+      var length = records.getInt();
+      var checksum = records.getInt();
+      if (length <= 0 || length > records.remaining()
+          || positionOf(index, start + HEADER_SIZE + length) > to) {
+        return start;
+      }
+      var payload = records.slice();
+      payload.limit(length);
+      var crc = new CRC32C();
+      crc.update(payload.duplicate());
+      if ((int) crc.getValue() != checksum) {
+        return start;
+      }
+      var end = start + HEADER_SIZE + length;
+      if (visitor != null) {
+        visitor.visit(positionOf(index, start), positionOf(index, end), decode(payload));
+      }
+      records.position(end);
+    }
+    return records.position();
+  }
+
+  private static boolean isRecordAt(ByteBuffer buffer, int offset) {
+    return buffer.limit() - offset >= Integer.BYTES && buffer.getInt(offset) != 0;
+  }
+
+  private ByteBuffer encode(JournalCommit commit) {
+    var buffer = scratch.get();
+    buffer.clear();
+    buffer.putInt(commit.getTransactions().size());
+    for (var tx : commit.getTransactions()) {
+      var txId = tx.getTransactionId().getBytes(StandardCharsets.UTF_8);
+      buffer = ensureRemaining(buffer, Long.BYTES * 2 + Integer.BYTES + 3 + txId.length);
+      buffer.putLong(tx.getTimestampMs());
+      buffer.putInt(tx.getRelatedEntityId());
+      buffer.putLong(tx.getAmount());
+      buffer.put((byte) tx.getOperationName().ordinal());
+      buffer.put((byte) tx.getCurrency().ordinal());
+      buffer.put((byte) txId.length);
+      buffer.put(txId);
+    }
+    buffer = ensureRemaining(buffer, Integer.BYTES);
+    buffer.putInt(commit.getAccountEvents().size());
+    for (var event : commit.getAccountEvents()) {
+      var account = event.getAccount();
+      var name = AccountSnapshot.bytesOf(account.getName());
+      buffer = ensureRemaining(buffer, 2 + Integer.BYTES + Long.BYTES + Short.BYTES
+          + (name == null ? 0 : name.length));
+      buffer.put((byte) event.getType().ordinal());
+      buffer.putInt(account.getId());
+      switch (event.getType()) {
+        case CREATED:
+          buffer.put((byte) account.getCurrency().ordinal());
+          buffer.putLong(account.getBalance());
+          AccountSnapshot.putName(buffer, name);
+          break;
+        case RENAMED:
+          AccountSnapshot.putName(buffer, name);
+          break;
+        default:
+          break;
+      }
+    }
+    return buffer.flip();
+  }
+
+  private ByteBuffer ensureRemaining(ByteBuffer buffer, int bytes) {
+    if (buffer.remaining() >= bytes) {
+      return buffer;
+    }
+    var bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+    bigger.put(buffer.flip());
+    scratch.set(bigger);
+    return bigger;
+  }
+
+  private static JournalCommit decode(ByteBuffer payload) {
+    var count = payload.getInt();
+    var txs = new ArrayList<Transaction>(count);
+    for (int i = 0; i < count; i++) {
+      var timestampMs = payload.getLong();
+      var accountId = payload.getInt();
+      var amount = payload.getLong();
+      var type = TransactionType.values()[payload.get()];
+      var currency = Currency.values()[payload.get()];
+      var txId = new byte[payload.get() & 0xff];
+      payload.get(txId);
+      txs.add(Transaction.builder()
+          .timestampMs(timestampMs)
+          .relatedEntityId(accountId)
+          .amount(amount)
+          .operationName(type)
+          .currency(currency)
+          .transactionId(new String(txId, StandardCharsets.UTF_8))
+          .build());
+    }
+    var eventCount = payload.getInt();
+    var events = new ArrayList<AccountEvent>(eventCount);
+    for (int i = 0; i < eventCount; i++) {
+      var type = AccountEvent.Type.values()[payload.get()];
+      var id = payload.getInt();
+      switch (type) {
+        case CREATED:
+          var currency = Currency.values()[payload.get()];
+          var balance = payload.getLong();
+          events.add(AccountEvent.created(
+              new Account(id, AccountSnapshot.getName(payload), currency, balance)));
+          break;
+        case RENAMED:
+          events.add(AccountEvent.renamed(id, AccountSnapshot.getName(payload)));
+          break;
+        default:
+          events.add(AccountEvent.deleted(id));
+          break;
+      }
+    }
+    return new JournalCommit(txs, events);
+  }
+
+  private long positionOf(long index, int offset) {
+    return index * segmentSize + offset;
+  }
+
+  private List<Long> segmentIndexes() {
+    try (var files = Files.list(dir)) {
+      return files
+          .map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+          .map(name -> Long.parseLong(
+              name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+          .sorted()
+          .collect(Collectors.toCollection(ArrayList::new));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Path segmentFile(long index) {
+    return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+  }
+
+  //the mapping stays valid after the channel is closed
+  private MappedByteBuffer map(long index) {
+    try (var channel = FileChannel.open(segmentFile(index), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      return channel.map(MapMode.READ_WRITE, 0, segmentSize);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public interface CommitVisitor {
+
+    //start and end are the positions around the commit's record
+    void visit(long start, long end, JournalCommit commit);
+  }
+}
@@ -1,5 +1,6 @@
 package com.revolut.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.revolut.db.tables.records.AccountsRecord;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
@@ -22,6 +23,15 @@ public final class Account {
   private Currency currency;
   @Schema(required = true, description = "balance of the account with 2 decimal places at the end (10000 means 100.00)")
   private Long balance;
+  //internal state, not part of the API. Incremented by every balance change of shard 0.
+  @JsonIgnore
+  private Long version = 0L;
+  //number of sub-balances the balance is split across, 1 unless the account is sharded
+  @JsonIgnore
+  private Integer shards = 1;
+  //sum of the active holds, reserved but not yet captured
+  @JsonIgnore
+  private Long held = 0L;
 
   public Account(String name, Currency currency, Long balance) {
     this.name = name;
@@ -29,6 +39,25 @@ public final class Account {
     this.balance = balance;
   }
 
+  public Account(Integer id, String name, Currency currency, Long balance) {
+    this(id, name, currency, balance, 0L);
+  }
+
+  public Account(Integer id, String name, Currency currency, Long balance, Long version) {
+    this(id, name, currency, balance, version, 1);
+  }
+
+  public Account(Integer id, String name, Currency currency, Long balance, Long version,
+      Integer shards) {
+    this(id, name, currency, balance, version, shards, 0L);
+  }
+
+  //what debits may take, holds reserve the rest of the balance
+  @JsonIgnore
+  public Long getAvailableBalance() {
+    return balance - held;
+  }
+
   public void removeBalance(Long amount) {
     balance -= amount;
   }
@@ -39,6 +68,6 @@ public final class Account {
 
   public static Account fromAccountRecord(AccountsRecord record) {
     return new Account(record.getId(), record.getName(), Currency.valueOf(record.getCurrency()),
-        record.getBalance());
+        record.getBalance(), record.getVersion(), record.getShards(), record.getHeld());
   }
 }
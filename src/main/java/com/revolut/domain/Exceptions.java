@@ -45,4 +45,35 @@ public class Exceptions {
     }
   }
 
+  //shed by admission control, the client may retry after retryAfterSeconds
+  public static class OverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public OverloadedException(String msg, long retryAfterSeconds) {
+      super(msg);
+      this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+      return retryAfterSeconds;
+    }
+  }
+
+  //an account changed since it was read, optimistic writers retry on it
+  public static class ConcurrentUpdateException extends RuntimeException {
+
+    public ConcurrentUpdateException(String msg) {
+      super(msg);
+    }
+  }
+
+  //the request is valid, but the account's state or the configured engine doesn't allow it
+  public static class OperationNotAllowedException extends RuntimeException {
+
+    public OperationNotAllowedException(String msg) {
+      super(msg);
+    }
+  }
+
 }
@@ -0,0 +1,39 @@
+package com.revolut.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+//position in an account history ordered newest first, written as <timestampMs>:<id>
+@Data
+@AllArgsConstructor
+public final class HistoryCursor {
+
+  private Long timestampMs;
+  private Integer id;
+
+  public static HistoryCursor of(Transaction tx) {
+    return new HistoryCursor(tx.getTimestampMs(), tx.getId());
+  }
+
+  //null if the value is not a cursor
+  public static HistoryCursor parse(String value) {
+    if (value == null) {
+      return null;
+    }
+    var separator = value.indexOf(':');
+    if (separator < 0) {
+      return null;
+    }
+    try {
+      return new HistoryCursor(Long.parseLong(value.substring(0, separator)),
+          Integer.parseInt(value.substring(separator + 1)));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return timestampMs + ":" + id;
+  }
+}
@@ -0,0 +1,27 @@
+package com.revolut.domain;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Data
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(name = "Hold", description = "An amount reserved on an account until it is captured,"
+    + " released or expires.")
+public final class Hold {
+
+  @Schema(required = true, type = "string",
+      description = "the transaction id that authorized the hold, it names the hold")
+  private TxId txId;
+  @Schema(required = true, description = "the account the amount is reserved on")
+  private Integer accountId;
+  @Schema(required = true, description = "reserved amount with 2 decimal places at the end (10000 means 100.00)")
+  private Long amount;
+  @Schema(required = true, description = "epoch ms after which the hold is released by itself")
+  private Long expiresAtMs;
+
+}
@@ -0,0 +1,18 @@
+package com.revolut.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+//one credit of a multi payment, all legs are debited from the payment's source
+@Data
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public final class PaymentLeg {
+
+  private Integer toId;
+  private Long amount;
+
+}
@@ -25,7 +25,9 @@ public final class Transaction {
     DEPOSIT,
     WITHDRAW,
     TRANSFER_SOURCE,
-    TRANSFER_DESTINATION
+    TRANSFER_DESTINATION,
+    //a hold turned into a debit, under the txId that authorized the hold
+    CAPTURE
   }
 
 }
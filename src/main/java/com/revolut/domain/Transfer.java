@@ -0,0 +1,19 @@
+package com.revolut.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Data
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public final class Transfer {
+
+  private Integer fromId;
+  private Integer toId;
+  private Long amount;
+  private TxId txId;
+
+}
@@ -0,0 +1,27 @@
+package com.revolut.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.ToString;
+
+@Data
+@ToString
+@AllArgsConstructor
+public final class TransferResult {
+
+  private String txId;
+  //null if the transfer is applied
+  private RuntimeException error;
+
+  public boolean isSuccessful() {
+    return error == null;
+  }
+
+  public static TransferResult success(String txId) {
+    return new TransferResult(txId, null);
+  }
+
+  public static TransferResult failure(String txId, RuntimeException error) {
+    return new TransferResult(txId, error);
+  }
+}
@@ -0,0 +1,81 @@
+package com.revolut.domain;
+
+import static com.revolut.db.tables.Transactions.TRANSACTIONS;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+//A client txId, parsed once where it enters the app and carried with its timestamp from there,
+//so the validity and reuse checks down the call path don't parse it again.
+//tx-<13 digit epoch ms>-<anything without '-' or '.'>, a malformed one keeps INVALID_TIMESTAMP.
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class TxId {
+
+  public static final long INVALID_TIMESTAMP = -1L;
+  //the ledger's TRANSACTION_ID column, leg ids included
+  public static final int MAX_LENGTH = TRANSACTIONS.TRANSACTION_ID.getDataType().length();
+  private static final char LEG_SEPARATOR = '.';
+  private static final String PREFIX = "tx-";
+  private static final int SEQUENCE_START = PREFIX.length() + 13 + 1;
+
+  String value;
+  long timestampMs;
+
+  @JsonCreator
+  public static TxId of(String value) {
+    return new TxId(value, parseTimestamp(value));
+  }
+
+  @JsonValue
+  public String getValue() {
+    return value;
+  }
+
+  //a multi payment's credits share its txId, the unique (txId, operation) key needs one per leg.
+  //Legs count from 1, the debit keeps the bare txId.
+  public TxId leg(int leg) {
+    return new TxId(value + LEG_SEPARATOR + leg, timestampMs);
+  }
+
+  //how long a txId can be to leave room for the ids of up to legs legs
+  public static int maxLengthWithLegs(int legs) {
+    return MAX_LENGTH - 1 - String.valueOf(legs).length();
+  }
+
+  public boolean isWellFormed() {
+    return timestampMs != INVALID_TIMESTAMP;
+  }
+
+  @Override
+  public String toString() {
+    return value;
+  }
+
+  //returns the timestamp or INVALID_TIMESTAMP. '.' is kept for leg, so
+  //no client txId looks like a leg. Runs on every money request, so it doesn't allocate.
+  public static long parseTimestamp(String txId) {
+    if (txId == null || txId.length() <= SEQUENCE_START || txId.length() > MAX_LENGTH
+        || !txId.startsWith(PREFIX) || txId.charAt(SEQUENCE_START - 1) != '-') {
+      return INVALID_TIMESTAMP;
+    }
+    long timestamp = 0;
+    for (int i = PREFIX.length(); i < SEQUENCE_START - 1; i++) {
+      var digit = txId.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return INVALID_TIMESTAMP;
+      }
+      timestamp = timestamp * 10 + digit;
+    }
+    for (int i = SEQUENCE_START; i < txId.length(); i++) {
+      var c = txId.charAt(i);
+      if (c == '-' || c == LEG_SEPARATOR) {
+        return INVALID_TIMESTAMP;
+      }
+    }
+    return timestamp;
+  }
+}
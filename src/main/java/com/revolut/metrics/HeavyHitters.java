@@ -0,0 +1,79 @@
+package com.revolut.metrics;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.Value;
+
+//Space-Saving stream summary: tracks at most capacity keys, however many are added. A new key
+//takes over the lightest tracked one and inherits its weight as error, so a key is
+//overestimated by at most its error and every key heavier than total / capacity is tracked.
+public class HeavyHitters<K> {
+
+  private final int capacity;
+  //guarded by this
+  private final Map<K, Counter<K>> counters;
+
+  public HeavyHitters(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.counters = new HashMap<>(capacity * 2);
+  }
+
+  public synchronized void add(K key, long weight) {
+    var counter = counters.get(key);
+    if (counter == null) {
+      counter = counters.size() < capacity ? new Counter<>() : evictLightest();
+      counter.key = key;
+      counters.put(key, counter);
+    }
+    counter.weight += weight;
+    counter.count++;
+  }
+
+  //heaviest first
+  public synchronized List<Entry<K>> top(int limit) {
+    return counters.values().stream()
+        .sorted(Comparator.comparingLong((Counter<K> counter) -> counter.weight).reversed())
+        .limit(limit)
+        .map(counter -> new Entry<>(counter.key, counter.weight, counter.error, counter.count))
+        .collect(Collectors.toList());
+  }
+
+  //a linear scan, it is only paid by keys which aren't tracked yet
+  private Counter<K> evictLightest() {
+    Counter<K> lightest = null;
+    for (var counter : counters.values()) {
+      if (lightest == null || counter.weight < lightest.weight) {
+        lightest = counter;
+      }
+    }
+    counters.remove(lightest.key);
+    lightest.error = lightest.weight;
+    lightest.count = 0L;
+    return lightest;
+  }
+
+  private static final class Counter<K> {
+
+    private K key;
+    private long weight;
+    private long error;
+    private long count;
+  }
+
+  @Value
+  public static class Entry<K> {
+
+    K key;
+    //at most error more than the key's real weight
+    long weight;
+    long error;
+    //additions since the key is tracked
+    long count;
+  }
+}
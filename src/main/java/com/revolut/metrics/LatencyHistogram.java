@@ -0,0 +1,90 @@
+package com.revolut.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//Log-linear histogram of nanosecond latencies in the spirit of HdrHistogram: every power of 2
+//is split into 32 equal buckets, so a recorded value is off by at most 1/32 of itself. Buckets
+//are preallocated up to 2^40ns (~18 minutes, larger values land in the last one) and recording
+//is a few shifts and atomic adds, without allocating or locking.
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder sumNanos = new LongAdder();
+
+  public void record(long nanos) {
+    var value = Math.max(0L, nanos);
+    counts.incrementAndGet(indexOf(value));
+    sumNanos.add(value);
+  }
+
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  public long getCount() {
+    var count = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  public long getSumNanos() {
+    return sumNanos.sum();
+  }
+
+  //upper bound of the bucket holding the value at quantile, 0 when nothing is recorded
+  public long valueAtQuantile(double quantile) {
+    var target = (long) Math.ceil(quantile * getCount());
+    var seen = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= Math.max(1L, target)) {
+        return upperBoundOf(i);
+      }
+    }
+    return 0L;
+  }
+
+  //for each bound, how many values were recorded in buckets ending at or below it. Buckets
+  //don't line up with arbitrary bounds, so a bucket straddling one is counted at the next.
+  public long[] cumulativeCounts(long[] boundsNanos) {
+    var result = new long[boundsNanos.length];
+    var bucket = 0;
+    var seen = 0L;
+    for (int i = 0; i < boundsNanos.length; i++) {
+      while (bucket < BUCKETS && upperBoundOf(bucket) <= boundsNanos[i]) {
+        seen += counts.get(bucket++);
+      }
+      result[i] = seen;
+    }
+    return result;
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    var exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent >= MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    var shift = exponent - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  //exclusive
+  static long upperBoundOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index + 1L;
+    }
+    var shift = (index >> SUB_BUCKET_BITS) - 1;
+    return ((long) ((index & (SUB_BUCKETS - 1)) + SUB_BUCKETS + 1)) << shift;
+  }
+}
@@ -0,0 +1,122 @@
+package com.revolut.metrics;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+//Named latency histograms and counters, written out in the Prometheus text exposition format.
+//Registering is synchronized and meant for startup or the first use of a label set, callers
+//keep the returned series and record into it directly.
+public class Metrics {
+
+  //le bounds of every exported histogram, from 10us to 10s
+  private static final double[] BOUNDS_SECONDS = {
+      0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025,
+      0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+  private static final long[] BOUNDS_NANOS = new long[BOUNDS_SECONDS.length];
+  private static final String[] BOUND_LABELS = new String[BOUNDS_SECONDS.length];
+  private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+  static {
+    for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+      BOUNDS_NANOS[i] = Math.round(BOUNDS_SECONDS[i] * NANOS_PER_SECOND);
+      BOUND_LABELS[i] = BigDecimal.valueOf(BOUNDS_SECONDS[i]).stripTrailingZeros()
+          .toPlainString();
+    }
+  }
+
+  //guarded by this, in registration order
+  private final Map<String, Family> families = new LinkedHashMap<>();
+
+  //labels are name, value pairs. The same name and labels give the same histogram.
+  public synchronized LatencyHistogram histogram(String name, String help, String... labels) {
+    return (LatencyHistogram) family(name, help, "histogram").series
+        .computeIfAbsent(labelsOf(labels), ignored -> new LatencyHistogram());
+  }
+
+  public synchronized LongAdder counter(String name, String help, String... labels) {
+    return (LongAdder) family(name, help, "counter").series
+        .computeIfAbsent(labelsOf(labels), ignored -> new LongAdder());
+  }
+
+  public synchronized String scrape() {
+    var out = new StringBuilder();
+    for (var family : families.values()) {
+      out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+      out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+      family.series.forEach((labels, series) -> {
+        if (series instanceof LatencyHistogram) {
+          writeHistogram(out, family.name, labels, (LatencyHistogram) series);
+        } else {
+          out.append(family.name).append(braced(labels)).append(' ')
+              .append(((LongAdder) series).sum()).append('\n');
+        }
+      });
+    }
+    return out.toString();
+  }
+
+  private Family family(String name, String help, String type) {
+    var family = families.computeIfAbsent(name, ignored -> new Family(name, help, type));
+    if (!family.type.equals(type)) {
+      throw new IllegalArgumentException(name + " is already a " + family.type);
+    }
+    return family;
+  }
+
+  //the count is taken from the buckets, so it can't disagree with the +Inf bucket
+  private static void writeHistogram(StringBuilder out, String name, String labels,
+      LatencyHistogram histogram) {
+    var cumulative = histogram.cumulativeCounts(BOUNDS_NANOS);
+    var count = histogram.getCount();
+    var separator = labels.isEmpty() ? "" : ",";
+    for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+      out.append(name).append("_bucket{").append(labels).append(separator)
+          .append("le=\"").append(BOUND_LABELS[i]).append("\"} ").append(cumulative[i])
+          .append('\n');
+    }
+    out.append(name).append("_bucket{").append(labels).append(separator)
+        .append("le=\"+Inf\"} ").append(count).append('\n');
+    out.append(name).append("_sum").append(braced(labels)).append(' ')
+        .append(histogram.getSumNanos() / NANOS_PER_SECOND).append('\n');
+    out.append(name).append("_count").append(braced(labels)).append(' ').append(count)
+        .append('\n');
+  }
+
+  private static String labelsOf(String... labels) {
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Labels must be name, value pairs");
+    }
+    var rendered = new StringBuilder();
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0) {
+        rendered.append(',');
+      }
+      rendered.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+    }
+    return rendered.toString();
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String braced(String labels) {
+    return labels.isEmpty() ? "" : "{" + labels + "}";
+  }
+
+  private static final class Family {
+
+    private final String name;
+    private final String help;
+    private final String type;
+    private final Map<String, Object> series = new LinkedHashMap<>();
+
+    private Family(String name, String help, String type) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package com.revolut.repo;
 
 import com.revolut.domain.Account;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 import org.jooq.Configuration;
 
 public interface AccountRepo {
@@ -14,9 +16,59 @@ public interface AccountRepo {
 
   List<Account> getAll();
 
+  List<Account> getAll(Collection<Integer> ids);
+
+  //ordered by id, first limit accounts whose id is greater than afterId
+  List<Account> getPage(Integer afterId, int limit);
+
+  //ordered by id, holds a DB cursor so the stream must be closed
+  Stream<Account> streamAll();
+
+  //renames, balances are only changed by the transactional writes
   void update(Account acc);
 
-  void updateTransactional(Account acc, Configuration configuration);
+  //Every balance write below increments the account's VERSION. These two compare-and-swap: they
+  //only write the balances of unsharded accounts still at the version they carry, bump it, and
+  //return false if any wasn't. The caller must roll back on false.
+  boolean updateTransactional(Account acc, Configuration configuration);
+
+  boolean updateBalancesTransactional(Collection<Account> accs, Configuration configuration);
+
+  void updateBalanceTransactional(Integer id, Long balance, Configuration configuration);
+
+  //atomic in the DB, a concurrent writer can't be lost in between. Return the changed account,
+  //or null when it doesn't exist or, for removeBalance, its balance is less than amount.
+  Account addBalanceTransactional(Integer id, Long amount, Configuration configuration);
+
+  Account removeBalanceTransactional(Integer id, Long amount, Configuration configuration);
+
+  //HELD is the sum of the account's active holds and debits only take BALANCE - HELD, the
+  //guard of removeBalance included. These bump VERSION as well, so compare-and-swap writers
+  //see holds change. Return the changed account, or null when it doesn't exist or, for hold,
+  //is sharded or its available balance is less than amount.
+  Account holdTransactional(Integer id, Long amount, Configuration configuration);
+
+  Account releaseTransactional(Integer id, Long amount, Configuration configuration);
+
+  //debits captured of a hold of held, releasing all of it
+  Account captureTransactional(Integer id, Long held, Long captured,
+      Configuration configuration);
+
+  //A sharded account's balance is split across its shards: shard 0 is the account's own
+  //balance, the others are internal rows under its id, and reads return the sum. Writes to the
+  //other shards don't bump VERSION, so only these deltas may change a sharded account's
+  //balance. Resharding moves the whole balance to shard 0, false when the account doesn't exist.
+  boolean reshardTransactional(Integer id, int shards, Configuration configuration);
+
+  //false when the shard doesn't exist or, for removeShardBalance, holds less than amount
+  boolean addShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration);
+
+  boolean removeShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration);
+
+  //indexed by shard, null when the account doesn't exist
+  long[] getShardBalancesTransactional(Integer id, Configuration configuration);
 
   void delete(Integer id);
 
@@ -1,14 +1,30 @@
 package com.revolut.repo;
 
+import com.revolut.domain.HistoryCursor;
 import com.revolut.domain.Transaction;
 import java.util.List;
+import java.util.stream.Stream;
 import org.jooq.Configuration;
 
 public interface TransactionRepo {
 
   void saveTransactional(Transaction tx, Configuration configuration);
 
+  void saveAllTransactional(List<Transaction> txs, Configuration configuration);
+
   List<Transaction> getAll();
 
+  //ordered by id, first limit transactions whose id is greater than afterId
+  List<Transaction> getPage(Integer afterId, int limit);
+
+  //ordered by id, holds a DB cursor so the stream must be closed
+  Stream<Transaction> streamAll();
+
   boolean exists(String txId);
+
+  //newest first, timestamps in [fromMs, toMs) and strictly after before if it isn't null
+  List<Transaction> getAccountHistory(Integer accountId, Long fromMs, Long toMs,
+      HistoryCursor before, int limit);
+
+  List<String> getTransactionIdsSince(Long timestampMs);
 }
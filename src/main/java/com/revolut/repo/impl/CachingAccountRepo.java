@@ -0,0 +1,286 @@
+package com.revolut.repo.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.repo.AccountRepo;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.jooq.Configuration;
+import org.jooq.TransactionContext;
+import org.jooq.impl.DefaultTransactionListener;
+
+//Write-through cache of hot accounts in front of another AccountRepo, bounded with W-TinyLFU.
+//Transactional writes reach the cache only once their transaction commits, a rollback just
+//invalidates the touched accounts. Cached accounts are never handed out, callers get copies.
+public class CachingAccountRepo implements AccountRepo {
+
+  private final AccountRepo accounts;
+  private final Cache<Integer, Account> cache;
+  private final ThreadLocal<PendingChanges> pending = ThreadLocal.withInitial(PendingChanges::new);
+
+  public CachingAccountRepo(AccountRepo accounts, InMemoryDB db, long maximumSize) {
+    this.accounts = accounts;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+    db.addTransactionListener(new DefaultTransactionListener() {
+      @Override
+      public void commitEnd(TransactionContext ctx) {
+        pending.get().commit();
+      }
+
+      @Override
+      public void rollbackEnd(TransactionContext ctx) {
+        pending.get().rollback();
+      }
+    });
+  }
+
+  @Override
+  public Account get(Integer id) {
+    //atomic per key, so a commit can't be overwritten by a value loaded before it
+    return copyOf(cache.get(id, accounts::get));
+  }
+
+  @Override
+  public List<Account> getAll() {
+    return accounts.getAll();
+  }
+
+  //misses are loaded in bulk but not cached, a bulk load can't be ordered against commits
+  @Override
+  public List<Account> getAll(Collection<Integer> ids) {
+    var result = new ArrayList<Account>(ids.size());
+    var missing = new ArrayList<Integer>();
+    for (var id : ids) {
+      var cached = cache.getIfPresent(id);
+      if (cached == null) {
+        missing.add(id);
+      } else {
+        result.add(copyOf(cached));
+      }
+    }
+    if (!missing.isEmpty()) {
+      result.addAll(accounts.getAll(missing));
+    }
+    return result;
+  }
+
+  //pages and full scans bypass the cache, they would only evict the hot accounts
+  @Override
+  public List<Account> getPage(Integer afterId, int limit) {
+    return accounts.getPage(afterId, limit);
+  }
+
+  @Override
+  public Stream<Account> streamAll() {
+    return accounts.streamAll();
+  }
+
+  @Override
+  public Account insert(Account acc) {
+    var inserted = accounts.insert(acc);
+    cache.put(inserted.getId(), copyOf(inserted));
+    return inserted;
+  }
+
+  @Override
+  public Account insertTransactional(Account acc, Configuration configuration) {
+    var inserted = accounts.insertTransactional(acc, configuration);
+    pending.get().put(copyOf(inserted));
+    return inserted;
+  }
+
+  //only the name is written, the caller's copy may hold an outdated balance
+  @Override
+  public void update(Account acc) {
+    accounts.update(acc);
+    cache.invalidate(acc.getId());
+  }
+
+  //a failed compare-and-swap means the cached account may be outdated, so the caller's retry
+  //has to read it from the DB. It is invalidated once the caller rolled back, not right away: a
+  //concurrent miss loading it waits for our DB locks while holding the cache entry.
+  @Override
+  public boolean updateTransactional(Account acc, Configuration configuration) {
+    if (!accounts.updateTransactional(acc, configuration)) {
+      pending.get().invalidate(acc.getId());
+      return false;
+    }
+    pending.get().put(copyOf(acc));
+    return true;
+  }
+
+  @Override
+  public void updateBalanceTransactional(Integer id, Long balance, Configuration configuration) {
+    accounts.updateBalanceTransactional(id, balance, configuration);
+    pending.get().putBalance(id, balance);
+  }
+
+  @Override
+  public boolean updateBalancesTransactional(Collection<Account> accs,
+      Configuration configuration) {
+    if (!accounts.updateBalancesTransactional(accs, configuration)) {
+      accs.forEach(acc -> pending.get().invalidate(acc.getId()));
+      return false;
+    }
+    accs.forEach(acc -> pending.get().put(copyOf(acc)));
+    return true;
+  }
+
+  @Override
+  public Account addBalanceTransactional(Integer id, Long amount, Configuration configuration) {
+    var changed = accounts.addBalanceTransactional(id, amount, configuration);
+    if (changed != null) {
+      pending.get().put(copyOf(changed));
+    }
+    return changed;
+  }
+
+  @Override
+  public Account removeBalanceTransactional(Integer id, Long amount,
+      Configuration configuration) {
+    var changed = accounts.removeBalanceTransactional(id, amount, configuration);
+    if (changed != null) {
+      pending.get().put(copyOf(changed));
+    }
+    return changed;
+  }
+
+  @Override
+  public Account holdTransactional(Integer id, Long amount, Configuration configuration) {
+    var changed = accounts.holdTransactional(id, amount, configuration);
+    if (changed != null) {
+      pending.get().put(copyOf(changed));
+    }
+    return changed;
+  }
+
+  @Override
+  public Account releaseTransactional(Integer id, Long amount, Configuration configuration) {
+    var changed = accounts.releaseTransactional(id, amount, configuration);
+    if (changed != null) {
+      pending.get().put(copyOf(changed));
+    }
+    return changed;
+  }
+
+  @Override
+  public Account captureTransactional(Integer id, Long held, Long captured,
+      Configuration configuration) {
+    var changed = accounts.captureTransactional(id, held, captured, configuration);
+    if (changed != null) {
+      pending.get().put(copyOf(changed));
+    }
+    return changed;
+  }
+
+  //shard writes don't return the account's sum and don't bump its version, so a put couldn't be
+  //ordered against other commits. Sharded accounts are reloaded after every change instead.
+  @Override
+  public boolean reshardTransactional(Integer id, int shards, Configuration configuration) {
+    var resharded = accounts.reshardTransactional(id, shards, configuration);
+    pending.get().invalidate(id);
+    return resharded;
+  }
+
+  @Override
+  public boolean addShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration) {
+    var added = accounts.addShardBalanceTransactional(id, shard, amount, configuration);
+    pending.get().invalidate(id);
+    return added;
+  }
+
+  @Override
+  public boolean removeShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration) {
+    var removed = accounts.removeShardBalanceTransactional(id, shard, amount, configuration);
+    pending.get().invalidate(id);
+    return removed;
+  }
+
+  @Override
+  public long[] getShardBalancesTransactional(Integer id, Configuration configuration) {
+    return accounts.getShardBalancesTransactional(id, configuration);
+  }
+
+  @Override
+  public void delete(Integer id) {
+    accounts.delete(id);
+    cache.invalidate(id);
+  }
+
+  @Override
+  public void deleteTransactional(Integer id, Configuration configuration) {
+    accounts.deleteTransactional(id, configuration);
+    pending.get().invalidate(id);
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.estimatedSize();
+  }
+
+  private static Account copyOf(Account acc) {
+    if (acc == null) {
+      return null;
+    }
+    return new Account(acc.getId(), acc.getName(), acc.getCurrency(), acc.getBalance(),
+        acc.getVersion(), acc.getShards(), acc.getHeld());
+  }
+
+  //cache changes of the transaction running on the current thread
+  private final class PendingChanges {
+
+    private final List<Runnable> onCommit = new ArrayList<>();
+    private final Set<Integer> ids = new HashSet<>();
+
+    //commits to one account can reach the cache out of order when they don't share a lock,
+    //like optimistic writers, so an older version never replaces a newer one
+    private void put(Account acc) {
+      ids.add(acc.getId());
+      onCommit.add(() -> cache.asMap().merge(acc.getId(), acc,
+          (cached, committed) -> cached.getVersion() > committed.getVersion() ? cached : committed));
+    }
+
+    //only the sequencer writes balances this way, it is the single writer of every account
+    private void putBalance(Integer id, Long balance) {
+      ids.add(id);
+      onCommit.add(() -> cache.asMap().computeIfPresent(id, (key, cached) ->
+          new Account(cached.getId(), cached.getName(), cached.getCurrency(), balance,
+              cached.getVersion() + 1, cached.getShards(), cached.getHeld())));
+    }
+
+    private void invalidate(Integer id) {
+      ids.add(id);
+      onCommit.add(() -> cache.invalidate(id));
+    }
+
+    private void commit() {
+      onCommit.forEach(Runnable::run);
+      clear();
+    }
+
+    private void rollback() {
+      cache.invalidateAll(ids);
+      clear();
+    }
+
+    private void clear() {
+      onCommit.clear();
+      ids.clear();
+    }
+  }
+}
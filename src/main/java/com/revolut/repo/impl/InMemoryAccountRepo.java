@@ -4,16 +4,45 @@ package com.revolut.repo.impl;
 import static com.revolut.db.tables.Accounts.ACCOUNTS;
 
 import com.revolut.db.InMemoryDB;
+import com.revolut.db.tables.Accounts;
 import com.revolut.db.tables.records.AccountsRecord;
 import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
 import com.revolut.repo.AccountRepo;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
+import org.jooq.Condition;
 import org.jooq.Configuration;
+import org.jooq.Field;
+import org.jooq.Record;
 import org.jooq.impl.DSL;
 
 
 public class InMemoryAccountRepo implements AccountRepo {
 
+  private static final int FETCH_SIZE = 1_000;
+  private static final int REPLACE_BATCH_SIZE = 10_000;
+  //shards 1.. of a sharded account are rows of their own with SHARD_OF set to the account's id,
+  //in the same table so a transaction touching both never waits on two tables' locks. Reads
+  //only see the public rows, with the sum of their shards as balance.
+  private static final Condition PUBLIC = ACCOUNTS.SHARD_OF.isNull();
+  private static final Accounts SHARD_ROWS = ACCOUNTS.as("SHARD_ROWS");
+  private static final Field<Long> TOTAL_BALANCE = DSL
+      .when(ACCOUNTS.SHARDS.gt(1), ACCOUNTS.BALANCE.plus(DSL.coalesce(DSL
+          .field(DSL.select(DSL.sum(SHARD_ROWS.BALANCE))
+              .from(SHARD_ROWS)
+              .where(SHARD_ROWS.SHARD_OF.eq(ACCOUNTS.ID)))
+          .cast(Long.class), 0L)))
+      .otherwise(ACCOUNTS.BALANCE);
+  private static final Field<Long> BALANCE_OF_ALL_SHARDS =
+      TOTAL_BALANCE.as(ACCOUNTS.BALANCE.getName());
+  private static final List<Field<?>> ACCOUNT_FIELDS = List.of(ACCOUNTS.ID, ACCOUNTS.NAME,
+      ACCOUNTS.CURRENCY, BALANCE_OF_ALL_SHARDS, ACCOUNTS.VERSION, ACCOUNTS.SHARDS,
+      ACCOUNTS.HELD);
+  private static final Field<Long> AVAILABLE_BALANCE = ACCOUNTS.BALANCE.minus(ACCOUNTS.HELD);
+
   private final InMemoryDB db;
 
   public InMemoryAccountRepo(InMemoryDB db) {
@@ -23,16 +52,57 @@ public class InMemoryAccountRepo implements AccountRepo {
   @Override
   public Account get(Integer id) {
     return db.ctx()
-        .selectFrom(ACCOUNTS)
+        .select(ACCOUNT_FIELDS)
+        .from(ACCOUNTS)
         .where(ACCOUNTS.ID.eq(id))
-        .fetchOneInto(Account.class);
+        .and(PUBLIC)
+        .fetchOne(InMemoryAccountRepo::toAccount);
   }
 
   @Override
   public List<Account> getAll() {
     return db.ctx()
-        .selectFrom(ACCOUNTS)
-        .fetchInto(Account.class);
+        .select(ACCOUNT_FIELDS)
+        .from(ACCOUNTS)
+        .where(PUBLIC)
+        .fetch(InMemoryAccountRepo::toAccount);
+  }
+
+  @Override
+  public List<Account> getAll(Collection<Integer> ids) {
+    return db.ctx()
+        .select(ACCOUNT_FIELDS)
+        .from(ACCOUNTS)
+        .where(ACCOUNTS.ID.in(ids))
+        .and(PUBLIC)
+        .fetch(InMemoryAccountRepo::toAccount);
+  }
+
+  @Override
+  public List<Account> getPage(Integer afterId, int limit) {
+    //keyset pagination, a primary key seek instead of skipping offset rows
+    return db.ctx()
+        .select(ACCOUNT_FIELDS)
+        .from(ACCOUNTS)
+        .where(ACCOUNTS.ID.gt(afterId))
+        .and(PUBLIC)
+        .orderBy(ACCOUNTS.ID)
+        .limit(limit)
+        .fetch(InMemoryAccountRepo::toAccount);
+  }
+
+  @Override
+  public Stream<Account> streamAll() {
+    var cursor = db.ctx()
+        .select(ACCOUNT_FIELDS)
+        .from(ACCOUNTS)
+        .where(PUBLIC)
+        .orderBy(ACCOUNTS.ID)
+        .fetchSize(FETCH_SIZE)
+        .fetchLazy();
+    return cursor.stream()
+        .map(InMemoryAccountRepo::toAccount)
+        .onClose(cursor::close);
   }
 
   @Override
@@ -61,29 +131,228 @@ public class InMemoryAccountRepo implements AccountRepo {
   public void update(Account acc) {
     db.ctx()
         .update(ACCOUNTS)
-        .set(ACCOUNTS.BALANCE, acc.getBalance())
         .set(ACCOUNTS.NAME, acc.getName())
-        .set(ACCOUNTS.CURRENCY, acc.getCurrency().toString())
         .where(ACCOUNTS.ID.eq(acc.getId()))
+        .and(PUBLIC)
         .execute();
   }
 
   @Override
-  public void updateTransactional(Account acc, Configuration configuration) {
-    DSL.using(configuration)
+  public boolean updateTransactional(Account acc, Configuration configuration) {
+    var updated = DSL.using(configuration)
         .update(ACCOUNTS)
         .set(ACCOUNTS.BALANCE, acc.getBalance())
-        .set(ACCOUNTS.NAME, acc.getName())
-        .set(ACCOUNTS.CURRENCY, acc.getCurrency().toString())
+        .set(ACCOUNTS.VERSION, acc.getVersion() + 1)
         .where(ACCOUNTS.ID.eq(acc.getId()))
+        .and(ACCOUNTS.VERSION.eq(acc.getVersion()))
+        .and(ACCOUNTS.SHARDS.eq(1))
+        .execute();
+    if (updated == 0) {
+      return false;
+    }
+    acc.setVersion(acc.getVersion() + 1);
+    return true;
+  }
+
+  @Override
+  public void updateBalanceTransactional(Integer id, Long balance, Configuration configuration) {
+    DSL.using(configuration)
+        .update(ACCOUNTS)
+        .set(ACCOUNTS.BALANCE, balance)
+        .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
+        .where(ACCOUNTS.ID.eq(id))
+        .execute();
+  }
+
+  @Override
+  public boolean updateBalancesTransactional(Collection<Account> accs,
+      Configuration configuration) {
+    if (accs.isEmpty()) {
+      return true;
+    }
+    var batch = DSL.using(configuration)
+        .batch(DSL.using(configuration)
+            .update(ACCOUNTS)
+            .set(ACCOUNTS.BALANCE, (Long) null)
+            .set(ACCOUNTS.VERSION, (Long) null)
+            .where(ACCOUNTS.ID.eq((Integer) null))
+            .and(ACCOUNTS.VERSION.eq((Long) null))
+            .and(ACCOUNTS.SHARDS.eq(DSL.inline(1))));
+    accs.forEach(acc ->
+        batch.bind(acc.getBalance(), acc.getVersion() + 1, acc.getId(), acc.getVersion()));
+    for (var updated : batch.execute()) {
+      if (updated == 0) {
+        return false;
+      }
+    }
+    accs.forEach(acc -> acc.setVersion(acc.getVersion() + 1));
+    return true;
+  }
+
+  @Override
+  public Account addBalanceTransactional(Integer id, Long amount, Configuration configuration) {
+    var updated = DSL.using(configuration)
+        .update(ACCOUNTS)
+        .set(ACCOUNTS.BALANCE, ACCOUNTS.BALANCE.plus(amount))
+        .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
+        .where(ACCOUNTS.ID.eq(id))
+        .and(PUBLIC)
+        .execute();
+    return updated == 0 ? null : getTransactional(id, configuration);
+  }
+
+  @Override
+  public Account removeBalanceTransactional(Integer id, Long amount,
+      Configuration configuration) {
+    var updated = DSL.using(configuration)
+        .update(ACCOUNTS)
+        .set(ACCOUNTS.BALANCE, ACCOUNTS.BALANCE.minus(amount))
+        .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
+        .where(ACCOUNTS.ID.eq(id))
+        .and(PUBLIC)
+        .and(AVAILABLE_BALANCE.ge(amount))
+        .execute();
+    return updated == 0 ? null : getTransactional(id, configuration);
+  }
+
+  @Override
+  public Account holdTransactional(Integer id, Long amount, Configuration configuration) {
+    var updated = DSL.using(configuration)
+        .update(ACCOUNTS)
+        .set(ACCOUNTS.HELD, ACCOUNTS.HELD.plus(amount))
+        .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
+        .where(ACCOUNTS.ID.eq(id))
+        .and(PUBLIC)
+        .and(ACCOUNTS.SHARDS.eq(1))
+        .and(AVAILABLE_BALANCE.ge(amount))
         .execute();
+    return updated == 0 ? null : getTransactional(id, configuration);
+  }
+
+  @Override
+  public Account releaseTransactional(Integer id, Long amount, Configuration configuration) {
+    var updated = DSL.using(configuration)
+        .update(ACCOUNTS)
+        .set(ACCOUNTS.HELD, ACCOUNTS.HELD.minus(amount))
+        .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
+        .where(ACCOUNTS.ID.eq(id))
+        .and(PUBLIC)
+        .execute();
+    return updated == 0 ? null : getTransactional(id, configuration);
+  }
+
+  @Override
+  public Account captureTransactional(Integer id, Long held, Long captured,
+      Configuration configuration) {
+    var updated = DSL.using(configuration)
+        .update(ACCOUNTS)
+        .set(ACCOUNTS.BALANCE, ACCOUNTS.BALANCE.minus(captured))
+        .set(ACCOUNTS.HELD, ACCOUNTS.HELD.minus(held))
+        .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
+        .where(ACCOUNTS.ID.eq(id))
+        .and(PUBLIC)
+        .execute();
+    return updated == 0 ? null : getTransactional(id, configuration);
+  }
+
+  @Override
+  public boolean reshardTransactional(Integer id, int shards, Configuration configuration) {
+    var ctx = DSL.using(configuration);
+    var updated = ctx
+        .update(ACCOUNTS)
+        .set(ACCOUNTS.BALANCE, TOTAL_BALANCE)
+        .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
+        .set(ACCOUNTS.SHARDS, shards)
+        .where(ACCOUNTS.ID.eq(id))
+        .and(PUBLIC)
+        .execute();
+    if (updated == 0) {
+      return false;
+    }
+    ctx.deleteFrom(ACCOUNTS)
+        .where(ACCOUNTS.SHARD_OF.eq(id))
+        .execute();
+    for (int shard = 1; shard < shards; shard++) {
+      ctx.insertInto(ACCOUNTS, ACCOUNTS.BALANCE, ACCOUNTS.CURRENCY, ACCOUNTS.SHARD_OF,
+          ACCOUNTS.SHARD)
+          .select(DSL.select(DSL.inline(0L), ACCOUNTS.CURRENCY, ACCOUNTS.ID, DSL.inline(shard))
+              .from(ACCOUNTS)
+              .where(ACCOUNTS.ID.eq(id)))
+          .execute();
+    }
+    return true;
+  }
+
+  @Override
+  public boolean addShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration) {
+    if (shard == 0) {
+      return DSL.using(configuration)
+          .update(ACCOUNTS)
+          .set(ACCOUNTS.BALANCE, ACCOUNTS.BALANCE.plus(amount))
+          .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
+          .where(ACCOUNTS.ID.eq(id))
+          .and(PUBLIC)
+          .execute() > 0;
+    }
+    return DSL.using(configuration)
+        .update(ACCOUNTS)
+        .set(ACCOUNTS.BALANCE, ACCOUNTS.BALANCE.plus(amount))
+        .where(ACCOUNTS.SHARD_OF.eq(id))
+        .and(ACCOUNTS.SHARD.eq(shard))
+        .execute() > 0;
+  }
+
+  @Override
+  public boolean removeShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration) {
+    if (shard == 0) {
+      return DSL.using(configuration)
+          .update(ACCOUNTS)
+          .set(ACCOUNTS.BALANCE, ACCOUNTS.BALANCE.minus(amount))
+          .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
+          .where(ACCOUNTS.ID.eq(id))
+          .and(PUBLIC)
+          .and(ACCOUNTS.BALANCE.ge(amount))
+          .execute() > 0;
+    }
+    return DSL.using(configuration)
+        .update(ACCOUNTS)
+        .set(ACCOUNTS.BALANCE, ACCOUNTS.BALANCE.minus(amount))
+        .where(ACCOUNTS.SHARD_OF.eq(id))
+        .and(ACCOUNTS.SHARD.eq(shard))
+        .and(ACCOUNTS.BALANCE.ge(amount))
+        .execute() > 0;
+  }
+
+  @Override
+  public long[] getShardBalancesTransactional(Integer id, Configuration configuration) {
+    var ctx = DSL.using(configuration);
+    var account = ctx
+        .select(ACCOUNTS.BALANCE, ACCOUNTS.SHARDS)
+        .from(ACCOUNTS)
+        .where(ACCOUNTS.ID.eq(id))
+        .and(PUBLIC)
+        .fetchOne();
+    if (account == null) {
+      return null;
+    }
+    var balances = new long[account.value2()];
+    balances[0] = account.value1();
+    ctx.select(ACCOUNTS.SHARD, ACCOUNTS.BALANCE)
+        .from(ACCOUNTS)
+        .where(ACCOUNTS.SHARD_OF.eq(id))
+        .and(ACCOUNTS.SHARD.lt(balances.length))
+        .forEach(shard -> balances[shard.value1()] = shard.value2());
+    return balances;
   }
 
   @Override
   public void delete(Integer id) {
     db.ctx()
         .deleteFrom(ACCOUNTS)
-        .where(ACCOUNTS.ID.eq(id))
+        .where(ACCOUNTS.ID.eq(id).and(PUBLIC))
+        .or(ACCOUNTS.SHARD_OF.eq(id))
         .execute();
   }
 
@@ -91,7 +360,63 @@ public class InMemoryAccountRepo implements AccountRepo {
   public void deleteTransactional(Integer id, Configuration configuration) {
     DSL.using(configuration)
         .deleteFrom(ACCOUNTS)
-        .where(ACCOUNTS.ID.eq(id))
+        .where(ACCOUNTS.ID.eq(id).and(PUBLIC))
+        .or(ACCOUNTS.SHARD_OF.eq(id))
         .execute();
   }
+
+  //jOOQ can't render UPDATE ... RETURNING for HSQLDB. The row stays locked by the update until
+  //the transaction ends, so this is what it commits.
+  private static Account getTransactional(Integer id, Configuration configuration) {
+    return DSL.using(configuration)
+        .select(ACCOUNT_FIELDS)
+        .from(ACCOUNTS)
+        .where(ACCOUNTS.ID.eq(id))
+        .and(PUBLIC)
+        .fetchOne(InMemoryAccountRepo::toAccount);
+  }
+
+  private static Account toAccount(Record record) {
+    return new Account(record.get(ACCOUNTS.ID), record.get(ACCOUNTS.NAME),
+        Currency.valueOf(record.get(ACCOUNTS.CURRENCY)), record.get(BALANCE_OF_ALL_SHARDS),
+        record.get(ACCOUNTS.VERSION), record.get(ACCOUNTS.SHARDS), record.get(ACCOUNTS.HELD));
+  }
+
+  //bulk load at startup, nothing else may touch the table meanwhile. Ids are kept, new accounts
+  //get ids above every loaded one and at least minNextId. Returns the next id. Shards aren't
+  //snapshotted, accounts are loaded unsharded with their whole balance.
+  public int replaceAll(Iterator<Account> accs, int minNextId) {
+    db.ctx().truncate(ACCOUNTS).execute();
+    //plain JDBC, binding through jOOQ costs more than the insert itself at this volume
+    var nextId = db.ctx().connectionResult(connection -> {
+      var next = minNextId;
+      try (var insert = connection.prepareStatement(db.ctx()
+          .insertInto(ACCOUNTS, ACCOUNTS.ID, ACCOUNTS.BALANCE, ACCOUNTS.CURRENCY, ACCOUNTS.NAME)
+          .values((Integer) null, null, null, null)
+          .getSQL())) {
+        var batched = 0;
+        while (accs.hasNext()) {
+          var acc = accs.next();
+          next = Math.max(next, acc.getId() + 1);
+          insert.setInt(1, acc.getId());
+          insert.setLong(2, acc.getBalance());
+          insert.setString(3, acc.getCurrency().toString());
+          insert.setString(4, acc.getName());
+          insert.addBatch();
+          if (++batched == REPLACE_BATCH_SIZE) {
+            insert.executeBatch();
+            batched = 0;
+          }
+        }
+        if (batched > 0) {
+          insert.executeBatch();
+        }
+      }
+      return next;
+    });
+    //jOOQ 3.12 can't render an identity restart
+    db.ctx().execute("ALTER TABLE " + ACCOUNTS.getName() + " ALTER COLUMN " + ACCOUNTS.ID.getName()
+        + " RESTART WITH " + nextId);
+    return nextId;
+  }
 }
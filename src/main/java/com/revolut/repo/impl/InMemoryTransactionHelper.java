@@ -1,21 +1,49 @@
 package com.revolut.repo.impl;
 
 import com.revolut.db.InMemoryDB;
+import com.revolut.metrics.LatencyHistogram;
+import com.revolut.metrics.Metrics;
 import com.revolut.repo.TransactionHelper;
 import org.jooq.Configuration;
+import org.jooq.TransactionContext;
 import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultTransactionListener;
 
 public class InMemoryTransactionHelper implements TransactionHelper {
 
   private final InMemoryDB db;
+  private final LatencyHistogram transactions;
+  private final LatencyHistogram commits;
+  //start of the commit running on this thread, listeners are called on the committing thread
+  private final ThreadLocal<long[]> commitStart = ThreadLocal.withInitial(() -> new long[1]);
 
   public InMemoryTransactionHelper(InMemoryDB db) {
+    this(db, new Metrics());
+  }
+
+  public InMemoryTransactionHelper(InMemoryDB db, Metrics metrics) {
     this.db = db;
+    this.transactions = metrics.histogram("bank_db_transaction_seconds",
+        "DB transactions from begin to the end of the commit, journal waits included");
+    this.commits = metrics.histogram("bank_db_commit_seconds", "Commit of DB transactions");
+    db.addTransactionListener(new DefaultTransactionListener() {
+      @Override
+      public void commitStart(TransactionContext ctx) {
+        commitStart.get()[0] = System.nanoTime();
+      }
+
+      @Override
+      public void commitEnd(TransactionContext ctx) {
+        commits.recordSince(commitStart.get()[0]);
+      }
+    });
   }
 
   public void runTransactional(Tx runnable) {
+    var startNanos = System.nanoTime();
     DSL.using(db.ctx().configuration())
         .transaction(runnable::run);
+    transactions.recordSince(startNanos);
   }
 
   public interface Tx {
@@ -1,17 +1,21 @@
 package com.revolut.repo.impl;
 
 import static com.revolut.db.tables.Transactions.TRANSACTIONS;
-import static org.jooq.impl.DSL.count;
+import static org.jooq.impl.DSL.selectOne;
 
 import com.revolut.db.InMemoryDB;
+import com.revolut.domain.HistoryCursor;
 import com.revolut.domain.Transaction;
 import com.revolut.repo.TransactionRepo;
 import java.util.List;
+import java.util.stream.Stream;
 import org.jooq.Configuration;
 import org.jooq.impl.DSL;
 
 public class InMemoryTransactionRepo implements TransactionRepo {
 
+  private static final int FETCH_SIZE = 1_000;
+
   private final InMemoryDB db;
 
   public InMemoryTransactionRepo(InMemoryDB db) {
@@ -29,6 +33,23 @@ public class InMemoryTransactionRepo implements TransactionRepo {
         .execute();
   }
 
+  @Override
+  public void saveAllTransactional(List<Transaction> txs, Configuration configuration) {
+    if (txs.isEmpty()) {
+      return;
+    }
+    var batch = DSL.using(configuration)
+        .batch(DSL.using(configuration)
+            .insertInto(TRANSACTIONS, TRANSACTIONS.AMOUNT, TRANSACTIONS.CURRENCY,
+                TRANSACTIONS.OPERATION_NAME, TRANSACTIONS.RELATED_ENTITY_ID,
+                TRANSACTIONS.TIMESTAMP_MS, TRANSACTIONS.TRANSACTION_ID)
+            .values((Long) null, null, null, null, null, null));
+    txs.forEach(tx -> batch.bind(tx.getAmount(), tx.getCurrency().toString(),
+        tx.getOperationName().toString(), tx.getRelatedEntityId(), tx.getTimestampMs(),
+        tx.getTransactionId()));
+    batch.execute();
+  }
+
   @Override
   public List<Transaction> getAll() {
     return db.ctx()
@@ -36,13 +57,69 @@ public class InMemoryTransactionRepo implements TransactionRepo {
         .fetchInto(Transaction.class);
   }
 
+  @Override
+  public List<Transaction> getPage(Integer afterId, int limit) {
+    //keyset pagination, a primary key seek instead of skipping offset rows
+    return db.ctx()
+        .selectFrom(TRANSACTIONS)
+        .where(TRANSACTIONS.ID.gt(afterId))
+        .orderBy(TRANSACTIONS.ID)
+        .limit(limit)
+        .fetchInto(Transaction.class);
+  }
+
+  @Override
+  public Stream<Transaction> streamAll() {
+    var cursor = db.ctx()
+        .selectFrom(TRANSACTIONS)
+        .orderBy(TRANSACTIONS.ID)
+        .fetchSize(FETCH_SIZE)
+        .fetchLazy();
+    return cursor.stream()
+        .map(record -> record.into(Transaction.class))
+        .onClose(cursor::close);
+  }
+
   @Override
   public boolean exists(String txId) {
-    var res =  db.ctx()
-        .select(count())
+    //served by the (TRANSACTION_ID, OPERATION_NAME) unique index, stops at the first match
+    return db.ctx()
+        .fetchExists(selectOne()
+            .from(TRANSACTIONS)
+            .where(TRANSACTIONS.TRANSACTION_ID.eq(txId)));
+  }
+
+  @Override
+  public List<Transaction> getAccountHistory(Integer accountId, Long fromMs, Long toMs,
+      HistoryCursor before, int limit) {
+    var condition = TRANSACTIONS.RELATED_ENTITY_ID.eq(accountId)
+        .and(TRANSACTIONS.TIMESTAMP_MS.ge(fromMs))
+        .and(TRANSACTIONS.TIMESTAMP_MS.lt(toMs));
+    if (before != null) {
+      //the first condition bounds the index range, the second one breaks timestamp ties
+      condition = condition
+          .and(TRANSACTIONS.TIMESTAMP_MS.le(before.getTimestampMs()))
+          .and(TRANSACTIONS.TIMESTAMP_MS.lt(before.getTimestampMs())
+              .or(TRANSACTIONS.ID.lt(before.getId())));
+    }
+    //a backwards walk of the (RELATED_ENTITY_ID, TIMESTAMP_MS, ID) index which stops after
+    //limit rows, other accounts' rows are never visited. HSQLDB only walks an index for an
+    //ORDER BY on its leading columns, hence the constant RELATED_ENTITY_ID.
+    return db.ctx()
+        .selectFrom(TRANSACTIONS)
+        .where(condition)
+        .orderBy(TRANSACTIONS.RELATED_ENTITY_ID.desc(), TRANSACTIONS.TIMESTAMP_MS.desc(),
+            TRANSACTIONS.ID.desc())
+        .limit(limit)
+        .fetchInto(Transaction.class);
+  }
+
+  @Override
+  public List<String> getTransactionIdsSince(Long timestampMs) {
+    return db.ctx()
+        .selectDistinct(TRANSACTIONS.TRANSACTION_ID)
         .from(TRANSACTIONS)
-        .where(TRANSACTIONS.TRANSACTION_ID.eq(txId))
-        .fetchInto(Integer.class).get(0) > 0;
-    return res;
+        .where(TRANSACTIONS.TIMESTAMP_MS.ge(timestampMs))
+        .fetch(TRANSACTIONS.TRANSACTION_ID);
   }
 }
@@ -0,0 +1,325 @@
+package com.revolut.repo.impl;
+
+import com.revolut.db.AccountSnapshot;
+import com.revolut.db.JournalCommit;
+import com.revolut.db.JournalCommit.AccountEvent;
+import com.revolut.db.MappedJournal;
+import com.revolut.domain.Account;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+//Restores the accounts from the latest snapshot plus the journal written after it, and takes
+//new snapshots in the background. A snapshot is the previous one with the journal up to the
+//durable position folded in, so it never reads the DB and never stops writers. Transactions of
+//the last retainTransactionsMs are put back into the DB as well, so recently used txIds are
+//still rejected after a restart. Older history stays in the journal only.
+@Slf4j
+public class JournalCheckpointer implements AutoCloseable {
+
+  private static final String SNAPSHOT_PREFIX = "snapshot-";
+  private static final String SNAPSHOT_SUFFIX = ".snapshot";
+  private static final int SNAPSHOTS_KEPT = 2;
+  //transactions are timestamped before they wait for their locks and commit
+  private static final long COMMIT_DELAY_MARGIN_MS = 60_000L;
+  private static final int REPLAY_BATCH_SIZE = 10_000;
+
+  private final Path dir;
+  private final MappedJournal journal;
+  private final InMemoryAccountRepo accounts;
+  private final InMemoryTransactionRepo transactions;
+  private final InMemoryTransactionHelper transactionHelper;
+  private final long retainTransactionsMs;
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+      r -> {
+        var thread = new Thread(r, "journal-checkpointer");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  public JournalCheckpointer(Path dir, MappedJournal journal, InMemoryAccountRepo accounts,
+      InMemoryTransactionRepo transactions, InMemoryTransactionHelper transactionHelper,
+      long retainTransactionsMs) {
+    this.dir = dir;
+    this.journal = journal;
+    this.accounts = accounts;
+    this.transactions = transactions;
+    this.transactionHelper = transactionHelper;
+    this.retainTransactionsMs = retainTransactionsMs;
+  }
+
+  //must run before anything reads or writes accounts
+  public RecoveryStats recover() {
+    var startNanos = System.nanoTime();
+    var snapshot = latestSnapshot();
+    var position = snapshot == null ? 0L : snapshot.getPosition();
+    var replayFrom = snapshot == null ? 0L : snapshot.getReplayFrom();
+    var end = journal.durablePosition();
+
+    var changes = new HashMap<Integer, Change>();
+    var window = new ArrayList<Transaction>(REPLAY_BATCH_SIZE);
+    var replayedTransactions = new long[1];
+    var replayedCommits = new long[1];
+    journal.forEachCommit(replayFrom, end, (start, commitEnd, commit) -> {
+      window.addAll(commit.getTransactions());
+      if (window.size() >= REPLAY_BATCH_SIZE) {
+        replayedTransactions[0] += save(window);
+      }
+      if (start >= position) {
+        fold(changes, commit);
+        replayedCommits[0]++;
+      }
+    });
+    replayedTransactions[0] += save(window);
+
+    var base = snapshot == null ? seedAccounts() : snapshot.accounts();
+    var nextId = accounts.replaceAll(merge(base, changes),
+        nextIdOf(snapshot == null ? 0 : snapshot.getNextId(), changes));
+    if (snapshot == null) {
+      try (var restored = accounts.streamAll()) {
+        write(end, replayFrom(0L, end), nextId, restored.iterator());
+      }
+    }
+
+    var stats = new RecoveryStats(snapshot == null ? null : snapshot.getFile().toString(),
+        snapshot == null ? 0 : snapshot.getCount(), replayedCommits[0], replayedTransactions[0],
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    log.info("Recovered from {}", stats);
+    return stats;
+  }
+
+  public JournalCheckpointer start(long intervalSec) {
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        checkpoint();
+      } catch (RuntimeException e) {
+        log.error("Couldn't take a snapshot, ", e);
+      }
+    }, intervalSec, intervalSec, TimeUnit.SECONDS);
+    return this;
+  }
+
+  //folds everything durable into a new snapshot, then drops what no snapshot needs anymore
+  public AccountSnapshot checkpoint() {
+    var previous = latestSnapshot();
+    if (previous == null) {
+      throw new IllegalStateException("Nothing to checkpoint from, recover first");
+    }
+    var end = journal.durablePosition();
+    if (end == previous.getPosition()) {
+      return previous;
+    }
+    var changes = new HashMap<Integer, Change>();
+    journal.forEachCommit(previous.getPosition(), end,
+        (start, commitEnd, commit) -> fold(changes, commit));
+    var snapshot = write(end, replayFrom(previous.getReplayFrom(), end),
+        nextIdOf(previous.getNextId(), changes), merge(previous.accounts(), changes));
+    log.info("Snapshot of {} accounts taken at {}", snapshot.getCount(), end);
+    var kept = snapshotFiles().stream()
+        .sorted(Comparator.reverseOrder())
+        .limit(SNAPSHOTS_KEPT)
+        .map(AccountSnapshot::read)
+        .collect(Collectors.toList());
+    var oldestNeeded = kept.stream().mapToLong(AccountSnapshot::getReplayFrom).min()
+        .orElse(0L);
+    snapshotFiles().stream()
+        .filter(file -> kept.stream().noneMatch(k -> k.getFile().equals(file)))
+        .forEach(JournalCheckpointer::delete);
+    journal.deleteSegmentsBefore(oldestNeeded);
+    return snapshot;
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    scheduler.shutdown();
+    scheduler.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+  //the first commit with a transaction young enough to be replayed, or to if there is none
+  private long replayFrom(long from, long to) {
+    var cutoffMs = System.currentTimeMillis() - retainTransactionsMs - COMMIT_DELAY_MARGIN_MS;
+    var first = new long[] {to};
+    journal.forEachCommit(from, to, (start, end, commit) -> {
+      if (first[0] == to && commit.getTransactions().stream()
+          .anyMatch(tx -> tx.getTimestampMs() >= cutoffMs)) {
+        first[0] = start;
+      }
+    });
+    return first[0];
+  }
+
+  private int save(List<Transaction> txs) {
+    var saved = txs.size();
+    if (saved > 0) {
+      transactionHelper.runTransactional(tx -> transactions.saveAllTransactional(txs, tx));
+      txs.clear();
+    }
+    return saved;
+  }
+
+  private Iterator<Account> seedAccounts() {
+    try (var seed = accounts.streamAll()) {
+      return seed.collect(Collectors.toList()).iterator();
+    }
+  }
+
+  //snapshot accounts in their order with the changes applied, then the accounts created since
+  private static Iterator<Account> merge(Iterator<Account> base, Map<Integer, Change> changes) {
+    var existing = StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(base, Spliterator.ORDERED), false)
+        .map(acc -> {
+          var change = changes.get(acc.getId());
+          if (change == null) {
+            return acc;
+          }
+          change.merged = true;
+          return change.applyTo(acc);
+        });
+    //flatMap defers the filter until every existing account is merged
+    var created = Stream.of(changes).flatMap(all -> all.values().stream()
+        .filter(change -> !change.merged)
+        .map(change -> change.applyTo(null))
+        .filter(Objects::nonNull)
+        .sorted(Comparator.comparing(Account::getId)));
+    return Stream.concat(existing, created).filter(Objects::nonNull).iterator();
+  }
+
+  private static void fold(Map<Integer, Change> changes, JournalCommit commit) {
+    for (var event : commit.getAccountEvents()) {
+      changes.computeIfAbsent(event.getAccount().getId(), id -> new Change()).apply(event);
+    }
+    for (var tx : commit.getTransactions()) {
+      changes.computeIfAbsent(tx.getRelatedEntityId(), id -> new Change()).apply(tx);
+    }
+  }
+
+  //so accounts deleted since the snapshot don't get their ids reused
+  private static int nextIdOf(int snapshotNextId, Map<Integer, Change> changes) {
+    return Math.max(snapshotNextId,
+        changes.keySet().stream().mapToInt(id -> id + 1).max().orElse(0));
+  }
+
+  private AccountSnapshot write(long position, long replayFrom, int nextId,
+      Iterator<Account> accs) {
+    return AccountSnapshot.write(
+        dir.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, position, SNAPSHOT_SUFFIX)),
+        position, replayFrom, nextId, accs);
+  }
+
+  //the newest readable one, an unreadable snapshot falls back to the one before
+  private AccountSnapshot latestSnapshot() {
+    var files = snapshotFiles();
+    for (var i = files.size() - 1; i >= 0; i--) {
+      try {
+        return AccountSnapshot.read(files.get(i));
+      } catch (IllegalStateException e) {
+        log.error("Skipping snapshot {}, ", files.get(i), e);
+      }
+    }
+    return null;
+  }
+
+  //oldest first, the position in the name is zero padded
+  private List<Path> snapshotFiles() {
+    try (var files = Files.list(dir)) {
+      return files
+          .filter(file -> file.getFileName().toString().startsWith(SNAPSHOT_PREFIX)
+              && file.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+          .sorted()
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //what the journal says happened to one account since the snapshot
+  private static class Change {
+
+    private long delta;
+    private boolean deleted;
+    private Account created;
+    private String name;
+    private boolean renamed;
+    private boolean merged;
+
+    private void apply(AccountEvent event) {
+      var account = event.getAccount();
+      switch (event.getType()) {
+        case CREATED:
+          created = account;
+          deleted = false;
+          renamed = false;
+          delta = 0L;
+          break;
+        case RENAMED:
+          renamed = true;
+          name = account.getName();
+          break;
+        default:
+          deleted = true;
+          created = null;
+          renamed = false;
+          delta = 0L;
+          break;
+      }
+    }
+
+    private void apply(Transaction tx) {
+      var type = tx.getOperationName();
+      if (type == TransactionType.DEPOSIT || type == TransactionType.TRANSFER_DESTINATION) {
+        delta += tx.getAmount();
+      } else {
+        delta -= tx.getAmount();
+      }
+    }
+
+    //null if the account doesn't exist anymore
+    private Account applyTo(Account snapshotted) {
+      var account = created != null ? created : snapshotted;
+      if (deleted || account == null) {
+        return null;
+      }
+      return new Account(account.getId(), renamed ? name : account.getName(),
+          account.getCurrency(), account.getBalance() + delta);
+    }
+  }
+
+  @Value
+  public static class RecoveryStats {
+
+    //null when there was no snapshot yet
+    String snapshot;
+    int snapshotAccounts;
+    long replayedCommits;
+    long replayedTransactions;
+    long timeToReadyMs;
+  }
+}
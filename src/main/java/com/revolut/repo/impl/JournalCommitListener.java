@@ -0,0 +1,72 @@
+package com.revolut.repo.impl;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.db.JournalCommit;
+import com.revolut.db.JournalCommit.AccountEvent;
+import com.revolut.db.MappedJournal;
+import com.revolut.domain.Transaction;
+import java.util.ArrayList;
+import java.util.List;
+import org.jooq.TransactionContext;
+import org.jooq.impl.DefaultTransactionListener;
+
+//Collects what the DB transaction running on this thread journals and appends it as one
+//JournalCommit once it commits, so the journaling repos sharing it journal a DB transaction
+//whole. The commit returns only once it is durable. Rolled back transactions are never
+//journaled. Committers wait under their lock, but concurrent commits still share one force().
+public class JournalCommitListener {
+
+  private final ThreadLocal<Pending> pending = ThreadLocal.withInitial(Pending::new);
+
+  public JournalCommitListener(InMemoryDB db, MappedJournal journal) {
+    db.addTransactionListener(new DefaultTransactionListener() {
+      @Override
+      public void commitEnd(TransactionContext ctx) {
+        var committed = pending.get();
+        if (committed.isEmpty()) {
+          return;
+        }
+        long position;
+        try {
+          position = journal.append(
+              new JournalCommit(committed.transactions, committed.accountEvents));
+        } finally {
+          committed.clear();
+        }
+        journal.awaitDurable(position);
+      }
+
+      @Override
+      public void rollbackEnd(TransactionContext ctx) {
+        pending.get().clear();
+      }
+    });
+  }
+
+  public void add(Transaction tx) {
+    pending.get().transactions.add(tx);
+  }
+
+  public void addAll(List<Transaction> txs) {
+    pending.get().transactions.addAll(txs);
+  }
+
+  public void add(AccountEvent event) {
+    pending.get().accountEvents.add(event);
+  }
+
+  private static final class Pending {
+
+    private final List<Transaction> transactions = new ArrayList<>();
+    private final List<AccountEvent> accountEvents = new ArrayList<>();
+
+    private boolean isEmpty() {
+      return transactions.isEmpty() && accountEvents.isEmpty();
+    }
+
+    private void clear() {
+      transactions.clear();
+      accountEvents.clear();
+    }
+  }
+}
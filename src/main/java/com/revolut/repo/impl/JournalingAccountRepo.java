@@ -0,0 +1,157 @@
+package com.revolut.repo.impl;
+
+import com.revolut.db.JournalCommit;
+import com.revolut.db.JournalCommit.AccountEvent;
+import com.revolut.db.MappedJournal;
+import com.revolut.domain.Account;
+import com.revolut.repo.AccountRepo;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import org.jooq.Configuration;
+
+//Journals account creation, renames and deletion and returns only once they are durable, so a
+//snapshot plus the journal tail rebuilds the accounts table. Balances are left out on purpose,
+//every balance change is journaled as a transaction by JournalingTransactionRepo.
+public class JournalingAccountRepo implements AccountRepo {
+
+  private final AccountRepo accounts;
+  private final MappedJournal journal;
+  private final JournalCommitListener commits;
+
+  public JournalingAccountRepo(AccountRepo accounts, MappedJournal journal,
+      JournalCommitListener commits) {
+    this.accounts = accounts;
+    this.journal = journal;
+    this.commits = commits;
+  }
+
+  @Override
+  public Account get(Integer id) {
+    return accounts.get(id);
+  }
+
+  @Override
+  public Account insert(Account acc) {
+    var inserted = accounts.insert(acc);
+    journal(AccountEvent.created(inserted));
+    return inserted;
+  }
+
+  //journaled with the rest of the DB transaction once it commits
+  @Override
+  public Account insertTransactional(Account acc, Configuration configuration) {
+    var inserted = accounts.insertTransactional(acc, configuration);
+    commits.add(AccountEvent.created(inserted));
+    return inserted;
+  }
+
+  @Override
+  public List<Account> getAll() {
+    return accounts.getAll();
+  }
+
+  @Override
+  public List<Account> getAll(Collection<Integer> ids) {
+    return accounts.getAll(ids);
+  }
+
+  @Override
+  public List<Account> getPage(Integer afterId, int limit) {
+    return accounts.getPage(afterId, limit);
+  }
+
+  @Override
+  public Stream<Account> streamAll() {
+    return accounts.streamAll();
+  }
+
+  //only the name can change outside of a money movement
+  @Override
+  public void update(Account acc) {
+    accounts.update(acc);
+    journal(AccountEvent.renamed(acc.getId(), acc.getName()));
+  }
+
+  @Override
+  public boolean updateTransactional(Account acc, Configuration configuration) {
+    return accounts.updateTransactional(acc, configuration);
+  }
+
+  @Override
+  public void updateBalanceTransactional(Integer id, Long balance, Configuration configuration) {
+    accounts.updateBalanceTransactional(id, balance, configuration);
+  }
+
+  @Override
+  public boolean updateBalancesTransactional(Collection<Account> accs,
+      Configuration configuration) {
+    return accounts.updateBalancesTransactional(accs, configuration);
+  }
+
+  @Override
+  public Account addBalanceTransactional(Integer id, Long amount, Configuration configuration) {
+    return accounts.addBalanceTransactional(id, amount, configuration);
+  }
+
+  @Override
+  public Account removeBalanceTransactional(Integer id, Long amount, Configuration configuration) {
+    return accounts.removeBalanceTransactional(id, amount, configuration);
+  }
+
+  //shards only spread a balance for throughput, recovery brings accounts back unsharded
+  //holds aren't journaled, HoldService refuses them when accounts are
+  @Override
+  public Account holdTransactional(Integer id, Long amount, Configuration configuration) {
+    return accounts.holdTransactional(id, amount, configuration);
+  }
+
+  @Override
+  public Account releaseTransactional(Integer id, Long amount, Configuration configuration) {
+    return accounts.releaseTransactional(id, amount, configuration);
+  }
+
+  @Override
+  public Account captureTransactional(Integer id, Long held, Long captured,
+      Configuration configuration) {
+    return accounts.captureTransactional(id, held, captured, configuration);
+  }
+
+  @Override
+  public boolean reshardTransactional(Integer id, int shards, Configuration configuration) {
+    return accounts.reshardTransactional(id, shards, configuration);
+  }
+
+  @Override
+  public boolean addShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration) {
+    return accounts.addShardBalanceTransactional(id, shard, amount, configuration);
+  }
+
+  @Override
+  public boolean removeShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration) {
+    return accounts.removeShardBalanceTransactional(id, shard, amount, configuration);
+  }
+
+  @Override
+  public long[] getShardBalancesTransactional(Integer id, Configuration configuration) {
+    return accounts.getShardBalancesTransactional(id, configuration);
+  }
+
+  @Override
+  public void delete(Integer id) {
+    accounts.delete(id);
+    journal(AccountEvent.deleted(id));
+  }
+
+  @Override
+  public void deleteTransactional(Integer id, Configuration configuration) {
+    accounts.deleteTransactional(id, configuration);
+    commits.add(AccountEvent.deleted(id));
+  }
+
+  private void journal(AccountEvent event) {
+    journal.awaitDurable(journal.append(JournalCommit.of(event)));
+  }
+}
@@ -0,0 +1,72 @@
+package com.revolut.repo.impl;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.db.MappedJournal;
+import com.revolut.domain.HistoryCursor;
+import com.revolut.domain.Transaction;
+import com.revolut.repo.TransactionRepo;
+import java.util.List;
+import java.util.stream.Stream;
+import org.jooq.Configuration;
+
+//Journals the transactions of every committed DB transaction and returns from the commit only
+//once they are durable, so an acknowledged money movement survives a restart. They are appended
+//together with the account events of the same DB transaction by JournalCommitListener.
+public class JournalingTransactionRepo implements TransactionRepo {
+
+  private final TransactionRepo transactions;
+  private final JournalCommitListener commits;
+
+  public JournalingTransactionRepo(TransactionRepo transactions, InMemoryDB db,
+      MappedJournal journal) {
+    this(transactions, new JournalCommitListener(db, journal));
+  }
+
+  public JournalingTransactionRepo(TransactionRepo transactions, JournalCommitListener commits) {
+    this.transactions = transactions;
+    this.commits = commits;
+  }
+
+  @Override
+  public void saveTransactional(Transaction tx, Configuration configuration) {
+    transactions.saveTransactional(tx, configuration);
+    commits.add(tx);
+  }
+
+  @Override
+  public void saveAllTransactional(List<Transaction> txs, Configuration configuration) {
+    transactions.saveAllTransactional(txs, configuration);
+    commits.addAll(txs);
+  }
+
+  @Override
+  public List<Transaction> getAll() {
+    return transactions.getAll();
+  }
+
+  @Override
+  public List<Transaction> getPage(Integer afterId, int limit) {
+    return transactions.getPage(afterId, limit);
+  }
+
+  @Override
+  public Stream<Transaction> streamAll() {
+    return transactions.streamAll();
+  }
+
+  @Override
+  public boolean exists(String txId) {
+    return transactions.exists(txId);
+  }
+
+  @Override
+  public List<Transaction> getAccountHistory(Integer accountId, Long fromMs, Long toMs,
+      HistoryCursor before, int limit) {
+    return transactions.getAccountHistory(accountId, fromMs, toMs, before, limit);
+  }
+
+  @Override
+  public List<String> getTransactionIdsSince(Long timestampMs) {
+    return transactions.getTransactionIdsSince(timestampMs);
+  }
+}
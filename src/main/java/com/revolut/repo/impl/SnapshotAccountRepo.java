@@ -0,0 +1,389 @@
+package com.revolut.repo.impl;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.repo.AccountRepo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.jooq.Configuration;
+import org.jooq.TransactionContext;
+import org.jooq.impl.DefaultTransactionListener;
+
+//Serves every account read from an immutable snapshot of the accounts, in front of another
+//AccountRepo, so reads take no DB lock and never wait for a writer. Writes go to the DB as
+//before; once a transaction commits, its changes are queued and the committing thread publishes
+//them with a new snapshot before it returns, so a writer still holding its account lock already
+//reads its own commit. Committers which find the queue drained were published by the one before
+//them: a snapshot is published per group of commits.
+//A snapshot is copy-on-write: accounts are kept by id in chunks, and a publication copies the
+//chunk index and only the chunks it changes. Snapshot accounts are never handed out, callers get
+//copies.
+public class SnapshotAccountRepo implements AccountRepo {
+
+  private static final int CHUNK_BITS = 10;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  //wins over every version, so a commit published late can't bring a deleted account back
+  private static final Account DELETED = new Account(-1, null, null, 0L, Long.MAX_VALUE, 1);
+
+  private final AccountRepo accounts;
+  private final ConcurrentLinkedQueue<Consumer<Builder>> committed = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock publishing = new ReentrantLock();
+  private final ThreadLocal<List<Consumer<Builder>>> pending =
+      ThreadLocal.withInitial(ArrayList::new);
+  private volatile Snapshot snapshot = new Snapshot(new Account[0][], 0);
+
+  //listeners run in the order they were added, so an AccountRepo in front of the same db which
+  //was created before, like CachingAccountRepo, has applied a commit before it is reloaded here
+  public SnapshotAccountRepo(AccountRepo accounts, InMemoryDB db) {
+    this.accounts = accounts;
+    db.addTransactionListener(new DefaultTransactionListener() {
+      @Override
+      public void commitEnd(TransactionContext ctx) {
+        var changes = pending.get();
+        if (!changes.isEmpty()) {
+          committed.addAll(changes);
+          changes.clear();
+          publish();
+        }
+      }
+
+      @Override
+      public void rollbackEnd(TransactionContext ctx) {
+        pending.get().clear();
+      }
+    });
+    try (var all = accounts.streamAll()) {
+      all.forEach(acc -> committed.add(builder -> builder.put(acc)));
+    }
+    publish();
+  }
+
+  @Override
+  public Account get(Integer id) {
+    return copyOf(snapshot.get(id));
+  }
+
+  @Override
+  public List<Account> getAll() {
+    var current = snapshot;
+    var result = new ArrayList<Account>(current.size);
+    current.forEachAfter(-1, Integer.MAX_VALUE, acc -> result.add(copyOf(acc)));
+    return result;
+  }
+
+  @Override
+  public List<Account> getAll(Collection<Integer> ids) {
+    var current = snapshot;
+    var result = new ArrayList<Account>(ids.size());
+    for (var id : ids) {
+      var acc = current.get(id);
+      if (acc != null) {
+        result.add(copyOf(acc));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public List<Account> getPage(Integer afterId, int limit) {
+    var result = new ArrayList<Account>(Math.min(limit, snapshot.size));
+    snapshot.forEachAfter(afterId, limit, acc -> result.add(copyOf(acc)));
+    return result;
+  }
+
+  //holds no cursor, but is still closed by the callers of AccountRepo
+  @Override
+  public Stream<Account> streamAll() {
+    return getAll().stream();
+  }
+
+  @Override
+  public Account insert(Account acc) {
+    var inserted = accounts.insert(acc);
+    publish(copyOf(inserted));
+    return inserted;
+  }
+
+  @Override
+  public Account insertTransactional(Account acc, Configuration configuration) {
+    var inserted = accounts.insertTransactional(acc, configuration);
+    put(inserted);
+    return inserted;
+  }
+
+  @Override
+  public void update(Account acc) {
+    accounts.update(acc);
+    committed.add(builder -> builder.reload(acc.getId()));
+    publish();
+  }
+
+  @Override
+  public boolean updateTransactional(Account acc, Configuration configuration) {
+    if (!accounts.updateTransactional(acc, configuration)) {
+      return false;
+    }
+    put(acc);
+    return true;
+  }
+
+  //only the sequencer writes balances this way, it is the single writer of every account
+  @Override
+  public void updateBalanceTransactional(Integer id, Long balance, Configuration configuration) {
+    accounts.updateBalanceTransactional(id, balance, configuration);
+    pending.get().add(builder -> builder.putBalance(id, balance));
+  }
+
+  @Override
+  public boolean updateBalancesTransactional(Collection<Account> accs,
+      Configuration configuration) {
+    if (!accounts.updateBalancesTransactional(accs, configuration)) {
+      return false;
+    }
+    accs.forEach(this::put);
+    return true;
+  }
+
+  @Override
+  public Account addBalanceTransactional(Integer id, Long amount, Configuration configuration) {
+    return put(accounts.addBalanceTransactional(id, amount, configuration));
+  }
+
+  @Override
+  public Account removeBalanceTransactional(Integer id, Long amount,
+      Configuration configuration) {
+    return put(accounts.removeBalanceTransactional(id, amount, configuration));
+  }
+
+  @Override
+  public Account holdTransactional(Integer id, Long amount, Configuration configuration) {
+    return put(accounts.holdTransactional(id, amount, configuration));
+  }
+
+  @Override
+  public Account releaseTransactional(Integer id, Long amount, Configuration configuration) {
+    return put(accounts.releaseTransactional(id, amount, configuration));
+  }
+
+  @Override
+  public Account captureTransactional(Integer id, Long held, Long captured,
+      Configuration configuration) {
+    return put(accounts.captureTransactional(id, held, captured, configuration));
+  }
+
+  //shard writes don't bump the account's version, so they can't be ordered against other
+  //commits by it. Sharded accounts are reloaded while publishing instead, one publisher at a
+  //time, so a reload is never older than the one published before it.
+  @Override
+  public boolean reshardTransactional(Integer id, int shards, Configuration configuration) {
+    var resharded = accounts.reshardTransactional(id, shards, configuration);
+    pending.get().add(builder -> builder.reload(id));
+    return resharded;
+  }
+
+  @Override
+  public boolean addShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration) {
+    var added = accounts.addShardBalanceTransactional(id, shard, amount, configuration);
+    pending.get().add(builder -> builder.reload(id));
+    return added;
+  }
+
+  @Override
+  public boolean removeShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration) {
+    var removed = accounts.removeShardBalanceTransactional(id, shard, amount, configuration);
+    pending.get().add(builder -> builder.reload(id));
+    return removed;
+  }
+
+  @Override
+  public long[] getShardBalancesTransactional(Integer id, Configuration configuration) {
+    return accounts.getShardBalancesTransactional(id, configuration);
+  }
+
+  @Override
+  public void delete(Integer id) {
+    accounts.delete(id);
+    committed.add(builder -> builder.delete(id));
+    publish();
+  }
+
+  @Override
+  public void deleteTransactional(Integer id, Configuration configuration) {
+    accounts.deleteTransactional(id, configuration);
+    pending.get().add(builder -> builder.delete(id));
+  }
+
+  public int size() {
+    return snapshot.size;
+  }
+
+  //null passes through, like the failed writes returning it
+  private Account put(Account changed) {
+    if (changed != null && changed.getShards() > 1) {
+      var id = changed.getId();
+      pending.get().add(builder -> builder.reload(id));
+    } else if (changed != null) {
+      var acc = copyOf(changed);
+      pending.get().add(builder -> builder.put(acc));
+    }
+    return changed;
+  }
+
+  private void publish(Account acc) {
+    committed.add(builder -> builder.put(acc));
+    publish();
+  }
+
+  private void publish() {
+    publishing.lock();
+    try {
+      if (committed.isEmpty()) {
+        return;
+      }
+      var builder = new Builder(snapshot);
+      Consumer<Builder> change;
+      while ((change = committed.poll()) != null) {
+        change.accept(builder);
+      }
+      snapshot = builder.build();
+    } finally {
+      publishing.unlock();
+    }
+  }
+
+  private static Account copyOf(Account acc) {
+    if (acc == null) {
+      return null;
+    }
+    return new Account(acc.getId(), acc.getName(), acc.getCurrency(), acc.getBalance(),
+        acc.getVersion(), acc.getShards(), acc.getHeld());
+  }
+
+  //never changed once published
+  private static final class Snapshot {
+
+    private final Account[][] chunks;
+    private final int size;
+
+    private Snapshot(Account[][] chunks, int size) {
+      this.chunks = chunks;
+      this.size = size;
+    }
+
+    private Account get(Integer id) {
+      var acc = slot(id);
+      return acc == DELETED ? null : acc;
+    }
+
+    private Account slot(int id) {
+      var chunk = id >>> CHUNK_BITS;
+      if (id < 0 || chunk >= chunks.length || chunks[chunk] == null) {
+        return null;
+      }
+      return chunks[chunk][id & CHUNK_MASK];
+    }
+
+    //in id order, the first limit accounts whose id is greater than afterId
+    private void forEachAfter(int afterId, int limit, Consumer<Account> action) {
+      if (afterId == Integer.MAX_VALUE) {
+        return;
+      }
+      var count = 0;
+      for (int id = Math.max(afterId + 1, 0); id >>> CHUNK_BITS < chunks.length && count < limit;
+          id++) {
+        if (chunks[id >>> CHUNK_BITS] == null) {
+          id |= CHUNK_MASK;
+          continue;
+        }
+        var acc = chunks[id >>> CHUNK_BITS][id & CHUNK_MASK];
+        if (acc != null && acc != DELETED) {
+          action.accept(acc);
+          count++;
+        }
+      }
+    }
+  }
+
+  //the next snapshot, copies each chunk it changes once
+  private final class Builder {
+
+    private final BitSet copied = new BitSet();
+    private Account[][] chunks;
+    private int size;
+
+    private Builder(Snapshot from) {
+      this.chunks = from.chunks.clone();
+      this.size = from.size;
+    }
+
+    //an older version never replaces a newer one, commits to one account can be queued out of
+    //order when they don't share a lock, like optimistic writers
+    private void put(Account acc) {
+      var current = slot(acc.getId());
+      if (current != null && current.getVersion() > acc.getVersion()) {
+        return;
+      }
+      set(acc.getId(), acc);
+    }
+
+    private void putBalance(Integer id, Long balance) {
+      var current = slot(id);
+      if (current != null && current != DELETED) {
+        set(id, new Account(current.getId(), current.getName(), current.getCurrency(), balance,
+            current.getVersion() + 1, current.getShards(), current.getHeld()));
+      }
+    }
+
+    private void reload(Integer id) {
+      var acc = accounts.get(id);
+      if (acc == null) {
+        delete(id);
+      } else {
+        put(copyOf(acc));
+      }
+    }
+
+    private void delete(Integer id) {
+      if (slot(id) != null) {
+        set(id, DELETED);
+      }
+    }
+
+    private Account slot(int id) {
+      var chunk = id >>> CHUNK_BITS;
+      if (chunk >= chunks.length || chunks[chunk] == null) {
+        return null;
+      }
+      return chunks[chunk][id & CHUNK_MASK];
+    }
+
+    private void set(int id, Account acc) {
+      var chunk = id >>> CHUNK_BITS;
+      if (chunk >= chunks.length) {
+        chunks = Arrays.copyOf(chunks, Math.max(chunk + 1, chunks.length * 2));
+      }
+      if (!copied.get(chunk)) {
+        chunks[chunk] = chunks[chunk] == null
+            ? new Account[CHUNK_SIZE] : chunks[chunk].clone();
+        copied.set(chunk);
+      }
+      var current = chunks[chunk][id & CHUNK_MASK];
+      size += (acc == DELETED ? 0 : 1) - (current == null || current == DELETED ? 0 : 1);
+      chunks[chunk][id & CHUNK_MASK] = acc;
+    }
+
+    private Snapshot build() {
+      return new Snapshot(chunks, size);
+    }
+  }
+}
@@ -0,0 +1,288 @@
+package com.revolut.repo.impl;
+
+import com.revolut.domain.Account;
+import com.revolut.metrics.LatencyHistogram;
+import com.revolut.metrics.Metrics;
+import com.revolut.repo.AccountRepo;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import org.jooq.Configuration;
+
+//Records the latency of every call into another AccountRepo, one histogram per method.
+//Streams are timed until they are returned, reading them is up to the caller.
+public class TimedAccountRepo implements AccountRepo {
+
+  private static final String METRIC = "bank_repo_call_seconds";
+  private static final String HELP = "Calls into the DB backed repos";
+
+  private final AccountRepo accounts;
+  private final LatencyHistogram get;
+  private final LatencyHistogram insert;
+  private final LatencyHistogram getAll;
+  private final LatencyHistogram getPage;
+  private final LatencyHistogram streamAll;
+  private final LatencyHistogram update;
+  private final LatencyHistogram updateBalance;
+  private final LatencyHistogram updateBalances;
+  private final LatencyHistogram addBalance;
+  private final LatencyHistogram removeBalance;
+  private final LatencyHistogram hold;
+  private final LatencyHistogram release;
+  private final LatencyHistogram capture;
+  private final LatencyHistogram reshard;
+  private final LatencyHistogram addShardBalance;
+  private final LatencyHistogram removeShardBalance;
+  private final LatencyHistogram getShardBalances;
+  private final LatencyHistogram delete;
+
+  public TimedAccountRepo(AccountRepo accounts, Metrics metrics) {
+    this.accounts = accounts;
+    this.get = histogram(metrics, "get");
+    this.insert = histogram(metrics, "insert");
+    this.getAll = histogram(metrics, "getAll");
+    this.getPage = histogram(metrics, "getPage");
+    this.streamAll = histogram(metrics, "streamAll");
+    this.update = histogram(metrics, "update");
+    this.updateBalance = histogram(metrics, "updateBalance");
+    this.updateBalances = histogram(metrics, "updateBalances");
+    this.addBalance = histogram(metrics, "addBalance");
+    this.removeBalance = histogram(metrics, "removeBalance");
+    this.hold = histogram(metrics, "hold");
+    this.release = histogram(metrics, "release");
+    this.capture = histogram(metrics, "capture");
+    this.reshard = histogram(metrics, "reshard");
+    this.addShardBalance = histogram(metrics, "addShardBalance");
+    this.removeShardBalance = histogram(metrics, "removeShardBalance");
+    this.getShardBalances = histogram(metrics, "getShardBalances");
+    this.delete = histogram(metrics, "delete");
+  }
+
+  @Override
+  public Account get(Integer id) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.get(id);
+    } finally {
+      get.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public Account insert(Account acc) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.insert(acc);
+    } finally {
+      insert.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public Account insertTransactional(Account acc, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.insertTransactional(acc, configuration);
+    } finally {
+      insert.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public List<Account> getAll() {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.getAll();
+    } finally {
+      getAll.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public List<Account> getAll(Collection<Integer> ids) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.getAll(ids);
+    } finally {
+      getAll.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public List<Account> getPage(Integer afterId, int limit) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.getPage(afterId, limit);
+    } finally {
+      getPage.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public Stream<Account> streamAll() {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.streamAll();
+    } finally {
+      streamAll.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public void update(Account acc) {
+    var startNanos = System.nanoTime();
+    try {
+      accounts.update(acc);
+    } finally {
+      update.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public boolean updateTransactional(Account acc, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.updateTransactional(acc, configuration);
+    } finally {
+      update.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public void updateBalanceTransactional(Integer id, Long balance, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      accounts.updateBalanceTransactional(id, balance, configuration);
+    } finally {
+      updateBalance.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public boolean updateBalancesTransactional(Collection<Account> accs,
+      Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.updateBalancesTransactional(accs, configuration);
+    } finally {
+      updateBalances.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public Account addBalanceTransactional(Integer id, Long amount, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.addBalanceTransactional(id, amount, configuration);
+    } finally {
+      addBalance.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public Account removeBalanceTransactional(Integer id, Long amount, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.removeBalanceTransactional(id, amount, configuration);
+    } finally {
+      removeBalance.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public Account holdTransactional(Integer id, Long amount, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.holdTransactional(id, amount, configuration);
+    } finally {
+      hold.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public Account releaseTransactional(Integer id, Long amount, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.releaseTransactional(id, amount, configuration);
+    } finally {
+      release.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public Account captureTransactional(Integer id, Long held, Long captured,
+      Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.captureTransactional(id, held, captured, configuration);
+    } finally {
+      capture.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public boolean reshardTransactional(Integer id, int shards, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.reshardTransactional(id, shards, configuration);
+    } finally {
+      reshard.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public boolean addShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.addShardBalanceTransactional(id, shard, amount, configuration);
+    } finally {
+      addShardBalance.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public boolean removeShardBalanceTransactional(Integer id, int shard, Long amount,
+      Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.removeShardBalanceTransactional(id, shard, amount, configuration);
+    } finally {
+      removeShardBalance.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public long[] getShardBalancesTransactional(Integer id, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      return accounts.getShardBalancesTransactional(id, configuration);
+    } finally {
+      getShardBalances.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public void delete(Integer id) {
+    var startNanos = System.nanoTime();
+    try {
+      accounts.delete(id);
+    } finally {
+      delete.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public void deleteTransactional(Integer id, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      accounts.deleteTransactional(id, configuration);
+    } finally {
+      delete.recordSince(startNanos);
+    }
+  }
+
+  private static LatencyHistogram histogram(Metrics metrics, String call) {
+    return metrics.histogram(METRIC, HELP, "repo", "account", "call", call);
+  }
+}
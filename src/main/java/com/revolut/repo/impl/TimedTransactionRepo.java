@@ -0,0 +1,124 @@
+package com.revolut.repo.impl;
+
+import com.revolut.domain.HistoryCursor;
+import com.revolut.domain.Transaction;
+import com.revolut.metrics.LatencyHistogram;
+import com.revolut.metrics.Metrics;
+import com.revolut.repo.TransactionRepo;
+import java.util.List;
+import java.util.stream.Stream;
+import org.jooq.Configuration;
+
+//TimedAccountRepo for transactions
+public class TimedTransactionRepo implements TransactionRepo {
+
+  private static final String METRIC = "bank_repo_call_seconds";
+  private static final String HELP = "Calls into the DB backed repos";
+
+  private final TransactionRepo transactions;
+  private final LatencyHistogram save;
+  private final LatencyHistogram saveAll;
+  private final LatencyHistogram getAll;
+  private final LatencyHistogram getPage;
+  private final LatencyHistogram streamAll;
+  private final LatencyHistogram exists;
+  private final LatencyHistogram getAccountHistory;
+  private final LatencyHistogram getTransactionIdsSince;
+
+  public TimedTransactionRepo(TransactionRepo transactions, Metrics metrics) {
+    this.transactions = transactions;
+    this.save = histogram(metrics, "save");
+    this.saveAll = histogram(metrics, "saveAll");
+    this.getAll = histogram(metrics, "getAll");
+    this.getPage = histogram(metrics, "getPage");
+    this.streamAll = histogram(metrics, "streamAll");
+    this.exists = histogram(metrics, "exists");
+    this.getAccountHistory = histogram(metrics, "getAccountHistory");
+    this.getTransactionIdsSince = histogram(metrics, "getTransactionIdsSince");
+  }
+
+  @Override
+  public void saveTransactional(Transaction tx, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      transactions.saveTransactional(tx, configuration);
+    } finally {
+      save.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public void saveAllTransactional(List<Transaction> txs, Configuration configuration) {
+    var startNanos = System.nanoTime();
+    try {
+      transactions.saveAllTransactional(txs, configuration);
+    } finally {
+      saveAll.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public List<Transaction> getAll() {
+    var startNanos = System.nanoTime();
+    try {
+      return transactions.getAll();
+    } finally {
+      getAll.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public List<Transaction> getPage(Integer afterId, int limit) {
+    var startNanos = System.nanoTime();
+    try {
+      return transactions.getPage(afterId, limit);
+    } finally {
+      getPage.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public Stream<Transaction> streamAll() {
+    var startNanos = System.nanoTime();
+    try {
+      return transactions.streamAll();
+    } finally {
+      streamAll.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public boolean exists(String txId) {
+    var startNanos = System.nanoTime();
+    try {
+      return transactions.exists(txId);
+    } finally {
+      exists.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public List<Transaction> getAccountHistory(Integer accountId, Long fromMs, Long toMs,
+      HistoryCursor before, int limit) {
+    var startNanos = System.nanoTime();
+    try {
+      return transactions.getAccountHistory(accountId, fromMs, toMs, before, limit);
+    } finally {
+      getAccountHistory.recordSince(startNanos);
+    }
+  }
+
+  @Override
+  public List<String> getTransactionIdsSince(Long timestampMs) {
+    var startNanos = System.nanoTime();
+    try {
+      return transactions.getTransactionIdsSince(timestampMs);
+    } finally {
+      getTransactionIdsSince.recordSince(startNanos);
+    }
+  }
+
+  private static LatencyHistogram histogram(Metrics metrics, String call) {
+    return metrics.histogram(METRIC, HELP, "repo", "transaction", "call", call);
+  }
+}
@@ -1,38 +1,27 @@
 package com.revolut.service;
 
-import static com.revolut.service.TransactionService.buildTransaction;
-
 import com.revolut.domain.Account;
 import com.revolut.domain.Currency;
-import com.revolut.domain.Exceptions.CouldNotAcquiredLockException;
 import com.revolut.domain.Exceptions.EntityNotFoundException;
-import com.revolut.domain.Exceptions.InvalidTransactionId;
-import com.revolut.domain.Exceptions.NotEnoughBalanceException;
-import com.revolut.domain.Exceptions.SomethingWentWrongException;
-import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.TxId;
 import com.revolut.repo.AccountRepo;
-import com.revolut.repo.TransactionHelper;
+import com.revolut.service.ReplayCache.Request;
 import java.util.List;
-import lombok.extern.slf4j.Slf4j;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
-@Slf4j
 public class AccountService {
 
   private final AccountRepo accounts;
-  private final Lock lock;
-  private final TransactionHelper transactionHelper;
-  private final TransactionService transactionService;
-
-  public AccountService(
-      AccountRepo accounts,
-      Lock lock,
-      TransactionHelper transactionHelper,
-      TransactionService transactionService
-  ) {
+  //applies deposits, withdrawals, deletes and reshards, picked by App
+  private final MovementStrategy movements;
+  //a deposit or withdrawal retried with its txId gets the first attempt's result, whatever the
+  //engine
+  private final ReplayCache replays = new ReplayCache();
+
+  public AccountService(AccountRepo accounts, MovementStrategy movements) {
     this.accounts = accounts;
-    this.lock = lock;
-    this.transactionHelper = transactionHelper;
-    this.transactionService = transactionService;
+    this.movements = movements;
   }
 
   public Account get(Integer id) {
@@ -47,6 +36,15 @@ public class AccountService {
     return accounts.getAll();
   }
 
+  public List<Account> getPage(Integer afterId, int limit) {
+    return accounts.getPage(afterId, limit);
+  }
+
+  //must be closed by the caller
+  public Stream<Account> streamAll() {
+    return accounts.streamAll();
+  }
+
   public Account insert(String name, Long balance, Currency currency) {
     Account acc = new Account(name, currency, balance);
     return accounts.insert(acc);
@@ -59,69 +57,36 @@ public class AccountService {
   }
 
   public void delete(Integer id) {
-    try {
-      lock.runWithLock(id, () -> {
-        validateAccountExists(id);
-        accounts.delete(id);
-      });
-    } catch (CouldNotAcquiredLockException e) {
-      log.error("Couldn't acquire lock for {}, ", id, e);
-      throw new SomethingWentWrongException(e);
-    }
+    LedgerEngine.await(movements.delete(id));
   }
 
-  public void withdraw(Integer id, Long amount, String txId) {
-    try {
-      lock.runWithLock(id, txId, () -> {
-        validateTxId(txId);
-        var account = get(id);
-        validateWithdraw(account, amount);
-        transactionHelper.runTransactional(tx -> {
-          account.removeBalance(amount);
-          accounts.updateTransactional(account, tx);
-          transactionService
-              .saveTransactional(buildTransaction(account, amount, TransactionType.WITHDRAW, txId),
-                  tx);
-        });
-      });
-    } catch (CouldNotAcquiredLockException e) {
-      log.error("Couldn't acquire lock for {}, ", id, e);
-      throw new SomethingWentWrongException(e);
-    }
+  //splits the account's balance across shards sub-balances, 1 merges them back
+  public void reshard(Integer id, int shards) {
+    movements.reshard(id, shards);
   }
 
-  public void deposit(Integer id, Long amount, String txId) {
-    try {
-      lock.runWithLock(id, txId, () -> {
-        var account = get(id);
-        validateTxId(txId);
-        transactionHelper.runTransactional(tx -> {
-          account.addBalance(amount);
-          accounts.updateTransactional(account, tx);
-          transactionService
-              .saveTransactional(buildTransaction(account, amount, TransactionType.DEPOSIT, txId),
-                  tx);
-        });
-      });
-    } catch (CouldNotAcquiredLockException e) {
-      log.error("Couldn't acquire lock for {}, ", id, e);
-      throw new SomethingWentWrongException(e);
-    }
+  public void withdraw(Integer id, Long amount, TxId txId) {
+    replays.runOnce(txId, Request.withdraw(id, amount),
+        () -> LedgerEngine.await(movements.withdraw(id, amount, txId)));
   }
 
-  private void validateAccountExists(Integer id) {
-    get(id);
+  public void deposit(Integer id, Long amount, TxId txId) {
+    replays.runOnce(txId, Request.deposit(id, amount),
+        () -> LedgerEngine.await(movements.deposit(id, amount, txId)));
   }
 
-  private void validateTxId(String txId) {
-    if (!transactionService.isUsable(txId)) {
-      throw new InvalidTransactionId(String.format("%s is not a valid txId", txId));
-    }
+  //the async variants fail the future with the exceptions above instead of throwing them
+  public CompletableFuture<Void> deleteAsync(Integer id) {
+    return movements.delete(id);
   }
 
-  private void validateWithdraw(Account account, Long amount) {
-    if (account.getBalance().compareTo(amount) < 0) {
-      throw new NotEnoughBalanceException("Source account doesn't have enough balance");
-    }
+  public CompletableFuture<Void> withdrawAsync(Integer id, Long amount, TxId txId) {
+    return replays.runOnceAsync(txId, Request.withdraw(id, amount),
+        () -> movements.withdraw(id, amount, txId));
+  }
+
+  public CompletableFuture<Void> depositAsync(Integer id, Long amount, TxId txId) {
+    return replays.runOnceAsync(txId, Request.deposit(id, amount),
+        () -> movements.deposit(id, amount, txId));
   }
 }
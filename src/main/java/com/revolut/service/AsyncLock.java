@@ -0,0 +1,395 @@
+package com.revolut.service;
+
+import com.revolut.domain.Exceptions.CouldNotAcquiredLockException;
+import com.revolut.domain.Exceptions.OverloadedException;
+import com.revolut.metrics.Metrics;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Same stripes and ordering as Lock, but a waiter is a queued callback instead of a parked
+//thread. An uncontended runnable runs on the calling thread. A contended one runs on the
+//lock's workers once the previous holder hands the stripe over, so a burst on one hot
+//account holds no request threads while it waits. LockAdmission bounds the account queues.
+//Hand-overs run on the lock's executor and the runnables, blocking DB work, on separate
+//workers, so slow transactions can't hold up passing stripes on.
+//The blocking runWithLock variants wait for the async ones, so both can be mixed.
+public class AsyncLock extends Lock implements AutoCloseable {
+
+  public static final int DEFAULT_WORKER_THREADS = 16;
+
+  private final Stripe[] accStripes;
+  private final Stripe[] txStripes;
+  private final long timeoutInMs;
+  private final ExecutorService executor;
+  private final ThreadPoolExecutor workers;
+  private final ScheduledThreadPoolExecutor timer;
+
+  public AsyncLock() {
+    this(new Metrics());
+  }
+
+  public AsyncLock(Metrics metrics) {
+    this(DEFAULT_STRIPES, Runtime.getRuntime().availableProcessors(),
+        LockAdmission.DEFAULT_WAIT_BUDGET_IN_MS, metrics);
+  }
+
+  public AsyncLock(int stripes, int threads, long timeoutInMs) {
+    this(stripes, threads, timeoutInMs, new Metrics());
+  }
+
+  public AsyncLock(int stripes, int threads, long timeoutInMs, Metrics metrics) {
+    this(stripes, threads, LockAdmission.UNBOUNDED_WAITERS, timeoutInMs, metrics);
+  }
+
+  //at most maxWaiters queued per account stripe, see LockAdmission
+  public AsyncLock(int stripes, int threads, int maxWaiters, long timeoutInMs, Metrics metrics) {
+    this(stripes, threads, DEFAULT_WORKER_THREADS, maxWaiters, timeoutInMs, metrics);
+  }
+
+  //every queued or running runnable holds at least one stripe, so the workers' queue never
+  //takes more than all the stripes
+  public AsyncLock(int stripes, int threads, int workerThreads, int maxWaiters, long timeoutInMs,
+      Metrics metrics) {
+    super(stripes, false, maxWaiters, timeoutInMs, metrics);
+    this.accStripes = newStripes(stripes);
+    this.txStripes = newStripes(stripes);
+    this.timeoutInMs = timeoutInMs;
+    this.executor = Executors.newFixedThreadPool(threads, daemon("async-lock"));
+    this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(2 * stripes), daemon("async-lock-worker"));
+    //started up front, a thread started by a hand-over would count in its hold time
+    this.workers.prestartAllCoreThreads();
+    this.timer = new ScheduledThreadPoolExecutor(1, daemon("async-lock-timer"));
+    this.timer.setRemoveOnCancelPolicy(true);
+  }
+
+  @Override
+  public CompletableFuture<Void> runWithLockAsync(Integer id, String txId, Runnable runnable) {
+    return new Acquisition(runnable, new Integer[] {id}, accStripes[stripeOf(id)],
+        txStripes[stripeOf(txId)]).start();
+  }
+
+  @Override
+  public CompletableFuture<Void> runWithLockAsync(Integer id, Runnable runnable) {
+    return new Acquisition(runnable, new Integer[] {id}, accStripes[stripeOf(id)]).start();
+  }
+
+  @Override
+  public CompletableFuture<Void> runWithLockAsync(Integer firstId, Integer secondId,
+      String txId, Runnable runnable) {
+    var firstStripe = stripeOf(firstId);
+    var secondStripe = stripeOf(secondId);
+    if (firstStripe == secondStripe) {
+      return runWithLockAsync(firstId, txId, runnable);
+    }
+    var lowerId = firstStripe <= secondStripe ? firstId : secondId;
+    var higherId = firstStripe <= secondStripe ? secondId : firstId;
+    return new Acquisition(runnable, new Integer[] {lowerId, higherId},
+        accStripes[Math.min(firstStripe, secondStripe)],
+        accStripes[Math.max(firstStripe, secondStripe)],
+        txStripes[stripeOf(txId)]).start();
+  }
+
+  @Override
+  public CompletableFuture<Void> runWithLockAsync(Collection<Integer> ids,
+      Collection<String> txIds, Runnable runnable) {
+    var accIndexes = sortedStripesOf(ids);
+    var txIndexes = sortedStripesOf(txIds);
+    var stripes = new Stripe[accIndexes.length + txIndexes.length];
+    var accounts = accountsOn(accIndexes, ids);
+    for (int i = 0; i < accIndexes.length; i++) {
+      stripes[i] = accStripes[accIndexes[i]];
+    }
+    for (int i = 0; i < txIndexes.length; i++) {
+      stripes[accIndexes.length + i] = txStripes[txIndexes[i]];
+    }
+    return new Acquisition(runnable, accounts, stripes).start();
+  }
+
+  @Override
+  public void runWithLock(Integer id, String txId, Runnable runnable) {
+    LedgerEngine.await(runWithLockAsync(id, txId, runnable));
+  }
+
+  @Override
+  public void runWithLock(Integer id, Runnable runnable) {
+    LedgerEngine.await(runWithLockAsync(id, runnable));
+  }
+
+  @Override
+  public void runWithLock(Integer firstId, Integer secondId, String txId, Runnable runnable) {
+    LedgerEngine.await(runWithLockAsync(firstId, secondId, txId, runnable));
+  }
+
+  @Override
+  public void runWithLock(Collection<Integer> ids, Collection<String> txIds, Runnable runnable) {
+    LedgerEngine.await(runWithLockAsync(ids, txIds, runnable));
+  }
+
+  //queued runnables which didn't start yet never run, their futures fail once handed over
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    workers.shutdownNow();
+    timer.shutdownNow();
+  }
+
+  private static Stripe[] newStripes(int stripes) {
+    var result = new Stripe[stripes];
+    for (int i = 0; i < stripes; i++) {
+      result[i] = new Stripe(i);
+    }
+    return result;
+  }
+
+  private static ThreadFactory daemon(String name) {
+    var count = new AtomicInteger();
+    return runnable -> {
+      var thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static final class Stripe {
+
+    private final int index;
+    //guarded by this
+    private boolean locked;
+    private ArrayDeque<Acquisition> waiters; //created on first contention
+
+    private Stripe(int index) {
+      this.index = index;
+    }
+  }
+
+  //takes its stripes in the given order, parking itself in a stripe's queue when it is taken.
+  //The account stripes come first, accounts[i] is blamed for waiting on stripes[i].
+  private final class Acquisition {
+
+    private final Runnable runnable;
+    private final Integer[] accounts;
+    private final Stripe[] stripes;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final long deadline = System.currentTimeMillis() + timeoutInMs;
+    private final long startNanos = System.nanoTime();
+    //stripes[0..held) are ours, only touched by whoever currently drives this acquisition,
+    //like when the last one was taken and since when all account and txId stripes are held
+    private int held;
+    private long acquiredAt = startNanos;
+    private long accountsAt = startNanos;
+    private long txIdAt = startNanos;
+    private volatile Stripe waitingOn;
+    //the account stripe admission let us queue on, written and cleared under its monitor
+    private int admittedOn = -1;
+    private volatile boolean expired;
+    private volatile ScheduledFuture<?> timeout;
+
+    private Acquisition(Runnable runnable, Integer[] accounts, Stripe... stripes) {
+      this.runnable = runnable;
+      this.accounts = accounts;
+      this.stripes = stripes;
+    }
+
+    private CompletableFuture<Void> start() {
+      acquireRest(true);
+      return done;
+    }
+
+    //inline on the caller's thread until the first wait, on the lock's executor after it
+    private void acquireRest(boolean inline) {
+      while (held < stripes.length) {
+        var stripe = stripes[held];
+        boolean queued = false;
+        OverloadedException shed = null;
+        synchronized (stripe) {
+          if (!stripe.locked) {
+            stripe.locked = true;
+            took();
+            continue;
+          }
+          //published before expired is read, so expire() either sees us queued or we see it
+          waitingOn = stripe;
+          if (!expired && held < accounts.length) {
+            shed = getAdmission().enter(stripe.index);
+          }
+          if (!expired && shed == null) {
+            if (stripe.waiters == null) {
+              stripe.waiters = new ArrayDeque<>();
+            }
+            stripe.waiters.add(this);
+            admittedOn = held < accounts.length ? stripe.index : -1;
+            queued = true;
+          }
+        }
+        if (!queued) {
+          fail(shed != null ? shed : getAdmission().timedOut());
+        } else if (timeout == null) {
+          scheduleTimeout();
+        }
+        return;
+      }
+      if (inline) {
+        run();
+        return;
+      }
+      try {
+        workers.execute(this::run);
+      } catch (RejectedExecutionException e) {
+        fail(new CouldNotAcquiredLockException("Lock is closed"));
+      }
+    }
+
+    //called by the previous holder, which passed stripes[held] on to us
+    private void resume() {
+      leaveQueue();
+      var now = System.nanoTime();
+      blameWaitUntil(now);
+      acquiredAt = now;
+      took();
+      try {
+        //one hop less when the rest of the stripes we need are free
+        if (takeFree()) {
+          workers.execute(this::run);
+        } else {
+          executor.execute(() -> acquireRest(false));
+        }
+      } catch (RejectedExecutionException e) {
+        //closed, the stripes we hold go on to their next waiters, which fail the same way
+        fail(new CouldNotAcquiredLockException("Lock is closed"));
+      }
+    }
+
+    //takes the stripes left as long as they are free, never queues
+    private boolean takeFree() {
+      while (held < stripes.length) {
+        var stripe = stripes[held];
+        synchronized (stripe) {
+          if (stripe.locked) {
+            return false;
+          }
+          stripe.locked = true;
+        }
+        took();
+      }
+      return true;
+    }
+
+    //stripes[held] is ours since acquiredAt, the accounts or txIds are held once their last
+    //stripe is
+    private void took() {
+      if (held < accounts.length) {
+        accountsAt = acquiredAt;
+      } else {
+        txIdAt = acquiredAt;
+      }
+      held++;
+    }
+
+    private void blameWaitUntil(long nowNanos) {
+      if (held < accounts.length) {
+        getProfiler().contended(accounts[held], nowNanos - acquiredAt);
+      }
+    }
+
+    private void run() {
+      recordLockWait(acquiredAt - startNanos);
+      RuntimeException failure = null;
+      try {
+        runnable.run();
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+      var endNanos = System.nanoTime();
+      if (accounts.length > 0) {
+        recordAccounts(accountsAt - startNanos, endNanos - accountsAt);
+      }
+      if (held > accounts.length) {
+        getProfiler().recordTxIds(txIdAt - accountsAt, endNanos - txIdAt);
+      }
+      var pendingTimeout = timeout;
+      if (pendingTimeout != null) {
+        pendingTimeout.cancel(false);
+      }
+      //stripes go first, completing may run the caller's callbacks on this thread
+      releaseHeld();
+      if (failure == null) {
+        done.complete(null);
+      } else {
+        done.completeExceptionally(failure);
+      }
+    }
+
+    private void scheduleTimeout() {
+      var delay = Math.max(0L, deadline - System.currentTimeMillis());
+      try {
+        timeout = timer.schedule(this::expire, delay, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        //closed, the handover fails instead
+      }
+    }
+
+    private void expire() {
+      expired = true;
+      var stripe = waitingOn;
+      if (stripe == null) {
+        return;
+      }
+      boolean removed;
+      synchronized (stripe) {
+        removed = stripe.waiters != null && stripe.waiters.remove(this);
+      }
+      if (removed) {
+        leaveQueue();
+        blameWaitUntil(System.nanoTime());
+        fail(getAdmission().timedOut());
+      }
+    }
+
+    private void leaveQueue() {
+      if (admittedOn >= 0) {
+        getAdmission().leave(admittedOn);
+        admittedOn = -1;
+      }
+    }
+
+    private void fail(RuntimeException e) {
+      var pendingTimeout = timeout;
+      if (pendingTimeout != null) {
+        pendingTimeout.cancel(false);
+      }
+      releaseHeld();
+      done.completeExceptionally(e);
+    }
+
+    private void releaseHeld() {
+      for (int i = held - 1; i >= 0; i--) {
+        Acquisition next;
+        var stripe = stripes[i];
+        synchronized (stripe) {
+          next = stripe.waiters == null ? null : stripe.waiters.poll();
+          if (next == null) {
+            stripe.locked = false;
+          } else {
+            next.waitingOn = null;
+          }
+        }
+        if (next != null) {
+          next.resume();
+        }
+      }
+      held = 0;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package com.revolut.service;
+
+import com.revolut.domain.Exceptions.CurrencyMismatchException;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.InvalidTransactionId;
+import com.revolut.domain.PaymentLeg;
+import com.revolut.domain.Transfer;
+import com.revolut.domain.TransferResult;
+import com.revolut.domain.TxId;
+import com.revolut.repo.AccountRepo;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import lombok.extern.slf4j.Slf4j;
+
+//Hands deposits and transfers to the CreditCombiner, which combines concurrent credits to an
+//account into one DB transaction, and everything else to the movements it wraps. Batches aren't
+//combined, and neither are credits from or to sharded accounts.
+@Slf4j
+public class CombinedCreditMovements implements MovementStrategy {
+
+  private final MovementStrategy movements;
+  private final AccountRepo accounts;
+  private final Lock lock;
+  private final TransactionService transactionService;
+  private final CreditCombiner combiner;
+
+  public CombinedCreditMovements(
+      MovementStrategy movements,
+      AccountRepo accounts,
+      Lock lock,
+      TransactionService transactionService,
+      CreditCombiner combiner
+  ) {
+    this.movements = movements;
+    this.accounts = accounts;
+    this.lock = lock;
+    this.transactionService = transactionService;
+    this.combiner = combiner;
+  }
+
+  @Override
+  public CompletableFuture<Void> deposit(Integer id, Long amount, TxId txId) {
+    var account = accounts.get(id);
+    if (account != null && ShardedBalances.isSharded(account)) {
+      return movements.deposit(id, amount, txId);
+    }
+    return Lock.onLockFailure(
+        lock.runWithTxIdLockAsync(txId.getValue(), () -> applyDeposit(id, amount, txId)),
+        e -> log.error("Couldn't acquire lock for {}, ", id, e));
+  }
+
+  @Override
+  public CompletableFuture<Void> withdraw(Integer id, Long amount, TxId txId) {
+    return movements.withdraw(id, amount, txId);
+  }
+
+  @Override
+  public CompletableFuture<Void> transfer(Integer from, Integer to, Long amount, TxId txId) {
+    var fromAcc = accounts.get(from);
+    var toAcc = accounts.get(to);
+    if (LockedMovements.involvesShardedAccount(fromAcc, toAcc)) {
+      return movements.transfer(from, to, amount, txId);
+    }
+    return Lock.onLockFailure(
+        lock.runWithTxIdLockAsync(txId.getValue(), () -> applyTransfer(from, to, amount, txId)),
+        e -> log.error("Couldn't acquire lock for {} and {}, ", from, to, e));
+  }
+
+  @Override
+  public CompletableFuture<Void> delete(Integer id) {
+    return movements.delete(id);
+  }
+
+  @Override
+  public List<TransferResult> transferAll(List<Transfer> transfers) {
+    return movements.transferAll(transfers);
+  }
+
+  @Override
+  public void payMulti(Integer from, List<PaymentLeg> legs, TxId txId) {
+    movements.payMulti(from, legs, txId);
+  }
+
+  @Override
+  public void reshard(Integer id, int shards) {
+    movements.reshard(id, shards);
+  }
+
+  //the txId lock is held until the combined commit, so the txId can't be used concurrently
+  private void applyDeposit(Integer id, Long amount, TxId txId) {
+    var account = accounts.get(id);
+    if (account == null) {
+      throw new EntityNotFoundException(String.format("Account cannot be found: %d", id));
+    }
+    validateTxId(txId);
+    LedgerEngine.await(combiner.deposit(account, amount, txId));
+  }
+
+  //the source balance is checked by its debit
+  private void applyTransfer(Integer from, Integer to, Long amount, TxId txId) {
+    var fromAcc = accounts.get(from);
+    var toAcc = accounts.get(to);
+    validateTxId(txId);
+    if (fromAcc == null || toAcc == null) {
+      throw new EntityNotFoundException("Account cannot be found");
+    }
+    if (fromAcc.getCurrency() != toAcc.getCurrency()) {
+      throw new CurrencyMismatchException(
+          "Source and destination account currencies are different");
+    }
+    LedgerEngine.await(combiner.transfer(fromAcc, toAcc, amount, txId));
+  }
+
+  private void validateTxId(TxId txId) {
+    if (!transactionService.isUsable(txId)) {
+      throw new InvalidTransactionId(String.format("%s is not a valid txId", txId));
+    }
+  }
+}
@@ -0,0 +1,240 @@
+package com.revolut.service;
+
+import static com.revolut.service.TransactionService.buildTransaction;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.TxId;
+import com.revolut.metrics.Metrics;
+import com.revolut.repo.AccountRepo;
+import com.revolut.repo.TransactionHelper;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+
+//Flat combining of credits: deposits and transfers are queued on their destination account's
+//stripe, and whichever caller finds the stripe free applies everything queued there, the others
+//just wait for their future. Credits to one account become one guarded debit per transfer
+//source, one balance update and one batch insert of their transactions, in one DB transaction,
+//so a hot account takes as many credits per commit as arrive while the previous one runs.
+//Balances only change by DB side deltas, so no account locks are needed. Callers must hold
+//their txId lock and have validated the credit, the combiner only checks balances.
+//A caller combines for at most maxRounds rounds. If credits are still queued by then, it hands
+//the stripe off to the combiner's thread, which takes turns with the other handed off stripes.
+@Slf4j
+public class CreditCombiner {
+
+  public static final int DEFAULT_STRIPES = 1_024;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+  public static final int DEFAULT_MAX_ROUNDS = 4;
+
+  private final AccountRepo accounts;
+  private final TransactionHelper transactionHelper;
+  private final TransactionService transactionService;
+  private final Stripe[] stripes;
+  private final int mask;
+  private final int maxBatchSize;
+  private final int maxRounds;
+  private final LongAdder combinedCredits;
+  private final LongAdder commits;
+  private final ExecutorService handOffs = Executors.newSingleThreadExecutor(r -> {
+    var thread = new Thread(r, "credit-combiner");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public CreditCombiner(
+      AccountRepo accounts,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService
+  ) {
+    this(accounts, transactionHelper, transactionService, DEFAULT_STRIPES,
+        DEFAULT_MAX_BATCH_SIZE, new Metrics());
+  }
+
+  public CreditCombiner(
+      AccountRepo accounts,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService,
+      int stripes,
+      int maxBatchSize,
+      Metrics metrics
+  ) {
+    this(accounts, transactionHelper, transactionService, stripes, maxBatchSize,
+        DEFAULT_MAX_ROUNDS, metrics);
+  }
+
+  public CreditCombiner(
+      AccountRepo accounts,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService,
+      int stripes,
+      int maxBatchSize,
+      int maxRounds,
+      Metrics metrics
+  ) {
+    if (Integer.bitCount(stripes) != 1) {
+      throw new IllegalArgumentException("Stripes must be a power of 2: " + stripes);
+    }
+    this.accounts = accounts;
+    this.transactionHelper = transactionHelper;
+    this.transactionService = transactionService;
+    this.stripes = new Stripe[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new Stripe();
+    }
+    this.mask = stripes - 1;
+    this.maxBatchSize = maxBatchSize;
+    this.maxRounds = maxRounds;
+    this.combinedCredits = metrics.counter("bank_combined_credits_total",
+        "Deposits and transfers handled by the credit combiner");
+    this.commits = metrics.counter("bank_combined_commits_total",
+        "DB transactions of the credit combiner, one per destination account and round");
+  }
+
+  public CompletableFuture<Void> deposit(Account to, Long amount, TxId txId) {
+    return submit(new Credit(null, to, amount, txId));
+  }
+
+  public CompletableFuture<Void> transfer(Account from, Account to, Long amount, TxId txId) {
+    return submit(new Credit(from, to, amount, txId));
+  }
+
+  private CompletableFuture<Void> submit(Credit credit) {
+    var stripe = stripes[stripeOf(credit.to.getId())];
+    stripe.queue.add(credit);
+    drain(stripe);
+    return credit.done;
+  }
+
+  //combines if nobody else is, until the queue is empty or the rounds are used up. A credit
+  //queued just before the combiner let go is seen by the recheck of the loop.
+  private void drain(Stripe stripe) {
+    var rounds = 0;
+    while (!stripe.queue.isEmpty() && stripe.combining.compareAndSet(false, true)) {
+      try {
+        for (; rounds < maxRounds && !stripe.queue.isEmpty(); rounds++) {
+          combine(stripe);
+        }
+      } finally {
+        stripe.combining.set(false);
+      }
+      if (rounds == maxRounds) {
+        handOff(stripe);
+        return;
+      }
+    }
+  }
+
+  //at most one hand-off waits per stripe, one which already started drains what came after
+  private void handOff(Stripe stripe) {
+    if (!stripe.queue.isEmpty() && stripe.handedOff.compareAndSet(false, true)) {
+      handOffs.execute(() -> {
+        stripe.handedOff.set(false);
+        drain(stripe);
+      });
+    }
+  }
+
+  private void combine(Stripe stripe) {
+    var byAccount = new LinkedHashMap<Integer, List<Credit>>();
+    Credit credit;
+    for (int i = 0; i < maxBatchSize && (credit = stripe.queue.poll()) != null; i++) {
+      byAccount.computeIfAbsent(credit.to.getId(), id -> new ArrayList<>()).add(credit);
+    }
+    byAccount.forEach(this::apply);
+  }
+
+  private void apply(Integer to, List<Credit> credits) {
+    var applied = new ArrayList<Credit>(credits.size());
+    var rejected = new ArrayList<Credit>();
+    try {
+      transactionHelper.runTransactional(tx -> {
+        applied.clear();
+        rejected.clear();
+        var total = 0L;
+        var txs = new ArrayList<Transaction>(credits.size() * 2);
+        for (var credit : credits) {
+          if (credit.from != null && accounts
+              .removeBalanceTransactional(credit.from.getId(), credit.amount, tx) == null) {
+            rejected.add(credit);
+            continue;
+          }
+          total = Math.addExact(total, credit.amount);
+          applied.add(credit);
+          txs.addAll(transactionsOf(credit));
+        }
+        if (applied.isEmpty()) {
+          return;
+        }
+        if (accounts.addBalanceTransactional(to, total, tx) == null) {
+          throw new EntityNotFoundException(String.format("Account cannot be found: %d", to));
+        }
+        transactionService.saveAllTransactional(txs, tx);
+      });
+    } catch (RuntimeException e) {
+      log.error("Couldn't apply {} combined credits to {}, ", credits.size(), to, e);
+      credits.forEach(credit -> credit.done.completeExceptionally(e));
+      return;
+    }
+    combinedCredits.add(credits.size());
+    commits.increment();
+    for (var credit : applied) {
+      transactionService.markAsUsed(credit.txId);
+      credit.done.complete(null);
+    }
+    rejected.forEach(credit -> credit.done.completeExceptionally(
+        new NotEnoughBalanceException("Source account doesn't have enough balance")));
+  }
+
+  private static List<Transaction> transactionsOf(Credit credit) {
+    if (credit.from == null) {
+      return List.of(
+          buildTransaction(credit.to, credit.amount, TransactionType.DEPOSIT, credit.txId));
+    }
+    return List.of(
+        buildTransaction(credit.from, credit.amount, TransactionType.TRANSFER_SOURCE,
+            credit.txId),
+        buildTransaction(credit.to, credit.amount, TransactionType.TRANSFER_DESTINATION,
+            credit.txId));
+  }
+
+  private int stripeOf(Integer id) {
+    var hash = Objects.hashCode(id);
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private static final class Stripe {
+
+    private final ConcurrentLinkedQueue<Credit> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean combining = new AtomicBoolean();
+    private final AtomicBoolean handedOff = new AtomicBoolean();
+  }
+
+  private static final class Credit {
+
+    private final Account from; //null for deposits
+    private final Account to;
+    private final Long amount;
+    private final TxId txId;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private Credit(Account from, Account to, Long amount, TxId txId) {
+      this.from = from;
+      this.to = to;
+      this.amount = amount;
+      this.txId = txId;
+    }
+  }
+}
@@ -0,0 +1,237 @@
+package com.revolut.service;
+
+import static com.revolut.service.TransactionService.buildTransaction;
+
+import com.revolut.domain.Exceptions.CouldNotAcquiredLockException;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.InvalidTransactionId;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Exceptions.OperationNotAllowedException;
+import com.revolut.domain.Exceptions.SomethingWentWrongException;
+import com.revolut.domain.Hold;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.TxId;
+import com.revolut.repo.AccountRepo;
+import com.revolut.repo.TransactionHelper;
+import com.revolut.service.TimingWheel.Timeout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+//Authorize now, capture or release later. A hold adds its amount to the account's HELD, which
+//every debit leaves alone, and writes nothing to the ledger: only a capture is a transaction,
+//CAPTURE under the hold's txId. The holds themselves are kept in memory, each with its timeout
+//on a timing wheel, and a ticker releases the expired ones in batches. Capture, release and
+//expiry race for a hold through its timeout, exactly one of them gets it.
+//Hold writes take the account lock like pessimistic debits and bump VERSION for the optimistic
+//ones. Holds live only in memory, so with a journal, which would recover accounts without them,
+//they're refused like on the ledger engines.
+@Slf4j
+public class HoldService implements AutoCloseable {
+
+  public static final long DEFAULT_TTL_IN_MS = 1_000L * 60L * 60L * 24L * 7L; //7 days
+  public static final long MAX_TTL_IN_MS = 1_000L * 60L * 60L * 24L * 30L; //30 days
+  private static final int WHEEL_SLOTS = 4_096;
+  private static final long TICK_IN_MS = 1_000L;
+  private static final int EXPIRY_BATCH_SIZE = 1_000;
+
+  private final AccountRepo accounts;
+  private final Lock lock;
+  private final TransactionHelper transactionHelper;
+  private final TransactionService transactionService;
+  //null unless money movements go through a ledger engine, which doesn't support holds
+  private final LedgerEngine ledger;
+  //set when accounts are journaled, holds wouldn't survive their recovery
+  private final boolean journaled;
+  private final Map<String, Timeout<Hold>> holds = new ConcurrentHashMap<>();
+  private final TimingWheel<Hold> expiries;
+  private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(
+      r -> {
+        var thread = new Thread(r, "hold-expiry");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  public HoldService(
+      AccountRepo accounts,
+      Lock lock,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService,
+      LedgerEngine ledger,
+      boolean journaled
+  ) {
+    this.accounts = accounts;
+    this.lock = lock;
+    this.transactionHelper = transactionHelper;
+    this.transactionService = transactionService;
+    this.ledger = ledger;
+    this.journaled = journaled;
+    this.expiries = new TimingWheel<>(WHEEL_SLOTS, TICK_IN_MS, System.currentTimeMillis());
+  }
+
+  //expires holds every tick, until closed
+  public HoldService start() {
+    ticker.scheduleWithFixedDelay(() -> {
+      try {
+        expireDue(System.currentTimeMillis());
+      } catch (RuntimeException e) {
+        log.error("Couldn't expire holds, ", e);
+      }
+    }, TICK_IN_MS, TICK_IN_MS, TimeUnit.MILLISECONDS);
+    return this;
+  }
+
+  //reserves amount of the account's available balance for ttlMs, txId names the hold
+  public Hold authorize(Integer id, Long amount, TxId txId, long ttlMs) {
+    if (ledger != null) {
+      throw new OperationNotAllowedException("Holds aren't supported with the ledger engine");
+    }
+    if (journaled) {
+      throw new OperationNotAllowedException("Holds aren't supported with a journal");
+    }
+    var hold = new Hold(txId, id, amount, System.currentTimeMillis() + ttlMs);
+    try {
+      lock.runWithLock(id, txId.getValue(), () -> applyAuthorize(hold));
+    } catch (CouldNotAcquiredLockException e) {
+      log.error("Couldn't acquire lock for {}, ", id, e);
+      throw new SomethingWentWrongException(e);
+    }
+    return hold;
+  }
+
+  //debits amount, the whole hold when null, and releases the rest of it
+  public void capture(String txId, Long amount) {
+    var timeout = activeHold(txId);
+    var hold = timeout.getItem();
+    var captured = amount == null ? hold.getAmount() : amount;
+    if (captured > hold.getAmount()) {
+      throw new NotEnoughBalanceException(
+          String.format("Hold %s is only %d, can't capture %d", txId, hold.getAmount(), captured));
+    }
+    runWithAccountLock(hold, () -> {
+      claim(txId, timeout);
+      try {
+        transactionHelper.runTransactional(tx -> {
+          var account = accounts.captureTransactional(hold.getAccountId(), hold.getAmount(),
+              captured, tx);
+          if (account == null) {
+            throw new EntityNotFoundException(
+                String.format("Account cannot be found: %d", hold.getAccountId()));
+          }
+          transactionService.saveTransactional(
+              buildTransaction(account, captured, TransactionType.CAPTURE, hold.getTxId()), tx);
+        });
+      } catch (EntityNotFoundException e) {
+        throw e;
+      } catch (RuntimeException e) {
+        schedule(hold);
+        throw e;
+      }
+    });
+  }
+
+  //a hold of a deleted account is dropped with it
+  public void release(String txId) {
+    var timeout = activeHold(txId);
+    var hold = timeout.getItem();
+    runWithAccountLock(hold, () -> {
+      claim(txId, timeout);
+      try {
+        transactionHelper.runTransactional(
+            tx -> accounts.releaseTransactional(hold.getAccountId(), hold.getAmount(), tx));
+      } catch (RuntimeException e) {
+        schedule(hold);
+        throw e;
+      }
+    });
+  }
+
+  //moves the wheel up to nowMs and releases what expired, a batch per DB transaction. A batch
+  //which couldn't be released is retried on the next tick. Returns how many holds expired.
+  int expireDue(long nowMs) {
+    var expired = new ArrayList<Hold>();
+    expiries.advance(nowMs, expired::add);
+    for (int from = 0; from < expired.size(); from += EXPIRY_BATCH_SIZE) {
+      releaseExpired(expired.subList(from, Math.min(expired.size(), from + EXPIRY_BATCH_SIZE)));
+    }
+    return expired.size();
+  }
+
+  public int size() {
+    return holds.size();
+  }
+
+  @Override
+  public void close() {
+    ticker.shutdownNow();
+  }
+
+  private void applyAuthorize(Hold hold) {
+    if (!transactionService.isUsable(hold.getTxId())) {
+      throw new InvalidTransactionId(String.format("%s is not a valid txId", hold.getTxId()));
+    }
+    var account = accounts.get(hold.getAccountId());
+    if (account == null) {
+      throw new EntityNotFoundException(
+          String.format("Account cannot be found: %d", hold.getAccountId()));
+    }
+    if (ShardedBalances.isSharded(account)) {
+      throw new OperationNotAllowedException("Sharded accounts can't take holds");
+    }
+    transactionHelper.runTransactional(tx -> {
+      if (accounts.holdTransactional(hold.getAccountId(), hold.getAmount(), tx) == null) {
+        throw new NotEnoughBalanceException("Account doesn't have enough available balance");
+      }
+    });
+    transactionService.markAsUsed(hold.getTxId());
+    schedule(hold);
+  }
+
+  private void releaseExpired(List<Hold> batch) {
+    batch.forEach(hold -> holds.remove(hold.getTxId().getValue()));
+    var accountIds = batch.stream().map(Hold::getAccountId).collect(Collectors.toSet());
+    try {
+      lock.runWithLock(accountIds, List.of(), () -> transactionHelper.runTransactional(tx ->
+          batch.forEach(hold ->
+              accounts.releaseTransactional(hold.getAccountId(), hold.getAmount(), tx))));
+    } catch (RuntimeException e) {
+      log.error("Couldn't release {} expired holds, ", batch.size(), e);
+      batch.forEach(this::schedule);
+    }
+  }
+
+  private Timeout<Hold> activeHold(String txId) {
+    var timeout = holds.get(txId);
+    if (timeout == null) {
+      throw new EntityNotFoundException(String.format("Hold cannot be found: %s", txId));
+    }
+    return timeout;
+  }
+
+  //past its deadline a hold is left to the wheel even if the wheel hasn't come to it yet
+  private void claim(String txId, Timeout<Hold> timeout) {
+    if (timeout.getDeadlineMs() <= System.currentTimeMillis() || !timeout.cancel()) {
+      throw new EntityNotFoundException(String.format("Hold cannot be found: %s", txId));
+    }
+    holds.remove(txId, timeout);
+  }
+
+  private void schedule(Hold hold) {
+    holds.put(hold.getTxId().getValue(), expiries.schedule(hold, hold.getExpiresAtMs()));
+  }
+
+  private void runWithAccountLock(Hold hold, Runnable runnable) {
+    try {
+      lock.runWithLock(hold.getAccountId(), runnable);
+    } catch (CouldNotAcquiredLockException e) {
+      log.error("Couldn't acquire lock for {}, ", hold.getAccountId(), e);
+      throw new SomethingWentWrongException(e);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.revolut.service;
+
+import com.revolut.domain.Exceptions.OperationNotAllowedException;
+import com.revolut.domain.Exceptions.SomethingWentWrongException;
+import com.revolut.domain.PaymentLeg;
+import com.revolut.domain.Transfer;
+import com.revolut.domain.TransferResult;
+import com.revolut.domain.TxId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+//alternative way of applying money movements, replaces Lock + one DB transaction per request
+public interface LedgerEngine extends MovementStrategy {
+
+  //a batch is just its transfers, submitted together and acknowledged one by one
+  @Override
+  default List<TransferResult> transferAll(List<Transfer> transfers) {
+    var acks = transfers.stream()
+        .map(transfer -> transfer(transfer.getFromId(), transfer.getToId(),
+            transfer.getAmount(), transfer.getTxId()))
+        .collect(Collectors.toList());
+    var results = new ArrayList<TransferResult>(transfers.size());
+    for (int i = 0; i < transfers.size(); i++) {
+      var txId = transfers.get(i).getTxId();
+      try {
+        await(acks.get(i));
+        results.add(TransferResult.success(txId.getValue()));
+      } catch (RuntimeException e) {
+        results.add(TransferResult.failure(txId.getValue(), e));
+      }
+    }
+    return results;
+  }
+
+  @Override
+  default void payMulti(Integer from, List<PaymentLeg> legs, TxId txId) {
+    throw new OperationNotAllowedException(
+        "Multi payments aren't supported with the ledger engine");
+  }
+
+  //the ledger keeps its own balances and doesn't know about shards
+  @Override
+  default void reshard(Integer id, int shards) {
+    throw new OperationNotAllowedException("Accounts can't be sharded with the ledger engine");
+  }
+
+  //waits for the acknowledgement and rethrows domain exceptions as they are
+  static void await(CompletableFuture<Void> ack) {
+    try {
+      ack.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new SomethingWentWrongException(e);
+    }
+  }
+}
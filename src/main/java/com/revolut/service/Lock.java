@@ -1,37 +1,92 @@
 package com.revolut.service;
 
 import com.revolut.domain.Exceptions.CouldNotAcquiredLockException;
+import com.revolut.domain.Exceptions.SomethingWentWrongException;
+import com.revolut.metrics.LatencyHistogram;
+import com.revolut.metrics.Metrics;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 //cannot be used in a distributed system
+//ids are hashed onto a fixed number of lock stripes, so memory doesn't grow with the number of
+//accounts or txIds seen. Ids sharing a stripe only cost some extra contention.
+//Waits are bounded by LockAdmission, an overloaded account sheds callers instead of parking them.
 public class Lock {
 
-  private static final long TIMEOUT_IN_SECONDS = 10;
-  private static final ConcurrentHashMap<Integer, ReentrantLock> accLocks = new ConcurrentHashMap<>();
-  private static final ConcurrentHashMap<String, ReentrantLock> txLocks = new ConcurrentHashMap<>();
+  public static final int DEFAULT_STRIPES = 4_096;
+  private static final String LOCK_WAIT_METRIC = "bank_lock_wait_seconds";
+  private static final String LOCK_WAIT_HELP = "Time from asking for account and txId locks to holding them";
 
-  private void init(Integer... ids) {
-    Arrays
-        .stream(ids)
-        .forEach(id -> accLocks.putIfAbsent(id, new ReentrantLock()));
+  private final ReentrantLock[] accLocks;
+  private final ReentrantLock[] txLocks;
+  private final int mask;
+  private final LatencyHistogram lockWait;
+  private final LockProfiler profiler = new LockProfiler();
+  private final LockAdmission admission;
+
+  public Lock() {
+    this(DEFAULT_STRIPES);
+  }
+
+  public Lock(int stripes) {
+    this(stripes, new Metrics());
+  }
+
+  //callers wait up to 10 seconds, however many there are
+  public Lock(int stripes, Metrics metrics) {
+    this(stripes, LockAdmission.UNBOUNDED_WAITERS, LockAdmission.DEFAULT_WAIT_BUDGET_IN_MS,
+        metrics);
+  }
+
+  public Lock(int stripes, int maxWaiters, long waitBudgetInMs, Metrics metrics) {
+    this(stripes, true, maxWaiters, waitBudgetInMs, metrics);
   }
 
-  private void init(String txId) {
-    txLocks.putIfAbsent(txId, new ReentrantLock());
+  //AsyncLock queues on stripes of its own and doesn't need the ReentrantLocks
+  protected Lock(int stripes, boolean reentrantStripes, int maxWaiters, long waitBudgetInMs,
+      Metrics metrics) {
+    if (Integer.bitCount(stripes) != 1) {
+      throw new IllegalArgumentException("Stripes must be a power of 2: " + stripes);
+    }
+    mask = stripes - 1;
+    lockWait = metrics.histogram(LOCK_WAIT_METRIC, LOCK_WAIT_HELP);
+    admission = new LockAdmission(stripes, maxWaiters, waitBudgetInMs, metrics);
+    if (!reentrantStripes) {
+      accLocks = null;
+      txLocks = null;
+      return;
+    }
+    accLocks = new ReentrantLock[stripes];
+    txLocks = new ReentrantLock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      accLocks[i] = new ReentrantLock();
+      txLocks[i] = new ReentrantLock();
+    }
   }
 
   public void runWithLock(Integer id, String txId, Runnable runnable) {
-    init(id);
-    init(txId);
-    var accLock = accLocks.get(id);
-    var txLock = txLocks.get(txId);
+    var accLock = accLocks[stripeOf(id)];
+    var txLock = txLocks[stripeOf(txId)];
+    var startNanos = System.nanoTime();
     try {
-      lockOrThrow(accLock);
-      lockOrThrow(txLock);
-      runnable.run();
+      var accountsAt = lock(accLock, id, startNanos);
+      var txIdAt = lock(txLock, null, accountsAt);
+      lockWait.record(txIdAt - startNanos);
+      try {
+        runnable.run();
+      } finally {
+        var endNanos = System.nanoTime();
+        recordAccounts(accountsAt - startNanos, endNanos - accountsAt);
+        profiler.recordTxIds(txIdAt - accountsAt, endNanos - txIdAt);
+      }
     } finally {
       unlockIfHeldByCurrentThread(accLock);
       unlockIfHeldByCurrentThread(txLock);
@@ -39,30 +94,43 @@ public class Lock {
   }
 
   public void runWithLock(Integer id, Runnable runnable) {
-    init(id);
-    var accLock = accLocks.get(id);
+    var accLock = accLocks[stripeOf(id)];
+    var startNanos = System.nanoTime();
     try {
-      lockOrThrow(accLock);
-      runnable.run();
+      var accountsAt = lock(accLock, id, startNanos);
+      lockWait.record(accountsAt - startNanos);
+      try {
+        runnable.run();
+      } finally {
+        recordAccounts(accountsAt - startNanos, System.nanoTime() - accountsAt);
+      }
     } finally {
       unlockIfHeldByCurrentThread(accLock);
     }
   }
 
   public void runWithLock(Integer firstId, Integer secondId, String txId, Runnable runnable) {
-    init(firstId, secondId);
-    init(txId);
-    //we always need the same order to prevent deadlocks
-    var smallerId = firstId <= secondId ? firstId : secondId;
-    var biggerId = firstId > secondId ? firstId : secondId;
-    var firstAccLock = accLocks.get(smallerId);
-    var secondAccLock = accLocks.get(biggerId);
-    var txLock = txLocks.get(txId);
+    //we always need the same order to prevent deadlocks, so stripes are taken in index order.
+    //two ids on the same stripe take the same ReentrantLock twice, which is fine
+    var firstStripe = stripeOf(firstId);
+    var secondStripe = stripeOf(secondId);
+    var lowerId = firstStripe <= secondStripe ? firstId : secondId;
+    var higherId = firstStripe <= secondStripe ? secondId : firstId;
+    var firstAccLock = accLocks[Math.min(firstStripe, secondStripe)];
+    var secondAccLock = accLocks[Math.max(firstStripe, secondStripe)];
+    var txLock = txLocks[stripeOf(txId)];
+    var startNanos = System.nanoTime();
     try {
-      lockOrThrow(firstAccLock);
-      lockOrThrow(secondAccLock);
-      lockOrThrow(txLock);
-      runnable.run();
+      var accountsAt = lock(secondAccLock, higherId, lock(firstAccLock, lowerId, startNanos));
+      var txIdAt = lock(txLock, null, accountsAt);
+      lockWait.record(txIdAt - startNanos);
+      try {
+        runnable.run();
+      } finally {
+        var endNanos = System.nanoTime();
+        recordAccounts(accountsAt - startNanos, endNanos - accountsAt);
+        profiler.recordTxIds(txIdAt - accountsAt, endNanos - txIdAt);
+      }
     } finally {
       unlockIfHeldByCurrentThread(firstAccLock);
       unlockIfHeldByCurrentThread(secondAccLock);
@@ -70,16 +138,174 @@ public class Lock {
     }
   }
 
-  private void lockOrThrow(ReentrantLock lock) {
+  //same ordering rule for any number of accounts, each stripe is taken once
+  public void runWithLock(Collection<Integer> ids, Collection<String> txIds, Runnable runnable) {
+    var held = new ArrayList<ReentrantLock>();
+    var startNanos = System.nanoTime();
+    try {
+      var accountsAt = startNanos;
+      var stripes = sortedStripesOf(ids);
+      var accounts = accountsOn(stripes, ids);
+      for (int i = 0; i < stripes.length; i++) {
+        accountsAt = lock(accLocks[stripes[i]], accounts[i], accountsAt);
+        held.add(accLocks[stripes[i]]);
+      }
+      var txIdAt = accountsAt;
+      for (var stripe : sortedStripesOf(txIds)) {
+        txIdAt = lock(txLocks[stripe], null, txIdAt);
+        held.add(txLocks[stripe]);
+      }
+      lockWait.record(txIdAt - startNanos);
+      try {
+        runnable.run();
+      } finally {
+        var endNanos = System.nanoTime();
+        if (!ids.isEmpty()) {
+          recordAccounts(accountsAt - startNanos, endNanos - accountsAt);
+        }
+        if (!txIds.isEmpty()) {
+          profiler.recordTxIds(txIdAt - accountsAt, endNanos - txIdAt);
+        }
+      }
+    } finally {
+      held.forEach(ReentrantLock::unlock);
+    }
+  }
+
+  //only the txId is locked, for writers which detect conflicting account changes themselves
+  public void runWithTxIdLock(String txId, Runnable runnable) {
+    runWithLock(List.of(), List.of(txId), runnable);
+  }
+
+  //the async variants run on the calling thread here, AsyncLock queues them instead of waiting.
+  //Failures, including CouldNotAcquiredLockException, complete the future exceptionally.
+  public CompletableFuture<Void> runWithLockAsync(Integer id, String txId, Runnable runnable) {
+    return completed(() -> runWithLock(id, txId, runnable));
+  }
+
+  public CompletableFuture<Void> runWithLockAsync(Integer id, Runnable runnable) {
+    return completed(() -> runWithLock(id, runnable));
+  }
+
+  public CompletableFuture<Void> runWithLockAsync(Integer firstId, Integer secondId, String txId,
+      Runnable runnable) {
+    return completed(() -> runWithLock(firstId, secondId, txId, runnable));
+  }
+
+  public CompletableFuture<Void> runWithLockAsync(Collection<Integer> ids,
+      Collection<String> txIds, Runnable runnable) {
+    return completed(() -> runWithLock(ids, txIds, runnable));
+  }
+
+  public CompletableFuture<Void> runWithTxIdLockAsync(String txId, Runnable runnable) {
+    return runWithLockAsync(List.of(), List.of(txId), runnable);
+  }
+
+  //async counterpart of catching CouldNotAcquiredLockException and throwing
+  //SomethingWentWrongException, other failures pass through untouched
+  public static CompletableFuture<Void> onLockFailure(CompletableFuture<Void> ack,
+      Consumer<CouldNotAcquiredLockException> logger) {
+    return ack.handle((ignored, e) -> {
+      var cause = e instanceof CompletionException ? e.getCause() : e;
+      if (cause == null) {
+        return null;
+      }
+      if (cause instanceof CouldNotAcquiredLockException) {
+        logger.accept((CouldNotAcquiredLockException) cause);
+        throw new SomethingWentWrongException((CouldNotAcquiredLockException) cause);
+      }
+      throw cause instanceof RuntimeException
+          ? (RuntimeException) cause : new CompletionException(cause);
+    });
+  }
+
+  public LockProfiler getProfiler() {
+    return profiler;
+  }
+
+  //for AsyncLock, whose waits end on whichever thread hands the stripes over
+  void recordLockWait(long waitNanos) {
+    lockWait.record(waitNanos);
+  }
+
+  //the account hold times also feed admission's expected waits
+  void recordAccounts(long waitNanos, long holdNanos) {
+    profiler.recordAccounts(waitNanos, holdNanos);
+    admission.recordHold(holdNanos);
+  }
+
+  LockAdmission getAdmission() {
+    return admission;
+  }
+
+  //the first of the ids on each of the sorted stripes, to blame for waiting on it. One pass over
+  //the ids, a multi payment locks thousands of accounts.
+  Integer[] accountsOn(int[] sortedStripes, Collection<Integer> ids) {
+    var accounts = new Integer[sortedStripes.length];
+    for (var id : ids) {
+      var i = Arrays.binarySearch(sortedStripes, stripeOf(id));
+      if (accounts[i] == null) {
+        accounts[i] = id;
+      }
+    }
+    return accounts;
+  }
+
+  int[] sortedStripesOf(Collection<?> ids) {
+    return ids.stream().mapToInt(this::stripeOf).sorted().distinct().toArray();
+  }
+
+  //account and txId locks, fixed at construction
+  int lockTableSize() {
+    return accLocks == null ? 0 : accLocks.length + txLocks.length;
+  }
+
+  int stripeOf(Object id) {
+    var hash = Objects.hashCode(id);
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private static CompletableFuture<Void> completed(Runnable locked) {
+    try {
+      locked.run();
+      return CompletableFuture.completedFuture(null);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  //returns since when the lock is held. A free lock is taken without reading the clock, so it
+  //counts as held since the caller's previous timestamp. accountId is null for txId locks,
+  //only account waits go through admission.
+  private long lock(ReentrantLock lock, Integer accountId, long nowNanos) {
+    if (lock.tryLock()) {
+      return nowNanos;
+    }
+    var stripe = accountId == null ? -1 : stripeOf(accountId);
+    if (stripe >= 0) {
+      var overloaded = admission.enter(stripe);
+      if (overloaded != null) {
+        throw overloaded;
+      }
+    }
     boolean locked;
     try {
-      locked = lock.tryLock(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+      locked = lock.tryLock(admission.getWaitBudgetNanos(), TimeUnit.NANOSECONDS);
     } catch (InterruptedException e) {
-      locked = false;
+      throw new CouldNotAcquiredLockException("Interrupted while waiting for lock!");
+    } finally {
+      if (stripe >= 0) {
+        admission.leave(stripe);
+      }
+    }
+    var lockedAt = System.nanoTime();
+    if (accountId != null) {
+      profiler.contended(accountId, lockedAt - nowNanos);
     }
     if (!locked) {
-      throw new CouldNotAcquiredLockException("Cannot acquire lock!");
+      throw admission.timedOut();
     }
+    return lockedAt;
   }
 
   private void unlockIfHeldByCurrentThread(ReentrantLock lock) {
@@ -0,0 +1,86 @@
+package com.revolut.service;
+
+import com.revolut.domain.Exceptions.OverloadedException;
+import com.revolut.metrics.Metrics;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//Decides whether a caller may wait for a taken account stripe. It is shed with
+//OverloadedException instead when maxWaiters are queued there already, or when the waiters
+//ahead of it times the average hold would take longer than the wait budget, so it fails in
+//microseconds rather than timing out after the budget. Nobody waits longer than the budget.
+//Holds are averaged over all stripes, they are one DB transaction each, more or less the same.
+public class LockAdmission {
+
+  public static final int UNBOUNDED_WAITERS = Integer.MAX_VALUE;
+  public static final long DEFAULT_WAIT_BUDGET_IN_MS = 10_000L;
+  private static final String SHED_METRIC = "bank_lock_shed_total";
+  private static final String SHED_HELP = "Lock waits refused or given up by admission control";
+  private static final int HOLD_SMOOTHING_SHIFT = 4; //each hold moves the average by 1/16th
+
+  private final AtomicIntegerArray waiters;
+  private final int maxWaiters;
+  private final long waitBudgetNanos;
+  private final LongAdder queueFull;
+  private final LongAdder overBudget;
+  private final LongAdder timedOut;
+  //racy read-modify-write, a lost update only delays the average a bit
+  private volatile long averageHoldNanos;
+
+  public LockAdmission(int stripes, int maxWaiters, long waitBudgetInMs, Metrics metrics) {
+    if (maxWaiters < 1 || waitBudgetInMs < 1) {
+      throw new IllegalArgumentException(
+          "Max waiters and wait budget must be positive: " + maxWaiters + ", " + waitBudgetInMs);
+    }
+    this.waiters = new AtomicIntegerArray(stripes);
+    this.maxWaiters = maxWaiters;
+    this.waitBudgetNanos = TimeUnit.MILLISECONDS.toNanos(waitBudgetInMs);
+    this.queueFull = metrics.counter(SHED_METRIC, SHED_HELP, "reason", "queue_full");
+    this.overBudget = metrics.counter(SHED_METRIC, SHED_HELP, "reason", "over_budget");
+    this.timedOut = metrics.counter(SHED_METRIC, SHED_HELP, "reason", "timed_out");
+  }
+
+  public long getWaitBudgetNanos() {
+    return waitBudgetNanos;
+  }
+
+  //null if the caller is admitted, and must leave(stripe) once it stops waiting
+  OverloadedException enter(int stripe) {
+    var ahead = waiters.get(stripe);
+    if (ahead >= maxWaiters) {
+      queueFull.increment();
+      return overloaded("Too many requests are waiting for the account", ahead);
+    }
+    if ((ahead + 1) * averageHoldNanos > waitBudgetNanos) {
+      overBudget.increment();
+      return overloaded("The account is too busy to take the request in time", ahead);
+    }
+    waiters.incrementAndGet(stripe);
+    return null;
+  }
+
+  void leave(int stripe) {
+    waiters.decrementAndGet(stripe);
+  }
+
+  OverloadedException timedOut() {
+    timedOut.increment();
+    return new OverloadedException("Cannot acquire lock in time!",
+        retryAfterSeconds(waitBudgetNanos));
+  }
+
+  void recordHold(long holdNanos) {
+    var average = averageHoldNanos;
+    averageHoldNanos = average + ((holdNanos - average) >> HOLD_SMOOTHING_SHIFT);
+  }
+
+  private OverloadedException overloaded(String msg, int ahead) {
+    return new OverloadedException(msg, retryAfterSeconds((ahead + 1) * averageHoldNanos));
+  }
+
+  //Retry-After only takes whole seconds
+  private static long retryAfterSeconds(long waitNanos) {
+    return Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(waitNanos - 1) + 1);
+  }
+}
@@ -0,0 +1,109 @@
+package com.revolut.service;
+
+import com.revolut.metrics.HeavyHitters;
+import com.revolut.metrics.LatencyHistogram;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.Value;
+
+//How long Lock callers waited for and held their account and txId locks, per call, and which
+//accounts were waited for the most. Waits are only recorded when a lock was taken, so an
+//uncontended call costs two histogram increments; the hot account sketch is only touched by
+//callers which had to wait anyway.
+public class LockProfiler {
+
+  private static final int HOT_ACCOUNT_CAPACITY = 128;
+  private static final int HOT_ACCOUNTS = 10;
+
+  private final Times accounts = new Times();
+  private final Times txIds = new Times();
+  private final HeavyHitters<Integer> hotAccounts = new HeavyHitters<>(HOT_ACCOUNT_CAPACITY);
+
+  //a call held its account locks for holdNanos after waiting waitNanos, 0 if they were free
+  void recordAccounts(long waitNanos, long holdNanos) {
+    accounts.record(waitNanos, holdNanos);
+  }
+
+  void recordTxIds(long waitNanos, long holdNanos) {
+    txIds.record(waitNanos, holdNanos);
+  }
+
+  //timed out waits included
+  void contended(Integer accountId, long waitNanos) {
+    hotAccounts.add(accountId, waitNanos);
+  }
+
+  public Report report() {
+    return new Report(accounts.stats(), txIds.stats(), hotAccounts.top(HOT_ACCOUNTS).stream()
+        .map(entry -> new HotAccount(entry.getKey(), entry.getCount(), entry.getWeight(),
+            entry.getError()))
+        .collect(Collectors.toList()));
+  }
+
+  private static final class Times {
+
+    //only the waits which weren't 0, everything else waited 0
+    private final LatencyHistogram waits = new LatencyHistogram();
+    private final LatencyHistogram holds = new LatencyHistogram();
+
+    private void record(long waitNanos, long holdNanos) {
+      if (waitNanos > 0L) {
+        waits.record(waitNanos);
+      }
+      holds.record(holdNanos);
+    }
+
+    private LockStats stats() {
+      //holds are recorded after waits, so there are never fewer calls than contended ones
+      var calls = holds.getCount();
+      var contended = Math.min(calls, waits.getCount());
+      return new LockStats(calls, contended,
+          waitAtQuantile(calls, contended, 0.5), waitAtQuantile(calls, contended, 0.99),
+          waitAtQuantile(calls, contended, 0.999), waits.getSumNanos(),
+          holds.valueAtQuantile(0.5), holds.valueAtQuantile(0.99), holds.valueAtQuantile(0.999));
+    }
+
+    private long waitAtQuantile(long calls, long contended, double quantile) {
+      var uncontended = calls - contended;
+      var rank = (long) Math.ceil(quantile * calls);
+      if (contended == 0L || rank <= uncontended) {
+        return 0L;
+      }
+      return waits.valueAtQuantile((double) (rank - uncontended) / contended);
+    }
+  }
+
+  @Value
+  public static class Report {
+
+    LockStats accounts;
+    LockStats txIds;
+    //most waited for first
+    List<HotAccount> hotAccounts;
+  }
+
+  @Value
+  public static class LockStats {
+
+    long calls;
+    long contended;
+    long waitP50Nanos;
+    long waitP99Nanos;
+    long waitP999Nanos;
+    long totalWaitNanos;
+    long holdP50Nanos;
+    long holdP99Nanos;
+    long holdP999Nanos;
+  }
+
+  @Value
+  public static class HotAccount {
+
+    int id;
+    //waits since the account is tracked
+    long contentions;
+    //overestimated by at most waitErrorNanos
+    long waitNanos;
+    long waitErrorNanos;
+  }
+}
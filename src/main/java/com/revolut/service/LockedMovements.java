@@ -0,0 +1,462 @@
+package com.revolut.service;
+
+import static com.revolut.service.TransactionService.buildTransaction;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Exceptions.ConcurrentUpdateException;
+import com.revolut.domain.Exceptions.CouldNotAcquiredLockException;
+import com.revolut.domain.Exceptions.CurrencyMismatchException;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.InvalidTransactionId;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Exceptions.OperationNotAllowedException;
+import com.revolut.domain.Exceptions.SomethingWentWrongException;
+import com.revolut.domain.PaymentLeg;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.Transfer;
+import com.revolut.domain.TransferResult;
+import com.revolut.domain.TxId;
+import com.revolut.repo.AccountRepo;
+import com.revolut.repo.TransactionHelper;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.Configuration;
+
+//Money movements hold their account locks and run one DB transaction per request, batches one
+//lock pass and one DB transaction for all of their transfers. Movements from or to a sharded
+//account go through ShardedBalances whatever the subclass, batches apply their net change to
+//each sharded account.
+@Slf4j
+public class LockedMovements implements MovementStrategy {
+
+  protected final AccountRepo accounts;
+  protected final Lock lock;
+  protected final TransactionHelper transactionHelper;
+  protected final TransactionService transactionService;
+  private final ShardedBalances sharded;
+
+  public LockedMovements(
+      AccountRepo accounts,
+      Lock lock,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService
+  ) {
+    this.accounts = accounts;
+    this.lock = lock;
+    this.transactionHelper = transactionHelper;
+    this.transactionService = transactionService;
+    this.sharded = new ShardedBalances(accounts);
+  }
+
+  @Override
+  public CompletableFuture<Void> deposit(Integer id, Long amount, TxId txId) {
+    var shardedAccount = shardedAccount(id);
+    if (shardedAccount != null) {
+      return wrapLockFailure(lock.runWithTxIdLockAsync(txId.getValue(),
+          () -> applyDepositSharded(shardedAccount, amount, txId)), id);
+    }
+    return wrapLockFailure(depositUnsharded(id, amount, txId), id);
+  }
+
+  @Override
+  public CompletableFuture<Void> withdraw(Integer id, Long amount, TxId txId) {
+    return wrapLockFailure(
+        lock.runWithLockAsync(id, txId.getValue(), () -> applyWithdrawLocked(id, amount, txId)),
+        id);
+  }
+
+  @Override
+  public CompletableFuture<Void> transfer(Integer from, Integer to, Long amount, TxId txId) {
+    var fromAcc = accounts.get(from);
+    var toAcc = accounts.get(to);
+    var ack = involvesShardedAccount(fromAcc, toAcc)
+        ? lock.runWithLockAsync(lockedBySharded(fromAcc, toAcc), List.of(txId.getValue()),
+        () -> applyTransferSharded(fromAcc, toAcc, amount, txId))
+        : transferUnsharded(from, to, amount, txId);
+    return Lock.onLockFailure(ack,
+        e -> log.error("Couldn't acquire lock for {} and {}, ", from, to, e));
+  }
+
+  @Override
+  public CompletableFuture<Void> delete(Integer id) {
+    return wrapLockFailure(lock.runWithLockAsync(id, () -> applyDelete(id)), id);
+  }
+
+  @Override
+  public List<TransferResult> transferAll(List<Transfer> transfers) {
+    var accountIds = new HashSet<Integer>();
+    var txIds = new HashSet<String>();
+    transfers.forEach(transfer -> {
+      accountIds.add(transfer.getFromId());
+      accountIds.add(transfer.getToId());
+      txIds.add(transfer.getTxId().getValue());
+    });
+    var results = new ArrayList<TransferResult>(transfers.size());
+    try {
+      lock.runWithLock(accountIds, txIds, () -> attempt(() -> {
+        results.clear();
+        applyAll(transfers, accountIds, results);
+      }));
+    } catch (CouldNotAcquiredLockException e) {
+      log.error("Couldn't acquire lock for a batch of {} transfers, ", transfers.size(), e);
+      throw new SomethingWentWrongException(e);
+    }
+    return results;
+  }
+
+  //legs may repeat a destination or pay from itself
+  @Override
+  public void payMulti(Integer from, List<PaymentLeg> legs, TxId txId) {
+    var accountIds = new HashSet<Integer>(legs.size() * 2);
+    accountIds.add(from);
+    legs.forEach(leg -> accountIds.add(leg.getToId()));
+    try {
+      lock.runWithLock(accountIds, List.of(txId.getValue()),
+          () -> attempt(() -> applyPayment(from, legs, txId, accountIds)));
+    } catch (CouldNotAcquiredLockException e) {
+      log.error("Couldn't acquire lock for a payment of {} legs from {}, ", legs.size(), from, e);
+      throw new SomethingWentWrongException(e);
+    }
+  }
+
+  @Override
+  public void reshard(Integer id, int shards) {
+    try {
+      lock.runWithLock(id, () -> {
+        //sharded debits don't see HELD, holds take the account lock so none can start meanwhile
+        if (get(id).getHeld() > 0) {
+          throw new OperationNotAllowedException("Accounts with active holds can't be sharded");
+        }
+        transactionHelper.runTransactional(tx -> {
+          if (!accounts.reshardTransactional(id, shards, tx)) {
+            throw new EntityNotFoundException(String.format("Account cannot be found: %d", id));
+          }
+        });
+      });
+    } catch (CouldNotAcquiredLockException e) {
+      log.error("Couldn't acquire lock for {}, ", id, e);
+      throw new SomethingWentWrongException(e);
+    }
+  }
+
+  protected CompletableFuture<Void> depositUnsharded(Integer id, Long amount, TxId txId) {
+    return lock.runWithLockAsync(id, txId.getValue(), () -> applyDeposit(id, amount, txId));
+  }
+
+  protected CompletableFuture<Void> transferUnsharded(Integer from, Integer to, Long amount,
+      TxId txId) {
+    return lock.runWithLockAsync(from, to, txId.getValue(),
+        () -> applyTransfer(from, to, amount, txId));
+  }
+
+  //runs a batch or payment under its locks, attempt loads its accounts itself
+  protected void attempt(Runnable attempt) {
+    attempt.run();
+  }
+
+  //holding the account locks isn't enough to write the accounts back whole: combined credits
+  //take none, so the net changes are applied as guarded deltas
+  protected void writeBack(Map<Integer, Account> accountsById, Map<Integer, Long> deltas,
+      Configuration tx, String conflict) {
+    deltas.forEach((id, delta) -> {
+      var acc = accountsById.get(id);
+      if (ShardedBalances.isSharded(acc)) {
+        writeShardedDelta(acc, delta, tx);
+        return;
+      }
+      if (delta < 0 && accounts.removeBalanceTransactional(id, -delta, tx) == null) {
+        throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+      }
+      if (delta > 0 && accounts.addBalanceTransactional(id, delta, tx) == null) {
+        throw new EntityNotFoundException(String.format("Account cannot be found: %d", id));
+      }
+    });
+  }
+
+  //sharded accounts only get their net change
+  protected void writeShardedDelta(Account acc, long delta, Configuration tx) {
+    if (delta < 0) {
+      sharded.debit(acc, -delta, tx);
+    } else if (delta > 0) {
+      sharded.credit(acc, delta, tx);
+    }
+  }
+
+  private void applyDelete(Integer id) {
+    get(id);
+    accounts.delete(id);
+  }
+
+  //a reshard holds the account lock too, so whether the account is sharded is only settled once
+  //we hold it
+  private void applyWithdrawLocked(Integer id, Long amount, TxId txId) {
+    var shardedAccount = shardedAccount(id);
+    if (shardedAccount != null) {
+      applyWithdrawSharded(shardedAccount, amount, txId);
+    } else {
+      applyWithdraw(id, amount, txId);
+    }
+  }
+
+  //the balance is checked by the debit itself, it can't change between a check and the write
+  private void applyWithdraw(Integer id, Long amount, TxId txId) {
+    validateTxId(txId);
+    var account = get(id);
+    transactionHelper.runTransactional(tx -> {
+      if (accounts.removeBalanceTransactional(id, amount, tx) == null) {
+        throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+      }
+      transactionService
+          .saveTransactional(buildTransaction(account, amount, TransactionType.WITHDRAW, txId),
+              tx);
+    });
+    transactionService.markAsUsed(txId);
+  }
+
+  private void applyDeposit(Integer id, Long amount, TxId txId) {
+    var account = get(id);
+    validateTxId(txId);
+    transactionHelper.runTransactional(tx -> {
+      if (accounts.addBalanceTransactional(id, amount, tx) == null) {
+        throw new EntityNotFoundException(String.format("Account cannot be found: %d", id));
+      }
+      transactionService
+          .saveTransactional(buildTransaction(account, amount, TransactionType.DEPOSIT, txId),
+              tx);
+    });
+    transactionService.markAsUsed(txId);
+  }
+
+  //the account lock keeps other debits out while this one borrows across shards
+  private void applyWithdrawSharded(Account account, Long amount, TxId txId) {
+    validateTxId(txId);
+    transactionHelper.runTransactional(tx -> {
+      sharded.debit(account, amount, tx);
+      transactionService
+          .saveTransactional(buildTransaction(account, amount, TransactionType.WITHDRAW, txId),
+              tx);
+    });
+    transactionService.markAsUsed(txId);
+  }
+
+  //credits only add to a shard, so only the txId is locked
+  private void applyDepositSharded(Account account, Long amount, TxId txId) {
+    validateTxId(txId);
+    transactionHelper.runTransactional(tx -> {
+      sharded.credit(account, amount, tx);
+      transactionService
+          .saveTransactional(buildTransaction(account, amount, TransactionType.DEPOSIT, txId),
+              tx);
+    });
+    transactionService.markAsUsed(txId);
+  }
+
+  //the source balance is checked by the debit itself, it can't change between a check and the
+  //write
+  private void applyTransfer(Integer from, Integer to, Long amount, TxId txId) {
+    var fromAcc = accounts.get(from);
+    var toAcc = accounts.get(to);
+    validateTransfer(fromAcc, toAcc, txId);
+    transactionHelper.runTransactional(tx -> {
+      if (accounts.removeBalanceTransactional(from, amount, tx) == null) {
+        throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+      }
+      if (accounts.addBalanceTransactional(to, amount, tx) == null) {
+        throw new EntityNotFoundException("Account cannot be found");
+      }
+      transactionService
+          .saveTransactional(
+              buildTransaction(fromAcc, amount, TransactionType.TRANSFER_SOURCE, txId), tx);
+      transactionService
+          .saveTransactional(
+              buildTransaction(toAcc, amount, TransactionType.TRANSFER_DESTINATION, txId), tx);
+    });
+    transactionService.markAsUsed(txId);
+  }
+
+  //the source's lock keeps other debits out while a sharded source borrows across its shards
+  private void applyTransferSharded(Account fromAcc, Account toAcc, Long amount, TxId txId) {
+    validateTransfer(fromAcc, toAcc, txId);
+    transactionHelper.runTransactional(tx -> {
+      if (ShardedBalances.isSharded(fromAcc)) {
+        sharded.debit(fromAcc, amount, tx);
+      } else if (accounts.removeBalanceTransactional(fromAcc.getId(), amount, tx) == null) {
+        throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+      }
+      if (ShardedBalances.isSharded(toAcc)) {
+        sharded.credit(toAcc, amount, tx);
+      } else if (accounts.addBalanceTransactional(toAcc.getId(), amount, tx) == null) {
+        throw new EntityNotFoundException("Account cannot be found");
+      }
+      transactionService
+          .saveTransactional(
+              buildTransaction(fromAcc, amount, TransactionType.TRANSFER_SOURCE, txId), tx);
+      transactionService
+          .saveTransactional(
+              buildTransaction(toAcc, amount, TransactionType.TRANSFER_DESTINATION, txId), tx);
+    });
+    transactionService.markAsUsed(txId);
+  }
+
+  private void applyAll(List<Transfer> transfers, Set<Integer> accountIds,
+      List<TransferResult> results) {
+    var accountsById = accounts.getAll(accountIds).stream()
+        .collect(Collectors.toMap(Account::getId, Function.identity()));
+    var deltas = new HashMap<Integer, Long>();
+    var usedTxIds = new HashSet<TxId>();
+    var txs = new ArrayList<Transaction>(transfers.size() * 2);
+    for (var transfer : transfers) {
+      var txId = transfer.getTxId();
+      try {
+        var fromAcc = accountsById.get(transfer.getFromId());
+        var toAcc = accountsById.get(transfer.getToId());
+        if (usedTxIds.contains(txId)) {
+          throw new InvalidTransactionId(String.format("%s is not a valid txId", txId));
+        }
+        validateTransfer(fromAcc, toAcc, txId);
+        validateBalance(fromAcc, transfer.getAmount());
+        fromAcc.removeBalance(transfer.getAmount());
+        toAcc.addBalance(transfer.getAmount());
+        deltas.merge(fromAcc.getId(), -transfer.getAmount(), Long::sum);
+        deltas.merge(toAcc.getId(), transfer.getAmount(), Long::sum);
+        txs.add(buildTransaction(fromAcc, transfer.getAmount(), TransactionType.TRANSFER_SOURCE,
+            txId));
+        txs.add(buildTransaction(toAcc, transfer.getAmount(),
+            TransactionType.TRANSFER_DESTINATION, txId));
+        usedTxIds.add(txId);
+        results.add(TransferResult.success(txId.getValue()));
+      } catch (RuntimeException e) {
+        results.add(TransferResult.failure(txId.getValue(), e));
+      }
+    }
+    try {
+      transactionHelper.runTransactional(tx -> {
+        writeBack(accountsById, deltas, tx, "An account of the batch changed concurrently");
+        transactionService.saveAllTransactional(txs, tx);
+      });
+    } catch (ConcurrentUpdateException e) {
+      //only optimistic write-backs lose, their batch is redone on fresh reads
+      throw e;
+    } catch (RuntimeException e) {
+      log.error("Couldn't commit a batch of {} transfers, ", transfers.size(), e);
+      var failure = new SomethingWentWrongException(e);
+      results.replaceAll(result -> result.isSuccessful()
+          ? TransferResult.failure(result.getTxId(), failure) : result);
+      return;
+    }
+    usedTxIds.forEach(transactionService::markAsUsed);
+  }
+
+  //the source is read once and debited with the sum of the legs, every leg only adds a balance
+  //and a row to the batched writes
+  private void applyPayment(Integer from, List<PaymentLeg> legs, TxId txId,
+      Set<Integer> accountIds) {
+    validateTxId(txId);
+    var accountsById = accounts.getAll(accountIds).stream()
+        .collect(Collectors.toMap(Account::getId, Function.identity()));
+    var fromAcc = accountsById.get(from);
+    if (fromAcc == null) {
+      throw new EntityNotFoundException("Account cannot be found");
+    }
+    var total = 0L;
+    for (var leg : legs) {
+      var toAcc = accountsById.get(leg.getToId());
+      if (toAcc == null) {
+        throw new EntityNotFoundException("Account cannot be found");
+      }
+      if (toAcc.getCurrency() != fromAcc.getCurrency()) {
+        throw new CurrencyMismatchException(
+            "Source and destination account currencies are different");
+      }
+      try {
+        total = Math.addExact(total, leg.getAmount());
+      } catch (ArithmeticException e) {
+        throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+      }
+    }
+    validateBalance(fromAcc, total);
+    var deltas = new HashMap<Integer, Long>();
+    var txs = new ArrayList<Transaction>(legs.size() + 1);
+    fromAcc.removeBalance(total);
+    deltas.merge(from, -total, Long::sum);
+    txs.add(buildTransaction(fromAcc, total, TransactionType.TRANSFER_SOURCE, txId));
+    for (int i = 0; i < legs.size(); i++) {
+      var leg = legs.get(i);
+      var toAcc = accountsById.get(leg.getToId());
+      toAcc.addBalance(leg.getAmount());
+      deltas.merge(toAcc.getId(), leg.getAmount(), Long::sum);
+      txs.add(buildTransaction(toAcc, leg.getAmount(), TransactionType.TRANSFER_DESTINATION,
+          txId.leg(i + 1)));
+    }
+    transactionHelper.runTransactional(tx -> {
+      writeBack(accountsById, deltas, tx,
+          String.format("An account of the payment from %d changed concurrently", from));
+      transactionService.saveAllTransactional(txs, tx);
+    });
+    transactionService.markAsUsed(txId);
+  }
+
+  protected Account get(Integer id) {
+    var acc = accounts.get(id);
+    if (acc == null) {
+      throw new EntityNotFoundException(String.format("Account cannot be found: %d", id));
+    }
+    return acc;
+  }
+
+  //null unless the account exists and is sharded, the others take the subclass's path
+  protected Account shardedAccount(Integer id) {
+    var account = accounts.get(id);
+    return account != null && ShardedBalances.isSharded(account) ? account : null;
+  }
+
+  protected static boolean involvesShardedAccount(Account fromAcc, Account toAcc) {
+    return fromAcc != null && toAcc != null
+        && (ShardedBalances.isSharded(fromAcc) || ShardedBalances.isSharded(toAcc));
+  }
+
+  //a debit always locks its account, credits to a sharded account lock nothing
+  private static List<Integer> lockedBySharded(Account fromAcc, Account toAcc) {
+    return ShardedBalances.isSharded(toAcc) || fromAcc.getId().equals(toAcc.getId())
+        ? List.of(fromAcc.getId()) : List.of(fromAcc.getId(), toAcc.getId());
+  }
+
+  protected static CompletableFuture<Void> wrapLockFailure(CompletableFuture<Void> ack,
+      Integer id) {
+    return Lock.onLockFailure(ack, e -> log.error("Couldn't acquire lock for {}, ", id, e));
+  }
+
+  protected void validateTxId(TxId txId) {
+    if (!transactionService.isUsable(txId)) {
+      throw new InvalidTransactionId(String.format("%s is not a valid txId", txId));
+    }
+  }
+
+  protected void validateTransfer(Account from, Account to, TxId txId) {
+    validateTxId(txId);
+    if (from == null || to == null) {
+      throw new EntityNotFoundException("Account cannot be found");
+    }
+    if (from.getCurrency() != to.getCurrency()) {
+      throw new CurrencyMismatchException(
+          "Source and destination account currencies are different");
+    }
+  }
+
+  //batches and optimistic transfers apply their transfers to the loaded accounts, holds
+  //reserve part of the balance
+  protected static void validateBalance(Account from, Long amount) {
+    if (from.getAvailableBalance().compareTo(amount) < 0) {
+      throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+    }
+  }
+}
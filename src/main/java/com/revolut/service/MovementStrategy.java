@@ -0,0 +1,31 @@
+package com.revolut.service;
+
+import com.revolut.domain.PaymentLeg;
+import com.revolut.domain.Transfer;
+import com.revolut.domain.TransferResult;
+import com.revolut.domain.TxId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+//How money movements are applied: the account locks, version checks, combined credits or a
+//ledger engine. App picks one for the configuration, the services only put replays on top.
+//The futures fail with the same domain exceptions the other methods throw.
+public interface MovementStrategy {
+
+  CompletableFuture<Void> deposit(Integer id, Long amount, TxId txId);
+
+  CompletableFuture<Void> withdraw(Integer id, Long amount, TxId txId);
+
+  CompletableFuture<Void> transfer(Integer from, Integer to, Long amount, TxId txId);
+
+  CompletableFuture<Void> delete(Integer id);
+
+  //applies every transfer it can, failures are per item
+  List<TransferResult> transferAll(List<Transfer> transfers);
+
+  //debits from once and credits every leg: either the whole payment is applied or none of it
+  void payMulti(Integer from, List<PaymentLeg> legs, TxId txId);
+
+  //splits the account's balance across shards sub-balances, 1 merges them back
+  void reshard(Integer id, int shards);
+}
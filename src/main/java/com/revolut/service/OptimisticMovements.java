@@ -0,0 +1,143 @@
+package com.revolut.service;
+
+import static com.revolut.service.TransactionService.buildTransaction;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Exceptions.ConcurrentUpdateException;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.TxId;
+import com.revolut.repo.AccountRepo;
+import com.revolut.repo.TransactionHelper;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.jooq.Configuration;
+
+//Deposits, withdrawals and transfers only lock their txId and compare-and-swap the accounts'
+//versions, retrying when another writer won. Batches and multi payments still take their account
+//locks, but optimistic writers don't, so a batch which lost to one is redone on fresh reads.
+//Sharded accounts keep the locked path, their shards have no versions.
+public class OptimisticMovements extends LockedMovements {
+
+  private final OptimisticRetry optimistic;
+
+  public OptimisticMovements(
+      AccountRepo accounts,
+      Lock lock,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService,
+      OptimisticRetry optimistic
+  ) {
+    super(accounts, lock, transactionHelper, transactionService);
+    this.optimistic = optimistic;
+  }
+
+  @Override
+  public CompletableFuture<Void> withdraw(Integer id, Long amount, TxId txId) {
+    if (shardedAccount(id) != null) {
+      return super.withdraw(id, amount, txId);
+    }
+    return wrapLockFailure(lock.runWithTxIdLockAsync(txId.getValue(),
+        () -> optimistic.run(() -> applyWithdraw(id, amount, txId))), id);
+  }
+
+  @Override
+  protected CompletableFuture<Void> depositUnsharded(Integer id, Long amount, TxId txId) {
+    return lock.runWithTxIdLockAsync(txId.getValue(),
+        () -> optimistic.run(() -> applyDeposit(id, amount, txId)));
+  }
+
+  @Override
+  protected CompletableFuture<Void> transferUnsharded(Integer from, Integer to, Long amount,
+      TxId txId) {
+    return lock.runWithTxIdLockAsync(txId.getValue(),
+        () -> optimistic.run(() -> applyTransfer(from, to, amount, txId)));
+  }
+
+  @Override
+  protected void attempt(Runnable attempt) {
+    optimistic.run(attempt);
+  }
+
+  //the other accounts are written back whole unless their version moved
+  @Override
+  protected void writeBack(Map<Integer, Account> accountsById, Map<Integer, Long> deltas,
+      Configuration tx, String conflict) {
+    var changed = deltas.keySet().stream()
+        .map(accountsById::get)
+        .filter(acc -> !ShardedBalances.isSharded(acc))
+        .collect(Collectors.toList());
+    if (!accounts.updateBalancesTransactional(changed, tx)) {
+      throw new ConcurrentUpdateException(conflict);
+    }
+    deltas.forEach((id, delta) -> {
+      var acc = accountsById.get(id);
+      if (ShardedBalances.isSharded(acc)) {
+        writeShardedDelta(acc, delta, tx);
+      }
+    });
+  }
+
+  //an attempt: read, check and write back the account unless it changed in between
+  private void applyWithdraw(Integer id, Long amount, TxId txId) {
+    validateTxId(txId);
+    var account = get(id);
+    if (account.getAvailableBalance() < amount) {
+      throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+    }
+    account.removeBalance(amount);
+    transactionHelper.runTransactional(tx -> {
+      compareAndSwap(account, tx);
+      transactionService
+          .saveTransactional(buildTransaction(account, amount, TransactionType.WITHDRAW, txId),
+              tx);
+    });
+    transactionService.markAsUsed(txId);
+  }
+
+  private void applyDeposit(Integer id, Long amount, TxId txId) {
+    var account = get(id);
+    validateTxId(txId);
+    account.addBalance(amount);
+    transactionHelper.runTransactional(tx -> {
+      compareAndSwap(account, tx);
+      transactionService
+          .saveTransactional(buildTransaction(account, amount, TransactionType.DEPOSIT, txId),
+              tx);
+    });
+    transactionService.markAsUsed(txId);
+  }
+
+  //an attempt: read, check and write back both accounts unless either changed in between
+  private void applyTransfer(Integer from, Integer to, Long amount, TxId txId) {
+    var fromAcc = accounts.get(from);
+    var toAcc = from.equals(to) ? fromAcc : accounts.get(to);
+    validateTransfer(fromAcc, toAcc, txId);
+    validateBalance(fromAcc, amount);
+    fromAcc.removeBalance(amount);
+    toAcc.addBalance(amount);
+    var changed = fromAcc == toAcc ? List.of(fromAcc) : List.of(fromAcc, toAcc);
+    transactionHelper.runTransactional(tx -> {
+      if (!accounts.updateBalancesTransactional(changed, tx)) {
+        throw new ConcurrentUpdateException(
+            String.format("Account changed concurrently: %d or %d", from, to));
+      }
+      transactionService
+          .saveTransactional(
+              buildTransaction(fromAcc, amount, TransactionType.TRANSFER_SOURCE, txId), tx);
+      transactionService
+          .saveTransactional(
+              buildTransaction(toAcc, amount, TransactionType.TRANSFER_DESTINATION, txId), tx);
+    });
+    transactionService.markAsUsed(txId);
+  }
+
+  private void compareAndSwap(Account account, Configuration tx) {
+    if (!accounts.updateTransactional(account, tx)) {
+      throw new ConcurrentUpdateException(
+          String.format("Account changed concurrently: %d", account.getId()));
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.revolut.service;
+
+import com.revolut.domain.Exceptions.ConcurrentUpdateException;
+import com.revolut.metrics.Metrics;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+//Reruns an optimistic attempt while it loses compare-and-swaps, up to maxAttempts times. Before
+//each rerun it sleeps a random time below an exponentially growing cap ("full jitter"), so
+//writers which collided on one account don't collide again in lockstep.
+public class OptimisticRetry {
+
+  public static final int DEFAULT_MAX_ATTEMPTS = 8;
+  public static final long DEFAULT_BASE_BACKOFF_NANOS = 50_000L;
+  public static final long DEFAULT_MAX_BACKOFF_NANOS = 5_000_000L;
+
+  private final int maxAttempts;
+  private final long baseBackoffNanos;
+  private final long maxBackoffNanos;
+  private final LongAdder conflicts;
+  private final LongAdder exhausted;
+
+  public OptimisticRetry() {
+    this(new Metrics());
+  }
+
+  public OptimisticRetry(Metrics metrics) {
+    this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF_NANOS, DEFAULT_MAX_BACKOFF_NANOS, metrics);
+  }
+
+  public OptimisticRetry(int maxAttempts, long baseBackoffNanos, long maxBackoffNanos,
+      Metrics metrics) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("Attempts must be positive: " + maxAttempts);
+    }
+    this.maxAttempts = maxAttempts;
+    this.baseBackoffNanos = baseBackoffNanos;
+    this.maxBackoffNanos = maxBackoffNanos;
+    this.conflicts = metrics.counter("bank_optimistic_conflicts_total",
+        "Optimistic writes which lost a compare-and-swap");
+    this.exhausted = metrics.counter("bank_optimistic_exhausted_total",
+        "Optimistic writes which lost every attempt");
+  }
+
+  //attempt must leave nothing behind when it throws ConcurrentUpdateException, which is
+  //rethrown once the last attempt lost too. Other failures aren't retried.
+  public void run(Runnable attempt) {
+    for (int attempts = 1; ; attempts++) {
+      try {
+        attempt.run();
+        return;
+      } catch (ConcurrentUpdateException e) {
+        conflicts.increment();
+        if (attempts >= maxAttempts) {
+          exhausted.increment();
+          throw e;
+        }
+        LockSupport.parkNanos(backoffNanos(attempts));
+      }
+    }
+  }
+
+  private long backoffNanos(int attempts) {
+    var cap = Math.min(maxBackoffNanos, baseBackoffNanos << Math.min(attempts - 1, 30));
+    return cap <= 0L ? 0L : ThreadLocalRandom.current().nextLong(cap + 1);
+  }
+}
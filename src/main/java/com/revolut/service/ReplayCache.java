@@ -0,0 +1,143 @@
+package com.revolut.service;
+
+import com.revolut.domain.PaymentLeg;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.TxId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import lombok.Value;
+
+//Results of money requests by txId, so a client retrying a request whose response it lost gets
+//the first attempt's outcome instead of a 400, without taking a lock or touching the DB. A retry
+//of a request still in flight waits for it. A failed attempt is forgotten, its txId wasn't used
+//and a retry runs again. Only the same request replays, anything else under a used txId still
+//runs into its txId validation.
+//Entries are kept in buckets per minute of the txId's timestamp like TransactionIdRegistry, so a
+//minute leaving the validity window is dropped at once, and a minute takes maxPerMinute at most.
+public class ReplayCache {
+
+  public static final int DEFAULT_MAX_PER_MINUTE = 200_000;
+  private static final long BUCKET_SIZE_IN_MS = 1_000L * 60L; //1 min
+  private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+  private final AtomicReferenceArray<Bucket> buckets;
+  private final int maxPerMinute;
+
+  public ReplayCache() {
+    this(TransactionService.TRANSACTION_ID_VALIDITY_IN_MS, DEFAULT_MAX_PER_MINUTE);
+  }
+
+  public ReplayCache(long validityInMs, int maxPerMinute) {
+    //+2 for the partially elapsed minutes at both ends of the window
+    this.buckets = new AtomicReferenceArray<>((int) (validityInMs / BUCKET_SIZE_IN_MS) + 2);
+    this.maxPerMinute = maxPerMinute;
+  }
+
+  //runs attempt unless request already ran or runs under txId, throws what attempt throws
+  public void runOnce(TxId txId, Request request, Runnable attempt) {
+    LedgerEngine.await(runOnceAsync(txId, request, () -> {
+      attempt.run();
+      return DONE;
+    }));
+  }
+
+  //a replay gets the first attempt's future, failures thrown by attempt itself pass through
+  public CompletableFuture<Void> runOnceAsync(TxId txId, Request request,
+      Supplier<CompletableFuture<Void>> attempt) {
+    if (!TransactionService.validateTxId(txId)) {
+      return attempt.get();
+    }
+    var bucket = bucketOf(txId.getTimestampMs());
+    if (bucket == null || bucket.outcomes.size() >= maxPerMinute) {
+      return attempt.get();
+    }
+    var outcome = new Outcome(request);
+    var first = bucket.outcomes.putIfAbsent(txId.getValue(), outcome);
+    if (first != null) {
+      return first.request.equals(request) ? first.result.copy() : attempt.get();
+    }
+    CompletableFuture<Void> result;
+    try {
+      result = attempt.get();
+    } catch (RuntimeException e) {
+      bucket.outcomes.remove(txId.getValue(), outcome);
+      outcome.result.completeExceptionally(e);
+      throw e;
+    }
+    result.whenComplete((ignored, e) -> {
+      if (e == null) {
+        outcome.result.complete(null);
+      } else {
+        bucket.outcomes.remove(txId.getValue(), outcome);
+        outcome.result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+
+  //null if the minute's slot is taken by a newer minute, the txId is expired by then
+  private Bucket bucketOf(long txTimestampMs) {
+    var epoch = txTimestampMs / BUCKET_SIZE_IN_MS;
+    var index = (int) (epoch % buckets.length());
+    while (true) {
+      var bucket = buckets.get(index);
+      if (bucket != null && bucket.epoch > epoch) {
+        return null;
+      }
+      if (bucket != null && bucket.epoch == epoch) {
+        return bucket;
+      }
+      buckets.compareAndSet(index, bucket, new Bucket(epoch));
+    }
+  }
+
+  //what a txId was used for, a transfer is its TRANSFER_SOURCE, a multi payment its legs
+  @Value
+  public static class Request {
+
+    TransactionType type;
+    Integer accountId;
+    Integer toAccountId;
+    Long amount;
+    List<PaymentLeg> legs;
+
+    public static Request deposit(Integer id, Long amount) {
+      return new Request(TransactionType.DEPOSIT, id, null, amount, null);
+    }
+
+    public static Request withdraw(Integer id, Long amount) {
+      return new Request(TransactionType.WITHDRAW, id, null, amount, null);
+    }
+
+    public static Request transfer(Integer from, Integer to, Long amount) {
+      return new Request(TransactionType.TRANSFER_SOURCE, from, to, amount, null);
+    }
+
+    public static Request payment(Integer from, List<PaymentLeg> legs) {
+      return new Request(TransactionType.TRANSFER_SOURCE, from, null, null, legs);
+    }
+  }
+
+  private static final class Outcome {
+
+    private final Request request;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    private Outcome(Request request) {
+      this.request = request;
+    }
+  }
+
+  private static final class Bucket {
+
+    private final long epoch;
+    private final ConcurrentHashMap<String, Outcome> outcomes = new ConcurrentHashMap<>();
+
+    private Bucket(long epoch) {
+      this.epoch = epoch;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.revolut.service;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.repo.AccountRepo;
+import java.util.concurrent.ThreadLocalRandom;
+import org.jooq.Configuration;
+
+//Money movements of sharded accounts, as deltas on one shard at a time. A credit lands on a
+//random shard, so concurrent credits to a hot account mostly update different rows and need no
+//account lock. A debit must hold the account's lock: no other debit runs meanwhile and credits
+//only grow the shards, so once it saw enough balance its borrowing can't fail.
+public class ShardedBalances {
+
+  public static final int MAX_SHARDS = 64;
+
+  private final AccountRepo accounts;
+
+  public ShardedBalances(AccountRepo accounts) {
+    this.accounts = accounts;
+  }
+
+  public static boolean isSharded(Account account) {
+    return account.getShards() > 1;
+  }
+
+  //a shard dropped by a concurrent reshard is missed, its account still has shard 0
+  public void credit(Account to, Long amount, Configuration tx) {
+    var shard = ThreadLocalRandom.current().nextInt(to.getShards());
+    if (!accounts.addShardBalanceTransactional(to.getId(), shard, amount, tx)
+        && (shard == 0 || !accounts.addShardBalanceTransactional(to.getId(), 0, amount, tx))) {
+      throw new EntityNotFoundException(String.format("Account cannot be found: %d", to.getId()));
+    }
+  }
+
+  //takes the amount from a random shard if it holds enough, otherwise borrows the rest from the
+  //following shards
+  public void debit(Account from, Long amount, Configuration tx) {
+    var first = ThreadLocalRandom.current().nextInt(from.getShards());
+    if (accounts.removeShardBalanceTransactional(from.getId(), first, amount, tx)) {
+      return;
+    }
+    var balances = accounts.getShardBalancesTransactional(from.getId(), tx);
+    if (balances == null) {
+      throw new EntityNotFoundException(
+          String.format("Account cannot be found: %d", from.getId()));
+    }
+    var total = 0L;
+    for (var balance : balances) {
+      total += balance;
+    }
+    if (total < amount) {
+      throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+    }
+    var left = amount;
+    for (int i = 0; i < balances.length && left > 0; i++) {
+      var shard = (first + i) % balances.length;
+      var taken = Math.min(left, balances[shard]);
+      if (taken > 0
+          && !accounts.removeShardBalanceTransactional(from.getId(), shard, taken, tx)) {
+        throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+      }
+      left -= taken;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package com.revolut.service;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+//Hashed timing wheel: deadlines are hashed into slots by their tick, and only the slot under the
+//hand is visited on a tick. An entry more than a turn away waits out its remaining rounds in its
+//slot. Scheduling and cancelling are O(1), nothing runs for an entry until its slot comes up, so
+//millions of pending entries cost one small object each and no timer or scan.
+//Any thread may schedule and cancel, scheduled entries are handed over through a lock-free queue.
+//A single thread advances the wheel and owns the slots. Cancelled entries are unlinked when the
+//hand passes them.
+public class TimingWheel<T> {
+
+  private final Timeout<T>[] slots;
+  private final int mask;
+  private final long tickMs;
+  private final ConcurrentLinkedQueue<Timeout<T>> scheduled = new ConcurrentLinkedQueue<>();
+  //the last tick the hand went over, only touched by the advancing thread
+  private long tick;
+
+  @SuppressWarnings("unchecked")
+  public TimingWheel(int slots, long tickMs, long startMs) {
+    if (Integer.bitCount(slots) != 1 || tickMs < 1) {
+      throw new IllegalArgumentException(
+          String.format("Slots must be a power of 2 and the tick positive: %d, %d", slots, tickMs));
+    }
+    this.slots = new Timeout[slots];
+    this.mask = slots - 1;
+    this.tickMs = tickMs;
+    this.tick = startMs / tickMs;
+  }
+
+  public Timeout<T> schedule(T item, long deadlineMs) {
+    var timeout = new Timeout<>(item, deadlineMs);
+    scheduled.add(timeout);
+    return timeout;
+  }
+
+  //moves the hand over every tick up to nowMs and hands each due entry to expired, on the
+  //calling thread. Entries already due when they were scheduled expire on the next tick.
+  //Returns how many expired.
+  public int advance(long nowMs, Consumer<T> expired) {
+    var expiredCount = 0;
+    var nowTick = nowMs / tickMs;
+    while (tick < nowTick) {
+      tick++;
+      place();
+      expiredCount += expireSlot((int) (tick & mask), expired);
+    }
+    return expiredCount;
+  }
+
+  private void place() {
+    Timeout<T> timeout;
+    while ((timeout = scheduled.poll()) != null) {
+      if (timeout.isCancelled()) {
+        continue;
+      }
+      //rounded up, an entry expires up to a tick late but never early
+      var deadlineTick = Math.max((timeout.deadlineMs + tickMs - 1) / tickMs, tick);
+      timeout.rounds = (deadlineTick - tick) / slots.length;
+      var slot = (int) (deadlineTick & mask);
+      timeout.next = slots[slot];
+      if (slots[slot] != null) {
+        slots[slot].previous = timeout;
+      }
+      slots[slot] = timeout;
+    }
+  }
+
+  private int expireSlot(int slot, Consumer<T> expired) {
+    var count = 0;
+    var timeout = slots[slot];
+    while (timeout != null) {
+      var next = timeout.next;
+      if (timeout.isCancelled()) {
+        unlink(slot, timeout);
+      } else if (timeout.rounds > 0) {
+        timeout.rounds--;
+      } else {
+        unlink(slot, timeout);
+        if (timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+          expired.accept(timeout.item);
+          count++;
+        }
+      }
+      timeout = next;
+    }
+    return count;
+  }
+
+  private void unlink(int slot, Timeout<T> timeout) {
+    if (timeout.previous == null) {
+      slots[slot] = timeout.next;
+    } else {
+      timeout.previous.next = timeout.next;
+    }
+    if (timeout.next != null) {
+      timeout.next.previous = timeout.previous;
+    }
+    timeout.previous = null;
+    timeout.next = null;
+  }
+
+  public static final class Timeout<T> {
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final T item;
+    private final long deadlineMs;
+    //cancel and expiry race for it, exactly one of them wins
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    //owned by the advancing thread
+    private long rounds;
+    private Timeout<T> previous;
+    private Timeout<T> next;
+
+    private Timeout(T item, long deadlineMs) {
+      this.item = item;
+      this.deadlineMs = deadlineMs;
+    }
+
+    public T getItem() {
+      return item;
+    }
+
+    public long getDeadlineMs() {
+      return deadlineMs;
+    }
+
+    //false if it already expired or was cancelled, then it isn't the caller's anymore
+    public boolean cancel() {
+      return state.compareAndSet(PENDING, CANCELLED);
+    }
+
+    private boolean isCancelled() {
+      return state.get() == CANCELLED;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.revolut.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//keeps used txIds only for as long as they can still pass TransactionService.validateTxId,
+//so lookups are O(1) and memory is bounded by the validity window, not by the ledger size
+public class TransactionIdRegistry {
+
+  private static final long BUCKET_SIZE_IN_MS = 1_000L * 60L; //1 min
+
+  private final AtomicReferenceArray<Bucket> buckets;
+
+  public TransactionIdRegistry(long validityInMs) {
+    //+2 for the partially elapsed minutes at both ends of the window
+    buckets = new AtomicReferenceArray<>((int) (validityInMs / BUCKET_SIZE_IN_MS) + 2);
+  }
+
+  public boolean contains(String txId, long txTimestampMs) {
+    var epoch = txTimestampMs / BUCKET_SIZE_IN_MS;
+    var bucket = buckets.get(indexOf(epoch));
+    return bucket != null && bucket.epoch == epoch && bucket.txIds.contains(txId);
+  }
+
+  public void add(String txId, long txTimestampMs) {
+    var epoch = txTimestampMs / BUCKET_SIZE_IN_MS;
+    var index = indexOf(epoch);
+    while (true) {
+      var bucket = buckets.get(index);
+      if (bucket != null && bucket.epoch > epoch) {
+        return; //slot already reused by a newer minute, txId is expired anyway
+      }
+      if (bucket != null && bucket.epoch == epoch) {
+        bucket.txIds.add(txId);
+        return;
+      }
+      buckets.compareAndSet(index, bucket, new Bucket(epoch));
+    }
+  }
+
+  private int indexOf(long epoch) {
+    return (int) (epoch % buckets.length());
+  }
+
+  private static final class Bucket {
+
+    private final long epoch;
+    private final Set<String> txIds = ConcurrentHashMap.newKeySet();
+
+    private Bucket(long epoch) {
+      this.epoch = epoch;
+    }
+  }
+}
@@ -1,92 +1,123 @@
 package com.revolut.service;
 
 import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.HistoryCursor;
 import com.revolut.domain.Transaction;
 import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.TxId;
 import com.revolut.repo.TransactionRepo;
+import com.revolut.service.txid.SnowflakeTxIdGenerator;
 import java.time.Instant;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.jooq.Configuration;
 
 @Slf4j
 public class TransactionService {
 
-  private static final Long TRANSACTION_ID_VALIDITY_IN_MS = 1_000L * 60L * 5L; //5 min
+  public static final long TRANSACTION_ID_VALIDITY_IN_MS = 1_000L * 60L * 5L; //5 min
 
-  private static AtomicInteger txCounter = new AtomicInteger();
   private final TransactionRepo transactions;
+  private final TxIdGenerator txIdGenerator;
+  private final TransactionIdRegistry usedTxIds = new TransactionIdRegistry(
+      TRANSACTION_ID_VALIDITY_IN_MS);
 
   public TransactionService(TransactionRepo transactions) {
+    this(transactions, new SnowflakeTxIdGenerator(0));
+  }
+
+  public TransactionService(TransactionRepo transactions, TxIdGenerator txIdGenerator) {
     this.transactions = transactions;
+    this.txIdGenerator = txIdGenerator;
+    loadRecentlyUsedTxIds();
   }
 
   public List<Transaction> getAll() {
     return transactions.getAll();
   }
 
+  public List<Transaction> getPage(Integer afterId, int limit) {
+    return transactions.getPage(afterId, limit);
+  }
+
+  //must be closed by the caller
+  public Stream<Transaction> streamAll() {
+    return transactions.streamAll();
+  }
+
+  public List<Transaction> getAccountHistory(Integer accountId, Long fromMs, Long toMs,
+      HistoryCursor before, int limit) {
+    return transactions.getAccountHistory(accountId, fromMs, toMs, before, limit);
+  }
+
   public void saveTransactional(Transaction tx, Configuration config) {
     transactions.saveTransactional(tx, config);
   }
 
-  public boolean isUsable(String txId) {
-    if (!validateTxId(txId)) {
-      return false;
-    }
-    if (transactions.exists(txId)) {
-      return false;
-    }
-    return true;
+  public void saveAllTransactional(List<Transaction> txs, Configuration config) {
+    transactions.saveAllTransactional(txs, config);
+  }
+
+  //the validity window and reuse are checked here only, under the caller's lock: a txId
+  //checked earlier may expire or get used while the request waits for the lock
+  public boolean isUsable(TxId txId) {
+    return validateTxId(txId) && !usedTxIds.contains(txId.getValue(), txId.getTimestampMs());
+  }
+
+  //must be called once the transaction that consumed txId is committed
+  public void markAsUsed(TxId txId) {
+    usedTxIds.add(txId.getValue(), txId.getTimestampMs());
+  }
+
+  //txIds used before a restart are still in the ledger and may still be valid
+  private void loadRecentlyUsedTxIds() {
+    var since = Instant.now().toEpochMilli() - TRANSACTION_ID_VALIDITY_IN_MS;
+    transactions.getTransactionIdsSince(since).stream()
+        .map(TxId::of)
+        .filter(TransactionService::validateTxId)
+        .forEach(this::markAsUsed);
   }
 
-  //should be implemented differently in a distributed system
   public String generateTxId() {
-    return String.format("tx-%d-%d", Instant.now().toEpochMilli(), txCounter.incrementAndGet());
-  }
-
-  public static boolean validateTxId(String txId) {
-    if (txId == null) {
-      return false;
-    }
-    String[] parts = txId.split("-");
-    if (parts.length != 3) {
-      return false;
-    }
-    if (!parts[0].equals("tx")) {
-      return false;
-    }
-    if (parts[1].length() != 13) {
-      return false;
-    }
-    try {
-      Long timestamp = Long.parseLong(parts[1]);
-      if (Instant.now().toEpochMilli() - timestamp > TRANSACTION_ID_VALIDITY_IN_MS) { //expired
-        return false;
-      }
-      if (timestamp > Instant.now().toEpochMilli()) { //txId from future?
-        return false;
-      }
-    } catch (NumberFormatException e) {
-      return false;
-    }
-    return true;
+    return txIdGenerator.next();
+  }
+
+  public static boolean validateTxId(TxId txId) {
+    return isInValidityWindow(txId.getTimestampMs(), System.currentTimeMillis());
+  }
+
+  private static boolean isInValidityWindow(long txTimestampMs, long nowMs) {
+    return txTimestampMs != TxId.INVALID_TIMESTAMP
+        && nowMs - txTimestampMs <= TRANSACTION_ID_VALIDITY_IN_MS //not expired
+        && txTimestampMs <= nowMs; //not from the future
   }
 
   public static Transaction buildTransaction(
       Account account,
       Long amount,
       TransactionType type,
-      String txId
+      TxId txId
+  ) {
+    return buildTransaction(account.getId(), account.getCurrency(), amount, type, txId);
+  }
+
+  public static Transaction buildTransaction(
+      Integer accountId,
+      Currency currency,
+      Long amount,
+      TransactionType type,
+      TxId txId
   ) {
     return Transaction
         .builder()
         .amount(amount)
-        .currency(account.getCurrency())
+        .currency(currency)
         .operationName(type)
-        .relatedEntityId(account.getId())
+        .relatedEntityId(accountId)
         .timestampMs(Instant.now().toEpochMilli())
-        .transactionId(txId)
+        .transactionId(txId.getValue())
         .build();
   }
 }
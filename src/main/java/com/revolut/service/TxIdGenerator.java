@@ -0,0 +1,8 @@
+package com.revolut.service;
+
+//Generates txIds in the format TxId.of accepts, tx-<13 digit epoch ms>-<suffix without '-'>,
+//and no longer than Validators.MAX_PAYMENT_TX_ID_LENGTH, so they fit TxId.MAX_LENGTH with any leg.
+public interface TxIdGenerator {
+
+  String next();
+}
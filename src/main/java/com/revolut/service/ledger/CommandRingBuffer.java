@@ -0,0 +1,63 @@
+package com.revolut.service.ledger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+//multi producer, single consumer ring of pre-allocated slots in the style of the LMAX disruptor
+final class CommandRingBuffer {
+
+  private static final long PRODUCER_BACK_OFF_IN_NS = 1_000L;
+
+  private final LedgerCommand[] slots;
+  private final int mask;
+  //sequence last written to each slot, the consumer reads a slot only after it is published
+  private final AtomicLongArray published;
+  private final AtomicLong claimed = new AtomicLong(-1);
+  private volatile long released = -1;
+
+  CommandRingBuffer(int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+    }
+    slots = new LedgerCommand[capacity];
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new LedgerCommand();
+    }
+    mask = capacity - 1;
+    published = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      published.set(i, -1);
+    }
+  }
+
+  //blocks while the ring is full, that is the back pressure on producers
+  long claim() {
+    while (true) {
+      var current = claimed.get();
+      var next = current + 1;
+      if (next - slots.length > released) {
+        LockSupport.parkNanos(PRODUCER_BACK_OFF_IN_NS);
+      } else if (claimed.compareAndSet(current, next)) {
+        return next;
+      }
+    }
+  }
+
+  LedgerCommand get(long sequence) {
+    return slots[(int) sequence & mask];
+  }
+
+  void publish(long sequence) {
+    published.set((int) sequence & mask, sequence);
+  }
+
+  boolean isPublished(long sequence) {
+    return published.get((int) sequence & mask) == sequence;
+  }
+
+  //consumer side, every slot up to and including sequence can be reused by producers
+  void release(long sequence) {
+    released = sequence;
+  }
+}
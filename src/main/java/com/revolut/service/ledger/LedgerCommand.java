@@ -0,0 +1,37 @@
+package com.revolut.service.ledger;
+
+import com.revolut.domain.TxId;
+import java.util.concurrent.CompletableFuture;
+
+//pre-allocated ring buffer slot, reused for every command that lands on it
+final class LedgerCommand {
+
+  enum Type {
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER,
+    DELETE
+  }
+
+  Type type;
+  int accountId;
+  int toAccountId;
+  long amount;
+  TxId txId;
+  CompletableFuture<Void> ack;
+
+  void set(Type type, int accountId, int toAccountId, long amount, TxId txId,
+      CompletableFuture<Void> ack) {
+    this.type = type;
+    this.accountId = accountId;
+    this.toAccountId = toAccountId;
+    this.amount = amount;
+    this.txId = txId;
+    this.ack = ack;
+  }
+
+  void clear() {
+    txId = null;
+    ack = null;
+  }
+}
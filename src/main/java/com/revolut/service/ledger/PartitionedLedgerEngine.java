@@ -0,0 +1,274 @@
+package com.revolut.service.ledger;
+
+import static com.revolut.service.TransactionService.buildTransaction;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Exceptions.CurrencyMismatchException;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.InvalidTransactionId;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Exceptions.SomethingWentWrongException;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.TxId;
+import com.revolut.repo.AccountRepo;
+import com.revolut.repo.TransactionHelper;
+import com.revolut.service.LedgerEngine;
+import com.revolut.service.TransactionService;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.Configuration;
+
+//Accounts are split into partitions by id % partitions and every partition has its own single
+//thread, the only writer of its accounts, so there is nothing to lock. A transfer inside a
+//partition is one DB transaction. A transfer between partitions is two: the source partition
+//debits and saves the TRANSFER_SOURCE transaction, then hands the credit to the destination's
+//partition, which adds the balance and saves TRANSFER_DESTINATION. The TRANSFER_SOURCE row is
+//the intent, the unique (txId, operation) key lets exactly one TRANSFER_DESTINATION complete it:
+//the credit, or a refund to the source if the destination is gone by then. Callers are
+//acknowledged once the transfer is complete, in between the amount is in neither balance.
+@Slf4j
+public class PartitionedLedgerEngine implements LedgerEngine, AutoCloseable {
+
+  private static final long CLOSE_WAIT_PARK_IN_NS = 100_000L;
+
+  private final AccountRepo accounts;
+  private final TransactionHelper transactionHelper;
+  private final TransactionService transactionService;
+  private final ExecutorService[] partitions;
+  //txIds of the requests which aren't acknowledged yet, the same txId may come to two partitions
+  private final Set<TxId> inFlightTxIds = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile boolean running = true;
+
+  public PartitionedLedgerEngine(
+      AccountRepo accounts,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService
+  ) {
+    this(accounts, transactionHelper, transactionService,
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  public PartitionedLedgerEngine(
+      AccountRepo accounts,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService,
+      int partitions
+  ) {
+    if (partitions < 1) {
+      throw new IllegalArgumentException("Partitions must be positive: " + partitions);
+    }
+    this.accounts = accounts;
+    this.transactionHelper = transactionHelper;
+    this.transactionService = transactionService;
+    this.partitions = new ExecutorService[partitions];
+    for (int i = 0; i < partitions; i++) {
+      var name = "ledger-partition-" + i;
+      this.partitions[i] = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  public int getPartitions() {
+    return partitions.length;
+  }
+
+  @Override
+  public CompletableFuture<Void> deposit(Integer id, Long amount, TxId txId) {
+    return submit(id, txId, ack -> {
+      var account = load(id);
+      validateTxId(txId);
+      transactionHelper.runTransactional(tx -> {
+        if (accounts.addBalanceTransactional(id, amount, tx) == null) {
+          throw new EntityNotFoundException(String.format("Account cannot be found: %d", id));
+        }
+        transactionService.saveTransactional(
+            buildTransaction(account, amount, TransactionType.DEPOSIT, txId), tx);
+      });
+      transactionService.markAsUsed(txId);
+      ack.complete(null);
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> withdraw(Integer id, Long amount, TxId txId) {
+    return submit(id, txId, ack -> {
+      validateTxId(txId);
+      var account = load(id);
+      transactionHelper.runTransactional(tx -> {
+        if (accounts.removeBalanceTransactional(id, amount, tx) == null) {
+          throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+        }
+        transactionService.saveTransactional(
+            buildTransaction(account, amount, TransactionType.WITHDRAW, txId), tx);
+      });
+      transactionService.markAsUsed(txId);
+      ack.complete(null);
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> transfer(Integer from, Integer to, Long amount, TxId txId) {
+    return submit(from, txId, ack -> {
+      validateTxId(txId);
+      Account fromAcc;
+      Account toAcc;
+      try {
+        fromAcc = load(from);
+        toAcc = load(to);
+      } catch (EntityNotFoundException e) {
+        throw new EntityNotFoundException("Account cannot be found");
+      }
+      if (fromAcc.getCurrency() != toAcc.getCurrency()) {
+        throw new CurrencyMismatchException(
+            "Source and destination account currencies are different");
+      }
+      if (partitionOf(from) == partitionOf(to)) {
+        transactionHelper.runTransactional(tx -> {
+          debit(fromAcc, amount, txId, tx);
+          credit(toAcc, amount, txId, tx);
+        });
+        transactionService.markAsUsed(txId);
+        ack.complete(null);
+        return;
+      }
+      transactionHelper.runTransactional(tx -> debit(fromAcc, amount, txId, tx));
+      transactionService.markAsUsed(txId);
+      partitions[partitionOf(to)].execute(() -> completeTransfer(fromAcc, toAcc, amount, txId,
+          ack));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> delete(Integer id) {
+    return submit(id, null, ack -> {
+      load(id);
+      accounts.delete(id);
+      ack.complete(null);
+    });
+  }
+
+  //waits for the requests which are already accepted, including the second half of transfers
+  @Override
+  public void close() throws InterruptedException {
+    running = false;
+    while (inFlight.get() > 0) {
+      LockSupport.parkNanos(CLOSE_WAIT_PARK_IN_NS);
+    }
+    for (var partition : partitions) {
+      partition.shutdown();
+    }
+    for (var partition : partitions) {
+      partition.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  int partitionOf(Integer id) {
+    return Math.floorMod(id, partitions.length);
+  }
+
+  //runs on the destination's partition
+  private void completeTransfer(Account fromAcc, Account toAcc, Long amount, TxId txId,
+      CompletableFuture<Void> ack) {
+    try {
+      transactionHelper.runTransactional(tx -> credit(toAcc, amount, txId, tx));
+      ack.complete(null);
+    } catch (RuntimeException e) {
+      log.warn("Couldn't credit {} for {}, refunding {}, ", toAcc.getId(), txId,
+          fromAcc.getId(), e);
+      partitions[partitionOf(fromAcc.getId())].execute(() -> refund(fromAcc, amount, txId, ack,
+          e));
+    }
+  }
+
+  //runs on the source's partition, the transfer fails either way
+  private void refund(Account fromAcc, Long amount, TxId txId, CompletableFuture<Void> ack,
+      RuntimeException cause) {
+    try {
+      transactionHelper.runTransactional(tx -> credit(fromAcc, amount, txId, tx));
+    } catch (RuntimeException e) {
+      log.error("Couldn't refund {} to {} for {}, ", amount, fromAcc.getId(), txId, e);
+      ack.completeExceptionally(new SomethingWentWrongException(e));
+      return;
+    }
+    ack.completeExceptionally(cause instanceof EntityNotFoundException
+        ? new EntityNotFoundException("Account cannot be found")
+        : new SomethingWentWrongException(cause));
+  }
+
+  private void debit(Account fromAcc, Long amount, TxId txId, Configuration tx) {
+    if (accounts.removeBalanceTransactional(fromAcc.getId(), amount, tx) == null) {
+      throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+    }
+    transactionService.saveTransactional(
+        buildTransaction(fromAcc, amount, TransactionType.TRANSFER_SOURCE, txId), tx);
+  }
+
+  //also used for refunds, so the transfer ends with one TRANSFER_DESTINATION in any case
+  private void credit(Account toAcc, Long amount, TxId txId, Configuration tx) {
+    if (accounts.addBalanceTransactional(toAcc.getId(), amount, tx) == null) {
+      throw new EntityNotFoundException(
+          String.format("Account cannot be found: %d", toAcc.getId()));
+    }
+    transactionService.saveTransactional(
+        buildTransaction(toAcc, amount, TransactionType.TRANSFER_DESTINATION, txId), tx);
+  }
+
+  private CompletableFuture<Void> submit(Integer id, TxId txId, Operation operation) {
+    var ack = new CompletableFuture<Void>();
+    if (!running) {
+      ack.completeExceptionally(
+          new SomethingWentWrongException(new IllegalStateException("Ledger is stopped")));
+      return ack;
+    }
+    if (txId != null && !inFlightTxIds.add(txId)) {
+      ack.completeExceptionally(
+          new InvalidTransactionId(String.format("%s is not a valid txId", txId)));
+      return ack;
+    }
+    inFlight.incrementAndGet();
+    ack.whenComplete((ignored, e) -> {
+      if (txId != null) {
+        inFlightTxIds.remove(txId);
+      }
+      inFlight.decrementAndGet();
+    });
+    partitions[partitionOf(id)].execute(() -> {
+      try {
+        operation.apply(ack);
+      } catch (RuntimeException e) {
+        ack.completeExceptionally(e);
+      }
+    });
+    return ack;
+  }
+
+  private void validateTxId(TxId txId) {
+    if (!transactionService.isUsable(txId)) {
+      throw new InvalidTransactionId(String.format("%s is not a valid txId", txId));
+    }
+  }
+
+  private Account load(Integer id) {
+    var account = accounts.get(id);
+    if (account == null) {
+      throw new EntityNotFoundException(String.format("Account cannot be found: %d", id));
+    }
+    return account;
+  }
+
+  private interface Operation {
+
+    void apply(CompletableFuture<Void> ack);
+  }
+}
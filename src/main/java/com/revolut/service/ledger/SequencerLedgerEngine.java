@@ -0,0 +1,327 @@
+package com.revolut.service.ledger;
+
+import static com.revolut.service.TransactionService.buildTransaction;
+
+import com.revolut.domain.Currency;
+import com.revolut.domain.Exceptions.CurrencyMismatchException;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.InvalidTransactionId;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Exceptions.SomethingWentWrongException;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.TxId;
+import com.revolut.repo.AccountRepo;
+import com.revolut.repo.TransactionHelper;
+import com.revolut.service.LedgerEngine;
+import com.revolut.service.TransactionService;
+import com.revolut.service.ledger.LedgerCommand.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+
+//Single writer: one thread owns every balance and applies commands in ring buffer order, so no
+//locks are needed. Each drained batch is written to the DB in one transaction and callers are
+//acknowledged only after that commit.
+@Slf4j
+public class SequencerLedgerEngine implements LedgerEngine, AutoCloseable {
+
+  public static final int DEFAULT_RING_SIZE = 1 << 16;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 1_024;
+  private static final int INITIAL_ACCOUNT_CAPACITY = 1_024;
+  private static final int IDLE_SPINS = 100;
+  private static final long IDLE_PARK_IN_NS = 50_000L;
+
+  private final AccountRepo accounts;
+  private final TransactionHelper transactionHelper;
+  private final TransactionService transactionService;
+  private final CommandRingBuffer ring;
+  private final int maxBatchSize;
+  private final Thread sequencer;
+  //publishers check running after announcing themselves and close waits for the announced ones,
+  //so a command is either rejected or published before the sequencer is told to stop
+  private final AtomicInteger publishers = new AtomicInteger();
+  private volatile boolean running = true;
+  private volatile boolean stopped;
+
+  //everything below is owned by the sequencer thread. Accounts are indexed densely in the order
+  //they are loaded, ids can be sparse.
+  private final Map<Integer, Integer> indexes = new HashMap<>();
+  private int[] ids = new int[INITIAL_ACCOUNT_CAPACITY];
+  private long[] balances = new long[INITIAL_ACCOUNT_CAPACITY];
+  private Currency[] currencies = new Currency[INITIAL_ACCOUNT_CAPACITY]; //null if not loaded
+  private final BitSet touched = new BitSet(); //by index
+  private final List<Transaction> pendingTransactions = new ArrayList<>();
+  private final Set<TxId> pendingTxIds = new HashSet<>();
+  private final List<CompletableFuture<Void>> pendingAcks = new ArrayList<>();
+
+  public SequencerLedgerEngine(
+      AccountRepo accounts,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService
+  ) {
+    this(accounts, transactionHelper, transactionService, DEFAULT_RING_SIZE,
+        DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  public SequencerLedgerEngine(
+      AccountRepo accounts,
+      TransactionHelper transactionHelper,
+      TransactionService transactionService,
+      int ringSize,
+      int maxBatchSize
+  ) {
+    this.accounts = accounts;
+    this.transactionHelper = transactionHelper;
+    this.transactionService = transactionService;
+    this.ring = new CommandRingBuffer(ringSize);
+    this.maxBatchSize = maxBatchSize;
+    this.sequencer = new Thread(this::run, "ledger-sequencer");
+    this.sequencer.setDaemon(true);
+  }
+
+  public SequencerLedgerEngine start() {
+    sequencer.start();
+    return this;
+  }
+
+  @Override
+  public CompletableFuture<Void> deposit(Integer id, Long amount, TxId txId) {
+    return publish(Type.DEPOSIT, id, -1, amount, txId);
+  }
+
+  @Override
+  public CompletableFuture<Void> withdraw(Integer id, Long amount, TxId txId) {
+    return publish(Type.WITHDRAW, id, -1, amount, txId);
+  }
+
+  @Override
+  public CompletableFuture<Void> transfer(Integer from, Integer to, Long amount, TxId txId) {
+    return publish(Type.TRANSFER, from, to, amount, txId);
+  }
+
+  @Override
+  public CompletableFuture<Void> delete(Integer id) {
+    return publish(Type.DELETE, id, -1, 0L, null);
+  }
+
+  //drains the commands which are already published before stopping
+  @Override
+  public void close() throws InterruptedException {
+    running = false;
+    while (publishers.get() > 0) {
+      Thread.onSpinWait();
+    }
+    stopped = true;
+    sequencer.join();
+  }
+
+  private CompletableFuture<Void> publish(Type type, int accountId, int toAccountId, long amount,
+      TxId txId) {
+    var ack = new CompletableFuture<Void>();
+    publishers.incrementAndGet();
+    try {
+      if (!running) {
+        ack.completeExceptionally(
+            new SomethingWentWrongException(new IllegalStateException("Ledger is stopped")));
+        return ack;
+      }
+      var sequence = ring.claim();
+      ring.get(sequence).set(type, accountId, toAccountId, amount, txId, ack);
+      ring.publish(sequence);
+      return ack;
+    } finally {
+      publishers.decrementAndGet();
+    }
+  }
+
+  private void run() {
+    long next = 0;
+    int idleCount = 0;
+    while (!stopped || ring.isPublished(next)) {
+      var end = next;
+      while (end - next < maxBatchSize && ring.isPublished(end)) {
+        apply(ring.get(end));
+        end++;
+      }
+      if (end == next) {
+        idle(++idleCount);
+        continue;
+      }
+      idleCount = 0;
+      commit();
+      for (var sequence = next; sequence < end; sequence++) {
+        ring.get(sequence).clear();
+      }
+      ring.release(end - 1);
+      next = end;
+    }
+  }
+
+  private void idle(int idleCount) {
+    if (idleCount < IDLE_SPINS) {
+      Thread.onSpinWait();
+    } else {
+      LockSupport.parkNanos(IDLE_PARK_IN_NS);
+    }
+  }
+
+  private void apply(LedgerCommand cmd) {
+    try {
+      switch (cmd.type) {
+        case DEPOSIT:
+          applyDeposit(cmd);
+          break;
+        case WITHDRAW:
+          applyWithdraw(cmd);
+          break;
+        case TRANSFER:
+          applyTransfer(cmd);
+          break;
+        case DELETE:
+          applyDelete(cmd);
+          break;
+        default:
+          throw new IllegalStateException("Unknown command " + cmd.type);
+      }
+    } catch (RuntimeException e) {
+      cmd.ack.completeExceptionally(e);
+    }
+  }
+
+  private void applyDeposit(LedgerCommand cmd) {
+    var index = load(cmd.accountId);
+    validateTxId(cmd.txId);
+    balances[index] += cmd.amount;
+    record(index, cmd.amount, TransactionType.DEPOSIT, cmd.txId);
+    accept(cmd);
+  }
+
+  private void applyWithdraw(LedgerCommand cmd) {
+    validateTxId(cmd.txId);
+    var index = load(cmd.accountId);
+    validateBalance(index, cmd.amount);
+    balances[index] -= cmd.amount;
+    record(index, cmd.amount, TransactionType.WITHDRAW, cmd.txId);
+    accept(cmd);
+  }
+
+  private void applyTransfer(LedgerCommand cmd) {
+    validateTxId(cmd.txId);
+    int from;
+    int to;
+    try {
+      from = load(cmd.accountId);
+      to = load(cmd.toAccountId);
+    } catch (EntityNotFoundException e) {
+      throw new EntityNotFoundException("Account cannot be found");
+    }
+    if (currencies[from] != currencies[to]) {
+      throw new CurrencyMismatchException(
+          "Source and destination account currencies are different");
+    }
+    validateBalance(from, cmd.amount);
+    balances[from] -= cmd.amount;
+    balances[to] += cmd.amount;
+    record(from, cmd.amount, TransactionType.TRANSFER_SOURCE, cmd.txId);
+    record(to, cmd.amount, TransactionType.TRANSFER_DESTINATION, cmd.txId);
+    accept(cmd);
+  }
+
+  private void applyDelete(LedgerCommand cmd) {
+    commit(); //pending balance updates go first, like they would under the lock
+    var index = load(cmd.accountId);
+    accounts.delete(cmd.accountId);
+    currencies[index] = null;
+    cmd.ack.complete(null);
+  }
+
+  private void validateTxId(TxId txId) {
+    if (pendingTxIds.contains(txId) || !transactionService.isUsable(txId)) {
+      throw new InvalidTransactionId(String.format("%s is not a valid txId", txId));
+    }
+  }
+
+  private void validateBalance(int index, long amount) {
+    if (balances[index] < amount) {
+      throw new NotEnoughBalanceException("Source account doesn't have enough balance");
+    }
+  }
+
+  //the account's index, loaded from the DB unless it already is
+  private int load(int id) {
+    var index = indexes.get(id);
+    if (index != null && currencies[index] != null) {
+      return index;
+    }
+    var account = accounts.get(id);
+    if (account == null) {
+      throw new EntityNotFoundException(String.format("Account cannot be found: %d", id));
+    }
+    if (index == null) {
+      index = indexes.size();
+      if (index >= ids.length) {
+        var capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        balances = Arrays.copyOf(balances, capacity);
+        currencies = Arrays.copyOf(currencies, capacity);
+      }
+      indexes.put(id, index);
+      ids[index] = id;
+    }
+    balances[index] = account.getBalance();
+    currencies[index] = account.getCurrency();
+    return index;
+  }
+
+  private void record(int index, long amount, TransactionType type, TxId txId) {
+    touched.set(index);
+    pendingTransactions.add(
+        buildTransaction(ids[index], currencies[index], amount, type, txId));
+  }
+
+  private void accept(LedgerCommand cmd) {
+    pendingTxIds.add(cmd.txId);
+    pendingAcks.add(cmd.ack);
+  }
+
+  private void commit() {
+    if (pendingAcks.isEmpty()) {
+      return;
+    }
+    try {
+      transactionHelper.runTransactional(tx -> {
+        for (var index = touched.nextSetBit(0); index >= 0;
+            index = touched.nextSetBit(index + 1)) {
+          accounts.updateBalanceTransactional(ids[index], balances[index], tx);
+        }
+        transactionService.saveAllTransactional(pendingTransactions, tx);
+      });
+      pendingTxIds.forEach(transactionService::markAsUsed);
+      pendingAcks.forEach(ack -> ack.complete(null));
+    } catch (RuntimeException e) {
+      log.error("Couldn't commit a batch of {} ledger commands, ", pendingAcks.size(), e);
+      //in-memory balances are ahead of the DB now, they are reloaded on next use
+      for (var index = touched.nextSetBit(0); index >= 0;
+          index = touched.nextSetBit(index + 1)) {
+        currencies[index] = null;
+      }
+      var failure = new SomethingWentWrongException(e);
+      pendingAcks.forEach(ack -> ack.completeExceptionally(failure));
+    } finally {
+      touched.clear();
+      pendingTransactions.clear();
+      pendingTxIds.clear();
+      pendingAcks.clear();
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package com.revolut.service.txid;
+
+import com.revolut.service.TxIdGenerator;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//one shared counter, every thread contends on it and ids are only unique on a single node
+public class CounterTxIdGenerator implements TxIdGenerator {
+
+  private final AtomicInteger txCounter = new AtomicInteger();
+
+  @Override
+  public String next() {
+    return String.format("tx-%d-%d", Instant.now().toEpochMilli(), txCounter.incrementAndGet());
+  }
+}
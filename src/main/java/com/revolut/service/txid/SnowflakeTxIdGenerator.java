@@ -0,0 +1,72 @@
+package com.revolut.service.txid;
+
+import com.revolut.domain.TxId;
+import com.revolut.service.TxIdGenerator;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Snowflake-style ids: tx-<epoch ms>-<hex of sequence << 10 | node id>.
+//Each thread takes blocks of sequence numbers from a shared counter, so threads only meet once
+//every SEQUENCE_BLOCK_SIZE ids, and the node id keeps instances running side by side apart.
+//Sequences restart with the JVM, which is safe as long as the clock doesn't go back across
+//a restart. Even then a clash is caught as a reused txId.
+public class SnowflakeTxIdGenerator implements TxIdGenerator {
+
+  public static final int MAX_NODE_ID = (1 << 10) - 1;
+  private static final int NODE_ID_BITS = 10;
+  private static final long SEQUENCE_MASK = (1L << 50) - 1; //15 hex digits with the node id
+  private static final int SEQUENCE_BLOCK_SIZE = 1_024;
+  private static final int TIMESTAMP_DIGITS = 13;
+  private static final int SUFFIX_START = 3 + TIMESTAMP_DIGITS + 1;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final int nodeId;
+  private final AtomicLong sequence = new AtomicLong();
+  private final ThreadLocal<ThreadState> threadState = ThreadLocal.withInitial(ThreadState::new);
+
+  public SnowflakeTxIdGenerator(int nodeId) {
+    if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+      throw new IllegalArgumentException(
+          String.format("Node id must be between 0 and %d: %d", MAX_NODE_ID, nodeId));
+    }
+    this.nodeId = nodeId;
+  }
+
+  @Override
+  public String next() {
+    var state = threadState.get();
+    if (state.next == state.end) {
+      state.next = sequence.getAndAdd(SEQUENCE_BLOCK_SIZE);
+      state.end = state.next + SEQUENCE_BLOCK_SIZE;
+    }
+    var suffix = ((state.next++ & SEQUENCE_MASK) << NODE_ID_BITS) | nodeId;
+    return format(state.buffer, System.currentTimeMillis(), suffix);
+  }
+
+  private static String format(char[] buffer, long timestampMs, long suffix) {
+    buffer[0] = 't';
+    buffer[1] = 'x';
+    buffer[2] = '-';
+    for (int i = SUFFIX_START - 2; i >= 3; i--) {
+      buffer[i] = (char) ('0' + timestampMs % 10);
+      timestampMs /= 10;
+    }
+    buffer[SUFFIX_START - 1] = '-';
+    var length = SUFFIX_START + hexLength(suffix);
+    for (int i = length - 1; i >= SUFFIX_START; i--) {
+      buffer[i] = HEX_DIGITS[(int) (suffix & 0xf)];
+      suffix >>>= 4;
+    }
+    return new String(buffer, 0, length);
+  }
+
+  private static int hexLength(long value) {
+    return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 3) / 4);
+  }
+
+  private static final class ThreadState {
+
+    private final char[] buffer = new char[TxId.MAX_LENGTH];
+    private long next;
+    private long end;
+  }
+}
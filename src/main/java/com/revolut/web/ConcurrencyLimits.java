@@ -0,0 +1,73 @@
+package com.revolut.web;
+
+import com.revolut.domain.Exceptions.OverloadedException;
+import com.revolut.metrics.Metrics;
+import io.javalin.http.Handler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+//Separate caps on in-flight reads and money movements, so a burst of transfers can't take every
+//Jetty thread from the GETs and the other way round. A request over its cap is shed with 503
+//right away, it never queues. An async result keeps its permit until the future completes.
+public class ConcurrencyLimits {
+
+  public static final int DEFAULT_MAX_READS = 128;
+  public static final int DEFAULT_MAX_MOVEMENTS = 64;
+  private static final long RETRY_AFTER_SECONDS = 1L;
+  private static final String SHED_METRIC = "bank_shed_requests_total";
+  private static final String SHED_HELP = "Requests shed by the read and money movement limits";
+
+  private final Limit reads;
+  private final Limit movements;
+
+  public ConcurrencyLimits(int maxReads, int maxMovements, Metrics metrics) {
+    this.reads = new Limit("reads", maxReads, metrics);
+    this.movements = new Limit("money movements", maxMovements, metrics);
+  }
+
+  public Handler reads(Handler handler) {
+    return reads.wrap(handler);
+  }
+
+  public Handler movements(Handler handler) {
+    return movements.wrap(handler);
+  }
+
+  private static final class Limit {
+
+    private final String name;
+    private final Semaphore permits;
+    private final LongAdder shed;
+
+    private Limit(String name, int max, Metrics metrics) {
+      if (max < 1) {
+        throw new IllegalArgumentException("Limit of " + name + " must be positive: " + max);
+      }
+      this.name = name;
+      this.permits = new Semaphore(max);
+      this.shed = metrics.counter(SHED_METRIC, SHED_HELP, "limit", name.replace(' ', '_'));
+    }
+
+    private Handler wrap(Handler handler) {
+      return ctx -> {
+        if (!permits.tryAcquire()) {
+          shed.increment();
+          throw new OverloadedException(String.format("Too many concurrent %s", name),
+              RETRY_AFTER_SECONDS);
+        }
+        try {
+          handler.handle(ctx);
+        } catch (Exception e) {
+          permits.release();
+          throw e;
+        }
+        var result = ctx.resultFuture();
+        if (result == null) {
+          permits.release();
+        } else {
+          result.whenComplete((ignored, e) -> permits.release());
+        }
+      };
+    }
+  }
+}
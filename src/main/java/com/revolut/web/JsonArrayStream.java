@@ -0,0 +1,83 @@
+package com.revolut.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+//Serializes a stream into a JSON array one element at a time while it is being read, so only
+//the element being written is in memory. Closes the stream once exhausted or closed.
+public class JsonArrayStream extends InputStream {
+
+  private static final byte[] OPEN = {'['};
+  private static final byte[] CLOSE = {']'};
+
+  private final Stream<?> elements;
+  private final Iterator<?> iterator;
+  private final ObjectMapper mapper;
+  private final ByteArrayOutputStream element = new ByteArrayOutputStream();
+  private byte[] buffer = OPEN;
+  private int position;
+  private boolean first = true;
+  private boolean done;
+
+  public JsonArrayStream(Stream<?> elements, ObjectMapper mapper) {
+    this.elements = elements;
+    this.iterator = elements.iterator();
+    this.mapper = mapper;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!fill()) {
+      return -1;
+    }
+    return buffer[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    var read = 0;
+    while (read < len && fill()) {
+      var count = Math.min(len - read, buffer.length - position);
+      System.arraycopy(buffer, position, b, off + read, count);
+      position += count;
+      read += count;
+    }
+    return read == 0 ? -1 : read;
+  }
+
+  @Override
+  public void close() {
+    done = true;
+    elements.close();
+  }
+
+  //false if everything is written
+  private boolean fill() throws IOException {
+    while (position == buffer.length) {
+      if (done) {
+        return false;
+      }
+      position = 0;
+      if (iterator.hasNext()) {
+        element.reset();
+        if (!first) {
+          element.write(',');
+        }
+        mapper.writeValue(element, iterator.next());
+        buffer = element.toByteArray();
+        first = false;
+      } else {
+        buffer = CLOSE;
+        close();
+      }
+    }
+    return true;
+  }
+}
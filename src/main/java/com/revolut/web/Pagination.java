@@ -0,0 +1,36 @@
+package com.revolut.web;
+
+import static com.revolut.web.Validators.PARAM_AFTER;
+import static com.revolut.web.Validators.PARAM_LIMIT;
+
+import io.javalin.http.Context;
+import io.javalin.plugin.json.JavalinJackson;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+//List endpoints either return one keyset page or stream the whole table
+public class Pagination {
+
+  //cursors to pass as ?after= or ?before= for the next page, missing on the last page
+  public static final String HEADER_NEXT_AFTER = "X-Next-After";
+  public static final String HEADER_NEXT_BEFORE = "X-Next-Before";
+
+  public static boolean isPageRequested(Context ctx) {
+    return ctx.queryParam(PARAM_AFTER) != null || ctx.queryParam(PARAM_LIMIT) != null;
+  }
+
+  public static <T> void writePage(Context ctx, List<T> page, int limit, String nextHeader,
+      Function<T, Object> cursorOf) {
+    if (page.size() == limit) {
+      ctx.header(nextHeader, String.valueOf(cursorOf.apply(page.get(page.size() - 1))));
+    }
+    ctx.json(page);
+  }
+
+  //the stream is closed by Javalin once the response is written
+  public static void writeAll(Context ctx, Stream<?> all) {
+    ctx.contentType("application/json");
+    ctx.result(new JsonArrayStream(all, JavalinJackson.getObjectMapper()));
+  }
+}
@@ -1,23 +1,81 @@
 package com.revolut.web;
 
-import com.revolut.service.TransactionService;
+import com.revolut.domain.HistoryCursor;
+import com.revolut.domain.TxId;
+import com.revolut.service.HoldService;
+import com.revolut.service.ShardedBalances;
+import com.revolut.web.reqresp.req.BatchTransferRequest;
+import com.revolut.web.reqresp.req.CaptureHoldRequest;
 import com.revolut.web.reqresp.req.DepositBalanceRequest;
+import com.revolut.web.reqresp.req.HoldRequest;
+import com.revolut.web.reqresp.req.MultiPaymentRequest;
 import com.revolut.web.reqresp.req.NewAccountRequest;
+import com.revolut.web.reqresp.req.ShardAccountRequest;
 import com.revolut.web.reqresp.req.TransferBalanceRequest;
 import com.revolut.web.reqresp.req.UpdateAccountRequest;
 import com.revolut.web.reqresp.req.WithdrawBalanceRequest;
 import io.javalin.http.Context;
+import java.util.Arrays;
 
 public class Validators {
 
   public static final Long MIN_ACC_CREATION_BALANCE_INCLUDING = 0L;
   public static final Long MIN_TRANSFER_AMOUNT_EXCLUDING = 0L;
   public static final int MAX_NAME_LENGTH = 25;
+  public static final int MAX_TRANSFER_BATCH_SIZE = 10_000;
+  public static final int MAX_PAYMENT_LEGS = 10_000;
+  public static final int MAX_PAYMENT_TX_ID_LENGTH = TxId.maxLengthWithLegs(MAX_PAYMENT_LEGS);
+  public static final int DEFAULT_PAGE_SIZE = 100;
+  public static final int MAX_PAGE_SIZE = 1_000;
+  public static final String PARAM_AFTER = "after";
+  public static final String PARAM_LIMIT = "limit";
+  public static final String PARAM_FROM = "from";
+  public static final String PARAM_TO = "to";
+  public static final String PARAM_BEFORE = "before";
 
   public static int validatePathParamUserId(Context ctx, String param) {
     return ctx.pathParam(param, Integer.class).check(id -> id >= 0).get();
   }
 
+  public static String validatePathParamTxId(Context ctx, String param) {
+    return ctx.pathParam(param, String.class)
+        .check(txId -> TxId.of(txId).isWellFormed(), "txId is not valid").get();
+  }
+
+  //ids start from 0, so -1 is before the first page
+  public static int validateQueryParamAfter(Context ctx) {
+    return ctx.queryParam(PARAM_AFTER, Integer.class, "-1")
+        .check(id -> id >= -1, "after cannot be smaller than -1")
+        .get();
+  }
+
+  public static int validateQueryParamLimit(Context ctx) {
+    return ctx.queryParam(PARAM_LIMIT, Integer.class, String.valueOf(DEFAULT_PAGE_SIZE))
+        .check(limit -> limit > 0 && limit <= MAX_PAGE_SIZE,
+            String.format("limit must be between 1 and %d", MAX_PAGE_SIZE))
+        .get();
+  }
+
+  public static long validateQueryParamFrom(Context ctx) {
+    return ctx.queryParam(PARAM_FROM, Long.class, "0")
+        .check(from -> from >= 0, "from cannot be negative")
+        .get();
+  }
+
+  public static long validateQueryParamTo(Context ctx, long from) {
+    return ctx.queryParam(PARAM_TO, Long.class, String.valueOf(Long.MAX_VALUE))
+        .check(to -> to > from, "to must be greater than from")
+        .get();
+  }
+
+  //null if the param is missing
+  public static HistoryCursor validateQueryParamBefore(Context ctx) {
+    var before = ctx.queryParam(PARAM_BEFORE, String.class)
+        .check(value -> HistoryCursor.parse(value) != null, "before is not a valid cursor")
+        .getOrNull();
+    return HistoryCursor.parse(before);
+  }
+
   public static NewAccountRequest validateNewAccountRequest(Context ctx) {
     return ctx
         .bodyValidator(NewAccountRequest.class)
@@ -37,13 +95,61 @@ public class Validators {
         .getOrNull();
   }
 
+  public static ShardAccountRequest validateShardAccountRequest(Context ctx) {
+    return ctx
+        .bodyValidator(ShardAccountRequest.class)
+        .check(req -> req.getShards() != null && req.getShards() > 0
+                && req.getShards() <= ShardedBalances.MAX_SHARDS,
+            String.format("Shards must be between 1 and %d", ShardedBalances.MAX_SHARDS))
+        .getOrNull();
+  }
+
   public static TransferBalanceRequest validateTransferBalanceRequest(Context ctx) {
     return ctx
         .bodyValidator(TransferBalanceRequest.class)
         .check(req -> req.getAmount().compareTo(MIN_TRANSFER_AMOUNT_EXCLUDING) > 0,
             String.format("Amount cannot be equal or smaller than %d",
                 MIN_TRANSFER_AMOUNT_EXCLUDING.intValue()))
-        .check(req -> TransactionService.validateTxId(req.getTxId()), "txId is not valid")
+        .check(req -> isWellFormed(req.getTxId()), "txId is not valid")
+        .getOrNull();
+  }
+
+  public static BatchTransferRequest[] validateBatchTransferRequest(Context ctx) {
+    return ctx
+        .bodyValidator(BatchTransferRequest[].class)
+        .check(reqs -> reqs.length > 0 && reqs.length <= MAX_TRANSFER_BATCH_SIZE,
+            String.format("Batch size must be between 1 and %d", MAX_TRANSFER_BATCH_SIZE))
+        .check(reqs -> Arrays.stream(reqs).allMatch(req -> req.getFromId() != null
+                && req.getFromId() >= 0 && req.getToId() != null && req.getToId() >= 0),
+            "Account ids cannot be negative")
+        .check(reqs -> Arrays.stream(reqs).allMatch(req -> req.getAmount() != null
+                && req.getAmount().compareTo(MIN_TRANSFER_AMOUNT_EXCLUDING) > 0),
+            String.format("Amount cannot be equal or smaller than %d",
+                MIN_TRANSFER_AMOUNT_EXCLUDING.intValue()))
+        .check(reqs -> Arrays.stream(reqs).allMatch(req -> isWellFormed(req.getTxId())),
+            "txId is not valid")
+        .getOrNull();
+  }
+
+  public static MultiPaymentRequest validateMultiPaymentRequest(Context ctx) {
+    return ctx
+        .bodyValidator(MultiPaymentRequest.class)
+        .check(req -> req.getFromId() != null && req.getFromId() >= 0,
+            "Account ids cannot be negative")
+        .check(req -> req.getLegs() != null && !req.getLegs().isEmpty()
+                && req.getLegs().size() <= MAX_PAYMENT_LEGS,
+            String.format("Legs must be between 1 and %d", MAX_PAYMENT_LEGS))
+        .check(req -> req.getLegs().stream()
+                .allMatch(leg -> leg.getToId() != null && leg.getToId() >= 0),
+            "Account ids cannot be negative")
+        .check(req -> req.getLegs().stream().allMatch(leg -> leg.getAmount() != null
+                && leg.getAmount().compareTo(MIN_TRANSFER_AMOUNT_EXCLUDING) > 0),
+            String.format("Amount cannot be equal or smaller than %d",
+                MIN_TRANSFER_AMOUNT_EXCLUDING.intValue()))
+        .check(req -> isWellFormed(req.getTxId()), "txId is not valid")
+        .check(req -> req.getTxId().getValue().length() <= MAX_PAYMENT_TX_ID_LENGTH,
+            String.format("txId of a multi payment cannot be longer than %d",
+                MAX_PAYMENT_TX_ID_LENGTH))
         .getOrNull();
   }
 
@@ -53,7 +159,7 @@ public class Validators {
         .check(req -> req.getAmount().compareTo(MIN_TRANSFER_AMOUNT_EXCLUDING) > 0,
             String.format("Amount cannot be equal or smaller than %d",
                 MIN_TRANSFER_AMOUNT_EXCLUDING.intValue()))
-        .check(req -> TransactionService.validateTxId(req.getTxId()), "txId is not valid")
+        .check(req -> isWellFormed(req.getTxId()), "txId is not valid")
         .getOrNull();
   }
 
@@ -63,7 +169,40 @@ public class Validators {
         .check(req -> req.getAmount().compareTo(MIN_TRANSFER_AMOUNT_EXCLUDING) > 0,
             String.format("Amount cannot be equal or smaller than %d",
                 MIN_TRANSFER_AMOUNT_EXCLUDING.intValue()))
-        .check(req -> TransactionService.validateTxId(req.getTxId()), "txId is not valid")
+        .check(req -> isWellFormed(req.getTxId()), "txId is not valid")
         .getOrNull();
   }
+
+  public static HoldRequest validateHoldRequest(Context ctx) {
+    return ctx
+        .bodyValidator(HoldRequest.class)
+        .check(req -> req.getAmount() != null
+                && req.getAmount().compareTo(MIN_TRANSFER_AMOUNT_EXCLUDING) > 0,
+            String.format("Amount cannot be equal or smaller than %d",
+                MIN_TRANSFER_AMOUNT_EXCLUDING.intValue()))
+        .check(req -> isWellFormed(req.getTxId()), "txId is not valid")
+        .check(req -> req.getTtlSeconds() == null || (req.getTtlSeconds() > 0
+                && req.getTtlSeconds() <= HoldService.MAX_TTL_IN_MS / 1_000L),
+            String.format("ttlSeconds must be between 1 and %d", HoldService.MAX_TTL_IN_MS / 1_000L))
+        .getOrNull();
+  }
+
+  //the body is optional, without one the whole hold is captured
+  public static CaptureHoldRequest validateCaptureHoldRequest(Context ctx) {
+    if (ctx.body().isBlank()) {
+      return new CaptureHoldRequest();
+    }
+    return ctx
+        .bodyValidator(CaptureHoldRequest.class)
+        .check(req -> req.getAmount() == null
+                || req.getAmount().compareTo(MIN_TRANSFER_AMOUNT_EXCLUDING) > 0,
+            String.format("Amount cannot be equal or smaller than %d",
+                MIN_TRANSFER_AMOUNT_EXCLUDING.intValue()))
+        .getOrNull();
+  }
+
+  //txIds are parsed as the body is read, a missing one is null
+  private static boolean isWellFormed(TxId txId) {
+    return txId != null && txId.isWellFormed();
+  }
 }
@@ -1,18 +1,34 @@
 package com.revolut.web.handler;
 
+import static com.revolut.web.Pagination.HEADER_NEXT_AFTER;
+import static com.revolut.web.Pagination.isPageRequested;
+import static com.revolut.web.Pagination.writeAll;
+import static com.revolut.web.Pagination.writePage;
+import static com.revolut.web.Validators.validateBatchTransferRequest;
 import static com.revolut.web.Validators.validateDepositBalanceRequest;
+import static com.revolut.web.Validators.validateMultiPaymentRequest;
 import static com.revolut.web.Validators.validateNewAccountRequest;
 import static com.revolut.web.Validators.validatePathParamUserId;
+import static com.revolut.web.Validators.validateQueryParamAfter;
+import static com.revolut.web.Validators.validateQueryParamLimit;
+import static com.revolut.web.Validators.validateShardAccountRequest;
 import static com.revolut.web.Validators.validateTransferBalanceRequest;
 import static com.revolut.web.Validators.validateUpdateAccountRequest;
 import static com.revolut.web.Validators.validateWithdrawBalanceRequest;
+import static com.revolut.web.handler.ExceptionHandler.statusOf;
 
 import com.revolut.domain.Account;
+import com.revolut.domain.PaymentLeg;
+import com.revolut.domain.Transfer;
 import com.revolut.service.AccountService;
 import com.revolut.service.TransferService;
+import com.revolut.web.reqresp.req.BatchTransferRequest;
 import com.revolut.web.reqresp.req.DepositBalanceRequest;
+import com.revolut.web.reqresp.req.MultiPaymentRequest;
+import com.revolut.web.reqresp.resp.BatchTransferResponse;
 import com.revolut.web.reqresp.resp.ErrorResponse;
 import com.revolut.web.reqresp.req.NewAccountRequest;
+import com.revolut.web.reqresp.req.ShardAccountRequest;
 import com.revolut.web.reqresp.req.TransferBalanceRequest;
 import com.revolut.web.reqresp.req.UpdateAccountRequest;
 import io.javalin.http.Context;
@@ -22,7 +38,11 @@ import io.javalin.plugin.openapi.annotations.OpenApiContent;
 import io.javalin.plugin.openapi.annotations.OpenApiParam;
 import io.javalin.plugin.openapi.annotations.OpenApiRequestBody;
 import io.javalin.plugin.openapi.annotations.OpenApiResponse;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
+//money movements hand their futures to Javalin, which releases the Jetty thread until they
+//complete and passes failures to the exception handler
 public class AccountHandler {
 
   public static final String PARAM_USER_ID = "id";
@@ -63,6 +83,11 @@ public class AccountHandler {
       operationId = "getAllAccounts",
       path = "/accounts",
       method = HttpMethod.GET,
+      queryParams = {
+          @OpenApiParam(name = "after", type = Integer.class,
+              description = "Only accounts with a greater id, see the X-Next-After header"),
+          @OpenApiParam(name = "limit", type = Integer.class,
+              description = "Page size, up to 1000. Without after and limit all accounts are streamed")},
       tags = {"Account"},
       responses = {
           @OpenApiResponse(status = "200", content = {@OpenApiContent(from = Account[].class)}),
@@ -71,7 +96,13 @@ public class AccountHandler {
       }
   )
   public void getAll(Context ctx) {
-    ctx.json(accountService.getAll());
+    if (isPageRequested(ctx)) {
+      var limit = validateQueryParamLimit(ctx);
+      var page = accountService.getPage(validateQueryParamAfter(ctx), limit);
+      writePage(ctx, page, limit, HEADER_NEXT_AFTER, Account::getId);
+    } else {
+      writeAll(ctx, accountService.streamAll());
+    }
   }
 
   @OpenApi(
@@ -116,6 +147,31 @@ public class AccountHandler {
     ctx.status(204);
   }
 
+  @OpenApi(
+      summary = "Shard account by Id",
+      description = "Splits the balance of a hot account across sub-balances, so concurrent"
+          + " credits don't update the same row. 1 merges them back.",
+      operationId = "shardAccountById",
+      path = "/accounts/:id/shards",
+      method = HttpMethod.PUT,
+      pathParams = {
+          @OpenApiParam(name = "id", type = Integer.class, description = "The account Id")},
+      tags = {"Account"},
+      requestBody = @OpenApiRequestBody(content = {
+          @OpenApiContent(from = ShardAccountRequest.class)}),
+      responses = {
+          @OpenApiResponse(status = "204"),
+          @OpenApiResponse(status = "400", content = {@OpenApiContent(from = ErrorResponse.class)}),
+          @OpenApiResponse(status = "404", content = {@OpenApiContent(from = ErrorResponse.class)})
+      }
+  )
+  public void reshard(Context ctx) {
+    var request = validateShardAccountRequest(ctx);
+    var id = validatePathParamUserId(ctx, PARAM_USER_ID);
+    accountService.reshard(id, request.getShards());
+    ctx.status(204);
+  }
+
   @OpenApi(
       summary = "Transfer balance between accounts",
       operationId = "transfer",
@@ -138,7 +194,62 @@ public class AccountHandler {
     var request = validateTransferBalanceRequest(ctx);
     var fromId = validatePathParamUserId(ctx, PARAM_USER_FROM_ID);
     var toId = validatePathParamUserId(ctx, PARAM_USER_TO_ID);
-    transferService.transfer(fromId, toId, request.getAmount(), request.getTxId());
+    ctx.result(transferService.transferAsync(fromId, toId, request.getAmount(),
+        request.getTxId()));
+  }
+
+  @OpenApi(
+      summary = "Transfer balances in a batch",
+      description = "Transfers are applied in order, in a single DB transaction."
+          + " Every transfer gets its own result, a failed one doesn't affect the others.",
+      operationId = "transferBatch",
+      path = "/accounts/transfers:batch",
+      method = HttpMethod.POST,
+      requestBody = @OpenApiRequestBody(content = {
+          @OpenApiContent(from = BatchTransferRequest[].class)}),
+      tags = {"Account"},
+      responses = {
+          @OpenApiResponse(status = "200", content = {
+              @OpenApiContent(from = BatchTransferResponse[].class)}),
+          @OpenApiResponse(status = "400", content = {@OpenApiContent(from = ErrorResponse.class)})
+      }
+  )
+  public void transferBatch(Context ctx) {
+    var transfers = Arrays.stream(validateBatchTransferRequest(ctx))
+        .map(req -> new Transfer(req.getFromId(), req.getToId(), req.getAmount(), req.getTxId()))
+        .collect(Collectors.toList());
+    ctx.json(transferService.transferAll(transfers).stream()
+        .map(result -> result.isSuccessful()
+            ? new BatchTransferResponse(result.getTxId(), 204, null)
+            : new BatchTransferResponse(result.getTxId(), statusOf(result.getError()),
+                result.getError().getMessage()))
+        .collect(Collectors.toList()));
+  }
+
+  @OpenApi(
+      summary = "Pay many accounts from one",
+      description = "Debits the source with the sum of the legs and credits every leg, in a single"
+          + " DB transaction. Either the whole payment is applied or none of it. The debit is"
+          + " recorded under txId, the credits under txId.1, txId.2, ... in the order of the legs.",
+      operationId = "payMulti",
+      path = "/payments/multi",
+      method = HttpMethod.POST,
+      requestBody = @OpenApiRequestBody(content = {
+          @OpenApiContent(from = MultiPaymentRequest.class)}),
+      tags = {"Account"},
+      responses = {
+          @OpenApiResponse(status = "204"),
+          @OpenApiResponse(status = "400", content = {@OpenApiContent(from = ErrorResponse.class)}),
+          @OpenApiResponse(status = "404", content = {@OpenApiContent(from = ErrorResponse.class)})
+      }
+  )
+  public void payMulti(Context ctx) {
+    var request = validateMultiPaymentRequest(ctx);
+    var legs = request.getLegs().stream()
+        .map(leg -> new PaymentLeg(leg.getToId(), leg.getAmount()))
+        .collect(Collectors.toList());
+    transferService.payMulti(request.getFromId(), legs, request.getTxId());
+    ctx.status(204);
   }
 
   @OpenApi(
@@ -157,7 +268,7 @@ public class AccountHandler {
   )
   public void delete(Context ctx) {
     var id = validatePathParamUserId(ctx, PARAM_USER_ID);
-    accountService.delete(id);
+    ctx.result(accountService.deleteAsync(id));
   }
 
   @OpenApi(
@@ -180,8 +291,8 @@ public class AccountHandler {
   public void deposit(Context ctx) {
     var req = validateDepositBalanceRequest(ctx);
     var id = validatePathParamUserId(ctx, "id");
-    accountService.deposit(id, req.getAmount(), req.getTxId());
     ctx.status(204);
+    ctx.result(accountService.depositAsync(id, req.getAmount(), req.getTxId()));
   }
 
   @OpenApi(
@@ -204,7 +315,7 @@ public class AccountHandler {
   public void withdraw(Context ctx) {
     var req = validateWithdrawBalanceRequest(ctx);
     var id = validatePathParamUserId(ctx, "id");
-    accountService.withdraw(id, req.getAmount(), req.getTxId());
     ctx.status(204);
+    ctx.result(accountService.withdrawAsync(id, req.getAmount(), req.getTxId()));
   }
 }
@@ -0,0 +1,110 @@
+package com.revolut.web.handler;
+
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.repo.impl.CachingAccountRepo;
+import com.revolut.repo.impl.JournalCheckpointer.RecoveryStats;
+import com.revolut.service.LockProfiler;
+import com.revolut.service.LockProfiler.LockStats;
+import com.revolut.web.reqresp.resp.CacheStatsResponse;
+import com.revolut.web.reqresp.resp.ErrorResponse;
+import com.revolut.web.reqresp.resp.HotAccountResponse;
+import com.revolut.web.reqresp.resp.LockStatsResponse;
+import com.revolut.web.reqresp.resp.LockTimesResponse;
+import com.revolut.web.reqresp.resp.RecoveryStatsResponse;
+import io.javalin.http.Context;
+import io.javalin.plugin.openapi.annotations.HttpMethod;
+import io.javalin.plugin.openapi.annotations.OpenApi;
+import io.javalin.plugin.openapi.annotations.OpenApiContent;
+import io.javalin.plugin.openapi.annotations.OpenApiResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class AdminHandler {
+
+  private final CachingAccountRepo accountCache;
+  //null when the ledger isn't journaled
+  private final RecoveryStats recoveryStats;
+  private final LockProfiler lockProfiler;
+
+  public AdminHandler(CachingAccountRepo accountCache) {
+    this(accountCache, null);
+  }
+
+  public AdminHandler(CachingAccountRepo accountCache, RecoveryStats recoveryStats) {
+    this(accountCache, recoveryStats, new LockProfiler());
+  }
+
+  public AdminHandler(CachingAccountRepo accountCache, RecoveryStats recoveryStats,
+      LockProfiler lockProfiler) {
+    this.accountCache = accountCache;
+    this.recoveryStats = recoveryStats;
+    this.lockProfiler = lockProfiler;
+  }
+
+  @OpenApi(
+      summary = "Account cache counters",
+      operationId = "getAccountCacheStats",
+      path = "/admin/cache",
+      method = HttpMethod.GET,
+      tags = {"Admin"},
+      responses = {
+          @OpenApiResponse(status = "200", content = {@OpenApiContent(from = CacheStatsResponse.class)})
+      }
+  )
+  public void cacheStats(Context ctx) {
+    var stats = accountCache.stats();
+    ctx.json(new CacheStatsResponse(accountCache.size(), stats.hitCount(), stats.missCount(),
+        stats.evictionCount(), stats.hitRate()));
+  }
+
+  @OpenApi(
+      summary = "Startup recovery from the journal",
+      operationId = "getRecoveryStats",
+      path = "/admin/recovery",
+      method = HttpMethod.GET,
+      tags = {"Admin"},
+      responses = {
+          @OpenApiResponse(status = "200", content = {@OpenApiContent(from = RecoveryStatsResponse.class)}),
+          @OpenApiResponse(status = "404", content = {@OpenApiContent(from = ErrorResponse.class)})
+      }
+  )
+  public void recoveryStats(Context ctx) {
+    if (recoveryStats == null) {
+      throw new EntityNotFoundException("The ledger isn't journaled");
+    }
+    ctx.json(new RecoveryStatsResponse(recoveryStats.getSnapshot(),
+        recoveryStats.getSnapshotAccounts(), recoveryStats.getReplayedCommits(),
+        recoveryStats.getReplayedTransactions(), recoveryStats.getTimeToReadyMs()));
+  }
+
+  @OpenApi(
+      summary = "Lock wait and hold times, and the accounts waited for the most",
+      operationId = "getLockStats",
+      path = "/admin/locks",
+      method = HttpMethod.GET,
+      tags = {"Admin"},
+      responses = {
+          @OpenApiResponse(status = "200", content = {@OpenApiContent(from = LockStatsResponse.class)})
+      }
+  )
+  public void lockStats(Context ctx) {
+    var report = lockProfiler.report();
+    ctx.json(new LockStatsResponse(toResponse(report.getAccounts()),
+        toResponse(report.getTxIds()), report.getHotAccounts().stream()
+        .map(account -> new HotAccountResponse(account.getId(), account.getContentions(),
+            TimeUnit.NANOSECONDS.toMicros(account.getWaitNanos()),
+            TimeUnit.NANOSECONDS.toMicros(account.getWaitErrorNanos())))
+        .collect(Collectors.toList())));
+  }
+
+  private static LockTimesResponse toResponse(LockStats stats) {
+    return new LockTimesResponse(stats.getCalls(), stats.getContended(),
+        TimeUnit.NANOSECONDS.toMicros(stats.getWaitP50Nanos()),
+        TimeUnit.NANOSECONDS.toMicros(stats.getWaitP99Nanos()),
+        TimeUnit.NANOSECONDS.toMicros(stats.getWaitP999Nanos()),
+        TimeUnit.NANOSECONDS.toMillis(stats.getTotalWaitNanos()),
+        TimeUnit.NANOSECONDS.toMicros(stats.getHoldP50Nanos()),
+        TimeUnit.NANOSECONDS.toMicros(stats.getHoldP99Nanos()),
+        TimeUnit.NANOSECONDS.toMicros(stats.getHoldP999Nanos()));
+  }
+}
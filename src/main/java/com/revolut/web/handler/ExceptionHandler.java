@@ -1,24 +1,39 @@
 package com.revolut.web.handler;
 
+import com.revolut.domain.Exceptions.ConcurrentUpdateException;
 import com.revolut.domain.Exceptions.CurrencyMismatchException;
 import com.revolut.domain.Exceptions.EntityNotFoundException;
 import com.revolut.domain.Exceptions.InvalidTransactionId;
 import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Exceptions.OperationNotAllowedException;
+import com.revolut.domain.Exceptions.OverloadedException;
+import com.revolut.metrics.Metrics;
 import com.revolut.web.reqresp.resp.ErrorResponse;
 import io.javalin.http.Context;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ExceptionHandler {
 
+  private final Metrics metrics;
+  //registered on the first rejection of each type, looked up without allocating afterwards
+  private final Map<Class<?>, LongAdder> rejections = new ConcurrentHashMap<>();
+
+  public ExceptionHandler() {
+    this(new Metrics());
+  }
+
+  public ExceptionHandler(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
   public void handle(RuntimeException e, Context ctx) {
-    Integer statusCode;
-    if (e instanceof EntityNotFoundException) {
-      statusCode = 404;
-    } else if (e instanceof InvalidTransactionId) {
-      statusCode = 400;
-    } else if (e instanceof NotEnoughBalanceException || e instanceof CurrencyMismatchException) {
-      statusCode = 500;
-    } else {
-      statusCode = 500;
+    Integer statusCode = statusOf(e);
+    rejectionsOf(e, statusCode).increment();
+    if (e instanceof OverloadedException) {
+      ctx.header("Retry-After",
+          String.valueOf(((OverloadedException) e).getRetryAfterSeconds()));
     }
     ctx.status(statusCode);
     ctx.json(ErrorResponse
@@ -27,4 +42,31 @@ public class ExceptionHandler {
         .title(e.getMessage())
         .build());
   }
+
+  public static int statusOf(RuntimeException e) {
+    if (e instanceof EntityNotFoundException) {
+      return 404;
+    } else if (e instanceof InvalidTransactionId) {
+      return 400;
+    } else if (e instanceof ConcurrentUpdateException
+        || e instanceof OperationNotAllowedException) {
+      return 409;
+    } else if (e instanceof OverloadedException) {
+      return 503;
+    } else if (e instanceof NotEnoughBalanceException || e instanceof CurrencyMismatchException) {
+      return 500;
+    } else {
+      return 500;
+    }
+  }
+
+  private LongAdder rejectionsOf(RuntimeException e, int statusCode) {
+    var counter = rejections.get(e.getClass());
+    if (counter == null) {
+      counter = metrics.counter("bank_rejections_total", "Requests failed by exception type",
+          "exception", e.getClass().getSimpleName(), "status", String.valueOf(statusCode));
+      rejections.putIfAbsent(e.getClass(), counter);
+    }
+    return counter;
+  }
 }
@@ -0,0 +1,103 @@
+package com.revolut.web.handler;
+
+import static com.revolut.web.Validators.validateCaptureHoldRequest;
+import static com.revolut.web.Validators.validateHoldRequest;
+import static com.revolut.web.Validators.validatePathParamTxId;
+import static com.revolut.web.Validators.validatePathParamUserId;
+import static com.revolut.web.handler.AccountHandler.PARAM_USER_ID;
+
+import com.revolut.domain.Hold;
+import com.revolut.service.HoldService;
+import com.revolut.web.reqresp.req.CaptureHoldRequest;
+import com.revolut.web.reqresp.req.HoldRequest;
+import com.revolut.web.reqresp.resp.ErrorResponse;
+import io.javalin.http.Context;
+import io.javalin.plugin.openapi.annotations.HttpMethod;
+import io.javalin.plugin.openapi.annotations.OpenApi;
+import io.javalin.plugin.openapi.annotations.OpenApiContent;
+import io.javalin.plugin.openapi.annotations.OpenApiParam;
+import io.javalin.plugin.openapi.annotations.OpenApiRequestBody;
+import io.javalin.plugin.openapi.annotations.OpenApiResponse;
+
+public class HoldHandler {
+
+  public static final String PARAM_TX_ID = "txId";
+
+  private final HoldService holdService;
+
+  public HoldHandler(
+      HoldService holdService
+  ) {
+    this.holdService = holdService;
+  }
+
+  @OpenApi(
+      summary = "Hold an amount on an account",
+      description = "Reserves the amount of the available balance until it is captured, released"
+          + " or expires. Nothing is recorded in the account's history until it is captured.",
+      operationId = "authorizeHold",
+      path = "/accounts/:id/holds",
+      method = HttpMethod.POST,
+      pathParams = {
+          @OpenApiParam(name = "id", type = Integer.class, description = "The account Id the amount will be held on")},
+      requestBody = @OpenApiRequestBody(content = {
+          @OpenApiContent(from = HoldRequest.class)}),
+      tags = {"Hold"},
+      responses = {
+          @OpenApiResponse(status = "201", content = {@OpenApiContent(from = Hold.class)}),
+          @OpenApiResponse(status = "400", content = {@OpenApiContent(from = ErrorResponse.class)}),
+          @OpenApiResponse(status = "404", content = {@OpenApiContent(from = ErrorResponse.class)})
+      }
+  )
+  public void authorize(Context ctx) {
+    var req = validateHoldRequest(ctx);
+    var id = validatePathParamUserId(ctx, PARAM_USER_ID);
+    var ttlMs = req.getTtlSeconds() == null
+        ? HoldService.DEFAULT_TTL_IN_MS : req.getTtlSeconds() * 1_000L;
+    ctx.json(holdService.authorize(id, req.getAmount(), req.getTxId(), ttlMs));
+    ctx.status(201);
+  }
+
+  @OpenApi(
+      summary = "Capture a hold",
+      description = "Debits the amount, the whole hold without one, and releases the rest of the"
+          + " hold. The debit is recorded as CAPTURE under the hold's txId.",
+      operationId = "captureHold",
+      path = "/holds/:txId/capture",
+      method = HttpMethod.POST,
+      pathParams = {
+          @OpenApiParam(name = "txId", type = String.class, description = "The txId that authorized the hold")},
+      requestBody = @OpenApiRequestBody(content = {
+          @OpenApiContent(from = CaptureHoldRequest.class)}),
+      tags = {"Hold"},
+      responses = {
+          @OpenApiResponse(status = "204"),
+          @OpenApiResponse(status = "400", content = {@OpenApiContent(from = ErrorResponse.class)}),
+          @OpenApiResponse(status = "404", content = {@OpenApiContent(from = ErrorResponse.class)})
+      }
+  )
+  public void capture(Context ctx) {
+    var req = validateCaptureHoldRequest(ctx);
+    holdService.capture(validatePathParamTxId(ctx, PARAM_TX_ID), req.getAmount());
+    ctx.status(204);
+  }
+
+  @OpenApi(
+      summary = "Release a hold",
+      operationId = "releaseHold",
+      path = "/holds/:txId",
+      method = HttpMethod.DELETE,
+      pathParams = {
+          @OpenApiParam(name = "txId", type = String.class, description = "The txId that authorized the hold")},
+      tags = {"Hold"},
+      responses = {
+          @OpenApiResponse(status = "204"),
+          @OpenApiResponse(status = "400", content = {@OpenApiContent(from = ErrorResponse.class)}),
+          @OpenApiResponse(status = "404", content = {@OpenApiContent(from = ErrorResponse.class)})
+      }
+  )
+  public void release(Context ctx) {
+    holdService.release(validatePathParamTxId(ctx, PARAM_TX_ID));
+    ctx.status(204);
+  }
+}
@@ -0,0 +1,71 @@
+package com.revolut.web.handler;
+
+import com.revolut.metrics.LatencyHistogram;
+import com.revolut.metrics.Metrics;
+import io.javalin.http.Context;
+import io.javalin.plugin.openapi.annotations.HttpMethod;
+import io.javalin.plugin.openapi.annotations.OpenApi;
+import io.javalin.plugin.openapi.annotations.OpenApiContent;
+import io.javalin.plugin.openapi.annotations.OpenApiResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class MetricsHandler {
+
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  private static final String UNMATCHED_ROUTE = "unmatched";
+  private static final double NANOS_PER_MS = 1_000_000d;
+
+  private final Metrics metrics;
+  //method -> route, filled on the first request of each, plain lookups afterwards
+  private final Map<String, Map<String, LatencyHistogram>> routes = new ConcurrentHashMap<>();
+
+  public MetricsHandler(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  //Javalin's request logger, called once the response is done, async ones included
+  public void recordRequest(Context ctx, Float executionTimeMs) {
+    histogramOf(ctx.method(), routeOf(ctx)).record((long) (executionTimeMs * NANOS_PER_MS));
+  }
+
+  @OpenApi(
+      summary = "Latency histograms and counters in Prometheus text format",
+      operationId = "getMetrics",
+      path = "/metrics",
+      method = HttpMethod.GET,
+      tags = {"Admin"},
+      responses = {
+          @OpenApiResponse(status = "200", content = {@OpenApiContent(type = "text/plain")})
+      }
+  )
+  public void metrics(Context ctx) {
+    ctx.contentType(CONTENT_TYPE).result(metrics.scrape());
+  }
+
+  //requests no endpoint matched only ever passed the before filters, Javalin refuses to tell
+  //their path then
+  private static String routeOf(Context ctx) {
+    try {
+      return ctx.endpointHandlerPath();
+    } catch (IllegalStateException e) {
+      return UNMATCHED_ROUTE;
+    }
+  }
+
+  private LatencyHistogram histogramOf(String method, String route) {
+    var byRoute = routes.get(method);
+    if (byRoute == null) {
+      byRoute = new ConcurrentHashMap<>();
+      var raced = routes.putIfAbsent(method, byRoute);
+      byRoute = raced == null ? byRoute : raced;
+    }
+    var histogram = byRoute.get(route);
+    if (histogram == null) {
+      histogram = metrics.histogram("bank_http_request_seconds", "HTTP requests by route",
+          "method", method, "route", route);
+      byRoute.putIfAbsent(route, histogram);
+    }
+    return histogram;
+  }
+}
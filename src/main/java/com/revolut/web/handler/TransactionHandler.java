@@ -1,5 +1,19 @@
 package com.revolut.web.handler;
 
+import static com.revolut.web.Pagination.HEADER_NEXT_AFTER;
+import static com.revolut.web.Pagination.HEADER_NEXT_BEFORE;
+import static com.revolut.web.Pagination.isPageRequested;
+import static com.revolut.web.Pagination.writeAll;
+import static com.revolut.web.Pagination.writePage;
+import static com.revolut.web.Validators.validatePathParamUserId;
+import static com.revolut.web.Validators.validateQueryParamAfter;
+import static com.revolut.web.Validators.validateQueryParamBefore;
+import static com.revolut.web.Validators.validateQueryParamFrom;
+import static com.revolut.web.Validators.validateQueryParamLimit;
+import static com.revolut.web.Validators.validateQueryParamTo;
+import static com.revolut.web.handler.AccountHandler.PARAM_USER_ID;
+
+import com.revolut.domain.HistoryCursor;
 import com.revolut.domain.Transaction;
 import com.revolut.service.TransactionService;
 import com.revolut.web.reqresp.resp.ErrorResponse;
@@ -8,6 +22,7 @@ import io.javalin.http.Context;
 import io.javalin.plugin.openapi.annotations.HttpMethod;
 import io.javalin.plugin.openapi.annotations.OpenApi;
 import io.javalin.plugin.openapi.annotations.OpenApiContent;
+import io.javalin.plugin.openapi.annotations.OpenApiParam;
 import io.javalin.plugin.openapi.annotations.OpenApiResponse;
 
 public class TransactionHandler {
@@ -43,6 +58,11 @@ public class TransactionHandler {
       operationId = "getAllTransactions",
       path = "/transactions",
       method = HttpMethod.GET,
+      queryParams = {
+          @OpenApiParam(name = "after", type = Integer.class,
+              description = "Only transactions with a greater id, see the X-Next-After header"),
+          @OpenApiParam(name = "limit", type = Integer.class,
+              description = "Page size, up to 1000. Without after and limit all transactions are streamed")},
       tags = {"Transaction"},
       responses = {
           @OpenApiResponse(status = "200", content = {@OpenApiContent(from = Transaction[].class)}),
@@ -51,6 +71,43 @@ public class TransactionHandler {
       }
   )
   public void getAll(Context ctx) {
-    ctx.json(transactionService.getAll());
+    if (isPageRequested(ctx)) {
+      var limit = validateQueryParamLimit(ctx);
+      var page = transactionService.getPage(validateQueryParamAfter(ctx), limit);
+      writePage(ctx, page, limit, HEADER_NEXT_AFTER, Transaction::getId);
+    } else {
+      writeAll(ctx, transactionService.streamAll());
+    }
+  }
+
+  @OpenApi(
+      summary = "Lists the transactions of an account, newest first",
+      operationId = "getAccountHistory",
+      path = "/accounts/:id/transactions",
+      method = HttpMethod.GET,
+      pathParams = {
+          @OpenApiParam(name = "id", type = Integer.class, description = "The account Id")},
+      queryParams = {
+          @OpenApiParam(name = "from", type = Long.class,
+              description = "Oldest timestamp in ms, inclusive"),
+          @OpenApiParam(name = "to", type = Long.class,
+              description = "Newest timestamp in ms, exclusive"),
+          @OpenApiParam(name = "before", type = String.class,
+              description = "Cursor from the X-Next-Before header of the previous page"),
+          @OpenApiParam(name = "limit", type = Integer.class, description = "Page size, up to 1000")},
+      tags = {"Transaction"},
+      responses = {
+          @OpenApiResponse(status = "200", content = {@OpenApiContent(from = Transaction[].class)}),
+          @OpenApiResponse(status = "400", content = {@OpenApiContent(from = ErrorResponse.class)})
+      }
+  )
+  public void getAccountHistory(Context ctx) {
+    var accountId = validatePathParamUserId(ctx, PARAM_USER_ID);
+    var from = validateQueryParamFrom(ctx);
+    var to = validateQueryParamTo(ctx, from);
+    var limit = validateQueryParamLimit(ctx);
+    var page = transactionService.getAccountHistory(accountId, from, to,
+        validateQueryParamBefore(ctx), limit);
+    writePage(ctx, page, limit, HEADER_NEXT_BEFORE, HistoryCursor::of);
   }
 }
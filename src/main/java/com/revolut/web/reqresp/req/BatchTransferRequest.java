@@ -0,0 +1,29 @@
+package com.revolut.web.reqresp.req;
+
+import com.revolut.domain.TxId;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Schema(name = "BatchTransferRequest", description = "One transfer of a transfer batch.")
+public class BatchTransferRequest {
+
+  @Schema(required = true, description = "The account Id that balance will be removed from")
+  private Integer fromId;
+
+  @Schema(required = true, description = "The account Id that balance will be added to")
+  private Integer toId;
+
+  @Schema(required = true, description = "Amount that will be transferred,"
+      + " with 2 decimal places at the end (10000 means 100.00)")
+  private Long amount;
+
+  @Schema(required = true, description = "Transaction id that can be obtained by calling /transactions endpoint."
+      + " Necessary for preventing double spending problem", type = "string")
+  private TxId txId;
+
+}
@@ -0,0 +1,18 @@
+package com.revolut.web.reqresp.req;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Schema(name = "CaptureHoldRequest")
+public class CaptureHoldRequest {
+
+  @Schema(description = "Amount that will be debited, up to the held amount. The rest of the hold"
+      + " is released. The whole hold when missing")
+  private Long amount;
+
+}
@@ -0,0 +1,26 @@
+package com.revolut.web.reqresp.req;
+
+import com.revolut.domain.TxId;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Schema(name = "HoldRequest")
+public class HoldRequest {
+
+  @Schema(required = true, description = "Amount that will be held,"
+      + " with 2 decimal places at the end (10000 means 100.00)")
+  private Long amount;
+
+  @Schema(required = true, description = "Transaction id that can be obtained by calling /transactions endpoint."
+      + " Names the hold, a capture is recorded under it", type = "string")
+  private TxId txId;
+
+  @Schema(description = "Seconds until the hold is released unless captured, 7 days by default")
+  private Long ttlSeconds;
+
+}
@@ -0,0 +1,27 @@
+package com.revolut.web.reqresp.req;
+
+import com.revolut.domain.TxId;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Schema(name = "MultiPaymentRequest", description = "One debit and its credits, applied together.")
+public class MultiPaymentRequest {
+
+  @Schema(required = true, description = "The account Id that the sum of the legs will be removed from")
+  private Integer fromId;
+
+  @Schema(required = true, description = "The credits of the payment")
+  private List<PaymentLegRequest> legs;
+
+  @Schema(required = true, description = "Transaction id that can be obtained by calling /transactions endpoint."
+      + " Necessary for preventing double spending problem. At most 34 chars, the credits are"
+      + " recorded under txId.<leg>", type = "string")
+  private TxId txId;
+
+}
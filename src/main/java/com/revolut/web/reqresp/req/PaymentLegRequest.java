@@ -0,0 +1,21 @@
+package com.revolut.web.reqresp.req;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Schema(name = "PaymentLegRequest", description = "One credit of a multi payment.")
+public class PaymentLegRequest {
+
+  @Schema(required = true, description = "The account Id that balance will be added to")
+  private Integer toId;
+
+  @Schema(required = true, description = "Amount that will be added,"
+      + " with 2 decimal places at the end (10000 means 100.00)")
+  private Long amount;
+
+}
@@ -0,0 +1,14 @@
+package com.revolut.web.reqresp.req;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ShardAccountRequest {
+
+  private Integer shards;
+
+}
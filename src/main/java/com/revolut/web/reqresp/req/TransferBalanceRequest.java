@@ -1,5 +1,6 @@
 package com.revolut.web.reqresp.req;
 
+import com.revolut.domain.TxId;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -16,7 +17,7 @@ public class TransferBalanceRequest {
   private Long amount;
 
   @Schema(required = true, description = "Transaction id that can be obtained by calling /transactions endpoint."
-      + " Necessary for preventing double spending problem")
-  private String txId;
+      + " Necessary for preventing double spending problem", type = "string")
+  private TxId txId;
 
 }
@@ -0,0 +1,24 @@
+package com.revolut.web.reqresp.resp;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(name = "BatchTransferResponse", description = "Result of one transfer of a transfer batch.")
+public class BatchTransferResponse {
+
+  @Schema(required = true, description = "txId of the transfer")
+  private String txId;
+
+  @Schema(required = true, description = "204 if the transfer is applied, otherwise the status"
+      + " the single transfer endpoint would return")
+  private int status;
+
+  @Schema(description = "reason of the failure")
+  private String title;
+
+}
@@ -0,0 +1,22 @@
+package com.revolut.web.reqresp.resp;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(name = "CacheStatsResponse", description = "Counters of the account cache since startup.")
+public class CacheStatsResponse {
+
+  @Schema(required = true, description = "number of cached accounts, estimated")
+  private long size;
+  private long hits;
+  private long misses;
+  private long evictions;
+  @Schema(required = true, description = "hits / (hits + misses), 1.0 if there is no request yet")
+  private double hitRate;
+
+}
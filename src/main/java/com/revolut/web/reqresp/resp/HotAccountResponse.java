@@ -0,0 +1,24 @@
+package com.revolut.web.reqresp.resp;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(name = "HotAccountResponse", description = "An account whose lock was waited for.")
+public class HotAccountResponse {
+
+  @Schema(required = true, description = "account id")
+  private int id;
+  @Schema(required = true, description = "waits since the account is tracked")
+  private long contentions;
+  @Schema(required = true, description = "time spent waiting for it, over all callers")
+  private long waitUs;
+  @Schema(required = true, description = "waitUs overestimates the real wait by at most this,"
+      + " the sketch only keeps the most waited for accounts")
+  private long waitErrorUs;
+
+}
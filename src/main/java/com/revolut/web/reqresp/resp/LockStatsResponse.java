@@ -0,0 +1,22 @@
+package com.revolut.web.reqresp.resp;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(name = "LockStatsResponse", description = "Lock waits and holds since startup.")
+public class LockStatsResponse {
+
+  @Schema(required = true, description = "account locks of each call, all of them together")
+  private LockTimesResponse accounts;
+  @Schema(required = true, description = "txId locks of each call which took one")
+  private LockTimesResponse txIds;
+  @Schema(required = true, description = "accounts waited for the most, most first")
+  private List<HotAccountResponse> hotAccounts;
+
+}
@@ -0,0 +1,27 @@
+package com.revolut.web.reqresp.resp;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(name = "LockTimesResponse", description = "How long calls waited for and held a kind of"
+    + " lock. Percentiles are bucket upper bounds, within 1/32 of the real value.")
+public class LockTimesResponse {
+
+  @Schema(required = true, description = "calls which got the locks")
+  private long calls;
+  @Schema(required = true, description = "calls which found a lock taken and had to wait")
+  private long contended;
+  private long waitP50Us;
+  private long waitP99Us;
+  private long waitP999Us;
+  private long totalWaitMs;
+  private long holdP50Us;
+  private long holdP99Us;
+  private long holdP999Us;
+
+}
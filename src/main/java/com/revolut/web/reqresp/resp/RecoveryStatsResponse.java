@@ -0,0 +1,24 @@
+package com.revolut.web.reqresp.resp;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(name = "RecoveryStatsResponse", description = "How the last startup restored the ledger.")
+public class RecoveryStatsResponse {
+
+  @Schema(description = "snapshot file restored from, missing on the first start with a journal")
+  private String snapshot;
+  private int snapshotAccounts;
+  @Schema(required = true, description = "journal commits folded into the snapshot")
+  private long replayedCommits;
+  @Schema(required = true, description = "recent transactions put back for txId checks and history")
+  private long replayedTransactions;
+  @Schema(required = true, description = "time from opening the snapshot to accepting requests")
+  private long timeToReadyMs;
+
+}
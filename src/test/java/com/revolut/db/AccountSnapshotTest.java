@@ -0,0 +1,68 @@
+package com.revolut.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AccountSnapshotTest {
+
+  @TempDir
+  public Path dir;
+
+  @Test
+  public void accountsShouldBeReadBackAsWritten() {
+    var accounts = List.of(
+        new Account(0, "Ünal", Currency.EUR, 100L),
+        new Account(1, null, Currency.USD, 0L),
+        new Account(5, "Jack", Currency.USD, -1L));
+
+    AccountSnapshot.write(dir.resolve("snapshot"), 42L, 7L, 9, accounts.iterator());
+    var snapshot = AccountSnapshot.read(dir.resolve("snapshot"));
+
+    assertThat(snapshot.getPosition()).isEqualTo(42L);
+    assertThat(snapshot.getReplayFrom()).isEqualTo(7L);
+    assertThat(snapshot.getNextId()).isEqualTo(9);
+    assertThat(snapshot.getCount()).isEqualTo(3);
+    assertThat(accountsOf(snapshot)).containsExactlyElementsOf(accounts);
+  }
+
+  @Test
+  public void snapshotsLargerThanTheWriteBufferShouldBeReadBackAsWritten() {
+    var accounts = new ArrayList<Account>();
+    for (int i = 0; i < 200_000; i++) {
+      accounts.add(new Account(i, "account-" + i, Currency.EUR, (long) i));
+    }
+
+    var snapshot = AccountSnapshot.write(dir.resolve("snapshot"), 1L, 0L,
+        accounts.size(), accounts.iterator());
+
+    assertThat(accountsOf(snapshot)).isEqualTo(accounts);
+  }
+
+  @Test
+  public void corruptSnapshotShouldBeRejected() throws Exception {
+    var file = dir.resolve("snapshot");
+    AccountSnapshot.write(file, 1L, 0L, 1,
+        List.of(new Account(0, "Jack", Currency.EUR, 100L)).iterator());
+    try (var raw = new RandomAccessFile(file.toFile(), "rw")) {
+      raw.seek(raw.length() - 1);
+      raw.write('X');
+    }
+
+    Assertions.assertThrows(IllegalStateException.class, () -> AccountSnapshot.read(file));
+  }
+
+  private static List<Account> accountsOf(AccountSnapshot snapshot) {
+    var accounts = new ArrayList<Account>();
+    snapshot.accounts().forEachRemaining(accounts::add);
+    return accounts;
+  }
+}
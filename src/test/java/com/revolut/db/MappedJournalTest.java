@@ -0,0 +1,167 @@
+package com.revolut.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.db.JournalCommit.AccountEvent;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedJournalTest {
+
+  private static final int SMALL_SEGMENT_SIZE = 4 * 1024;
+
+  @TempDir
+  public Path dir;
+
+  @Test
+  public void commitsShouldSurviveReopening() throws Exception {
+    var journal = new MappedJournal(dir, 0L);
+    journal.awaitDurable(journal.append(List.of(aTransaction("tx-1", TransactionType.DEPOSIT))));
+    journal.awaitDurable(journal.append(List.of(
+        aTransaction("tx-2", TransactionType.TRANSFER_SOURCE),
+        aTransaction("tx-2", TransactionType.TRANSFER_DESTINATION))));
+    journal.close();
+
+    var reopened = new MappedJournal(dir, 0L);
+    assertThat(commitsOf(reopened)).containsExactly(
+        List.of(aTransaction("tx-1", TransactionType.DEPOSIT)),
+        List.of(aTransaction("tx-2", TransactionType.TRANSFER_SOURCE),
+            aTransaction("tx-2", TransactionType.TRANSFER_DESTINATION)));
+    reopened.close();
+  }
+
+  @Test
+  public void tornCommitShouldBeDroppedAndOverwritten() throws Exception {
+    var journal = new MappedJournal(dir, 0L);
+    journal.append(List.of(aTransaction("tx-1", TransactionType.DEPOSIT)));
+    var end = journal.append(List.of(aTransaction("tx-2", TransactionType.DEPOSIT)));
+    journal.close();
+    flipByteAt(end - 1);
+
+    var reopened = new MappedJournal(dir, 0L);
+    assertThat(commitsOf(reopened)).hasSize(1);
+    reopened.append(List.of(aTransaction("tx-3", TransactionType.WITHDRAW)));
+    reopened.close();
+
+    assertThat(commitsOf(new MappedJournal(dir, 0L))).containsExactly(
+        List.of(aTransaction("tx-1", TransactionType.DEPOSIT)),
+        List.of(aTransaction("tx-3", TransactionType.WITHDRAW)));
+  }
+
+  @Test
+  public void appendsShouldRollOverToNewSegments() throws Exception {
+    var journal = new MappedJournal(dir, SMALL_SEGMENT_SIZE, 0L, true);
+    for (int i = 0; i < 500; i++) {
+      journal.append(List.of(aTransaction("tx-" + i, TransactionType.DEPOSIT)));
+    }
+    journal.close();
+
+    try (var files = Files.list(dir)) {
+      assertThat(files.count()).isGreaterThan(1);
+    }
+    var reopened = new MappedJournal(dir, SMALL_SEGMENT_SIZE, 0L, true);
+    assertThat(commitsOf(reopened).stream().map(commit -> commit.get(0).getTransactionId()))
+        .containsExactlyElementsOf(IntStream.range(0, 500).mapToObj(i -> "tx-" + i)
+            .collect(Collectors.toList()));
+    reopened.close();
+  }
+
+  @Test
+  public void concurrentCommitsShouldAllBecomeDurable() throws Exception {
+    var journal = new MappedJournal(dir, 0L);
+    var executor = Executors.newFixedThreadPool(8);
+    var commits = new ArrayList<Future<?>>();
+    for (int i = 0; i < 1_000; i++) {
+      var txId = "tx-" + i;
+      commits.add(executor.submit(() -> journal.awaitDurable(
+          journal.append(List.of(aTransaction(txId, TransactionType.DEPOSIT))))));
+    }
+    for (var commit : commits) {
+      commit.get();
+    }
+    executor.shutdown();
+    journal.close();
+
+    assertThat(commitsOf(new MappedJournal(dir, 0L))).hasSize(1_000);
+  }
+
+  @Test
+  public void accountEventsShouldSurviveReopening() throws Exception {
+    var journal = new MappedJournal(dir, 0L);
+    var created = new Account(3, "Jack", Currency.EUR, 100L);
+    journal.append(JournalCommit.of(AccountEvent.created(created)));
+    journal.append(JournalCommit.of(AccountEvent.renamed(3, null)));
+    journal.append(JournalCommit.of(AccountEvent.deleted(3)));
+    journal.close();
+
+    var events = new ArrayList<AccountEvent>();
+    new MappedJournal(dir, 0L).forEachCommit(commit -> events.addAll(commit.getAccountEvents()));
+    assertThat(events).containsExactly(AccountEvent.created(created),
+        AccountEvent.renamed(3, null), AccountEvent.deleted(3));
+  }
+
+  @Test
+  public void rangeShouldOnlyVisitCommitsWithin() throws Exception {
+    var journal = new MappedJournal(dir, SMALL_SEGMENT_SIZE, 0L, true);
+    var positions = new ArrayList<Long>();
+    for (int i = 0; i < 300; i++) {
+      positions.add(journal.append(List.of(aTransaction("tx-" + i, TransactionType.DEPOSIT))));
+    }
+    journal.awaitDurable(positions.get(299));
+
+    var visited = new ArrayList<String>();
+    journal.forEachCommit(positions.get(99), positions.get(199), (start, end, commit) ->
+        visited.add(commit.getTransactions().get(0).getTransactionId()));
+    assertThat(visited).containsExactlyElementsOf(IntStream.range(100, 200)
+        .mapToObj(i -> "tx-" + i).collect(Collectors.toList()));
+
+    journal.deleteSegmentsBefore(positions.get(199));
+    var remaining = new ArrayList<String>();
+    journal.forEachCommit(commit ->
+        remaining.add(commit.getTransactions().get(0).getTransactionId()));
+    assertThat(remaining.size()).isLessThan(300);
+    assertThat(remaining).contains("tx-200", "tx-299");
+    journal.close();
+  }
+
+  private void flipByteAt(long position) throws IOException {
+    try (var segment = new RandomAccessFile(Files.list(dir).findFirst().orElseThrow().toFile(),
+        "rw")) {
+      segment.seek(position);
+      var value = segment.read();
+      segment.seek(position);
+      segment.write(value ^ 0xff);
+    }
+  }
+
+  private static List<List<Transaction>> commitsOf(MappedJournal journal) {
+    var commits = new ArrayList<List<Transaction>>();
+    journal.forEachCommit(commit -> commits.add(commit.getTransactions()));
+    return commits;
+  }
+
+  private static Transaction aTransaction(String txId, TransactionType type) {
+    return Transaction.builder()
+        .transactionId(txId)
+        .operationName(type)
+        .relatedEntityId(7)
+        .amount(10L)
+        .currency(Currency.EUR)
+        .timestampMs(1_000L)
+        .build();
+  }
+}
@@ -0,0 +1,39 @@
+package com.revolut.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.metrics.HeavyHitters.Entry;
+import org.junit.jupiter.api.Test;
+
+public class HeavyHittersTest {
+
+  @Test
+  public void heavyKeysShouldSurviveManyLightOnes() {
+    var hitters = new HeavyHitters<Integer>(8);
+    for (int i = 0; i < 10_000; i++) {
+      hitters.add(i % 3 == 0 ? 1 : 100 + i, 1L);
+      if (i % 10 == 0) {
+        hitters.add(2, 5L);
+      }
+    }
+
+    var top = hitters.top(2);
+
+    assertThat(top).extracting(Entry::getKey).containsExactly(2, 1);
+    assertThat(top.get(0).getWeight() - top.get(0).getError()).isLessThanOrEqualTo(5_000L);
+    assertThat(top.get(0).getWeight()).isGreaterThanOrEqualTo(5_000L);
+    assertThat(top.get(1).getWeight() - top.get(1).getError()).isLessThanOrEqualTo(3_334L);
+    assertThat(top.get(1).getWeight()).isGreaterThanOrEqualTo(3_334L);
+  }
+
+  @Test
+  public void weightsShouldBeExactWhileEveryKeyFits() {
+    var hitters = new HeavyHitters<String>(4);
+    hitters.add("a", 5L);
+    hitters.add("b", 7L);
+    hitters.add("a", 5L);
+
+    assertThat(hitters.top(10)).containsExactly(new Entry<>("a", 10L, 0L, 2L),
+        new Entry<>("b", 7L, 0L, 1L));
+  }
+}
@@ -0,0 +1,54 @@
+package com.revolut.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucketsShouldCoverEveryValueWithoutGaps() {
+    for (int index = 1; index < LatencyHistogram.BUCKETS; index++) {
+      var lowerBound = LatencyHistogram.upperBoundOf(index - 1);
+      assertThat(LatencyHistogram.indexOf(lowerBound)).isEqualTo(index);
+      assertThat(LatencyHistogram.indexOf(lowerBound - 1)).isEqualTo(index - 1);
+    }
+    assertThat(LatencyHistogram.indexOf(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.BUCKETS - 1);
+  }
+
+  @Test
+  public void quantilesShouldBeWithinTheBucketPrecision() {
+    var histogram = new LatencyHistogram();
+    for (long micros = 1; micros <= 10_000; micros++) {
+      histogram.record(micros * 1_000L);
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(10_000L);
+    assertThat((double) histogram.valueAtQuantile(0.5)).isCloseTo(5_000_000d, within(5_000_000d / 32));
+    assertThat((double) histogram.valueAtQuantile(0.99)).isCloseTo(9_900_000d, within(9_900_000d / 32));
+    assertThat(histogram.cumulativeCounts(new long[] {1_000_000L, 20_000_000L}))
+        .containsExactly(999L, 10_000L);
+  }
+
+  @Test
+  public void recordingShouldNotAllocate() {
+    var histogram = new LatencyHistogram();
+    var threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    var thread = Thread.currentThread().getId();
+    //warms up the JIT and LongAdder, the allocation counter has some noise of its own
+    for (int i = 0; i < 100_000; i++) {
+      histogram.record(i);
+    }
+
+    var before = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < 1_000_000; i++) {
+      histogram.record(i * 997L);
+    }
+    var allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+    assertThat(allocated).isLessThan(1_000L);
+  }
+}
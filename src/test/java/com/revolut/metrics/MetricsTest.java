@@ -0,0 +1,49 @@
+package com.revolut.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MetricsTest {
+
+  private final Metrics metrics = new Metrics();
+
+  @Test
+  public void histogramsShouldBeWrittenAsCumulativeBucketsInSeconds() {
+    var histogram = metrics.histogram("bank_test_seconds", "Test latencies", "route", "/a");
+    histogram.record(1_000L);
+    histogram.record(2_000_000L);
+
+    var scraped = metrics.scrape();
+
+    assertThat(scraped).contains(
+        "# HELP bank_test_seconds Test latencies\n",
+        "# TYPE bank_test_seconds histogram\n",
+        "bank_test_seconds_bucket{route=\"/a\",le=\"0.00001\"} 1\n",
+        "bank_test_seconds_bucket{route=\"/a\",le=\"0.001\"} 1\n",
+        "bank_test_seconds_bucket{route=\"/a\",le=\"0.0025\"} 2\n",
+        "bank_test_seconds_bucket{route=\"/a\",le=\"+Inf\"} 2\n",
+        "bank_test_seconds_sum{route=\"/a\"} 0.002001\n",
+        "bank_test_seconds_count{route=\"/a\"} 2\n");
+  }
+
+  @Test
+  public void sameNameAndLabelsShouldShareOneSeries() {
+    metrics.counter("bank_test_total", "Test counter", "type", "a").increment();
+    metrics.counter("bank_test_total", "Test counter", "type", "a").increment();
+    metrics.counter("bank_test_total", "Test counter", "type", "b\"").increment();
+
+    assertThat(metrics.scrape()).contains(
+        "bank_test_total{type=\"a\"} 2\n",
+        "bank_test_total{type=\"b\\\"\"} 1\n");
+  }
+
+  @Test
+  public void nameShouldKeepItsType() {
+    metrics.counter("bank_test", "Test");
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> metrics.histogram("bank_test", "Test"));
+  }
+}
@@ -0,0 +1,157 @@
+package com.revolut.repo.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.repo.AccountRepo;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class CachingAccountRepoTest {
+
+  private final InMemoryDB db = new InMemoryDB();
+  private final AccountRepo delegate = mock(AccountRepo.class);
+  private final CachingAccountRepo repo = new CachingAccountRepo(delegate, db, 100);
+  private final InMemoryTransactionHelper helper = new InMemoryTransactionHelper(db);
+
+  @Test
+  public void hotAccountShouldBeReadOnce() {
+    when(delegate.get(1)).thenReturn(anAccount(100L));
+
+    repo.get(1);
+    var acc = repo.get(1);
+
+    assertThat(acc).isEqualTo(anAccount(100L));
+    verify(delegate, times(1)).get(1);
+    assertThat(repo.stats().hitCount()).isEqualTo(1);
+    assertThat(repo.stats().missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void cachedAccountShouldNotBeChangedByCallers() {
+    when(delegate.get(1)).thenReturn(anAccount(100L));
+
+    repo.get(1).addBalance(10L);
+
+    assertThat(repo.get(1).getBalance()).isEqualTo(100L);
+  }
+
+  @Test
+  public void committedUpdateShouldBeCached() {
+    when(delegate.get(1)).thenReturn(anAccount(100L));
+    when(delegate.updateTransactional(any(), any())).thenReturn(true);
+    repo.get(1);
+
+    helper.runTransactional(tx -> repo.updateTransactional(anAccount(50L), tx));
+
+    assertThat(repo.get(1).getBalance()).isEqualTo(50L);
+    verify(delegate, times(1)).get(1);
+  }
+
+  @Test
+  public void uncommittedUpdateShouldNotBeVisible() {
+    when(delegate.get(1)).thenReturn(anAccount(100L));
+    repo.get(1);
+
+    helper.runTransactional(tx -> {
+      repo.updateBalanceTransactional(1, 50L, tx);
+      assertThat(repo.get(1).getBalance()).isEqualTo(100L);
+    });
+
+    assertThat(repo.get(1).getBalance()).isEqualTo(50L);
+  }
+
+  @Test
+  public void committedDebitShouldCacheTheBalanceTheDbReturned() {
+    when(delegate.get(1)).thenReturn(anAccount(100L));
+    when(delegate.removeBalanceTransactional(any(), any(), any()))
+        .thenReturn(anAccount(70L, 1L), (Account) null);
+    repo.get(1);
+
+    helper.runTransactional(tx -> repo.removeBalanceTransactional(1, 30L, tx));
+    helper.runTransactional(tx -> repo.removeBalanceTransactional(1, 100L, tx));
+
+    assertThat(repo.get(1).getBalance()).isEqualTo(70L);
+    verify(delegate, times(1)).get(1);
+  }
+
+  @Test
+  public void rolledBackUpdateShouldInvalidate() {
+    when(delegate.get(1)).thenReturn(anAccount(100L));
+    when(delegate.updateTransactional(any(), any())).thenReturn(true);
+    repo.get(1);
+
+    try {
+      helper.runTransactional(tx -> {
+        repo.updateTransactional(anAccount(50L), tx);
+        throw new RuntimeException();
+      });
+    } catch (Exception e) {
+
+    }
+
+    assertThat(repo.get(1).getBalance()).isEqualTo(100L);
+    verify(delegate, times(2)).get(1);
+  }
+
+  @Test
+  public void lostCompareAndSwapShouldInvalidate() {
+    when(delegate.get(1)).thenReturn(anAccount(100L));
+    when(delegate.updateTransactional(any(), any())).thenReturn(false);
+    repo.get(1);
+
+    try {
+      helper.runTransactional(tx -> {
+        if (!repo.updateTransactional(anAccount(50L), tx)) {
+          throw new RuntimeException();
+        }
+      });
+    } catch (Exception e) {
+
+    }
+
+    assertThat(repo.get(1).getBalance()).isEqualTo(100L);
+    verify(delegate, times(2)).get(1);
+  }
+
+  //commits without a shared lock can reach the cache out of order
+  @Test
+  public void olderCommitShouldNotReplaceANewerVersion() {
+    when(delegate.get(1)).thenReturn(anAccount(100L));
+    when(delegate.addBalanceTransactional(any(), any(), any()))
+        .thenReturn(anAccount(130L, 2L), anAccount(110L, 1L));
+    repo.get(1);
+
+    helper.runTransactional(tx -> repo.addBalanceTransactional(1, 30L, tx));
+    helper.runTransactional(tx -> repo.addBalanceTransactional(1, 10L, tx));
+
+    assertThat(repo.get(1)).isEqualTo(anAccount(130L, 2L));
+  }
+
+  @Test
+  public void bulkReadShouldOnlyLoadMisses() {
+    when(delegate.get(1)).thenReturn(anAccount(100L));
+    when(delegate.getAll(List.of(2))).thenReturn(List.of(new Account(2, "acc", Currency.EUR, 1L)));
+    repo.get(1);
+
+    var accs = repo.getAll(List.of(1, 2));
+
+    assertThat(accs).extracting(Account::getId).containsExactlyInAnyOrder(1, 2);
+    verify(delegate, times(1)).getAll(any());
+  }
+
+  private Account anAccount(Long balance) {
+    return new Account(1, "acc", Currency.EUR, balance);
+  }
+
+  private Account anAccount(Long balance, Long version) {
+    return new Account(1, "acc", Currency.EUR, balance, version);
+  }
+}
@@ -0,0 +1,170 @@
+package com.revolut.repo.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class InMemoryAccountRepoIntegrationTest {
+
+  private final InMemoryDB db = new InMemoryDB();
+  private final InMemoryAccountRepo accountRepo = new InMemoryAccountRepo(db);
+  private final InMemoryTransactionHelper helper = new InMemoryTransactionHelper(db);
+
+  @Test
+  public void removeBalanceShouldOnlyApplyWhenTheBalanceCoversIt() {
+    var id = accountRepo.insert(new Account("guarded", Currency.EUR, 100L)).getId();
+
+    assertThat(removeBalance(id, 60L)).isEqualTo(40L);
+    assertThat(removeBalance(id, 60L)).isNull();
+    assertThat(removeBalance(id, 40L)).isEqualTo(0L);
+    assertThat(accountRepo.get(id).getBalance()).isEqualTo(0L);
+  }
+
+  @Test
+  public void balanceChangesOfMissingAccountsShouldReturnNull() {
+    assertThat(removeBalance(-1, 1L)).isNull();
+    helper.runTransactional(tx ->
+        assertThat(accountRepo.addBalanceTransactional(-1, 1L, tx)).isNull());
+  }
+
+  @Test
+  public void updateShouldOnlyApplyToTheVersionItRead() {
+    var id = accountRepo.insert(new Account("versioned", Currency.EUR, 100L)).getId();
+    var first = accountRepo.get(id);
+    var second = accountRepo.get(id);
+    first.addBalance(10L);
+    second.addBalance(20L);
+
+    helper.runTransactional(tx -> {
+      assertThat(accountRepo.updateTransactional(first, tx)).isTrue();
+      assertThat(accountRepo.updateTransactional(second, tx)).isFalse();
+    });
+
+    assertThat(first.getVersion()).isEqualTo(1L);
+    assertThat(accountRepo.get(id)).isEqualTo(first);
+  }
+
+  @Test
+  public void batchUpdateShouldFailIfAnyVersionChanged() {
+    var first = accountRepo.insert(new Account("first", Currency.EUR, 100L));
+    var second = accountRepo.insert(new Account("second", Currency.EUR, 100L));
+    var stale = accountRepo.get(second.getId());
+    helper.runTransactional(tx -> accountRepo.addBalanceTransactional(second.getId(), 5L, tx));
+
+    first.removeBalance(10L);
+    stale.addBalance(10L);
+    helper.runTransactional(tx ->
+        assertThat(accountRepo.updateBalancesTransactional(List.of(first, stale), tx)).isFalse());
+
+    assertThat(accountRepo.get(second.getId()).getBalance()).isEqualTo(105L);
+    assertThat(accountRepo.get(second.getId()).getVersion()).isEqualTo(1L);
+  }
+
+  //no application lock, the DB alone keeps the balance from going negative or losing writes
+  @Test
+  public void concurrentDebitsShouldNeverOverdraw() throws Exception {
+    var id = accountRepo.insert(new Account("contended", Currency.EUR, 1_000L)).getId();
+    var executor = Executors.newFixedThreadPool(8);
+    var debits = new ArrayList<Future<Long>>();
+    for (int i = 0; i < 200; i++) {
+      debits.add(executor.submit((Callable<Long>) () -> removeBalance(id, 10L)));
+      executor.submit(() -> helper.runTransactional(tx ->
+          accountRepo.addBalanceTransactional(id, 1L, tx)));
+    }
+    var applied = 0;
+    for (var debit : debits) {
+      if (debit.get() != null) {
+        applied++;
+      }
+    }
+    executor.shutdown();
+    executor.awaitTermination(10, java.util.concurrent.TimeUnit.SECONDS);
+
+    assertThat(applied).isBetween(100, 120);
+    assertThat(accountRepo.get(id).getBalance()).isEqualTo(1_000L + 200L - applied * 10L);
+  }
+
+  @Test
+  public void readsShouldSumTheShardsOfAShardedAccount() {
+    var id = accountRepo.insert(new Account("sharded", Currency.EUR, 100L)).getId();
+    helper.runTransactional(tx -> {
+      assertThat(accountRepo.reshardTransactional(id, 4, tx)).isTrue();
+      assertThat(accountRepo.addShardBalanceTransactional(id, 2, 30L, tx)).isTrue();
+      assertThat(accountRepo.addShardBalanceTransactional(id, 3, 5L, tx)).isTrue();
+      assertThat(accountRepo.removeShardBalanceTransactional(id, 3, 6L, tx)).isFalse();
+      assertThat(accountRepo.addShardBalanceTransactional(id, 4, 1L, tx)).isFalse();
+      assertThat(accountRepo.getShardBalancesTransactional(id, tx))
+          .containsExactly(100L, 0L, 30L, 5L);
+    });
+
+    assertThat(accountRepo.get(id).getBalance()).isEqualTo(135L);
+    assertThat(accountRepo.get(id).getShards()).isEqualTo(4);
+    assertThat(accountRepo.getAll(List.of(id)).get(0).getBalance()).isEqualTo(135L);
+    try (var all = accountRepo.streamAll()) {
+      assertThat(all.filter(acc -> acc.getId().equals(id)).findFirst().get().getBalance())
+          .isEqualTo(135L);
+    }
+  }
+
+  @Test
+  public void reshardingShouldMoveTheWholeBalanceToShardZero() {
+    var id = accountRepo.insert(new Account("sharded", Currency.EUR, 100L)).getId();
+    helper.runTransactional(tx -> {
+      accountRepo.reshardTransactional(id, 4, tx);
+      accountRepo.addShardBalanceTransactional(id, 1, 20L, tx);
+      accountRepo.reshardTransactional(id, 2, tx);
+      assertThat(accountRepo.getShardBalancesTransactional(id, tx)).containsExactly(120L, 0L);
+    });
+    helper.runTransactional(tx -> accountRepo.reshardTransactional(id, 1, tx));
+
+    assertThat(accountRepo.get(id).getBalance()).isEqualTo(120L);
+    assertThat(accountRepo.get(id).getShards()).isEqualTo(1);
+  }
+
+  //their other shards would be overwritten with the sum
+  @Test
+  public void compareAndSwapShouldRefuseShardedAccounts() {
+    var id = accountRepo.insert(new Account("sharded", Currency.EUR, 100L)).getId();
+    helper.runTransactional(tx -> accountRepo.reshardTransactional(id, 2, tx));
+    var sharded = accountRepo.get(id);
+    sharded.addBalance(10L);
+
+    helper.runTransactional(tx -> {
+      assertThat(accountRepo.updateTransactional(sharded, tx)).isFalse();
+      assertThat(accountRepo.updateBalancesTransactional(List.of(sharded), tx)).isFalse();
+    });
+  }
+
+  //shard rows get ids of their own, the next ones after the account
+  @Test
+  public void balanceChangesShouldNotReachShardRows() {
+    var id = accountRepo.insert(new Account("sharded", Currency.EUR, 100L)).getId();
+    helper.runTransactional(tx -> {
+      accountRepo.reshardTransactional(id, 2, tx);
+      accountRepo.addShardBalanceTransactional(id, 1, 20L, tx);
+    });
+
+    helper.runTransactional(tx -> {
+      assertThat(accountRepo.addBalanceTransactional(id + 1, 10L, tx)).isNull();
+      assertThat(accountRepo.removeBalanceTransactional(id + 1, 5L, tx)).isNull();
+      assertThat(accountRepo.getShardBalancesTransactional(id, tx)).containsExactly(100L, 20L);
+    });
+  }
+
+  private Long removeBalance(Integer id, Long amount) {
+    var balance = new Long[1];
+    helper.runTransactional(tx -> {
+      var changed = accountRepo.removeBalanceTransactional(id, amount, tx);
+      balance[0] = changed == null ? null : changed.getBalance();
+    });
+    return balance[0];
+  }
+}
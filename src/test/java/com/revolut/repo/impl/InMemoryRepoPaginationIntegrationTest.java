@@ -0,0 +1,122 @@
+package com.revolut.repo.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.HistoryCursor;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class InMemoryRepoPaginationIntegrationTest {
+
+  private final InMemoryDB db = new InMemoryDB();
+  private final InMemoryAccountRepo accountRepo = new InMemoryAccountRepo(db);
+  private final InMemoryTransactionRepo transactionRepo = new InMemoryTransactionRepo(db);
+
+  @Test
+  public void pagesThroughAccountsInIdOrder() {
+    var inserted = insertAccounts(5);
+    var first = inserted.get(0).getId();
+
+    var page = accountRepo.getPage(first, 2);
+
+    assertThat(page).containsExactly(inserted.get(1), inserted.get(2));
+    assertThat(accountRepo.getPage(page.get(1).getId(), 2))
+        .containsExactly(inserted.get(3), inserted.get(4));
+  }
+
+  @Test
+  public void streamsAllAccountsInIdOrder() {
+    var inserted = insertAccounts(3);
+
+    List<Account> streamed;
+    try (var all = accountRepo.streamAll()) {
+      streamed = all.collect(Collectors.toList());
+    }
+
+    assertThat(streamed).containsAll(inserted);
+    assertThat(streamed).isSortedAccordingTo((a, b) -> a.getId().compareTo(b.getId()));
+    assertThat(streamed).hasSameSizeAs(accountRepo.getAll());
+  }
+
+  @Test
+  public void pagesAndStreamsTransactions() {
+    new InMemoryTransactionHelper(db).runTransactional(tx -> {
+      for (int i = 0; i < 3; i++) {
+        transactionRepo.saveTransactional(Transaction.builder()
+            .transactionId("page-" + System.nanoTime() + "-" + i)
+            .relatedEntityId(0)
+            .amount(1L)
+            .currency(Currency.EUR)
+            .operationName(TransactionType.DEPOSIT)
+            .timestampMs(1L)
+            .build(), tx);
+      }
+    });
+    var all = transactionRepo.getAll();
+
+    assertThat(transactionRepo.getPage(-1, all.size())).containsExactlyInAnyOrderElementsOf(all);
+    var last = all.stream().mapToInt(Transaction::getId).max().getAsInt();
+    assertThat(transactionRepo.getPage(last, 10)).isEmpty();
+    try (var streamed = transactionRepo.streamAll()) {
+      assertThat(streamed.collect(Collectors.toList())).containsExactlyInAnyOrderElementsOf(all);
+    }
+  }
+
+  @Test
+  public void accountHistoryIsNewestFirstAndPagedWithACursor() {
+    var accountId = accountRepo.insert(new Account("history", Currency.EUR, 10L)).getId();
+    var other = accountRepo.insert(new Account("other", Currency.EUR, 10L)).getId();
+    saveTransactions(accountId, 100L, 200L, 200L, 300L);
+    saveTransactions(other, 150L, 250L);
+
+    var all = transactionRepo.getAccountHistory(accountId, 0L, Long.MAX_VALUE, null, 10);
+    assertThat(all).extracting(Transaction::getTimestampMs).containsExactly(300L, 200L, 200L, 100L);
+    assertThat(all).allMatch(tx -> tx.getRelatedEntityId().equals(accountId));
+
+    var firstPage = transactionRepo.getAccountHistory(accountId, 0L, Long.MAX_VALUE, null, 2);
+    var secondPage = transactionRepo.getAccountHistory(accountId, 0L, Long.MAX_VALUE,
+        HistoryCursor.of(firstPage.get(1)), 2);
+    assertThat(firstPage).containsExactlyElementsOf(all.subList(0, 2));
+    assertThat(secondPage).containsExactlyElementsOf(all.subList(2, 4));
+  }
+
+  @Test
+  public void accountHistoryIsFilteredByTime() {
+    var accountId = accountRepo.insert(new Account("history", Currency.EUR, 10L)).getId();
+    saveTransactions(accountId, 100L, 200L, 300L);
+
+    var history = transactionRepo.getAccountHistory(accountId, 200L, 300L, null, 10);
+
+    assertThat(history).extracting(Transaction::getTimestampMs).containsExactly(200L);
+  }
+
+  private void saveTransactions(Integer accountId, Long... timestamps) {
+    new InMemoryTransactionHelper(db).runTransactional(tx -> {
+      for (var timestamp : timestamps) {
+        transactionRepo.saveTransactional(Transaction.builder()
+            .transactionId("history-" + System.nanoTime())
+            .relatedEntityId(accountId)
+            .amount(1L)
+            .currency(Currency.EUR)
+            .operationName(TransactionType.DEPOSIT)
+            .timestampMs(timestamp)
+            .build(), tx);
+      }
+    });
+  }
+
+  private List<Account> insertAccounts(int count) {
+    var inserted = new ArrayList<Account>();
+    for (int i = 0; i < count; i++) {
+      inserted.add(accountRepo.insert(new Account("page" + i, Currency.EUR, 10L)));
+    }
+    return inserted;
+  }
+}
@@ -0,0 +1,164 @@
+package com.revolut.repo.impl;
+
+import static com.revolut.db.tables.Transactions.TRANSACTIONS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.db.MappedJournal;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//the DB is shared with the other tests, so its accounts are put back afterwards
+public class JournalCheckpointerIntegrationTest {
+
+  private static final long RETAIN_TRANSACTIONS_MS = 60_000L;
+  private static final String TX_ID_PREFIX = "tx-checkpoint-";
+
+  @TempDir
+  public Path dir;
+
+  private final InMemoryDB db = new InMemoryDB();
+  private final InMemoryAccountRepo accountRepo = new InMemoryAccountRepo(db);
+  private final InMemoryTransactionRepo transactionRepo = new InMemoryTransactionRepo(db);
+  private final InMemoryTransactionHelper helper = new InMemoryTransactionHelper(db);
+  private List<Account> seed;
+
+  @BeforeEach
+  public void setUp() {
+    seed = accounts();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    accountRepo.replaceAll(seed.iterator(), 0);
+  }
+
+  @Test
+  public void restartShouldRestoreSnapshotAndJournalTail() throws InterruptedException {
+    var journal = new MappedJournal(dir, 0L);
+    var firstStart = checkpointer(journal).recover();
+    assertThat(firstStart.getSnapshot()).isNull();
+
+    var journaled = new JournalingAccountRepo(accountRepo, journal,
+        new JournalCommitListener(db, journal));
+    var kept = journaled.insert(new Account("Kept", Currency.EUR, 100L));
+    var gone = journaled.insert(new Account("Gone", Currency.USD, 5L));
+    deposit(journal, kept, 50L, TX_ID_PREFIX + 1);
+    kept.setName("Renamed");
+    journaled.update(kept);
+    journaled.delete(gone.getId());
+    checkpointer(journal).checkpoint();
+    withdraw(journal, kept, 30L, TX_ID_PREFIX + 2);
+    journal.close();
+    var beforeRestart = accounts();
+
+    //a restart starts from the seed DB again
+    accountRepo.replaceAll(seed.iterator(), 0);
+    db.ctx().deleteFrom(TRANSACTIONS).where(TRANSACTIONS.TRANSACTION_ID.like(TX_ID_PREFIX + "%"))
+        .execute();
+    var reopened = new MappedJournal(dir, 0L);
+    var stats = checkpointer(reopened).recover();
+    reopened.close();
+
+    //versions only order writes within one run, they start over from the snapshot
+    assertThat(accounts()).usingElementComparatorIgnoringFields("version")
+        .isEqualTo(beforeRestart);
+    assertThat(accountRepo.get(kept.getId()))
+        .isEqualTo(new Account(kept.getId(), "Renamed", Currency.EUR, 120L));
+    assertThat(accountRepo.get(gone.getId())).isNull();
+    assertThat(stats.getSnapshotAccounts()).isEqualTo(seed.size() + 1);
+    assertThat(stats.getReplayedCommits()).isEqualTo(1);
+    assertThat(transactionRepo.exists(TX_ID_PREFIX + 1)).isTrue();
+    assertThat(transactionRepo.exists(TX_ID_PREFIX + 2)).isTrue();
+    assertThat(accountRepo.insert(new Account("Next", Currency.EUR, 0L)).getId())
+        .isGreaterThan(gone.getId());
+  }
+
+  @Test
+  public void accountsCreatedOrDeletedInsideDbTransactionsShouldBeRestored()
+      throws InterruptedException {
+    var journal = new MappedJournal(dir, 0L);
+    checkpointer(journal).recover();
+    var commits = new JournalCommitListener(db, journal);
+    var journaled = new JournalingAccountRepo(accountRepo, journal, commits);
+    var journaledTransactions = new JournalingTransactionRepo(transactionRepo, commits);
+    var opened = new Account[1];
+    helper.runTransactional(configuration -> {
+      opened[0] = journaled.insertTransactional(new Account("Opened", Currency.EUR, 0L),
+          configuration);
+      journaled.updateBalanceTransactional(opened[0].getId(), 25L, configuration);
+      journaledTransactions.saveTransactional(
+          transaction(opened[0], 25L, TransactionType.DEPOSIT, TX_ID_PREFIX + 3), configuration);
+    });
+    var closed = journaled.insert(new Account("Closed", Currency.USD, 5L));
+    helper.runTransactional(configuration -> journaled.deleteTransactional(closed.getId(),
+        configuration));
+    journal.close();
+
+    accountRepo.replaceAll(seed.iterator(), 0);
+    db.ctx().deleteFrom(TRANSACTIONS).where(TRANSACTIONS.TRANSACTION_ID.like(TX_ID_PREFIX + "%"))
+        .execute();
+    var reopened = new MappedJournal(dir, 0L);
+    checkpointer(reopened).recover();
+    reopened.close();
+
+    assertThat(accountRepo.get(opened[0].getId()))
+        .isEqualTo(new Account(opened[0].getId(), "Opened", Currency.EUR, 25L));
+    assertThat(accountRepo.get(closed.getId())).isNull();
+    assertThat(transactionRepo.exists(TX_ID_PREFIX + 3)).isTrue();
+  }
+
+  private JournalCheckpointer checkpointer(MappedJournal journal) {
+    return new JournalCheckpointer(dir, journal, accountRepo, transactionRepo, helper,
+        RETAIN_TRANSACTIONS_MS);
+  }
+
+  //what the services do, with the journal standing in for JournalingTransactionRepo
+  private void deposit(MappedJournal journal, Account acc, long amount, String txId) {
+    acc.addBalance(amount);
+    commit(journal, acc, amount, TransactionType.DEPOSIT, txId);
+  }
+
+  private void withdraw(MappedJournal journal, Account acc, long amount, String txId) {
+    acc.removeBalance(amount);
+    commit(journal, acc, amount, TransactionType.WITHDRAW, txId);
+  }
+
+  private void commit(MappedJournal journal, Account acc, long amount, TransactionType type,
+      String txId) {
+    var tx = transaction(acc, amount, type, txId);
+    helper.runTransactional(configuration -> {
+      accountRepo.updateBalanceTransactional(acc.getId(), acc.getBalance(), configuration);
+      transactionRepo.saveTransactional(tx, configuration);
+    });
+    journal.awaitDurable(journal.append(List.of(tx)));
+  }
+
+  private static Transaction transaction(Account acc, long amount, TransactionType type,
+      String txId) {
+    return Transaction.builder()
+        .transactionId(txId)
+        .operationName(type)
+        .relatedEntityId(acc.getId())
+        .amount(amount)
+        .currency(acc.getCurrency())
+        .timestampMs(System.currentTimeMillis())
+        .build();
+  }
+
+  private List<Account> accounts() {
+    return accountRepo.getAll().stream()
+        .sorted(Comparator.comparing(Account::getId))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,54 @@
+package com.revolut.repo.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.db.MappedJournal;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JournalingTransactionRepoIntegrationTest {
+
+  @TempDir
+  public Path dir;
+
+  @Test
+  public void onlyCommittedTransactionsShouldBeJournaled() throws InterruptedException {
+    var db = new InMemoryDB();
+    var journal = new MappedJournal(dir, 0L);
+    var helper = new InMemoryTransactionHelper(db);
+    var repo = new JournalingTransactionRepo(new InMemoryTransactionRepo(db), db, journal);
+
+    helper.runTransactional(tx -> repo.saveTransactional(aTransaction("journal-1"), tx));
+    Assertions.assertThrows(RuntimeException.class, () -> helper.runTransactional(tx -> {
+      repo.saveAllTransactional(List.of(aTransaction("journal-2")), tx);
+      throw new RuntimeException();
+    }));
+    helper.runTransactional(tx ->
+        repo.saveAllTransactional(List.of(aTransaction("journal-3")), tx));
+    journal.close();
+
+    var journaled = new ArrayList<String>();
+    new MappedJournal(dir, 0L).forEachCommit(commit ->
+        commit.getTransactions().forEach(tx -> journaled.add(tx.getTransactionId())));
+    assertThat(journaled).containsExactly("journal-1", "journal-3");
+  }
+
+  private static Transaction aTransaction(String txId) {
+    return Transaction.builder()
+        .transactionId(txId)
+        .relatedEntityId(0)
+        .amount(10L)
+        .currency(Currency.EUR)
+        .operationName(TransactionType.DEPOSIT)
+        .timestampMs(1L)
+        .build();
+  }
+}
@@ -0,0 +1,122 @@
+package com.revolut.repo.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.TxId;
+import com.revolut.repo.AccountRepo;
+import com.revolut.service.AccountService;
+import com.revolut.service.Lock;
+import com.revolut.service.LockedMovements;
+import com.revolut.service.TransactionService;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class SnapshotAccountRepoTest {
+
+  private final InMemoryDB db = new InMemoryDB();
+  private final InMemoryAccountRepo accounts = new InMemoryAccountRepo(db);
+  private final SnapshotAccountRepo repo = new SnapshotAccountRepo(accounts, db);
+  private final InMemoryTransactionHelper helper = new InMemoryTransactionHelper(db);
+
+  @Test
+  public void commitShouldBeVisibleOnlyOnceCommitted() {
+    var id = repo.insert(new Account("reader", Currency.EUR, 100L)).getId();
+
+    helper.runTransactional(tx -> {
+      repo.removeBalanceTransactional(id, 30L, tx);
+      assertThat(repo.get(id).getBalance()).isEqualTo(100L);
+    });
+
+    assertThat(repo.get(id).getBalance()).isEqualTo(70L);
+  }
+
+  @Test
+  public void readShouldNotWaitForAWriterHoldingTheDbLocks() {
+    var id = repo.insert(new Account("reader", Currency.EUR, 100L)).getId();
+
+    helper.runTransactional(tx -> {
+      repo.removeBalanceTransactional(id, 30L, tx);
+      var read = CompletableFuture.supplyAsync(() -> repo.get(id));
+      assertThat(read.orTimeout(1, TimeUnit.SECONDS).join().getBalance()).isEqualTo(100L);
+    });
+  }
+
+  @Test
+  public void rolledBackChangeShouldNotBePublished() {
+    var id = repo.insert(new Account("reader", Currency.EUR, 100L)).getId();
+
+    try {
+      helper.runTransactional(tx -> {
+        repo.removeBalanceTransactional(id, 30L, tx);
+        throw new IllegalStateException("rollback");
+      });
+    } catch (IllegalStateException ignored) {
+    }
+
+    assertThat(repo.get(id).getBalance()).isEqualTo(100L);
+  }
+
+  @Test
+  public void olderCommitShouldNotReplaceANewerOne() {
+    var delegate = mock(AccountRepo.class);
+    when(delegate.streamAll()).thenReturn(Stream.of(new Account(1, "x", Currency.EUR, 100L, 0L)));
+    when(delegate.removeBalanceTransactional(any(), any(), any()))
+        .thenReturn(new Account(1, "x", Currency.EUR, 50L, 2L),
+            new Account(1, "x", Currency.EUR, 70L, 1L));
+    var outOfOrder = new SnapshotAccountRepo(delegate, db);
+
+    helper.runTransactional(tx -> outOfOrder.removeBalanceTransactional(1, 50L, tx));
+    helper.runTransactional(tx -> outOfOrder.removeBalanceTransactional(1, 30L, tx));
+
+    assertThat(outOfOrder.get(1).getBalance()).isEqualTo(50L);
+  }
+
+  @Test
+  public void deletedAccountShouldBeLeftOutOfPages() {
+    var first = repo.insert(new Account("first", Currency.EUR, 1L)).getId();
+    var deleted = repo.insert(new Account("deleted", Currency.EUR, 2L)).getId();
+    var last = repo.insert(new Account("last", Currency.EUR, 3L)).getId();
+
+    helper.runTransactional(tx -> repo.deleteTransactional(deleted, tx));
+
+    assertThat(repo.get(deleted)).isNull();
+    assertThat(repo.getPage(first - 1, 2)).extracting(Account::getId).containsExactly(first, last);
+    assertThat(repo.getAll(List.of(first, deleted))).extracting(Account::getId)
+        .containsExactly(first);
+    assertThat(repo.getAll()).extracting(Account::getId).doesNotContain(deleted);
+  }
+
+  @Test
+  public void shardedAccountShouldBeReadWithTheSumOfItsShards() {
+    var txService = new TransactionService(new InMemoryTransactionRepo(db));
+    var service = new AccountService(repo, new LockedMovements(repo, new Lock(), helper,
+        txService));
+    var id = repo.insert(new Account("hot", Currency.EUR, 0L)).getId();
+    service.reshard(id, 4);
+
+    for (int i = 0; i < 8; i++) {
+      service.deposit(id, 5L, TxId.of(txService.generateTxId()));
+    }
+
+    assertThat(service.get(id).getBalance()).isEqualTo(40L);
+    assertThat(service.get(id).getShards()).isEqualTo(4);
+  }
+
+  @Test
+  public void readAccountShouldNotChangeTheSnapshot() {
+    var id = repo.insert(new Account("reader", Currency.EUR, 100L)).getId();
+
+    repo.get(id).addBalance(10L);
+
+    assertThat(repo.get(id).getBalance()).isEqualTo(100L);
+  }
+}
@@ -2,6 +2,8 @@ package com.revolut.service;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -9,8 +11,12 @@ import static org.mockito.Mockito.when;
 
 import com.revolut.domain.Account;
 import com.revolut.domain.Currency;
+import com.revolut.domain.Exceptions.ConcurrentUpdateException;
 import com.revolut.domain.Exceptions.EntityNotFoundException;
 import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Exceptions.OperationNotAllowedException;
+import com.revolut.domain.TxId;
+import com.revolut.metrics.Metrics;
 import com.revolut.repo.AccountRepo;
 import com.revolut.repo.impl.TestTransactionHelper;
 import org.junit.jupiter.api.Assertions;
@@ -23,22 +29,25 @@ public class AccountServiceTest {
   public final TransactionService txService = Mockito
       .mock(TransactionService.class);
   public final TestTransactionHelper txHelper = new TestTransactionHelper();
-  public final AccountService service = new AccountService(accountRepo, new Lock(), txHelper,
-      txService);
+  public final AccountService service = new AccountService(accountRepo,
+      new LockedMovements(accountRepo, new Lock(), txHelper, txService));
 
   @Test
   public void successfulDepositShouldLogOneTransaction() {
     withValidTxId();
     when(accountRepo.get(any())).thenReturn(anAccount(100L));
-    service.deposit(0, 10L, "tx-id");
+    when(accountRepo.addBalanceTransactional(eq(0), eq(10L), any())).thenReturn(anAccount(110L));
+    service.deposit(0, 10L, TxId.of("tx-id"));
     verify(txService, times(1)).saveTransactional(any(), any());
+    verify(txService, times(1)).markAsUsed(TxId.of("tx-id"));
   }
 
   @Test
   public void successfulWithdrawShouldLogOneTransaction() {
     withValidTxId();
     when(accountRepo.get(any())).thenReturn(anAccount(100L));
-    service.withdraw(0, 10L, "tx-id");
+    when(accountRepo.removeBalanceTransactional(eq(0), eq(10L), any())).thenReturn(anAccount(90L));
+    service.withdraw(0, 10L, TxId.of("tx-id"));
     verify(txService, times(1)).saveTransactional(any(), any());
   }
 
@@ -46,8 +55,84 @@ public class AccountServiceTest {
   public void shouldValidateBalanceForWithdraw() {
     withValidTxId();
     when(accountRepo.get(any())).thenReturn(anAccount(10L));
+    when(accountRepo.removeBalanceTransactional(eq(0), eq(100L), any())).thenReturn(null);
     Assertions.assertThrows(NotEnoughBalanceException.class, () -> {
-      service.withdraw(0, 100L, "tx-id");
+      service.withdraw(0, 100L, TxId.of("tx-id"));
+    });
+    verify(accountRepo, never()).updateTransactional(any(), any());
+    verify(txService, never()).saveTransactional(any(), any());
+    verify(txService, never()).markAsUsed(any());
+  }
+
+  //a cached balance can be stale without the lock, only the DB's answer counts
+  @Test
+  public void withdrawShouldTrustTheGuardedDebitOverTheReadBalance() {
+    withValidTxId();
+    when(accountRepo.get(any())).thenReturn(anAccount(1_000L));
+    when(accountRepo.removeBalanceTransactional(eq(0), eq(100L), any())).thenReturn(null);
+    Assertions.assertThrows(NotEnoughBalanceException.class, () -> {
+      service.withdraw(0, 100L, TxId.of("tx-id"));
+    });
+    verify(txService, never()).saveTransactional(any(), any());
+  }
+
+  @Test
+  public void asyncWithdrawShouldFailTheFutureInsteadOfThrowing() {
+    withValidTxId();
+    when(accountRepo.get(any())).thenReturn(anAccount(10L));
+    when(accountRepo.removeBalanceTransactional(eq(0), eq(100L), any())).thenReturn(null);
+    var ack = service.withdrawAsync(0, 100L, TxId.of("tx-id"));
+    Assertions.assertThrows(NotEnoughBalanceException.class, () -> LedgerEngine.await(ack));
+    verify(accountRepo, never()).updateTransactional(any(), any());
+  }
+
+  @Test
+  public void asyncDepositShouldLogOneTransaction() {
+    withValidTxId();
+    when(accountRepo.get(any())).thenReturn(anAccount(100L));
+    when(accountRepo.addBalanceTransactional(eq(0), eq(10L), any())).thenReturn(anAccount(110L));
+    try (var lock = new AsyncLock()) {
+      var asyncService = new AccountService(accountRepo,
+          new LockedMovements(accountRepo, lock, txHelper, txService));
+      LedgerEngine.await(asyncService.depositAsync(0, 10L, TxId.of("tx-id")));
+    }
+    verify(txService, times(1)).saveTransactional(any(), any());
+    verify(txService, times(1)).markAsUsed(TxId.of("tx-id"));
+  }
+
+  @Test
+  public void optimisticDepositShouldRetryOnAFreshRead() {
+    withValidTxId();
+    when(accountRepo.get(any())).thenAnswer(invocation -> anAccount(100L));
+    when(accountRepo.updateTransactional(any(), any())).thenReturn(false, true);
+    optimisticService(8).deposit(0, 10L, TxId.of("tx-id"));
+    //one to see whether the account is sharded, then one per attempt
+    verify(accountRepo, times(3)).get(0);
+    verify(accountRepo, times(2)).updateTransactional(argThat(acc ->
+        acc.getBalance() == 110L), any());
+    verify(txService, times(1)).saveTransactional(any(), any());
+    verify(txService, times(1)).markAsUsed(TxId.of("tx-id"));
+  }
+
+  @Test
+  public void optimisticWithdrawShouldGiveUpAfterMaxAttempts() {
+    withValidTxId();
+    when(accountRepo.get(any())).thenAnswer(invocation -> anAccount(100L));
+    when(accountRepo.updateTransactional(any(), any())).thenReturn(false);
+    Assertions.assertThrows(ConcurrentUpdateException.class, () -> {
+      optimisticService(3).withdraw(0, 10L, TxId.of("tx-id"));
+    });
+    verify(accountRepo, times(3)).updateTransactional(any(), any());
+    verify(accountRepo, never()).removeBalanceTransactional(any(), any(), any());
+    verify(txService, never()).markAsUsed(any());
+  }
+
+  @Test
+  public void optimisticWithdrawShouldCheckTheReadBalance() {
+    withValidTxId();
+    when(accountRepo.get(any())).thenReturn(anAccount(10L));
+    Assertions.assertThrows(NotEnoughBalanceException.class, () -> {
+      optimisticService(8).withdraw(0, 100L, TxId.of("tx-id"));
     });
     verify(accountRepo, never()).updateTransactional(any(), any());
   }
@@ -60,6 +145,18 @@ public class AccountServiceTest {
     });
   }
 
+  @Test
+  public void reshardShouldBeRefusedWithActiveHoldsOrALedger() {
+    when(accountRepo.get(any())).thenReturn(new Account(0, "acc", Currency.EUR, 100L, 0L, 1, 10L));
+    Assertions.assertThrows(OperationNotAllowedException.class, () -> service.reshard(0, 4));
+
+    var ledgerService = new AccountService(accountRepo,
+        Mockito.mock(LedgerEngine.class, Mockito.CALLS_REAL_METHODS));
+    Assertions.assertThrows(OperationNotAllowedException.class,
+        () -> ledgerService.reshard(0, 4));
+    verify(accountRepo, never()).reshardTransactional(any(), anyInt(), any());
+  }
+
   private Account anAccount(Long balance) {
     return anAccount(balance, Currency.EUR);
   }
@@ -68,6 +165,11 @@ public class AccountServiceTest {
     return new Account(1, "acc", currency, balance);
   }
 
+  private AccountService optimisticService(int maxAttempts) {
+    return new AccountService(accountRepo, new OptimisticMovements(accountRepo, new Lock(),
+        txHelper, txService, new OptimisticRetry(maxAttempts, 0L, 0L, new Metrics())));
+  }
+
   private void withValidTxId() {
     when(txService.isUsable(any())).thenReturn(true);
   }
@@ -0,0 +1,234 @@
+package com.revolut.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jetty.util.component.LifeCycle.stop;
+
+import com.revolut.domain.Exceptions.CouldNotAcquiredLockException;
+import com.revolut.domain.Exceptions.OverloadedException;
+import com.revolut.domain.Exceptions.SomethingWentWrongException;
+import com.revolut.metrics.Metrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AsyncLockTest {
+
+  private final AsyncLock lock = new AsyncLock(Lock.DEFAULT_STRIPES, 2, 10_000L);
+
+  @AfterEach
+  public void close() {
+    lock.close();
+  }
+
+  @Test
+  public void waiterShouldBeQueuedWithoutBlockingTheCaller() throws InterruptedException {
+    var releaseLatch = new CountDownLatch(1);
+    var executor = holdLock(lock, 1, releaseLatch);
+
+    var ran = new AtomicBoolean();
+    var waiter = lock.runWithLockAsync(1, "tx-2", () -> ran.set(true));
+
+    assertThat(waiter).isNotDone();
+    assertThat(ran).isFalse();
+    releaseLatch.countDown();
+    LedgerEngine.await(waiter);
+    assertThat(ran).isTrue();
+    stop(executor);
+  }
+
+  @Test
+  public void shouldRunMutuallyExclusiveInArrivalOrder() throws InterruptedException {
+    var inputs = new ArrayList<Integer>();
+    var releaseLatch = new CountDownLatch(1);
+    var executor = holdLock(lock, 1, releaseLatch);
+
+    var acks = IntStream.range(0, 1_000)
+        .mapToObj(i -> lock.runWithLockAsync(1, () -> inputs.add(i)))
+        .collect(Collectors.toList());
+    releaseLatch.countDown();
+    acks.forEach(LedgerEngine::await);
+
+    assertThat(inputs).containsExactlyElementsOf(
+        IntStream.range(0, 1_000).boxed().collect(Collectors.toList()));
+    stop(executor);
+  }
+
+  @Test
+  public void crossingTransfersShouldNotDeadlock() {
+    var twoStripes = new AsyncLock(2, 4, 10_000L);
+    var counter = new int[1];
+    List<CompletableFuture<Void>> acks = IntStream.range(0, 10_000)
+        .parallel()
+        .mapToObj(i -> i % 2 == 0
+            ? twoStripes.runWithLockAsync(1, 2, "tx-" + i, () -> counter[0]++)
+            : twoStripes.runWithLockAsync(List.of(2, 1, 3), List.of("tx-" + i),
+                () -> counter[0]++))
+        .collect(Collectors.toList());
+    acks.forEach(LedgerEngine::await);
+    assertThat(counter[0]).isEqualTo(10_000);
+    twoStripes.close();
+  }
+
+  @Test
+  public void waiterShouldTimeOutAndNeverRun() throws InterruptedException {
+    var shortTimeout = new AsyncLock(Lock.DEFAULT_STRIPES, 2, 100L);
+    var releaseLatch = new CountDownLatch(1);
+    var executor = holdLock(shortTimeout, 1, releaseLatch);
+
+    var ran = new AtomicBoolean();
+    var waiter = shortTimeout.runWithLockAsync(1, () -> ran.set(true));
+
+    Assertions.assertThrows(OverloadedException.class, () -> LedgerEngine.await(waiter));
+    releaseLatch.countDown();
+    LedgerEngine.await(shortTimeout.runWithLockAsync(1, () -> {
+    }));
+    assertThat(ran).isFalse();
+    stop(executor);
+    shortTimeout.close();
+  }
+
+  @Test
+  public void waiterBeyondTheAccountQueueShouldBeShedAtOnce() throws InterruptedException {
+    var shortQueue = new AsyncLock(Lock.DEFAULT_STRIPES, 2, 1, 10_000L, new Metrics());
+    var releaseLatch = new CountDownLatch(1);
+    var executor = holdLock(shortQueue, 1, releaseLatch);
+
+    var queued = shortQueue.runWithLockAsync(1, () -> {
+    });
+    var shed = shortQueue.runWithLockAsync(1, () -> {
+    });
+
+    assertThat(queued).isNotDone();
+    assertThat(shed).isCompletedExceptionally();
+    Assertions.assertThrows(OverloadedException.class, () -> LedgerEngine.await(shed));
+    releaseLatch.countDown();
+    LedgerEngine.await(queued);
+    LedgerEngine.await(shortQueue.runWithLockAsync(1, () -> {
+    }));
+    stop(executor);
+    shortQueue.close();
+  }
+
+  @Test
+  public void lockFailureShouldBecomeSomethingWentWrong() {
+    var failed = CompletableFuture.<Void>failedFuture(
+        new CouldNotAcquiredLockException("Cannot acquire lock!"));
+    var logged = new AtomicBoolean();
+
+    var ack = Lock.onLockFailure(failed, e -> logged.set(true));
+
+    Assertions.assertThrows(SomethingWentWrongException.class, () -> LedgerEngine.await(ack));
+    assertThat(logged).isTrue();
+  }
+
+  @Test
+  public void failureOfTheRunnableShouldReleaseTheLock() {
+    var failed = lock.runWithLockAsync(1, () -> {
+      throw new IllegalStateException("boom");
+    });
+    Assertions.assertThrows(IllegalStateException.class, () -> LedgerEngine.await(failed));
+    LedgerEngine.await(lock.runWithLockAsync(1, () -> {
+    }));
+  }
+
+  @Test
+  public void slowRunnableShouldNotHoldUpHandOvers() throws InterruptedException {
+    var oneThread = new AsyncLock(Lock.DEFAULT_STRIPES, 1, 10_000L);
+    var releaseFirst = new CountDownLatch(1);
+    var releaseSecond = new CountDownLatch(1);
+    var slowStarted = new CountDownLatch(1);
+    var slowLatch = new CountDownLatch(1);
+    var first = holdLock(oneThread, 1, releaseFirst);
+    var second = holdLock(oneThread, 2, releaseSecond);
+    var slow = oneThread.runWithLockAsync(1, () -> {
+      slowStarted.countDown();
+      await(slowLatch);
+    });
+    var fast = oneThread.runWithLockAsync(2, () -> {
+    });
+
+    releaseFirst.countDown();
+    assertThat(slowStarted.await(1, TimeUnit.SECONDS)).isTrue();
+    releaseSecond.countDown();
+
+    assertThat(fast.orTimeout(1, TimeUnit.SECONDS).handle((ignored, e) -> e).join()).isNull();
+    slowLatch.countDown();
+    LedgerEngine.await(slow);
+    stop(first);
+    stop(second);
+    oneThread.close();
+  }
+
+  @Test
+  public void closedLockShouldFailWaitersAndPassTheirStripesOn() throws InterruptedException {
+    var closing = new AsyncLock(Lock.DEFAULT_STRIPES, 2, 10_000L);
+    var releaseLatch = new CountDownLatch(1);
+    var executor = holdLock(closing, 7, releaseLatch);
+    //holds the stripe of 3 while it waits for 7
+    var holding = closing.runWithLockAsync(3, 7, "tx-1", () -> {
+    });
+    var behind = closing.runWithLockAsync(3, () -> {
+    });
+
+    closing.close();
+    releaseLatch.countDown();
+
+    Assertions.assertThrows(CouldNotAcquiredLockException.class, () -> LedgerEngine.await(
+        holding.orTimeout(1, TimeUnit.SECONDS)));
+    Assertions.assertThrows(CouldNotAcquiredLockException.class, () -> LedgerEngine.await(
+        behind.orTimeout(1, TimeUnit.SECONDS)));
+    stop(executor);
+  }
+
+  @Test
+  public void queuedWaitShouldBeBlamedOnItsAccount() throws InterruptedException {
+    var releaseLatch = new CountDownLatch(1);
+    var executor = holdLock(lock, 7, releaseLatch);
+
+    var waiter = lock.runWithLockAsync(3, 7, "tx-1", () -> {
+    });
+    Thread.sleep(20);
+    releaseLatch.countDown();
+    LedgerEngine.await(waiter);
+    stop(executor);
+
+    var report = lock.getProfiler().report();
+    assertThat(report.getAccounts().getCalls()).isEqualTo(2L);
+    assertThat(report.getAccounts().getContended()).isEqualTo(1L);
+    assertThat(report.getAccounts().getWaitP99Nanos()).isGreaterThanOrEqualTo(20_000_000L);
+    assertThat(report.getTxIds().getCalls()).isEqualTo(1L);
+    assertThat(report.getHotAccounts()).extracting(LockProfiler.HotAccount::getId)
+        .containsExactly(7);
+  }
+
+  //blocking holder on another thread, so the test thread can queue behind it
+  private static ExecutorService holdLock(Lock lock, Integer id, CountDownLatch releaseLatch)
+      throws InterruptedException {
+    var acquiredLatch = new CountDownLatch(1);
+    var executor = Executors.newSingleThreadExecutor();
+    executor.submit(() -> lock.runWithLock(id, () -> {
+      acquiredLatch.countDown();
+      await(releaseLatch);
+    }));
+    acquiredLatch.await();
+    return executor;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
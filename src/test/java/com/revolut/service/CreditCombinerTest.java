@@ -0,0 +1,252 @@
+package com.revolut.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.PaymentLeg;
+import com.revolut.domain.Transfer;
+import com.revolut.domain.TransferResult;
+import com.revolut.domain.TxId;
+import com.revolut.metrics.Metrics;
+import com.revolut.repo.AccountRepo;
+import com.revolut.repo.TransactionHelper;
+import com.revolut.repo.TransactionRepo;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CreditCombinerTest {
+
+  private final AccountRepo accountRepo = mock(AccountRepo.class);
+  private final TransactionRepo transactionRepo = mock(TransactionRepo.class);
+  private final TransactionService txService = new TransactionService(transactionRepo);
+  private final CountDownLatch firstCommitStarted = new CountDownLatch(1);
+  private final CountDownLatch firstCommitReleased = new CountDownLatch(1);
+  private final CreditCombiner combiner = new CreditCombiner(accountRepo,
+      blockingFirstCommit(), txService, 16, 64, new Metrics());
+
+  @Test
+  public void creditsQueuedWhileCombiningShouldShareOneCommit() throws Exception {
+    when(accountRepo.addBalanceTransactional(eq(1), anyLong(), any()))
+        .thenReturn(account(1, 0L));
+    var first = whileTheFirstCommitRuns(
+        () -> combiner.deposit(account(1, 0L), 5L, TxId.of("tx-1")));
+
+    var queued = new CompletableFuture<?>[] {
+        combiner.deposit(account(1, 0L), 10L, TxId.of("tx-2")),
+        combiner.deposit(account(1, 0L), 20L, TxId.of("tx-3")),
+        combiner.deposit(account(1, 0L), 30L, TxId.of("tx-4"))};
+    assertThat(queued).noneMatch(CompletableFuture::isDone);
+    firstCommitReleased.countDown();
+
+    first.get(10, TimeUnit.SECONDS);
+    CompletableFuture.allOf(queued).get(10, TimeUnit.SECONDS);
+    verify(accountRepo).addBalanceTransactional(eq(1), eq(5L), any());
+    verify(accountRepo).addBalanceTransactional(eq(1), eq(60L), any());
+    verify(transactionRepo).saveAllTransactional(argThat(txs -> txs.size() == 3), any());
+  }
+
+  @Test
+  public void transferWithoutEnoughBalanceShouldOnlyFailItself() throws Exception {
+    when(accountRepo.addBalanceTransactional(eq(1), anyLong(), any()))
+        .thenReturn(account(1, 0L));
+    when(accountRepo.removeBalanceTransactional(eq(2), anyLong(), any())).thenReturn(null);
+    when(accountRepo.removeBalanceTransactional(eq(3), anyLong(), any()))
+        .thenReturn(account(3, 0L));
+    var first = whileTheFirstCommitRuns(
+        () -> combiner.deposit(account(1, 0L), 5L, TxId.of("tx-1")));
+
+    var broke = combiner.transfer(account(2, 0L), account(1, 0L), 10L, TxId.of("tx-2"));
+    var paid = combiner.transfer(account(3, 0L), account(1, 0L), 20L, TxId.of("tx-3"));
+    firstCommitReleased.countDown();
+
+    first.get(10, TimeUnit.SECONDS);
+    paid.get(10, TimeUnit.SECONDS);
+    Assertions.assertThrows(NotEnoughBalanceException.class, () -> LedgerEngine.await(broke));
+    verify(accountRepo).addBalanceTransactional(eq(1), eq(20L), any());
+    verify(transactionRepo).saveAllTransactional(argThat(txs -> txs.size() == 2), any());
+  }
+
+  @Test
+  public void missingDestinationShouldFailItsCredits() {
+    when(accountRepo.removeBalanceTransactional(eq(3), anyLong(), any()))
+        .thenReturn(account(3, 0L));
+    firstCommitReleased.countDown();
+
+    var ack = combiner.transfer(account(3, 0L), account(1, 0L), 20L, TxId.of("tx-1"));
+
+    Assertions.assertThrows(EntityNotFoundException.class, () -> LedgerEngine.await(ack));
+    verify(transactionRepo, never()).saveAllTransactional(any(), any());
+  }
+
+  //no account locks, only the guarded DB deltas keep balances right
+  @Test
+  public void concurrentCreditsShouldKeepTheTotalBalance() throws InterruptedException {
+    var db = new InMemoryDB();
+    var accounts = new InMemoryAccountRepo(db);
+    var transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    var helper = new InMemoryTransactionHelper(db);
+    var combined = new CreditCombiner(accounts, helper, transactionService);
+    var lock = new Lock();
+    var service = new TransferService(new CombinedCreditMovements(
+        new LockedMovements(accounts, lock, helper, transactionService), accounts, lock,
+        transactionService, combined));
+    var hot = accounts.insert(new Account("hot", Currency.EUR, 0L));
+    var sources = new Account[8];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = accounts.insert(new Account("source", Currency.EUR, 100L));
+    }
+    var executor = Executors.newFixedThreadPool(sources.length);
+    for (var source : sources) {
+      executor.submit(() -> {
+        for (int i = 0; i < 30; i++) {
+          try {
+            service.transfer(source.getId(), hot.getId(), 5L,
+                TxId.of(transactionService.generateTxId()));
+          } catch (NotEnoughBalanceException e) {
+            //the last 10 of each source
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(accounts.get(hot.getId()).getBalance()).isEqualTo(sources.length * 100L);
+    for (var source : sources) {
+      assertThat(accounts.get(source.getId()).getBalance()).isEqualTo(0L);
+    }
+  }
+
+  //each commit queues one more credit, so the queue refills as long as the caller combines
+  @Test
+  public void callerShouldHandOffOnceItUsedUpItsRounds() throws Exception {
+    when(accountRepo.addBalanceTransactional(eq(1), anyLong(), any()))
+        .thenReturn(account(1, 0L));
+    var caller = Thread.currentThread();
+    var callerCommits = new AtomicInteger();
+    var refills = new AtomicInteger(10);
+    var acks = new ConcurrentLinkedQueue<CompletableFuture<Void>>();
+    var refilled = new CountDownLatch(10);
+    var combined = new CreditCombiner[1];
+    TransactionHelper refilling = runnable -> {
+      if (Thread.currentThread() == caller) {
+        callerCommits.incrementAndGet();
+      }
+      var refill = refills.getAndDecrement();
+      if (refill > 0) {
+        acks.add(combined[0].deposit(account(1, 0L), 1L, TxId.of("tx-refill-" + refill)));
+        refilled.countDown();
+      }
+      runnable.run(null);
+    };
+    combined[0] = new CreditCombiner(accountRepo, refilling, txService, 16, 64, 2,
+        new Metrics());
+
+    acks.add(combined[0].deposit(account(1, 0L), 1L, TxId.of("tx-first")));
+
+    assertThat(callerCommits).hasValue(2);
+    //the hand-off thread queues the last refills, acks is only complete once it did
+    assertThat(refilled.await(10, TimeUnit.SECONDS)).isTrue();
+    CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+    assertThat(acks).hasSize(11);
+    verify(accountRepo, times(11)).addBalanceTransactional(eq(1), eq(1L), any());
+  }
+
+  //batches and payments hold the account locks, combined credits don't take them
+  @Test
+  public void batchesShouldApplyWhileCreditsAreCombined() throws InterruptedException {
+    var db = new InMemoryDB();
+    var accounts = new InMemoryAccountRepo(db);
+    var transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    var helper = new InMemoryTransactionHelper(db);
+    var combined = new CreditCombiner(accounts, helper, transactionService);
+    var lock = new Lock();
+    var service = new TransferService(new CombinedCreditMovements(
+        new LockedMovements(accounts, lock, helper, transactionService), accounts, lock,
+        transactionService, combined));
+    var hot = accounts.insert(new Account("hot", Currency.EUR, 0L)).getId();
+    var payer = accounts.insert(new Account("payer", Currency.EUR, 1_000L)).getId();
+    var sources = new Account[4];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = accounts.insert(new Account("source", Currency.EUR, 100L));
+    }
+    var executor = Executors.newFixedThreadPool(sources.length);
+    for (var source : sources) {
+      executor.submit(() -> {
+        for (int i = 0; i < 20; i++) {
+          service.transfer(source.getId(), hot, 5L, TxId.of(transactionService.generateTxId()));
+        }
+      });
+    }
+    executor.shutdown();
+
+    for (int i = 0; i < 20; i++) {
+      var results = service.transferAll(List.of(
+          new Transfer(payer, hot, 10L, TxId.of(transactionService.generateTxId())),
+          new Transfer(payer, hot, 20L, TxId.of(transactionService.generateTxId()))));
+      assertThat(results).allMatch(TransferResult::isSuccessful);
+      service.payMulti(payer, List.of(new PaymentLeg(hot, 5L), new PaymentLeg(hot, 5L)),
+          TxId.of(transactionService.generateTxId()));
+    }
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(accounts.get(hot).getBalance()).isEqualTo(sources.length * 100L + 800L);
+    assertThat(accounts.get(payer).getBalance()).isEqualTo(200L);
+  }
+
+  //runs submit on another thread, whose commit waits until the test releases it
+  private CompletableFuture<Void> whileTheFirstCommitRuns(Submit submit)
+      throws InterruptedException {
+    var ack = CompletableFuture.supplyAsync(submit::submit).thenCompose(future -> future);
+    assertThat(firstCommitStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    return ack;
+  }
+
+  private TransactionHelper blockingFirstCommit() {
+    var first = new AtomicBoolean(true);
+    return runnable -> {
+      if (first.getAndSet(false)) {
+        firstCommitStarted.countDown();
+        try {
+          firstCommitReleased.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      runnable.run(null);
+    };
+  }
+
+  private static Account account(int id, long balance) {
+    return new Account(id, "acc", Currency.EUR, balance);
+  }
+
+  private interface Submit {
+
+    CompletableFuture<Void> submit();
+  }
+}
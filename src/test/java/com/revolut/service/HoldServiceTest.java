@@ -0,0 +1,115 @@
+package com.revolut.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Exceptions.OperationNotAllowedException;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.TxId;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class HoldServiceTest {
+
+  private final InMemoryDB db = new InMemoryDB();
+  private final InMemoryAccountRepo accounts = new InMemoryAccountRepo(db);
+  private final InMemoryTransactionHelper helper = new InMemoryTransactionHelper(db);
+  private final TransactionService txService =
+      new TransactionService(new InMemoryTransactionRepo(db));
+  private final Lock lock = new Lock();
+  private final AccountService accountService =
+      new AccountService(accounts, new LockedMovements(accounts, lock, helper, txService));
+  private final HoldService holds = new HoldService(accounts, lock, helper, txService, null,
+      false);
+
+  @Test
+  public void holdShouldOnlyLeaveTheAvailableBalanceToDebits() {
+    var id = accounts.insert(new Account("holder", Currency.EUR, 100L)).getId();
+
+    holds.authorize(id, 70L, TxId.of(txService.generateTxId()), HoldService.DEFAULT_TTL_IN_MS);
+
+    assertThat(accounts.get(id).getBalance()).isEqualTo(100L);
+    assertThat(accounts.get(id).getAvailableBalance()).isEqualTo(30L);
+    Assertions.assertThrows(NotEnoughBalanceException.class,
+        () -> accountService.withdraw(id, 40L, TxId.of(txService.generateTxId())));
+    Assertions.assertThrows(NotEnoughBalanceException.class, () -> holds.authorize(id, 40L,
+        TxId.of(txService.generateTxId()), HoldService.DEFAULT_TTL_IN_MS));
+    accountService.withdraw(id, 30L, TxId.of(txService.generateTxId()));
+    assertThat(accounts.get(id).getAvailableBalance()).isEqualTo(0L);
+  }
+
+  @Test
+  public void holdShouldBeRefusedOnShardedAccounts() {
+    var id = accounts.insert(new Account("holder", Currency.EUR, 100L)).getId();
+    accountService.reshard(id, 4);
+
+    Assertions.assertThrows(OperationNotAllowedException.class, () -> holds.authorize(id, 70L,
+        TxId.of(txService.generateTxId()), HoldService.DEFAULT_TTL_IN_MS));
+    assertThat(accounts.get(id).getHeld()).isEqualTo(0L);
+  }
+
+  @Test
+  public void holdShouldBeRefusedWhenAccountsAreJournaled() {
+    var id = accounts.insert(new Account("holder", Currency.EUR, 100L)).getId();
+    var journaled = new HoldService(accounts, lock, helper, txService, null, true);
+
+    Assertions.assertThrows(OperationNotAllowedException.class, () -> journaled.authorize(id, 70L,
+        TxId.of(txService.generateTxId()), HoldService.DEFAULT_TTL_IN_MS));
+    assertThat(accounts.get(id).getHeld()).isEqualTo(0L);
+  }
+
+  @Test
+  public void partialCaptureShouldDebitItAndReleaseTheRest() {
+    var id = accounts.insert(new Account("holder", Currency.EUR, 100L)).getId();
+    var txId = txService.generateTxId();
+    holds.authorize(id, 70L, TxId.of(txId), HoldService.DEFAULT_TTL_IN_MS);
+
+    holds.capture(txId, 50L);
+
+    assertThat(accounts.get(id).getBalance()).isEqualTo(50L);
+    assertThat(accounts.get(id).getHeld()).isEqualTo(0L);
+    assertThat(txService.getAccountHistory(id, 0L, Long.MAX_VALUE, null, 10))
+        .extracting(Transaction::getTransactionId, Transaction::getOperationName,
+            Transaction::getAmount)
+        .containsExactly(tuple(txId, TransactionType.CAPTURE, 50L));
+    Assertions.assertThrows(EntityNotFoundException.class, () -> holds.capture(txId, 10L));
+    assertThat(holds.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void releasedHoldShouldNotBeCaptured() {
+    var id = accounts.insert(new Account("holder", Currency.EUR, 100L)).getId();
+    var txId = txService.generateTxId();
+    holds.authorize(id, 70L, TxId.of(txId), HoldService.DEFAULT_TTL_IN_MS);
+
+    holds.release(txId);
+
+    assertThat(accounts.get(id).getAvailableBalance()).isEqualTo(100L);
+    Assertions.assertThrows(EntityNotFoundException.class, () -> holds.capture(txId, null));
+    assertThat(accounts.get(id).getBalance()).isEqualTo(100L);
+  }
+
+  @Test
+  public void expiredHoldsShouldBeReleased() {
+    var id = accounts.insert(new Account("holder", Currency.EUR, 100L)).getId();
+    var txId = txService.generateTxId();
+    var hold = holds.authorize(id, 70L, TxId.of(txId), 1_000L);
+    holds.authorize(id, 10L, TxId.of(txService.generateTxId()), HoldService.DEFAULT_TTL_IN_MS);
+
+    assertThat(holds.expireDue(hold.getExpiresAtMs() - 1_000L)).isEqualTo(0);
+    assertThat(holds.expireDue(hold.getExpiresAtMs() + 1_000L)).isEqualTo(1);
+
+    assertThat(accounts.get(id).getHeld()).isEqualTo(10L);
+    assertThat(holds.size()).isEqualTo(1);
+    Assertions.assertThrows(EntityNotFoundException.class, () -> holds.capture(txId, null));
+  }
+}
@@ -0,0 +1,74 @@
+package com.revolut.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.domain.Exceptions.OverloadedException;
+import com.revolut.metrics.Metrics;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LockAdmissionTest {
+
+  private static final long MS = 1_000_000L;
+
+  @Test
+  public void fullQueueShouldShedUntilAWaiterLeaves() {
+    var admission = new LockAdmission(16, 2, 1_000L, new Metrics());
+
+    assertThat(admission.enter(3)).isNull();
+    assertThat(admission.enter(3)).isNull();
+    assertThat(admission.enter(3)).isNotNull();
+    assertThat(admission.enter(4)).isNull();
+    admission.leave(3);
+    assertThat(admission.enter(3)).isNull();
+  }
+
+  @Test
+  public void expectedWaitOverTheBudgetShouldBeShed() {
+    var admission = new LockAdmission(16, LockAdmission.UNBOUNDED_WAITERS, 1_000L,
+        new Metrics());
+    for (int i = 0; i < 200; i++) {
+      admission.recordHold(400 * MS);
+    }
+
+    assertThat(admission.enter(0)).isNull();
+    assertThat(admission.enter(0)).isNull();
+    var shed = admission.enter(0);
+
+    assertThat(shed).isNotNull();
+    assertThat(shed.getRetryAfterSeconds()).isEqualTo(2L);
+  }
+
+  @Test
+  public void waitShouldNotOutlastTheBudget() throws Exception {
+    var lock = new Lock(Lock.DEFAULT_STRIPES, LockAdmission.UNBOUNDED_WAITERS, 100L,
+        new Metrics());
+    var held = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var executor = Executors.newSingleThreadExecutor();
+    executor.submit(() -> lock.runWithLock(1, () -> {
+      held.countDown();
+      await(release);
+    }));
+    assertThat(held.await(10, TimeUnit.SECONDS)).isTrue();
+
+    var shed = Assertions.assertThrows(OverloadedException.class,
+        () -> lock.runWithLock(1, () -> {
+        }));
+
+    assertThat(shed.getRetryAfterSeconds()).isEqualTo(1L);
+    release.countDown();
+    executor.shutdown();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -5,6 +5,7 @@ import static org.eclipse.jetty.util.component.LifeCycle.stop;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -13,23 +14,27 @@ import org.junit.jupiter.api.Test;
 
 public class LockTest {
 
+
   @Test
   public void shouldWaitForLockAcquisition() throws InterruptedException {
     Lock lock = new Lock();
     ExecutorService executor = Executors.newFixedThreadPool(2);
     CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch acquiredLatch = new CountDownLatch(1);
     CountDownLatch completedLatch = new CountDownLatch(1);
     List inputs = new ArrayList<Integer>();
 
     executor.submit(
         () -> lock.runWithLock(1, () -> {
           inputs.add(1);
+          acquiredLatch.countDown();
           try {
             startLatch.await();
           } catch (InterruptedException e) {
             e.printStackTrace();
           }
         }));
+    acquiredLatch.await();
 
     executor.submit(
         () -> lock.runWithLock(1, () ->
@@ -98,4 +103,89 @@ public class LockTest {
     completedLatch.await();
     assertThat(inputs).hasSize(nThreads);
   }
+
+  @Test
+  public void shouldNotBeDeadlockedWhenIdsShareStripes() throws InterruptedException {
+    Lock lock = new Lock(2);
+    int nThreads = 100;
+    ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch completedLatch = new CountDownLatch(nThreads);
+    var inputs = ConcurrentHashMap.newKeySet();
+    IntStream.range(0, nThreads).forEach(i ->
+        executor.submit(
+            () -> {
+              //1 and 3 share a stripe, 2 is on the other one
+              var firstId = i % 3 + 1;
+              var secondId = (i + 1) % 3 + 1;
+              try {
+                startLatch.await();
+                lock.runWithLock(firstId, secondId, "tx " + i, () -> inputs.add(i));
+              } catch (InterruptedException e) {
+              } finally {
+                completedLatch.countDown();
+              }
+            }));
+    startLatch.countDown();
+    completedLatch.await();
+    assertThat(inputs).hasSize(nThreads);
+  }
+
+  //every id is new, like production traffic, and still lands on one of the stripes
+  @Test
+  public void lockTableShouldNotGrowWithTheIdsItSees() {
+    Lock lock = new Lock(64);
+    for (int id = 0; id < 100_000; id++) {
+      lock.runWithLock(id, id + 1, "tx-" + id, () -> {
+      });
+    }
+
+    assertThat(lock.lockTableSize()).isEqualTo(2 * 64);
+    assertThat(IntStream.range(-1_000, 100_000).map(lock::stripeOf))
+        .allMatch(stripe -> stripe >= 0 && stripe < 64);
+    assertThat(IntStream.range(0, 1_000).mapToObj(i -> lock.stripeOf("tx-" + i)))
+        .allMatch(stripe -> stripe >= 0 && stripe < 64);
+  }
+
+  @Test
+  public void contendedAccountsShouldBeReportedMostWaitedForFirst() throws InterruptedException {
+    Lock lock = new Lock();
+    ExecutorService executor = Executors.newFixedThreadPool(5);
+    CountDownLatch acquiredLatch = new CountDownLatch(2);
+    CountDownLatch releaseLatch = new CountDownLatch(1);
+    CountDownLatch completedLatch = new CountDownLatch(3);
+    IntStream.of(1, 2).forEach(id -> executor.submit(() -> lock.runWithLock(id, () -> {
+      acquiredLatch.countDown();
+      await(releaseLatch);
+    })));
+    acquiredLatch.await();
+    IntStream.of(1, 1, 2).forEach(id -> executor.submit(() -> {
+      lock.runWithLock(id, "tx-" + id, () -> {
+      });
+      completedLatch.countDown();
+    }));
+    Thread.sleep(50);
+    releaseLatch.countDown();
+    completedLatch.await();
+    lock.runWithLock(3, "tx-3", () -> {
+    });
+    stop(executor);
+
+    var report = lock.getProfiler().report();
+    assertThat(report.getAccounts().getCalls()).isEqualTo(6L);
+    assertThat(report.getAccounts().getContended()).isGreaterThanOrEqualTo(3L);
+    assertThat(report.getAccounts().getWaitP99Nanos()).isGreaterThanOrEqualTo(50_000_000L);
+    assertThat(report.getTxIds().getCalls()).isEqualTo(4L);
+    assertThat(report.getHotAccounts()).extracting(LockProfiler.HotAccount::getId)
+        .containsExactly(1, 2);
+    assertThat(report.getHotAccounts().get(0).getContentions()).isGreaterThanOrEqualTo(2L);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
 }
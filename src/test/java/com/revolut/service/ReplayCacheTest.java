@@ -0,0 +1,100 @@
+package com.revolut.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Exceptions.InvalidTransactionId;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.TxId;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import com.revolut.service.ReplayCache.Request;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ReplayCacheTest {
+
+  private final ReplayCache replays = new ReplayCache();
+  private final TransactionService txService =
+      new TransactionService(new InMemoryTransactionRepo(new InMemoryDB()));
+  private final AtomicInteger attempts = new AtomicInteger();
+
+  @Test
+  public void retryOfTheSameRequestShouldReplayItsResult() {
+    var txId = TxId.of(txService.generateTxId());
+
+    replays.runOnce(txId, Request.deposit(1, 10L), attempts::incrementAndGet);
+    replays.runOnce(txId, Request.deposit(1, 10L), attempts::incrementAndGet);
+
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  public void anotherRequestUnderAUsedTxIdShouldRun() {
+    var txId = TxId.of(txService.generateTxId());
+    replays.runOnce(txId, Request.deposit(1, 10L), attempts::incrementAndGet);
+
+    Assertions.assertThrows(InvalidTransactionId.class,
+        () -> replays.runOnce(txId, Request.deposit(1, 20L), () -> {
+          attempts.incrementAndGet();
+          throw new InvalidTransactionId("used");
+        }));
+    assertThat(attempts).hasValue(2);
+  }
+
+  @Test
+  public void failedAttemptShouldBeForgotten() {
+    var txId = TxId.of(txService.generateTxId());
+
+    Assertions.assertThrows(NotEnoughBalanceException.class,
+        () -> replays.runOnce(txId, Request.withdraw(1, 10L), () -> {
+          attempts.incrementAndGet();
+          throw new NotEnoughBalanceException("no money");
+        }));
+    replays.runOnce(txId, Request.withdraw(1, 10L), attempts::incrementAndGet);
+
+    assertThat(attempts).hasValue(2);
+  }
+
+  @Test
+  public void retryWhileTheFirstIsInFlightShouldWaitForIt() {
+    var txId = TxId.of(txService.generateTxId());
+    var first = new CompletableFuture<Void>();
+    replays.runOnceAsync(txId, Request.transfer(1, 2, 10L), () -> first);
+
+    var retry = replays.runOnceAsync(txId, Request.transfer(1, 2, 10L), () -> {
+      attempts.incrementAndGet();
+      return CompletableFuture.completedFuture(null);
+    });
+
+    assertThat(retry).isNotDone();
+    first.complete(null);
+    assertThat(retry).isCompleted();
+    assertThat(attempts).hasValue(0);
+  }
+
+  @Test
+  public void retriedTransferShouldMoveTheMoneyOnce() {
+    var db = new InMemoryDB();
+    var accounts = new InMemoryAccountRepo(db);
+    var transactionService = new TransactionService(new InMemoryTransactionRepo(db));
+    var service = new TransferService(new LockedMovements(accounts, new Lock(),
+        new InMemoryTransactionHelper(db), transactionService));
+    var from = accounts.insert(new Account("from", Currency.EUR, 100L)).getId();
+    var to = accounts.insert(new Account("to", Currency.EUR, 0L)).getId();
+    var txId = TxId.of(txService.generateTxId());
+
+    service.transfer(from, to, 30L, txId);
+    service.transfer(from, to, 30L, txId);
+
+    assertThat(accounts.get(from).getBalance()).isEqualTo(70L);
+    assertThat(accounts.get(to).getBalance()).isEqualTo(30L);
+    Assertions.assertThrows(InvalidTransactionId.class,
+        () -> service.transfer(from, to, 40L, txId));
+  }
+}
@@ -0,0 +1,123 @@
+package com.revolut.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Transfer;
+import com.revolut.domain.TransferResult;
+import com.revolut.domain.TxId;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ShardedBalancesTest {
+
+  private final InMemoryDB db = new InMemoryDB();
+  private final InMemoryAccountRepo accounts = new InMemoryAccountRepo(db);
+  private final InMemoryTransactionHelper helper = new InMemoryTransactionHelper(db);
+  private final TransactionService txService =
+      new TransactionService(new InMemoryTransactionRepo(db));
+  private final Lock lock = new Lock();
+  private final AccountService accountService =
+      new AccountService(accounts, new LockedMovements(accounts, lock, helper, txService));
+  private final TransferService transferService =
+      new TransferService(new LockedMovements(accounts, lock, helper, txService));
+  private final ShardedBalances sharded = new ShardedBalances(accounts);
+
+  @Test
+  public void debitShouldBorrowFromTheOtherShards() {
+    var id = shardedAccount(0L, 4);
+    helper.runTransactional(tx -> {
+      for (int shard = 0; shard < 4; shard++) {
+        accounts.addShardBalanceTransactional(id, shard, 10L, tx);
+      }
+    });
+
+    helper.runTransactional(tx -> sharded.debit(accounts.get(id), 35L, tx));
+
+    assertThat(accounts.get(id).getBalance()).isEqualTo(5L);
+    Assertions.assertThrows(NotEnoughBalanceException.class, () ->
+        helper.runTransactional(tx -> sharded.debit(accounts.get(id), 6L, tx)));
+    assertThat(accounts.get(id).getBalance()).isEqualTo(5L);
+  }
+
+  @Test
+  public void depositsShouldAddUpAcrossShards() {
+    var id = shardedAccount(0L, 8);
+    for (int i = 0; i < 20; i++) {
+      accountService.deposit(id, 5L, TxId.of(txService.generateTxId()));
+    }
+
+    assertThat(accountService.get(id).getBalance()).isEqualTo(100L);
+  }
+
+  @Test
+  public void batchShouldApplyTheNetChangeOfShardedAccounts() {
+    var hot = shardedAccount(100L, 4);
+    var other = accounts.insert(new Account("other", Currency.EUR, 0L)).getId();
+
+    var results = transferService.transferAll(List.of(
+        new Transfer(hot, other, 80L, TxId.of(txService.generateTxId())),
+        new Transfer(other, hot, 30L, TxId.of(txService.generateTxId())),
+        new Transfer(hot, other, 60L, TxId.of(txService.generateTxId()))));
+
+    assertThat(results).extracting(TransferResult::isSuccessful).containsExactly(true, true, false);
+    assertThat(accounts.get(hot).getBalance()).isEqualTo(50L);
+    assertThat(accounts.get(other).getBalance()).isEqualTo(50L);
+  }
+
+  //credits lock nothing and land on any shard while debits borrow across them
+  @Test
+  public void concurrentCreditsAndDebitsShouldKeepTheTotalBalance() throws InterruptedException {
+    var hot = shardedAccount(0L, 8);
+    var sources = new Integer[8];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = accounts.insert(new Account("source", Currency.EUR, 100L)).getId();
+    }
+    var withdrawn = new AtomicLong();
+    var executor = Executors.newFixedThreadPool(sources.length + 2);
+    for (var source : sources) {
+      executor.submit(() -> {
+        for (int i = 0; i < 20; i++) {
+          transferService.transfer(source, hot, 5L, TxId.of(txService.generateTxId()));
+        }
+      });
+    }
+    for (int i = 0; i < 2; i++) {
+      executor.submit(() -> {
+        for (int j = 0; j < 50; j++) {
+          try {
+            accountService.withdraw(hot, 7L, TxId.of(txService.generateTxId()));
+            withdrawn.addAndGet(7L);
+          } catch (NotEnoughBalanceException e) {
+            //the credits haven't caught up yet
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(accounts.get(hot).getBalance())
+        .isEqualTo(sources.length * 100L - withdrawn.get());
+    helper.runTransactional(tx ->
+        assertThat(Arrays.stream(accounts.getShardBalancesTransactional(hot, tx)).min()
+            .getAsLong()).isGreaterThanOrEqualTo(0L));
+  }
+
+  private Integer shardedAccount(Long balance, int shards) {
+    var id = accounts.insert(new Account("hot", Currency.EUR, balance)).getId();
+    accountService.reshard(id, shards);
+    return id;
+  }
+}
@@ -0,0 +1,58 @@
+package com.revolut.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TimingWheelTest {
+
+  private final TimingWheel<String> wheel = new TimingWheel<>(8, 10L, 0L);
+  private final List<String> expired = new ArrayList<>();
+
+  @Test
+  public void entryShouldExpireOnItsTickAndNeverBefore() {
+    wheel.schedule("a", 25L);
+    wheel.schedule("b", 40L);
+
+    wheel.advance(29L, expired::add);
+    assertThat(expired).isEmpty();
+    wheel.advance(30L, expired::add);
+    assertThat(expired).containsExactly("a");
+    wheel.advance(40L, expired::add);
+    assertThat(expired).containsExactly("a", "b");
+  }
+
+  @Test
+  public void entryMoreThanATurnAwayShouldWaitOutItsRounds() {
+    //8 slots of 10ms, a turn is 80ms
+    wheel.schedule("far", 250L);
+
+    wheel.advance(240L, expired::add);
+    assertThat(expired).isEmpty();
+    wheel.advance(250L, expired::add);
+    assertThat(expired).containsExactly("far");
+  }
+
+  @Test
+  public void cancelledEntryShouldNotExpire() {
+    var timeout = wheel.schedule("cancelled", 10L);
+    wheel.schedule("kept", 10L);
+
+    assertThat(timeout.cancel()).isTrue();
+    wheel.advance(100L, expired::add);
+
+    assertThat(expired).containsExactly("kept");
+    assertThat(timeout.cancel()).isFalse();
+  }
+
+  @Test
+  public void expiredEntryShouldNotBeCancelled() {
+    var timeout = wheel.schedule("expired", 10L);
+
+    wheel.advance(10L, expired::add);
+
+    assertThat(timeout.cancel()).isFalse();
+  }
+}
@@ -0,0 +1,45 @@
+package com.revolut.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class TransactionIdRegistryTest {
+
+  private static final long MINUTE_IN_MS = 60_000L;
+  private static final long WINDOW_IN_MS = 5 * MINUTE_IN_MS;
+
+  @Test
+  public void shouldContainAddedTxId() {
+    var registry = new TransactionIdRegistry(WINDOW_IN_MS);
+    registry.add("tx-1", 1_000L);
+
+    assertThat(registry.contains("tx-1", 1_000L)).isTrue();
+    assertThat(registry.contains("tx-2", 1_000L)).isFalse();
+  }
+
+  @Test
+  public void shouldForgetTxIdsOutsideOfValidityWindow() {
+    var registry = new TransactionIdRegistry(WINDOW_IN_MS);
+    registry.add("tx-1", 0L);
+    registry.add("tx-2", WINDOW_IN_MS);
+    assertThat(registry.contains("tx-1", 0L)).isTrue();
+
+    //same slot, one full ring later
+    registry.add("tx-3", WINDOW_IN_MS + 2 * MINUTE_IN_MS);
+
+    assertThat(registry.contains("tx-1", 0L)).isFalse();
+    assertThat(registry.contains("tx-2", WINDOW_IN_MS)).isTrue();
+    assertThat(registry.contains("tx-3", WINDOW_IN_MS + 2 * MINUTE_IN_MS)).isTrue();
+  }
+
+  @Test
+  public void shouldIgnoreTxIdsOlderThanRecycledSlot() {
+    var registry = new TransactionIdRegistry(WINDOW_IN_MS);
+    registry.add("tx-new", WINDOW_IN_MS + 2 * MINUTE_IN_MS);
+    registry.add("tx-old", 0L);
+
+    assertThat(registry.contains("tx-old", 0L)).isFalse();
+    assertThat(registry.contains("tx-new", WINDOW_IN_MS + 2 * MINUTE_IN_MS)).isTrue();
+  }
+}
@@ -1,9 +1,13 @@
 package com.revolut.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import com.revolut.domain.TxId;
 import com.revolut.repo.TransactionRepo;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -28,7 +32,7 @@ public class TransactionServiceTest {
         executor.submit(() -> {
           try {
             startLatch.await();
-            set.add(service.generateTxId());
+            set.add(TxId.of(service.generateTxId()));
           } catch (InterruptedException e) {
           } finally {
             finishLatch.countDown();
@@ -39,4 +43,61 @@ public class TransactionServiceTest {
     assertThat(set).hasSize(nThreads);
   }
 
+  @Test
+  public void transactionIdShouldNotBeUsableAfterMarkedAsUsed() {
+    var service = new TransactionService(mock(TransactionRepo.class));
+    var txId = TxId.of(service.generateTxId());
+    assertThat(service.isUsable(txId)).isTrue();
+
+    service.markAsUsed(txId);
+
+    assertThat(service.isUsable(txId)).isFalse();
+    assertThat(service.isUsable(TxId.of(service.generateTxId()))).isTrue();
+  }
+
+  @Test
+  public void recentlyUsedTransactionIdsShouldBeLoadedFromLedger() {
+    var repo = mock(TransactionRepo.class);
+    var usedTxId = new TransactionService(repo).generateTxId();
+    when(repo.getTransactionIdsSince(anyLong())).thenReturn(List.of(usedTxId));
+
+    var service = new TransactionService(repo);
+
+    assertThat(service.isUsable(TxId.of(usedTxId))).isFalse();
+  }
+
+  @Test
+  public void parsesTheTimestampOfATxId() {
+    assertThat(TxId.of("tx-1579123792281-1").getTimestampMs()).isEqualTo(1579123792281L);
+    assertThat(TxId.of("tx-0000000000000-abc").getTimestampMs()).isEqualTo(0L);
+    assertThat(TxId.of("tx-1579123792281-1").leg(2))
+        .extracting(TxId::getValue, TxId::getTimestampMs)
+        .containsExactly("tx-1579123792281-1.2", 1579123792281L);
+  }
+
+  @Test
+  public void rejectsMalformedTxIds() {
+    assertThat(List.of(
+        "", "tx", "tx-1579123792281", "tx-1579123792281-", "tx-1579123792281-1-2",
+        "ab-1579123792281-1", "tx-157912379228-1", "tx-15791237922812-1", "tx-+579123792281-1",
+        "tx-15791237a2281-1", "tx_1579123792281-1", "tx-1579123792281-abc.1"))
+        .noneMatch(txId -> TxId.of(txId).isWellFormed());
+    assertThat(TxId.of(null).getTimestampMs()).isEqualTo(TxId.INVALID_TIMESTAMP);
+    assertThat(TxId.of("tx-1579123792281-" + "1".repeat(TxId.MAX_LENGTH - 17)).isWellFormed())
+        .isTrue();
+    assertThat(TxId.of("tx-1579123792281-" + "1".repeat(TxId.MAX_LENGTH - 16)).isWellFormed())
+        .isFalse();
+  }
+
+  @Test
+  public void validTxIdsAreInsideTheValidityWindow() {
+    var now = System.currentTimeMillis();
+    var expired = TxId.of("tx-" + (now - 6 * 60 * 1000) + "-1");
+
+    assertThat(TransactionService.validateTxId(TxId.of("tx-" + now + "-1"))).isTrue();
+    assertThat(TransactionService.validateTxId(expired)).isFalse();
+    assertThat(TransactionService.validateTxId(TxId.of("tx-" + (now + 60 * 1000) + "-1")))
+        .isFalse();
+    assertThat(expired.isWellFormed()).isTrue();
+  }
 }
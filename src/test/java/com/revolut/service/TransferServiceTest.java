@@ -1,19 +1,36 @@
 package com.revolut.service;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.revolut.db.InMemoryDB;
 import com.revolut.domain.Account;
 import com.revolut.domain.Currency;
 import com.revolut.domain.Exceptions.CurrencyMismatchException;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
 import com.revolut.domain.Exceptions.InvalidTransactionId;
 import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Exceptions.OperationNotAllowedException;
+import com.revolut.domain.PaymentLeg;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transfer;
+import com.revolut.domain.TransferResult;
+import com.revolut.domain.TxId;
+import com.revolut.metrics.Metrics;
 import com.revolut.repo.AccountRepo;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
 import com.revolut.repo.impl.TestTransactionHelper;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -25,25 +42,31 @@ public class TransferServiceTest {
   public final TransactionService txService = Mockito
       .mock(TransactionService.class);
   public final TestTransactionHelper txHelper = new TestTransactionHelper();
-  public final TransferService service = new TransferService(accountRepo, new Lock(), txHelper,
-      txService);
+  public final TransferService service = new TransferService(
+      new LockedMovements(accountRepo, new Lock(), txHelper, txService));
 
   @Test
   public void successfulTransferShouldLog2Transactions() {
     withValidTxId();
     when(accountRepo.get(any())).thenReturn(anAccount(100L));
-    service.transfer(0, 1, 10L, "tx-id");
+    when(accountRepo.removeBalanceTransactional(eq(0), eq(10L), any())).thenReturn(anAccount(90L));
+    when(accountRepo.addBalanceTransactional(eq(1), eq(10L), any())).thenReturn(anAccount(110L));
+    service.transfer(0, 1, 10L, TxId.of("tx-id"));
     verify(txService, times(2)).saveTransactional(any(), any());
+    verify(txService, times(1)).markAsUsed(TxId.of("tx-id"));
   }
 
   @Test
   public void shouldValidateBalance() {
     withValidTxId();
     when(accountRepo.get(any())).thenReturn(anAccount(10L));
+    when(accountRepo.removeBalanceTransactional(eq(0), eq(100L), any())).thenReturn(null);
     Assertions.assertThrows(NotEnoughBalanceException.class, () -> {
-      service.transfer(0, 1, 100L, "tx-id");
+      service.transfer(0, 1, 100L, TxId.of("tx-id"));
     });
     verify(accountRepo, never()).updateTransactional(any(), any());
+    verify(accountRepo, never()).addBalanceTransactional(any(), any(), any());
+    verify(txService, never()).saveTransactional(any(), any());
   }
 
   @Test
@@ -52,7 +75,7 @@ public class TransferServiceTest {
     when(accountRepo.get(eq(0))).thenReturn(anAccount(100L, Currency.EUR));
     when(accountRepo.get(eq(1))).thenReturn(anAccount(100L, Currency.USD));
     Assertions.assertThrows(CurrencyMismatchException.class, () -> {
-      service.transfer(0, 1, 10L, "tx-id");
+      service.transfer(0, 1, 10L, TxId.of("tx-id"));
     });
     verify(accountRepo, never()).updateTransactional(any(), any());
   }
@@ -61,9 +84,149 @@ public class TransferServiceTest {
   public void shouldValidateTransactionId() {
     withInvalidTxId();
     Assertions.assertThrows(InvalidTransactionId.class, () -> {
-      service.transfer(0, 1, 100L, "tx-id");
+      service.transfer(0, 1, 100L, TxId.of("tx-id"));
     });
     verify(accountRepo, never()).updateTransactional(any(), any());
+    verify(txService, never()).markAsUsed(any());
+  }
+
+  @Test
+  public void batchShouldBeCommittedOnceAndFailPerItem() {
+    withValidTxId();
+    when(accountRepo.getAll(anyCollection())).thenReturn(List.of(
+        new Account(0, "acc", Currency.EUR, 100L),
+        new Account(1, "acc", Currency.EUR, 0L),
+        new Account(2, "acc", Currency.USD, 100L)));
+    when(accountRepo.removeBalanceTransactional(any(), anyLong(), any()))
+        .thenReturn(new Account());
+    when(accountRepo.addBalanceTransactional(any(), anyLong(), any())).thenReturn(new Account());
+
+    var results = service.transferAll(List.of(
+        new Transfer(0, 1, 60L, TxId.of("tx-1")),
+        new Transfer(0, 1, 60L, TxId.of("tx-2")),
+        new Transfer(0, 2, 10L, TxId.of("tx-3")),
+        new Transfer(0, 1, 40L, TxId.of("tx-4")),
+        new Transfer(1, 0, 10L, TxId.of("tx-4"))));
+
+    assertThat(results).extracting(TransferResult::isSuccessful)
+        .containsExactly(true, false, false, true, false);
+    assertThat(results.get(1).getError()).isInstanceOf(NotEnoughBalanceException.class);
+    assertThat(results.get(2).getError()).isInstanceOf(CurrencyMismatchException.class);
+    assertThat(results.get(4).getError()).isInstanceOf(InvalidTransactionId.class);
+    verify(accountRepo, times(1)).removeBalanceTransactional(eq(0), eq(100L), any());
+    verify(accountRepo, times(1)).addBalanceTransactional(eq(1), eq(100L), any());
+    verify(accountRepo, never()).updateBalancesTransactional(anyCollection(), any());
+    verify(txService, times(1)).saveAllTransactional(argThat(txs -> txs.size() == 4), any());
+    verify(txService).markAsUsed(TxId.of("tx-1"));
+    verify(txService).markAsUsed(TxId.of("tx-4"));
+    verify(txService, never()).markAsUsed(TxId.of("tx-2"));
+  }
+
+  @Test
+  public void batchShouldReportNotFoundAccounts() {
+    withValidTxId();
+    when(accountRepo.getAll(anyCollection()))
+        .thenReturn(List.of(new Account(0, "acc", Currency.EUR, 100L)));
+
+    var results = service.transferAll(List.of(new Transfer(0, 1, 10L, TxId.of("tx-1"))));
+
+    assertThat(results.get(0).getError()).isInstanceOf(EntityNotFoundException.class);
+  }
+
+  @Test
+  public void multiPaymentShouldDebitOnceAndWriteEveryLegInOneBatch() {
+    withValidTxId();
+    when(accountRepo.getAll(anyCollection())).thenReturn(List.of(
+        new Account(0, "acc", Currency.EUR, 100L),
+        new Account(1, "acc", Currency.EUR, 0L),
+        new Account(2, "acc", Currency.EUR, 0L)));
+    when(accountRepo.removeBalanceTransactional(any(), anyLong(), any()))
+        .thenReturn(new Account());
+    when(accountRepo.addBalanceTransactional(any(), anyLong(), any())).thenReturn(new Account());
+
+    service.payMulti(0, List.of(new PaymentLeg(1, 30L), new PaymentLeg(2, 20L),
+        new PaymentLeg(1, 10L)), TxId.of("tx-id"));
+
+    verify(accountRepo, times(1)).removeBalanceTransactional(eq(0), eq(60L), any());
+    verify(accountRepo, times(1)).addBalanceTransactional(eq(1), eq(40L), any());
+    verify(accountRepo, times(1)).addBalanceTransactional(eq(2), eq(20L), any());
+    verify(txService, times(1)).saveAllTransactional(argThat(txs -> txs.size() == 4
+        && txs.get(0).getAmount() == 60L && txs.get(0).getTransactionId().equals("tx-id")
+        && txs.get(3).getTransactionId().equals("tx-id.3")), any());
+    verify(txService, never()).saveTransactional(any(), any());
+    verify(txService, times(1)).markAsUsed(TxId.of("tx-id"));
+  }
+
+  @Test
+  public void multiPaymentShouldApplyNoLegIfOneFails() {
+    withValidTxId();
+    when(accountRepo.getAll(anyCollection())).thenReturn(List.of(
+        new Account(0, "acc", Currency.EUR, 100L),
+        new Account(1, "acc", Currency.EUR, 0L),
+        new Account(2, "acc", Currency.USD, 0L)));
+
+    Assertions.assertThrows(CurrencyMismatchException.class, () -> service.payMulti(0,
+        List.of(new PaymentLeg(1, 30L), new PaymentLeg(2, 20L)), TxId.of("tx-id")));
+    Assertions.assertThrows(NotEnoughBalanceException.class, () -> service.payMulti(0,
+        List.of(new PaymentLeg(1, 60L), new PaymentLeg(1, 60L)), TxId.of("tx-id")));
+    Assertions.assertThrows(EntityNotFoundException.class, () -> service.payMulti(0,
+        List.of(new PaymentLeg(1, 30L), new PaymentLeg(3, 20L)), TxId.of("tx-id")));
+    verify(accountRepo, never()).removeBalanceTransactional(any(), anyLong(), any());
+    verify(accountRepo, never()).addBalanceTransactional(any(), anyLong(), any());
+    verify(txService, never()).markAsUsed(any());
+  }
+
+  @Test
+  public void multiPaymentShouldBeRefusedWithALedger() {
+    var ledgerService = new TransferService(
+        Mockito.mock(LedgerEngine.class, Mockito.CALLS_REAL_METHODS));
+
+    Assertions.assertThrows(OperationNotAllowedException.class, () -> ledgerService.payMulti(0,
+        List.of(new PaymentLeg(1, 30L)), TxId.of("tx-id")));
+  }
+
+  @Test
+  public void multiPaymentShouldBeStoredWithALegPerCredit() {
+    var db = new InMemoryDB();
+    var accounts = new InMemoryAccountRepo(db);
+    var transactions = new TransactionService(new InMemoryTransactionRepo(db));
+    var payments = new TransferService(new LockedMovements(accounts, new Lock(),
+        new InMemoryTransactionHelper(db), transactions));
+    var from = accounts.insert(new Account("from", Currency.EUR, 100L)).getId();
+    var to = accounts.insert(new Account("to", Currency.EUR, 0L)).getId();
+    var txId = TxId.of(transactions.generateTxId());
+
+    payments.payMulti(from, List.of(new PaymentLeg(to, 30L), new PaymentLeg(to, 20L)), txId);
+
+    assertThat(accounts.get(from).getBalance()).isEqualTo(50L);
+    assertThat(accounts.get(to).getBalance()).isEqualTo(50L);
+    assertThat(transactions.getAccountHistory(to, 0L, Long.MAX_VALUE, null, 10))
+        .extracting(Transaction::getTransactionId)
+        .containsExactlyInAnyOrder(txId.leg(1).getValue(), txId.leg(2).getValue());
+    Assertions.assertThrows(InvalidTransactionId.class,
+        () -> payments.payMulti(from, List.of(new PaymentLeg(to, 40L)), txId));
+  }
+
+  @Test
+  public void optimisticTransferShouldRetryOnFreshReads() {
+    withValidTxId();
+    //the repo hands out copies, an attempt can't see the changes of the one before it
+    when(accountRepo.get(eq(0)))
+        .thenAnswer(invocation -> new Account(0, "acc", Currency.EUR, 100L, 3L));
+    when(accountRepo.get(eq(1)))
+        .thenAnswer(invocation -> new Account(1, "acc", Currency.EUR, 0L, 7L));
+    when(accountRepo.updateBalancesTransactional(anyCollection(), any())).thenReturn(false, true);
+    var optimistic = new TransferService(new OptimisticMovements(accountRepo, new Lock(),
+        txHelper, txService, new OptimisticRetry(8, 0L, 0L, new Metrics())));
+
+    optimistic.transfer(0, 1, 60L, TxId.of("tx-id"));
+
+    verify(accountRepo, times(2)).updateBalancesTransactional(argThat(accs ->
+        accs.contains(new Account(0, "acc", Currency.EUR, 40L, 3L))
+            && accs.contains(new Account(1, "acc", Currency.EUR, 60L, 7L))), any());
+    verify(accountRepo, never()).removeBalanceTransactional(any(), any(), any());
+    verify(txService, times(2)).saveTransactional(any(), any());
+    verify(txService, times(1)).markAsUsed(TxId.of("tx-id"));
   }
 
   private Account anAccount(Long balance) {
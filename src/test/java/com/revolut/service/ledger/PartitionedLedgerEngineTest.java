@@ -0,0 +1,166 @@
+package com.revolut.service.ledger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.revolut.db.InMemoryDB;
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.InvalidTransactionId;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.Transaction;
+import com.revolut.domain.Transaction.TransactionType;
+import com.revolut.domain.TxId;
+import com.revolut.repo.TransactionHelper;
+import com.revolut.repo.impl.InMemoryAccountRepo;
+import com.revolut.repo.impl.InMemoryTransactionHelper;
+import com.revolut.repo.impl.InMemoryTransactionRepo;
+import com.revolut.service.LedgerEngine;
+import com.revolut.service.TransactionService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PartitionedLedgerEngineTest {
+
+  private final InMemoryDB db = new InMemoryDB();
+  private final InMemoryAccountRepo accounts = new InMemoryAccountRepo(db);
+  private final InMemoryTransactionRepo transactionRepo = new InMemoryTransactionRepo(db);
+  private final TransactionService txService = new TransactionService(transactionRepo);
+  private final CountDownLatch firstCommitStarted = new CountDownLatch(1);
+  private final CountDownLatch firstCommitReleased = new CountDownLatch(1);
+  private final PartitionedLedgerEngine engine = new PartitionedLedgerEngine(accounts,
+      blockingFirstCommit(), txService, 4);
+
+  @AfterEach
+  public void stop() throws InterruptedException {
+    firstCommitReleased.countDown();
+    engine.close();
+  }
+
+  @Test
+  public void transferBetweenPartitionsShouldCompleteBothLegs() {
+    firstCommitReleased.countDown();
+    var from = account(100L);
+    var to = accountInAnotherPartitionThan(from, 0L);
+    var txId = TxId.of(txService.generateTxId());
+
+    LedgerEngine.await(engine.transfer(from, to, 40L, txId));
+
+    assertThat(accounts.get(from).getBalance()).isEqualTo(60L);
+    assertThat(accounts.get(to).getBalance()).isEqualTo(40L);
+    assertThat(transactionsOf(txId)).extracting(Transaction::getOperationName)
+        .containsExactlyInAnyOrder(TransactionType.TRANSFER_SOURCE,
+            TransactionType.TRANSFER_DESTINATION);
+  }
+
+  @Test
+  public void debitShouldBeCheckedOnTheSourcePartition() {
+    firstCommitReleased.countDown();
+    var from = account(10L);
+    var to = accountInAnotherPartitionThan(from, 0L);
+
+    Assertions.assertThrows(NotEnoughBalanceException.class, () ->
+        LedgerEngine.await(engine.transfer(from, to, 40L, TxId.of(txService.generateTxId()))));
+    assertThat(accounts.get(to).getBalance()).isEqualTo(0L);
+  }
+
+  //the destination is deleted after the debit committed, before its partition got the credit
+  @Test
+  public void creditToADeletedAccountShouldBeRefunded() throws Exception {
+    var from = account(100L);
+    var to = accountInAnotherPartitionThan(from, 0L);
+    var txId = TxId.of(txService.generateTxId());
+    var ack = engine.transfer(from, to, 40L, txId);
+    assertThat(firstCommitStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    engine.delete(to).get(10, TimeUnit.SECONDS);
+    firstCommitReleased.countDown();
+
+    Assertions.assertThrows(EntityNotFoundException.class, () -> LedgerEngine.await(ack));
+    assertThat(accounts.get(from).getBalance()).isEqualTo(100L);
+    assertThat(transactionsOf(txId)).allMatch(tx -> tx.getRelatedEntityId().equals(from))
+        .extracting(Transaction::getOperationName)
+        .containsExactlyInAnyOrder(TransactionType.TRANSFER_SOURCE,
+            TransactionType.TRANSFER_DESTINATION);
+  }
+
+  @Test
+  public void txIdShouldBeUsedOnce() {
+    firstCommitReleased.countDown();
+    var id = account(0L);
+    var txId = TxId.of(txService.generateTxId());
+
+    LedgerEngine.await(engine.deposit(id, 10L, txId));
+
+    Assertions.assertThrows(InvalidTransactionId.class,
+        () -> LedgerEngine.await(engine.withdraw(id, 10L, txId)));
+    assertThat(accounts.get(id).getBalance()).isEqualTo(10L);
+  }
+
+  @Test
+  public void concurrentTransfersShouldKeepTheTotalBalance() {
+    firstCommitReleased.countDown();
+    var ids = new Integer[8];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = account(100L);
+    }
+    var acks = new ArrayList<CompletableFuture<Void>>();
+    for (int round = 0; round < 50; round++) {
+      for (int i = 0; i < ids.length; i++) {
+        acks.add(engine.transfer(ids[i], ids[(i + round + 1) % ids.length], 3L,
+            TxId.of(txService.generateTxId())).exceptionally(e -> null));
+      }
+    }
+    CompletableFuture.allOf(acks.toArray(new CompletableFuture[0])).join();
+
+    var total = 0L;
+    for (var id : ids) {
+      var balance = accounts.get(id).getBalance();
+      assertThat(balance).isGreaterThanOrEqualTo(0L);
+      total += balance;
+    }
+    assertThat(total).isEqualTo(ids.length * 100L);
+  }
+
+  private Integer account(Long balance) {
+    return accounts.insert(new Account("acc", Currency.EUR, balance)).getId();
+  }
+
+  private Integer accountInAnotherPartitionThan(Integer other, Long balance) {
+    var id = account(balance);
+    while (engine.partitionOf(id) == engine.partitionOf(other)) {
+      id = account(balance);
+    }
+    return id;
+  }
+
+  private List<Transaction> transactionsOf(TxId txId) {
+    return transactionRepo.getAll().stream()
+        .filter(tx -> tx.getTransactionId().equals(txId.getValue()))
+        .collect(Collectors.toList());
+  }
+
+  //the first DB transaction waits until the test releases it
+  private TransactionHelper blockingFirstCommit() {
+    var helper = new InMemoryTransactionHelper(db);
+    var first = new AtomicBoolean(true);
+    return runnable -> {
+      if (first.getAndSet(false)) {
+        firstCommitStarted.countDown();
+        try {
+          firstCommitReleased.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      helper.runTransactional(runnable);
+    };
+  }
+}
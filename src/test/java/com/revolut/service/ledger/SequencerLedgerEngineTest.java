@@ -0,0 +1,166 @@
+package com.revolut.service.ledger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.revolut.domain.Account;
+import com.revolut.domain.Currency;
+import com.revolut.domain.Exceptions.CurrencyMismatchException;
+import com.revolut.domain.Exceptions.EntityNotFoundException;
+import com.revolut.domain.Exceptions.InvalidTransactionId;
+import com.revolut.domain.Exceptions.NotEnoughBalanceException;
+import com.revolut.domain.TxId;
+import com.revolut.repo.AccountRepo;
+import com.revolut.repo.TransactionRepo;
+import com.revolut.repo.impl.TestTransactionHelper;
+import com.revolut.service.LedgerEngine;
+import com.revolut.service.TransactionService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SequencerLedgerEngineTest {
+
+  private final AccountRepo accountRepo = mock(AccountRepo.class);
+  private final TransactionRepo transactionRepo = mock(TransactionRepo.class);
+  private final TransactionService txService = new TransactionService(transactionRepo);
+  private final Map<Integer, Long> committedBalances = new ConcurrentHashMap<>();
+  private final SequencerLedgerEngine engine = new SequencerLedgerEngine(accountRepo,
+      new TestTransactionHelper(), txService, 1024, 64).start();
+
+  @AfterEach
+  public void stop() throws InterruptedException {
+    engine.close();
+  }
+
+  @Test
+  public void depositShouldBeCommittedBeforeAcknowledged() {
+    withAccount(0, 100L, Currency.EUR);
+
+    LedgerEngine.await(engine.deposit(0, 10L, TxId.of(txService.generateTxId())));
+
+    assertThat(committedBalances).containsEntry(0, 110L);
+    verify(transactionRepo).saveAllTransactional(any(), any());
+  }
+
+  @Test
+  public void transferShouldMoveBalance() {
+    withAccount(0, 100L, Currency.EUR);
+    withAccount(1, 0L, Currency.EUR);
+
+    LedgerEngine.await(engine.transfer(0, 1, 40L, TxId.of(txService.generateTxId())));
+
+    assertThat(committedBalances).containsEntry(0, 60L).containsEntry(1, 40L);
+  }
+
+  @Test
+  public void shouldValidateBalance() {
+    withAccount(0, 10L, Currency.EUR);
+    Assertions.assertThrows(NotEnoughBalanceException.class,
+        () -> LedgerEngine.await(engine.withdraw(0, 100L, TxId.of(txService.generateTxId()))));
+    verify(accountRepo, never()).updateBalanceTransactional(anyInt(), anyLong(), any());
+  }
+
+  @Test
+  public void shouldValidateCurrency() {
+    withAccount(0, 100L, Currency.EUR);
+    withAccount(1, 100L, Currency.USD);
+    Assertions.assertThrows(CurrencyMismatchException.class,
+        () -> LedgerEngine.await(engine.transfer(0, 1, 10L, TxId.of(txService.generateTxId()))));
+  }
+
+  @Test
+  public void shouldValidateAccountExists() {
+    withAccount(0, 100L, Currency.EUR);
+    Assertions.assertThrows(EntityNotFoundException.class,
+        () -> LedgerEngine.await(engine.transfer(0, 1, 10L, TxId.of(txService.generateTxId()))));
+  }
+
+  @Test
+  public void sparseAndNegativeIdsShouldBeLookedUp() {
+    withAccount(Integer.MAX_VALUE - 1, 100L, Currency.EUR);
+
+    LedgerEngine.await(
+        engine.deposit(Integer.MAX_VALUE - 1, 10L, TxId.of(txService.generateTxId())));
+
+    assertThat(committedBalances).containsEntry(Integer.MAX_VALUE - 1, 110L);
+    Assertions.assertThrows(EntityNotFoundException.class,
+        () -> LedgerEngine.await(engine.deposit(-1, 10L, TxId.of(txService.generateTxId()))));
+  }
+
+  @Test
+  public void commandPublishedAfterCloseShouldFail() throws InterruptedException {
+    withAccount(0, 100L, Currency.EUR);
+    var beforeClose = engine.deposit(0, 10L, TxId.of(txService.generateTxId()));
+
+    engine.close();
+
+    LedgerEngine.await(beforeClose);
+    assertThat(engine.deposit(0, 10L, TxId.of(txService.generateTxId())))
+        .isCompletedExceptionally();
+  }
+
+  @Test
+  public void txIdShouldNotBeReusedWithinOrAcrossBatches() {
+    withAccount(0, 100L, Currency.EUR);
+    var txId = TxId.of(txService.generateTxId());
+
+    var first = engine.deposit(0, 10L, txId);
+    var second = engine.deposit(0, 10L, txId);
+    LedgerEngine.await(first);
+
+    Assertions.assertThrows(InvalidTransactionId.class, () -> LedgerEngine.await(second));
+    Assertions.assertThrows(InvalidTransactionId.class,
+        () -> LedgerEngine.await(engine.deposit(0, 10L, txId)));
+    assertThat(committedBalances).containsEntry(0, 110L);
+  }
+
+  @Test
+  public void concurrentTransfersShouldKeepTotalBalance() throws InterruptedException {
+    int nAccounts = 10;
+    int nThreads = 16;
+    int transfersPerThread = 500;
+    IntStream.range(0, nAccounts).forEach(id -> withAccount(id, 1_000L, Currency.EUR));
+    var executor = Executors.newFixedThreadPool(nThreads);
+    var completedLatch = new CountDownLatch(nThreads);
+    IntStream.range(0, nThreads).forEach(t -> executor.submit(() -> {
+      try {
+        for (int i = 0; i < transfersPerThread; i++) {
+          var from = (t + i) % nAccounts;
+          var to = (t + i * 7 + 1) % nAccounts;
+          engine.transfer(from, to, 1L + i % 5, TxId.of(txService.generateTxId()))
+              .exceptionally(e -> null);
+        }
+        engine.deposit(0, 0L, TxId.of(txService.generateTxId())).join();
+      } finally {
+        completedLatch.countDown();
+      }
+    }));
+    assertThat(completedLatch.await(30, TimeUnit.SECONDS)).isTrue();
+    executor.shutdown();
+
+    assertThat(committedBalances.values().stream().mapToLong(Long::longValue).sum())
+        .isEqualTo(nAccounts * 1_000L);
+  }
+
+  private void withAccount(int id, long balance, Currency currency) {
+    committedBalances.put(id, balance);
+    when(accountRepo.get(id)).thenReturn(new Account(id, "acc", currency, balance));
+    doAnswer(invocation -> committedBalances
+        .put(invocation.getArgument(0), invocation.getArgument(1)))
+        .when(accountRepo).updateBalanceTransactional(anyInt(), anyLong(), any());
+  }
+}
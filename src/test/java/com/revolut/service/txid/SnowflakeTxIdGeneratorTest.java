@@ -0,0 +1,73 @@
+package com.revolut.service.txid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.revolut.domain.TxId;
+import com.revolut.service.TransactionService;
+import com.revolut.web.Validators;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class SnowflakeTxIdGeneratorTest {
+
+  @Test
+  public void generatesValidTxIdsThatFitTheLedger() {
+    var generator = new SnowflakeTxIdGenerator(SnowflakeTxIdGenerator.MAX_NODE_ID);
+
+    for (int i = 0; i < 10_000; i++) {
+      var txId = generator.next();
+      assertThat(TransactionService.validateTxId(TxId.of(txId))).as(txId).isTrue();
+      assertThat(txId.length()).isLessThanOrEqualTo(Validators.MAX_PAYMENT_TX_ID_LENGTH);
+    }
+  }
+
+  @Test
+  public void txIdsAreUniqueAcrossThreads() throws InterruptedException {
+    var generator = new SnowflakeTxIdGenerator(0);
+    var threads = 16;
+    var perThread = 10_000;
+    var txIds = ConcurrentHashMap.newKeySet();
+    var start = new CountDownLatch(1);
+    var executor = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < perThread; i++) {
+          txIds.add(generator.next());
+        }
+        return null;
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    executor.awaitTermination(30, TimeUnit.SECONDS);
+
+    assertThat(txIds).hasSize(threads * perThread);
+  }
+
+  @Test
+  public void nodesNeverGenerateTheSameTxId() {
+    var first = new SnowflakeTxIdGenerator(1);
+    var second = new SnowflakeTxIdGenerator(2);
+    var txIds = new HashSet<String>();
+
+    for (int i = 0; i < 10_000; i++) {
+      txIds.add(first.next());
+      txIds.add(second.next());
+    }
+
+    assertThat(txIds).hasSize(20_000);
+  }
+
+  @Test
+  public void nodeIdMustFitItsBits() {
+    assertThrows(IllegalArgumentException.class, () -> new SnowflakeTxIdGenerator(-1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new SnowflakeTxIdGenerator(SnowflakeTxIdGenerator.MAX_NODE_ID + 1));
+  }
+}
@@ -0,0 +1,50 @@
+package com.revolut.web;
+
+import static org.mockito.Mockito.mock;
+
+import com.revolut.domain.Exceptions.OverloadedException;
+import com.revolut.metrics.Metrics;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import io.javalin.http.util.ContextUtil;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrencyLimitsTest {
+
+  private final ConcurrencyLimits limits = new ConcurrencyLimits(1, 1, new Metrics());
+
+  @Test
+  public void movementOverTheLimitShouldBeShedUntilTheAsyncOneCompletes() throws Exception {
+    var pending = new CompletableFuture<Void>();
+    var movement = limits.movements(ctx -> ctx.result(pending));
+
+    movement.handle(newContext());
+    Assertions.assertThrows(OverloadedException.class, () -> movement.handle(newContext()));
+    limits.reads(ctx -> ctx.result("ok")).handle(newContext());
+
+    pending.complete(null);
+    movement.handle(newContext());
+  }
+
+  @Test
+  public void failedHandlerShouldGiveItsPermitBack() throws Exception {
+    Handler failing = ctx -> {
+      throw new IllegalStateException("boom");
+    };
+    var read = limits.reads(failing);
+
+    Assertions.assertThrows(IllegalStateException.class, () -> read.handle(newContext()));
+    Assertions.assertThrows(IllegalStateException.class, () -> read.handle(newContext()));
+  }
+
+  private static Context newContext() {
+    return ContextUtil.init(mock(HttpServletRequest.class), mock(HttpServletResponse.class), "/",
+        Map.of(), HandlerType.PATCH);
+  }
+}
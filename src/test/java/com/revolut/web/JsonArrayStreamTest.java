@@ -0,0 +1,77 @@
+package com.revolut.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class JsonArrayStreamTest {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void writesAnEmptyArray() throws IOException {
+    assertThat(readAll(new JsonArrayStream(Stream.empty(), mapper))).isEqualTo("[]");
+  }
+
+  @Test
+  public void writesElementsSeparatedByCommas() throws IOException {
+    var json = readAll(new JsonArrayStream(Stream.of("a", 1, List.of(2)), mapper));
+
+    assertThat(json).isEqualTo("[\"a\",1,[2]]");
+  }
+
+  @Test
+  public void readsByteByByte() throws IOException {
+    var in = new JsonArrayStream(Stream.of(1, 2), mapper);
+    var json = new StringBuilder();
+    for (int b = in.read(); b != -1; b = in.read()) {
+      json.append((char) b);
+    }
+
+    assertThat(json.toString()).isEqualTo("[1,2]");
+  }
+
+  @Test
+  public void pullsElementsOnlyWhenRead() throws IOException {
+    var pulled = new int[1];
+    var in = new JsonArrayStream(IntStream.range(0, 1_000_000).peek(i -> pulled[0]++).boxed(),
+        mapper);
+
+    in.read(new byte[16], 0, 16);
+
+    assertThat(pulled[0]).isLessThan(10);
+  }
+
+  @Test
+  public void closesTheStreamOnceExhausted() throws IOException {
+    var closed = new AtomicBoolean();
+    var in = new JsonArrayStream(Stream.of(1).onClose(() -> closed.set(true)), mapper);
+
+    readAll(in);
+
+    assertThat(closed).isTrue();
+  }
+
+  @Test
+  public void closesTheStreamWhenClosedEarly() throws IOException {
+    var closed = new AtomicBoolean();
+    var in = new JsonArrayStream(Stream.of(1, 2).onClose(() -> closed.set(true)), mapper);
+
+    in.read();
+    in.close();
+
+    assertThat(closed).isTrue();
+    assertThat(in.read()).isEqualTo(-1);
+  }
+
+  private static String readAll(JsonArrayStream in) throws IOException {
+    return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+  }
+}
@@ -5,10 +5,19 @@ import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.revolut.domain.Currency;
+import com.revolut.domain.HistoryCursor;
+import com.revolut.domain.TxId;
 import com.revolut.repo.TransactionRepo;
+import com.revolut.service.ShardedBalances;
+import com.revolut.service.HoldService;
 import com.revolut.service.TransactionService;
+import com.revolut.web.reqresp.req.BatchTransferRequest;
 import com.revolut.web.reqresp.req.DepositBalanceRequest;
+import com.revolut.web.reqresp.req.HoldRequest;
+import com.revolut.web.reqresp.req.MultiPaymentRequest;
 import com.revolut.web.reqresp.req.NewAccountRequest;
+import com.revolut.web.reqresp.req.PaymentLegRequest;
+import com.revolut.web.reqresp.req.ShardAccountRequest;
 import com.revolut.web.reqresp.req.UpdateAccountRequest;
 import com.revolut.web.reqresp.req.WithdrawBalanceRequest;
 import io.javalin.http.BadRequestResponse;
@@ -18,6 +27,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -37,7 +47,7 @@ public class ValidatorsTest {
   private static final String LONG_NAME = "12345678901234567890123456";
   private static final long NEGATIVE_AMOUNT = -1L;
   private static final long POSITIVE_AMOUNT = 1L;
-  private static final String INVALID_TX_ID = "tx";
+  private static final TxId INVALID_TX_ID = TxId.of("tx");
   private static final TransactionService transactionService = new TransactionService(
       Mockito.mock(TransactionRepo.class));
 
@@ -90,6 +100,15 @@ public class ValidatorsTest {
     assertThat(validatedReq.getCurrency()).isEqualTo(EUR);
   }
 
+  @Test
+  public void shardAccountRequestOutOfRange() throws IOException {
+    for (var shards : new int[] {0, ShardedBalances.MAX_SHARDS + 1}) {
+      var ctx = ContextUtil.init(withBodyOf(new ShardAccountRequest(shards)), withResponse());
+      Assertions.assertThrows(BadRequestResponse.class,
+          () -> Validators.validateShardAccountRequest(ctx));
+    }
+  }
+
   @Test
   public void updateAccountRequestMaxLength() throws IOException {
     var updateAccRequest = new UpdateAccountRequest(LONG_NAME);
@@ -115,7 +134,7 @@ public class ValidatorsTest {
   @Test
   public void withdrawRequestMinBalance() throws IOException {
     var withdrawBalanceReq = new WithdrawBalanceRequest(NEGATIVE_AMOUNT,
-        transactionService.generateTxId());
+        TxId.of(transactionService.generateTxId()));
     var req = withBodyOf(withdrawBalanceReq);
     var ctx = ContextUtil.init(req, withResponse());
 
@@ -137,7 +156,7 @@ public class ValidatorsTest {
 
   @Test
   public void withdrawRequestValid() throws IOException {
-    String txId = transactionService.generateTxId();
+    var txId = TxId.of(transactionService.generateTxId());
     var withdrawBalanceReq = new WithdrawBalanceRequest(POSITIVE_AMOUNT,
         txId);
     var req = withBodyOf(withdrawBalanceReq);
@@ -152,7 +171,7 @@ public class ValidatorsTest {
   @Test
   public void depositRequestMinBalance() throws IOException {
     var depositBalanceRequest = new DepositBalanceRequest(NEGATIVE_AMOUNT,
-        transactionService.generateTxId());
+        TxId.of(transactionService.generateTxId()));
     var req = withBodyOf(depositBalanceRequest);
     var ctx = ContextUtil.init(req, withResponse());
 
@@ -175,7 +194,7 @@ public class ValidatorsTest {
 
   @Test
   public void depositRequestValid() throws IOException {
-    String txId = transactionService.generateTxId();
+    var txId = TxId.of(transactionService.generateTxId());
     var depositBalanceRequest = new DepositBalanceRequest(POSITIVE_AMOUNT,
         txId);
     var req = withBodyOf(depositBalanceRequest);
@@ -185,6 +204,102 @@ public class ValidatorsTest {
     assertThat(validatedReq.getTxId()).isEqualTo(txId);
   }
 
+  @Test
+  public void batchTransferRequestEmpty() throws IOException {
+    var req = withBodyOf(new BatchTransferRequest[0]);
+    var ctx = ContextUtil.init(req, withResponse());
+
+    Assertions
+        .assertThrows(BadRequestResponse.class,
+            () -> Validators.validateBatchTransferRequest(ctx));
+  }
+
+  @Test
+  public void batchTransferRequestInvalidTxId() throws IOException {
+    var req = withBodyOf(new BatchTransferRequest[]{
+        new BatchTransferRequest(0, 1, POSITIVE_AMOUNT,
+            TxId.of(transactionService.generateTxId())),
+        new BatchTransferRequest(0, 1, POSITIVE_AMOUNT, INVALID_TX_ID)});
+    var ctx = ContextUtil.init(req, withResponse());
+
+    Assertions
+        .assertThrows(BadRequestResponse.class,
+            () -> Validators.validateBatchTransferRequest(ctx));
+  }
+
+  @Test
+  public void multiPaymentRequestWithoutLegs() throws IOException {
+    var req = withBodyOf(new MultiPaymentRequest(0, List.of(),
+        TxId.of(transactionService.generateTxId())));
+    var ctx = ContextUtil.init(req, withResponse());
+
+    Assertions
+        .assertThrows(BadRequestResponse.class,
+            () -> Validators.validateMultiPaymentRequest(ctx));
+  }
+
+  @Test
+  public void multiPaymentRequestNegativeAmount() throws IOException {
+    var req = withBodyOf(new MultiPaymentRequest(0,
+        List.of(new PaymentLegRequest(1, POSITIVE_AMOUNT), new PaymentLegRequest(2, -1L)),
+        TxId.of(transactionService.generateTxId())));
+    var ctx = ContextUtil.init(req, withResponse());
+
+    Assertions
+        .assertThrows(BadRequestResponse.class,
+            () -> Validators.validateMultiPaymentRequest(ctx));
+  }
+
+  @Test
+  public void multiPaymentRequestTxIdWithoutRoomForTheLegs() throws IOException {
+    var txId = transactionService.generateTxId();
+    var longTxId = txId + "0".repeat(Validators.MAX_PAYMENT_TX_ID_LENGTH + 1 - txId.length());
+    var legs = List.of(new PaymentLegRequest(1, POSITIVE_AMOUNT));
+    var ctx = ContextUtil.init(withBodyOf(new MultiPaymentRequest(0, legs,
+        TxId.of(longTxId))), withResponse());
+
+    assertThat(TxId.of(longTxId).isWellFormed()).isTrue();
+    Assertions
+        .assertThrows(BadRequestResponse.class,
+            () -> Validators.validateMultiPaymentRequest(ctx));
+  }
+
+  @Test
+  public void depositRequestTxIdLongerThanTheLedgerColumn() throws IOException {
+    var txId = transactionService.generateTxId();
+    var longTxId = txId + "0".repeat(TxId.MAX_LENGTH + 1 - txId.length());
+    var req = withBodyOf(new DepositBalanceRequest(POSITIVE_AMOUNT, TxId.of(longTxId)));
+    var ctx = ContextUtil.init(req, withResponse());
+
+    Assertions
+        .assertThrows(BadRequestResponse.class,
+            () -> Validators.validateDepositBalanceRequest(ctx));
+  }
+
+  @Test
+  public void holdRequestTtlOverTheMaximum() throws IOException {
+    var req = withBodyOf(new HoldRequest(POSITIVE_AMOUNT,
+        TxId.of(transactionService.generateTxId()), HoldService.MAX_TTL_IN_MS / 1_000L + 1L));
+    var ctx = ContextUtil.init(req, withResponse());
+
+    Assertions
+        .assertThrows(BadRequestResponse.class,
+            () -> Validators.validateHoldRequest(ctx));
+  }
+
+  @Test
+  public void batchTransferRequestValid() throws IOException {
+    var txId = TxId.of(transactionService.generateTxId());
+    var req = withBodyOf(new BatchTransferRequest[]{
+        new BatchTransferRequest(0, 1, POSITIVE_AMOUNT, txId)});
+    var ctx = ContextUtil.init(req, withResponse());
+
+    var validatedReq = Validators.validateBatchTransferRequest(ctx);
+
+    assertThat(validatedReq).hasSize(1);
+    assertThat(validatedReq[0].getTxId()).isEqualTo(txId);
+  }
+
   //mocks all possible ways of getting the body from HttpServletRequest
   private <T> HttpServletRequest withBodyOf(T obj) throws IOException {
     var json = mapper.writeValueAsString(obj);
@@ -199,6 +314,46 @@ public class ValidatorsTest {
     return request;
   }
 
+  @Test
+  public void queryParamsOfAccountHistoryDefaultToEverything() {
+    var ctx = ContextUtil.init(withQuery(null), withResponse());
+
+    var from = Validators.validateQueryParamFrom(ctx);
+    assertThat(from).isEqualTo(0L);
+    assertThat(Validators.validateQueryParamTo(ctx, from)).isEqualTo(Long.MAX_VALUE);
+    assertThat(Validators.validateQueryParamBefore(ctx)).isNull();
+  }
+
+  @Test
+  public void queryParamToMustBeAfterFrom() {
+    var ctx = ContextUtil.init(withQuery("from=10&to=10"), withResponse());
+
+    Assertions.assertThrows(BadRequestResponse.class,
+        () -> Validators.validateQueryParamTo(ctx, Validators.validateQueryParamFrom(ctx)));
+  }
+
+  @Test
+  public void queryParamBeforeIsParsed() {
+    var ctx = ContextUtil.init(withQuery("before=1579123829349:42"), withResponse());
+
+    assertThat(Validators.validateQueryParamBefore(ctx))
+        .isEqualTo(new HistoryCursor(1579123829349L, 42));
+  }
+
+  @Test
+  public void queryParamBeforeInvalidThrowsException() {
+    var ctx = ContextUtil.init(withQuery("before=42"), withResponse());
+
+    Assertions.assertThrows(BadRequestResponse.class,
+        () -> Validators.validateQueryParamBefore(ctx));
+  }
+
+  private HttpServletRequest withQuery(String query) {
+    var req = withRequest();
+    when(req.getQueryString()).thenReturn(query);
+    return req;
+  }
+
   private HttpServletRequest withRequest() {
     return Mockito.mock(HttpServletRequest.class);
   }
@@ -2,7 +2,11 @@ package com.revolut.web.handler;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -10,9 +14,15 @@ import com.revolut.domain.Account;
 import com.revolut.domain.Currency;
 import com.revolut.service.AccountService;
 import com.revolut.service.TransferService;
+import com.revolut.web.Pagination;
+import io.javalin.http.Context;
 import io.javalin.http.util.ContextUtil;
-import java.util.Collections;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.junit.jupiter.api.Test;
@@ -34,10 +44,45 @@ public class AccountHandlerTest {
 
     handler.getAll(ctx);
 
-    var res = ctx.resultString();
+    var res = streamedResult(ctx);
     assertThat(deserialize(res, Account[].class)).containsExactly(acc);
   }
 
+  @Test
+  public void getAllStreamsEveryAccount() {
+    var accs = List.of(anAccount(), new Account(2, "other", Currency.USD, 5L));
+    when(accountService.streamAll()).thenReturn(accs.stream());
+    var ctx = ContextUtil.init(request, response);
+
+    handler.getAll(ctx);
+
+    assertThat(deserialize(streamedResult(ctx), Account[].class)).containsExactlyElementsOf(accs);
+  }
+
+  @Test
+  public void getAllReturnsAPage() {
+    var acc = anAccount();
+    when(request.getQueryString()).thenReturn("after=0&limit=1");
+    when(accountService.getPage(0, 1)).thenReturn(List.of(acc));
+    var ctx = ContextUtil.init(request, response);
+
+    handler.getAll(ctx);
+
+    assertThat(deserialize(ctx.resultString(), Account[].class)).containsExactly(acc);
+    verify(response).setHeader(Pagination.HEADER_NEXT_AFTER, "1");
+  }
+
+  @Test
+  public void getAllOmitsNextCursorOnTheLastPage() {
+    when(request.getQueryString()).thenReturn("limit=10");
+    when(accountService.getPage(-1, 10)).thenReturn(List.of(anAccount()));
+    var ctx = ContextUtil.init(request, response);
+
+    handler.getAll(ctx);
+
+    verify(response, never()).setHeader(eq(Pagination.HEADER_NEXT_AFTER), anyString());
+  }
+
   @Test
   public void getOne() {
     var acc = anAccount();
@@ -51,6 +96,26 @@ public class AccountHandlerTest {
     assertThat(deserialize(res, Account.class)).isEqualTo(acc);
   }
 
+  @Test
+  public void getOneLeavesInternalFieldsOut() throws IOException {
+    withAccount(new Account(1, "sharded", Currency.EUR, 100L, 7L, 4, 30L));
+    var ctx = ContextUtil.init(request, response, "/", Map.of("id", "1"));
+
+    handler.getOne(ctx);
+
+    assertThat(mapper.readTree(ctx.resultString()).fieldNames())
+        .containsExactlyInAnyOrder("id", "name", "currency", "balance");
+  }
+
+  //streamed results can't be reset, so ctx.resultString() can't read them
+  private String streamedResult(Context ctx) {
+    try {
+      return new String(ctx.resultStream().readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   private <T> T deserialize(String json, Class<T> type) {
     try {
       return mapper.readValue(json, type);
@@ -60,8 +125,8 @@ public class AccountHandlerTest {
   }
 
   private void withAccount(Account account) {
-    when(accountService.getAll())
-        .thenReturn(Collections.singletonList(account));
+    when(accountService.streamAll())
+        .thenReturn(Stream.of(account));
 
     when(accountService.get(anyInt()))
         .thenReturn((account));